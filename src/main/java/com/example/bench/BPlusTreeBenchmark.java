@@ -0,0 +1,81 @@
+package com.example.bench;
+
+import com.example.buffer.BufferManager;
+import com.example.index.BPlusTree;
+import com.example.index.IntBPlusTree;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Пропускная способность B+Tree на вставке случайных ключей и точечном поиске
+ * при разном ветвлении узлов (maxKeys): от 4 ключей до узла на всю страницу.
+ * Последняя строка (int) - IntBPlusTree с узлом на всю страницу: ключи int без тегов.
+ *
+ * Буферный пул вмещает все дерево, поэтому измеряются спуск по дереву и поиск
+ * в узлах, а не ввод-вывод. Для каждого ветвления печатается высота дерева.
+ *
+ * Пул - 1 ГБ вне heap, нужен -XX:MaxDirectMemorySize не меньше 1g.
+ *
+ * Запуск: java -XX:MaxDirectMemorySize=2g -cp build/classes/java/main com.example.bench.BPlusTreeBenchmark [keys]
+ */
+public class BPlusTreeBenchmark {
+    private static final int[] FANOUTS = {4, 16, 64, 256, BPlusTree.PAGE_FANOUT};
+    private static final int LOOKUPS = 1_000_000;
+    private static final int POOL_PAGES = 256 * 1024; // 1 ГБ
+    
+    public static void main(String[] args) throws IOException {
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        
+        System.out.printf("%-8s %8s %14s %14s%n", "fanout", "height", "inserts/s", "lookups/s");
+        for (int run = 0; run <= FANOUTS.length; run++) {
+            boolean intKeys = run == FANOUTS.length;
+            int fanout = intKeys ? BPlusTree.PAGE_FANOUT : FANOUTS[run];
+            Path dir = Files.createTempDirectory("db_btree_bench_");
+            try {
+                BufferManager bufferManager = new BufferManager(POOL_PAGES);
+                BPlusTree tree = intKeys
+                        ? new IntBPlusTree("bench_idx", "bench", "id", dir.toString(), bufferManager)
+                        : new BPlusTree("bench_idx", "bench", "id", dir.toString(), bufferManager, fanout);
+                
+                Random random = new Random(1);
+                long start = System.nanoTime();
+                for (int i = 0; i < keys; i++) {
+                    tree.insert(Integer.valueOf(random.nextInt()), i / 100, i % 100);
+                }
+                double insertSeconds = (System.nanoTime() - start) / 1e9;
+                
+                // Ищем вставленные ключи: каждый поиск находит запись
+                int[] probes = new int[LOOKUPS];
+                Random replay = new Random(1);
+                for (int i = 0; i < Math.min(keys, LOOKUPS); i++) {
+                    probes[i] = replay.nextInt();
+                }
+                for (int i = keys; i < LOOKUPS; i++) {
+                    probes[i] = probes[i % keys];
+                }
+                int found = 0;
+                for (int i = 0; i < LOOKUPS / 10; i++) { // Прогрев
+                    found += tree.search(probes[i]).size();
+                }
+                start = System.nanoTime();
+                for (int probe : probes) {
+                    found += tree.search(probe).size();
+                }
+                double lookupSeconds = (System.nanoTime() - start) / 1e9;
+                if (found < LOOKUPS) {
+                    throw new IllegalStateException("Lookups missed keys: " + found);
+                }
+                
+                System.out.printf("%-8s %8d %14.0f %14.0f%n",
+                        intKeys ? "int" : fanout == BPlusTree.PAGE_FANOUT ? "page" : String.valueOf(fanout),
+                        tree.getHeight(), keys / insertSeconds, LOOKUPS / lookupSeconds);
+                tree.close();
+            } finally {
+                StorageLayoutBenchmark.deleteRecursively(dir);
+            }
+        }
+    }
+}
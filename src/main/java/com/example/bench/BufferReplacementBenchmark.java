@@ -0,0 +1,83 @@
+package com.example.bench;
+
+import com.example.buffer.BufferManager;
+import com.example.buffer.ReplacementPolicy;
+import com.example.storage.TableFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Задержка промаха буферного пула (поиск жертвы + замена страницы) для политик
+ * LRU и CLOCK при размере пула от 100 до 1 000 000 фреймов.
+ *
+ * Страницы не читаются с диска: таблица-заглушка не заполняет фрейм,
+ * поэтому измеряется только работа BufferManager и политики вытеснения.
+ *
+ * Фреймы пула лежат вне heap, поэтому для 1 000 000 фреймов (4 ГБ) нужен
+ * соответствующий -XX:MaxDirectMemorySize.
+ *
+ * Запуск: java -XX:MaxDirectMemorySize=5g -cp build/classes/java/main com.example.bench.BufferReplacementBenchmark [maxFrames]
+ */
+public class BufferReplacementBenchmark {
+    private static final int MISSES = 2000;
+    
+    public static void main(String[] args) throws IOException {
+        int maxFrames = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        
+        Path dir = Files.createTempDirectory("db_buffer_bench_");
+        try {
+            TableFile tableFile = new InMemoryTableFile(dir.toString());
+            System.out.printf("%-6s %10s %14s%n", "policy", "frames", "ns/miss");
+            for (int frames = 100; frames <= maxFrames; frames *= 10) {
+                for (ReplacementPolicy.Type type : ReplacementPolicy.Type.values()) {
+                    System.out.printf("%-6s %10d %14.0f%n", type, frames, measure(tableFile, type, frames));
+                }
+            }
+        } finally {
+            StorageLayoutBenchmark.deleteRecursively(dir);
+        }
+    }
+    
+    private static double measure(TableFile tableFile, ReplacementPolicy.Type type, int frames) {
+        BufferManager bufferManager = new BufferManager(frames, type);
+        // Заполняем пул и еще раз обращаемся к половине страниц, чтобы биты/отметки различались
+        for (int pageId = 0; pageId < frames; pageId++) {
+            access(bufferManager, tableFile, pageId);
+        }
+        for (int pageId = 0; pageId < frames; pageId += 2) {
+            access(bufferManager, tableFile, pageId);
+        }
+        
+        int nextPageId = frames;
+        for (int i = 0; i < MISSES; i++) { // Прогрев
+            access(bufferManager, tableFile, nextPageId++);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MISSES; i++) {
+            access(bufferManager, tableFile, nextPageId++);
+        }
+        return (System.nanoTime() - start) / (double) MISSES;
+    }
+    
+    private static void access(BufferManager bufferManager, TableFile tableFile, int pageId) {
+        bufferManager.pinPage(tableFile, pageId);
+        bufferManager.unpinPage(tableFile, pageId, false);
+    }
+    
+    /**
+     * Таблица без обращения к диску: чтение страницы ничего не делает
+     */
+    private static final class InMemoryTableFile extends TableFile {
+        InMemoryTableFile(String dataDir) {
+            super("bench", dataDir);
+        }
+        
+        @Override
+        public void readPage(int pageId, ByteBuffer dst) {
+            // Содержимое фрейма не важно для измерения
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.bench;
+
+import com.example.storage.Page;
+import com.example.storage.TableFile;
+import com.example.storage.TableMetadata;
+import com.example.storage.TupleCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Сравнение полного сканирования сегмента таблицы в режимах BUFFERED
+ * (позиционное чтение в heap-массив) и MMAP (представления над FileChannel.map).
+ *
+ * Запуск: java -cp build/classes/java/main com.example.bench.MmapReadBenchmark [pages] [rounds]
+ */
+public class MmapReadBenchmark {
+    private static final String TABLE = "bench";
+    
+    public static void main(String[] args) throws IOException {
+        int pages = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        
+        TableMetadata metadata = new TableMetadata(TABLE);
+        metadata.addColumn("id", "INTEGER");
+        metadata.addColumn("name", "VARCHAR");
+        metadata.addColumn("age", "INTEGER");
+        
+        Path dir = Files.createTempDirectory("db_mmap_bench_");
+        try {
+            TableFile writer = new TableFile(TABLE, dir.toString());
+            int rowId = 0;
+            for (int i = 0; i < pages; i++) {
+                Page page = new Page(writer.allocatePage());
+                while (page.insertRecord(TupleCodec.encode(metadata,
+                        Arrays.asList(rowId, "user_" + rowId, rowId % 90))) >= 0) {
+                    rowId++;
+                }
+                writer.savePage(page);
+            }
+            writer.sync();
+            writer.close();
+            System.out.println("Pages: " + pages + ", rows: " + rowId + ", rounds: " + rounds);
+            
+            for (TableFile.IoMode mode : TableFile.IoMode.values()) {
+                TableFile tableFile = new TableFile(TABLE, dir.toString(), mode);
+                List<Integer> pageIds = tableFile.getPageIds();
+                scan(tableFile, pageIds, metadata); // Прогрев
+                long best = Long.MAX_VALUE;
+                long checksum = 0;
+                for (int r = 0; r < rounds; r++) {
+                    long start = System.nanoTime();
+                    checksum += scan(tableFile, pageIds, metadata);
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                double seconds = best / 1e9;
+                System.out.printf("%-8s best %8.1f ms, %10.0f pages/s, %10.0f rows/s (checksum %d)%n",
+                        mode, best / 1e6, pages / seconds, rowId / seconds, checksum);
+                tableFile.close();
+            }
+        } finally {
+            StorageLayoutBenchmark.deleteRecursively(dir);
+        }
+    }
+    
+    /**
+     * Аналог SELECT *: читаем каждую страницу и декодируем все кортежи
+     */
+    private static long scan(TableFile tableFile, List<Integer> pageIds, TableMetadata metadata) {
+        long checksum = 0;
+        for (int pageId : pageIds) {
+            Page page = tableFile.loadPage(pageId);
+            int slotCount = page.getSlotCount();
+            for (int slot = 0; slot < slotCount; slot++) {
+                ByteBuffer record = page.getRecordBuffer(slot);
+                if (record != null) {
+                    checksum += (Integer) TupleCodec.decode(metadata, record).get(2);
+                }
+            }
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.bench;
+
+import com.example.executor.ExpressionCompiler;
+import com.example.executor.FilterExecutor;
+import com.example.executor.Row;
+import com.example.storage.TableMetadata;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Проверка условий WHERE на строках в памяти: интерпретатор (Condition.evaluate - разбор
+ * оператора и Comparable на каждой строке) против условия, скомпилированного
+ * ExpressionCompiler под типы колонок. Ввод-вывода и декодирования нет - только вычисление условия.
+ *
+ * Запуск: java -cp build/classes/java/main com.example.bench.PredicateBenchmark [rows]
+ */
+public class PredicateBenchmark {
+    private static final int ROUNDS = 10;
+    
+    public static void main(String[] args) {
+        int rowCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        
+        TableMetadata metadata = new TableMetadata("bench");
+        metadata.addColumn("id", "INTEGER");
+        metadata.addColumn("name", "VARCHAR");
+        metadata.addColumn("score", "INTEGER");
+        Random random = new Random(1);
+        Row[] rows = new Row[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            rows[i] = new Row(Arrays.asList(i, "name" + random.nextInt(1000), random.nextInt(100)));
+        }
+        
+        FilterExecutor.Condition[] conditions = {
+            FilterExecutor.Condition.comparison(0, "=", rowCount / 2, null),
+            FilterExecutor.Condition.comparison(2, "BETWEEN", 20, 40),
+            FilterExecutor.Condition.comparison(1, "<", "name5", null),
+            FilterExecutor.Condition.connective("OR", Arrays.asList(
+                FilterExecutor.Condition.connective("AND", Arrays.asList(
+                    FilterExecutor.Condition.comparison(2, ">=", 50, null),
+                    FilterExecutor.Condition.comparison(1, "<>", "name7", null))),
+                FilterExecutor.Condition.comparison(0, "<", rowCount / 10, null)))
+        };
+        String[] names = {"id = c", "score BETWEEN", "name < c", "(AND) OR"};
+        
+        System.out.printf("%-14s %16s %16s %8s%n", "condition", "interpreted/s", "compiled/s", "speedup");
+        for (int c = 0; c < conditions.length; c++) {
+            FilterExecutor.Condition condition = conditions[c];
+            Predicate<Row> interpreted = condition::evaluate;
+            Predicate<Row> compiled = ExpressionCompiler.compileFilter(condition, metadata);
+            
+            // Прогрев обоих путей, заодно сверка результатов
+            int expected = count(interpreted, rows);
+            if (count(compiled, rows) != expected) {
+                throw new IllegalStateException("Compiled predicate disagrees with interpreter: " + names[c]);
+            }
+            double interpretedRate = measure(interpreted, rows);
+            double compiledRate = measure(compiled, rows);
+            System.out.printf("%-14s %16.0f %16.0f %7.1fx%n", names[c], interpretedRate, compiledRate,
+                    compiledRate / interpretedRate);
+        }
+    }
+    
+    private static double measure(Predicate<Row> predicate, Row[] rows) {
+        long start = System.nanoTime();
+        int matched = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            matched += count(predicate, rows);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (matched < 0) {
+            throw new IllegalStateException();
+        }
+        return (double) rows.length * ROUNDS / seconds;
+    }
+    
+    private static int count(Predicate<Row> predicate, Row[] rows) {
+        int matched = 0;
+        for (Row row : rows) {
+            if (predicate.test(row)) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+}
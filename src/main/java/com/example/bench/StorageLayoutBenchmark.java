@@ -0,0 +1,139 @@
+package com.example.bench;
+
+import com.example.storage.LegacyPageFiles;
+import com.example.storage.Page;
+import com.example.storage.TableFile;
+import com.example.storage.TableMetadata;
+import com.example.storage.TupleCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Сравнение скорости полного чтения таблицы (id INTEGER, name VARCHAR) в старом формате
+ * (файл на страницу + ObjectInputStream, строки фиксированного размера) и в сегментном
+ * .tbl файле со slotted-страницами. Старые страницы переносятся в сегмент той же
+ * миграцией, что и при открытии каталога данных (TableFile.migrateLegacyPages);
+ * перед замерами проверяется, что сегмент содержит все строки.
+ *
+ * Запуск: java -cp build/classes/java/main com.example.bench.StorageLayoutBenchmark [pages] [rounds]
+ */
+public class StorageLayoutBenchmark {
+    private static final String TABLE = "bench";
+    /** Строк на странице старого формата: 37 строк по 4 + 104 байта */
+    private static final int LEGACY_ROWS_PER_PAGE = 37;
+    private static final int LEGACY_ROW_SIZE = 108;
+    
+    public static void main(String[] args) throws IOException {
+        int pages = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long rows = (long) pages * LEGACY_ROWS_PER_PAGE;
+        
+        TableMetadata metadata = new TableMetadata(TABLE);
+        metadata.addColumn("id", "INTEGER");
+        metadata.addColumn("name", "VARCHAR");
+        
+        Path dir = Files.createTempDirectory("db_layout_bench_");
+        try {
+            for (int pageId = 0; pageId < pages; pageId++) {
+                LegacyPageFiles.savePage(dir, TABLE, legacyPage(pageId, pageId * LEGACY_ROWS_PER_PAGE));
+            }
+            
+            System.out.println("Legacy pages: " + pages + ", rows: " + rows + ", rounds: " + rounds);
+            report("legacy _page_N.dat", rows, rounds, () -> {
+                long count = 0;
+                for (int pageId = 0; pageId < pages; pageId++) {
+                    count += LegacyPageFiles.readRows(LegacyPageFiles.loadPage(dir, TABLE, pageId), metadata).size();
+                }
+                return count;
+            });
+            
+            long migrateStart = System.nanoTime();
+            TableFile segment = new TableFile(TABLE, dir.toString());
+            segment.migrateLegacyPages(metadata);
+            System.out.printf("migration: %.1f ms%n", (System.nanoTime() - migrateStart) / 1e6);
+            
+            List<Integer> pageIds = segment.getPageIds();
+            Scan segmentScan = () -> {
+                long count = 0;
+                for (int pageId : pageIds) {
+                    Page page = segment.loadPage(pageId);
+                    int slotCount = page.getSlotCount();
+                    for (int slot = 0; slot < slotCount; slot++) {
+                        ByteBuffer record = page.getRecordBuffer(slot);
+                        if (record != null) {
+                            TupleCodec.decode(metadata, record);
+                            count++;
+                        }
+                    }
+                }
+                return count;
+            };
+            long migrated = segmentScan.run();
+            if (migrated != rows) {
+                throw new IllegalStateException("Segment holds " + migrated + " rows, expected " + rows);
+            }
+            System.out.println("Segment pages: " + pageIds.size());
+            report("segment .tbl", rows, rounds, segmentScan);
+            segment.close();
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+    
+    /**
+     * Страница старого формата: [число строк int] и строки (id, name) по LEGACY_ROW_SIZE байт
+     */
+    private static Page legacyPage(int pageId, int firstId) {
+        Page page = new Page(pageId);
+        ByteBuffer buffer = ByteBuffer.wrap(page.getData());
+        buffer.putInt(LEGACY_ROWS_PER_PAGE);
+        for (int i = 0; i < LEGACY_ROWS_PER_PAGE; i++) {
+            byte[] name = ("user " + (firstId + i)).getBytes();
+            buffer.position(4 + i * LEGACY_ROW_SIZE);
+            buffer.putInt(firstId + i);
+            buffer.putInt(name.length);
+            buffer.put(name);
+        }
+        return page;
+    }
+    
+    private static void report(String name, long rows, int rounds, Scan scan) {
+        scan.run(); // Прогрев
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            long count = scan.run();
+            best = Math.min(best, System.nanoTime() - start);
+            if (count != rows) {
+                throw new IllegalStateException(name + " read " + count + " rows, expected " + rows);
+            }
+        }
+        double seconds = best / 1e9;
+        System.out.printf("%-20s best %8.1f ms, %12.0f rows/s%n", name, best / 1e6, rows / seconds);
+    }
+    
+    static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(dir)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    // Игнорируем
+                }
+            });
+        }
+    }
+    
+    interface Scan {
+        long run();
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.buffer;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновый писатель: каждые delayMillis записывает пачку грязных незакрепленных
+ * страниц буферного пула, чтобы вытеснение и контрольная точка реже ждали записи.
+ */
+public class BackgroundWriter {
+    private final BufferManager bufferManager;
+    private final long delayMillis;
+    private final int maxPagesPerRound;
+    private ScheduledExecutorService scheduler;
+    
+    public BackgroundWriter(BufferManager bufferManager, long delayMillis, int maxPagesPerRound) {
+        this.bufferManager = bufferManager;
+        this.delayMillis = delayMillis;
+        this.maxPagesPerRound = maxPagesPerRound;
+    }
+    
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-bgwriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runRound, delayMillis, delayMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Остановить поток и дождаться текущего прохода
+     */
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+    }
+    
+    /**
+     * Один проход писателя; возвращает число записанных страниц
+     */
+    public int runRound() {
+        try {
+            return bufferManager.writeDirtyPages(maxPagesPerRound);
+        } catch (RuntimeException e) {
+            // Исключение отменило бы периодическую задачу - пробуем снова на следующем проходе
+            System.err.println("Background writer failed: " + e.getMessage());
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.buffer;
+
+/**
+ * Стратегия доступа к буферу для больших последовательных проходов (аналог
+ * BAS_BULKREAD в PostgreSQL): страницы прохода читаются в маленькое кольцо
+ * фреймов, которые переиспользуются по кругу, и не вытесняют горячие страницы пула.
+ *
+ * Объект принадлежит одному проходу и не потокобезопасен.
+ */
+public final class BufferAccessStrategy {
+    /**
+     * Максимальный размер кольца в страницах (128 КБ при странице 4 КБ)
+     */
+    public static final int MAX_RING_SIZE = 32;
+    
+    private final int[] ringFrames;
+    private final Object[] ringKeys;
+    private int current;
+    
+    BufferAccessStrategy(int ringSize) {
+        this.ringFrames = new int[ringSize];
+        this.ringKeys = new Object[ringSize];
+        this.current = -1;
+    }
+    
+    public int getRingSize() {
+        return ringFrames.length;
+    }
+    
+    /**
+     * Сдвинуться на следующую позицию кольца
+     */
+    void advance() {
+        current = (current + 1) % ringFrames.length;
+    }
+    
+    /**
+     * Фрейм, занятый проходом на текущей позиции, или null, если позиция пуста
+     */
+    Object currentKey() {
+        return ringKeys[current];
+    }
+    
+    int currentFrame() {
+        return ringFrames[current];
+    }
+    
+    /**
+     * Запомнить фрейм, в который проход загрузил страницу key
+     */
+    void remember(int frameIndex, Object key) {
+        ringFrames[current] = frameIndex;
+        ringKeys[current] = key;
+    }
+}
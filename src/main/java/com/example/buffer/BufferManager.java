@@ -1,135 +1,588 @@
 package com.example.buffer;
 
 import com.example.storage.Page;
-import com.example.storage.TableFile;
+import com.example.storage.SegmentFile;
+import com.example.wal.WriteAheadLog;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
 
 /**
- * Буферный менеджер - управление страницами в памяти
+ * Буферный менеджер - управление страницами в памяти.
+ *
+ * Потокобезопасен: таблица страниц разбита на STRIPES частей со своими блокировками,
+ * у каждого фрейма есть счетчик закреплений (pin count). Страница берется только
+ * через pinPage и возвращается через unpinPage: закрепленная страница никогда
+ * не вытесняется, представление над фреймом действительно и менять его можно
+ * только под pin. Поэтому на диск (вытеснение, фоновый писатель, контрольная точка,
+ * flush) страница пишется только незакрепленной и под блокировкой части -
+ * наполовину измененный образ туда не попадет.
+ *
+ * Pin не мешает другим сессиям менять страницу. Содержимое закрепленной страницы
+ * защищает латч фрейма (Page.getLatch()): читатели держат его shared, вставка
+ * и redo - exclusive.
+ *
+ * Фреймы - срезы по PAGE_SIZE байт из off-heap арены (прямых ByteBuffer), выделенной
+ * один раз при создании пула; страницы пула - представления над своими фреймами.
+ * Исключение - файлы, которые отдают страницы-представления сами (сегмент таблицы
+ * в режиме mmap, SegmentFile.viewPage): такая страница ссылается на отображение
+ * без копирования, а фрейм только занимает место в пуле.
+ * Поэтому размер пула почти не влияет на работу сборщика мусора. Представление
+ * действительно, пока страница закреплена: после вытеснения фрейм занимает другая страница.
+ *
+ * Жертва для вытеснения выбирается ReplacementPolicy (CLOCK по умолчанию или LRU).
+ * Большие последовательные проходы используют BufferAccessStrategy и читают
+ * страницы в свое кольцо фреймов, не вытесняя остальной пул.
+ *
+ * Если задан журнал (setWriteAheadLog), перед записью страницы на диск журнал
+ * сбрасывается до LSN страницы (правило WAL).
+ *
+ * Порядок блокировок: evictionLock -> блокировка части. Две блокировки частей
+ * одновременно не берутся никогда, список свободных фреймов неблокирующий.
  */
 public class BufferManager {
+    private static final int STRIPES = 16;
+    /** Фреймов в одном прямом буфере арены (256 МБ): емкость ByteBuffer ограничена int */
+    private static final int FRAMES_PER_CHUNK = 1 << 16;
+    private static final byte[] ZERO_PAGE = new byte[Page.PAGE_SIZE];
+    private static final int CHECKPOINT_ATTEMPTS = 1000;
+    
     private final int poolSize;
-    private Map<String, Page> bufferPool;
-    private Map<String, Integer> accessOrder;
-    private int accessCounter;
+    private final Frame[] frames;
+    private final Stripe[] stripes;
+    private final ConcurrentLinkedDeque<Frame> freeFrames;
+    private final ReentrantLock evictionLock;
+    private final ReplacementPolicy policy;
+    private int writerHand;
+    private volatile WriteAheadLog wal;
     
     public BufferManager(int poolSize) {
+        this(poolSize, ReplacementPolicy.Type.CLOCK);
+    }
+    
+    public BufferManager(int poolSize, ReplacementPolicy.Type policyType) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + poolSize);
+        }
         this.poolSize = poolSize;
-        this.bufferPool = new LinkedHashMap<String, Page>(poolSize, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<String, Page> eldest) {
-                if (size() > poolSize) {
-                    Page page = eldest.getValue();
-                    if (page.isDirty()) {
-                        flushPage(eldest.getKey(), page);
+        this.frames = new Frame[poolSize];
+        this.freeFrames = new ConcurrentLinkedDeque<>();
+        ByteBuffer chunk = null;
+        for (int i = 0; i < poolSize; i++) {
+            int frameInChunk = i % FRAMES_PER_CHUNK;
+            if (frameInChunk == 0) {
+                int chunkFrames = Math.min(FRAMES_PER_CHUNK, poolSize - i);
+                chunk = ByteBuffer.allocateDirect(chunkFrames * Page.PAGE_SIZE);
+            }
+            ByteBuffer slot = chunk.duplicate();
+            slot.position(frameInChunk * Page.PAGE_SIZE);
+            slot.limit((frameInChunk + 1) * Page.PAGE_SIZE);
+            frames[i] = new Frame(i, slot.slice());
+            freeFrames.add(frames[i]);
+        }
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.evictionLock = new ReentrantLock();
+        this.policy = ReplacementPolicy.create(policyType, poolSize);
+    }
+    
+    public void setWriteAheadLog(WriteAheadLog wal) {
+        this.wal = wal;
+    }
+    
+    /**
+     * Получить страницу и закрепить ее в буфере до вызова unpinPage
+     */
+    public Page pinPage(SegmentFile file, int pageId) {
+        return fetch(file, pageId, true, null);
+    }
+    
+    /**
+     * Закрепить страницу; при промахе фрейм берется из кольца стратегии (если strategy != null)
+     */
+    public Page pinPage(SegmentFile file, int pageId, BufferAccessStrategy strategy) {
+        return fetch(file, pageId, true, strategy);
+    }
+    
+    /**
+     * Стратегия для последовательного прохода по relationPages страницам или null,
+     * если таблица невелика (не больше четверти пула) и может читаться в общий пул
+     */
+    public BufferAccessStrategy bulkReadStrategy(int relationPages) {
+        if (relationPages <= poolSize / 4) {
+            return null;
+        }
+        int ringSize = Math.max(1, Math.min(BufferAccessStrategy.MAX_RING_SIZE, poolSize / 8));
+        return new BufferAccessStrategy(ringSize);
+    }
+    
+    /**
+     * Снять одно закрепление страницы; dirty = true, если страница была изменена
+     */
+    public void unpinPage(SegmentFile file, int pageId, boolean dirty) {
+        PageKey key = new PageKey(file, pageId);
+        Stripe stripe = stripeFor(key);
+        stripe.lock.lock();
+        try {
+            Frame frame = stripe.table.get(key);
+            if (frame == null) {
+                return; // Страницы файла уже выброшены (DROP TABLE)
+            }
+            if (frame.pinCount <= 0) {
+                throw new IllegalStateException("Page is not pinned: " + key);
+            }
+            if (dirty) {
+                frame.page.setDirty(true);
+            }
+            frame.pinCount--;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+    
+    /**
+     * Выделить новую страницу в файле и вернуть ее закрепленной
+     */
+    public Page newPage(SegmentFile file) {
+        int pageId = file.allocatePage();
+        return install(new PageKey(file, pageId), true, true, null);
+    }
+    
+    public void markDirty(SegmentFile file, int pageId) {
+        PageKey key = new PageKey(file, pageId);
+        Stripe stripe = stripeFor(key);
+        stripe.lock.lock();
+        try {
+            Frame frame = stripe.table.get(key);
+            if (frame != null) {
+                frame.page.setDirty(true);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+    
+    /**
+     * Записать страницу на диск, если она в буфере и изменена (закрепленную - после unpin)
+     */
+    public void flushPage(SegmentFile file, int pageId) {
+        PageKey key = new PageKey(file, pageId);
+        writeDirtyPages(key::equals, "Flush of " + key);
+    }
+    
+    /**
+     * Записать все грязные страницы файла, находящиеся в буфере
+     */
+    public void flushPages(SegmentFile file) {
+        writeDirtyPages(key -> key.file == file, "Flush of " + file.getName());
+    }
+    
+    public void flushAll() {
+        writeDirtyPages(key -> true, "Flush");
+    }
+    
+    /**
+     * Записать до maxPages грязных незакрепленных страниц, продолжая обход пула с места
+     * предыдущего вызова (фоновый писатель). Возвращает число записанных страниц.
+     */
+    public synchronized int writeDirtyPages(int maxPages) {
+        int written = 0;
+        for (int scanned = 0; scanned < poolSize && written < maxPages; scanned++) {
+            Frame frame = frames[writerHand];
+            writerHand = (writerHand + 1) % poolSize;
+            if (writeIfUnpinned(frame)) {
+                written++;
+            }
+        }
+        return written;
+    }
+    
+    /**
+     * Контрольная точка: записать все грязные страницы
+     */
+    public int checkpoint() {
+        return writeDirtyPages(key -> true, "Checkpoint");
+    }
+    
+    /**
+     * Записать грязные страницы, ключ которых подходит под filter. Закрепленную страницу
+     * могут менять прямо сейчас, поэтому ее ждем, пока pin не снимут (вставки держат pin
+     * недолго), и пишем, как фоновый писатель, под блокировкой части.
+     */
+    private int writeDirtyPages(Predicate<PageKey> filter, String operation) {
+        int written = 0;
+        for (int attempt = 0; attempt < CHECKPOINT_ATTEMPTS; attempt++) {
+            boolean pending = false;
+            for (Frame frame : frames) {
+                PageKey key = frame.key;
+                if (key == null || !filter.test(key)) {
+                    continue;
+                }
+                Page page = frame.page;
+                if (writeIfUnpinned(frame)) {
+                    written++;
+                } else if (frame.key == key && page != null && page.isDirty()) {
+                    // Закреплена или pin сняли уже после проверки - запишем на следующем круге
+                    pending = true;
+                }
+            }
+            if (!pending) {
+                return written;
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        throw new RuntimeException(operation + " failed: dirty pages stay pinned");
+    }
+    
+    /**
+     * Выбросить из буфера все страницы файла без записи на диск (DROP TABLE, перестроение индекса).
+     * Закрепленную страницу еще читают, и ее фрейм нельзя отдать другой странице: ждем,
+     * пока pin не снимут, как при контрольной точке. Если страницы так и остаются
+     * закрепленными - ошибка, и пока закрепление видно до начала работы, ничего не выбрасывается.
+     */
+    public void discardPages(SegmentFile file) {
+        for (int attempt = 0; attempt < CHECKPOINT_ATTEMPTS; attempt++) {
+            if (!hasPinnedPages(file) && discardUnpinned(file)) {
+                return;
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        throw new RuntimeException("Discard of " + file.getName() + " failed: pages stay pinned");
+    }
+    
+    private boolean hasPinnedPages(SegmentFile file) {
+        for (Frame frame : frames) {
+            PageKey key = frame.key;
+            if (key != null && key.file == file && frame.pinCount > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Выбросить незакрепленные страницы файла; false, если какую-то успели закрепить
+     */
+    private boolean discardUnpinned(SegmentFile file) {
+        boolean all = true;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                Iterator<Frame> it = stripe.table.values().iterator();
+                while (it.hasNext()) {
+                    Frame frame = it.next();
+                    if (frame.key.file != file) {
+                        continue;
                     }
-                    return true;
+                    if (frame.pinCount > 0) {
+                        all = false;
+                        continue;
+                    }
+                    it.remove();
+                    releaseFrame(frame);
                 }
-                return false;
+            } finally {
+                stripe.lock.unlock();
             }
-        };
-        this.accessOrder = new HashMap<>();
-        this.accessCounter = 0;
+        }
+        return all;
     }
     
-    public Page getPage(TableFile tableFile, int pageId) {
-        String key = tableFile.getTableName() + "_" + pageId;
-        
-        // Проверяем в буфере
-        Page page = bufferPool.get(key);
+    public int getPoolSize() {
+        return poolSize;
+    }
+    
+    private Page fetch(SegmentFile file, int pageId, boolean pin, BufferAccessStrategy strategy) {
+        PageKey key = new PageKey(file, pageId);
+        Page page = lookup(key, pin);
         if (page != null) {
-            accessOrder.put(key, accessCounter++);
             return page;
         }
-        
-        // Загружаем с диска
-        page = tableFile.loadPage(pageId);
-        
-        // Добавляем в буфер (LRU автоматически удалит старые)
-        if (bufferPool.size() >= poolSize) {
-            evictLRU();
+        // Промах: загружаем страницу с диска и кладем в свободный фрейм
+        return install(key, false, pin, strategy);
+    }
+    
+    private Page lookup(PageKey key, boolean pin) {
+        Stripe stripe = stripeFor(key);
+        stripe.lock.lock();
+        try {
+            Frame frame = stripe.table.get(key);
+            if (frame == null) {
+                return null;
+            }
+            touch(frame, pin);
+            return frame.page;
+        } finally {
+            stripe.lock.unlock();
         }
-        
-        bufferPool.put(key, page);
-        accessOrder.put(key, accessCounter++);
-        return page;
     }
     
-    public void pinPage(TableFile tableFile, int pageId) {
-        String key = tableFile.getTableName() + "_" + pageId;
-        Page page = bufferPool.get(key);
-        if (page != null) {
-            accessOrder.put(key, accessCounter++);
-        } else {
-            // Если страницы нет в буфере, добавляем её
-            page = tableFile.loadPage(pageId);
-            if (bufferPool.size() >= poolSize) {
-                evictLRU();
+    /**
+     * Занять фрейм под страницу: новую пустую (fresh) или прочитанную с диска.
+     * Фрейм берется до блокировки части, поэтому вытеснение не вкладывает блокировки частей.
+     *
+     * Страница, загруженная через стратегию, не отмечается в политике вытеснения:
+     * ее фрейм остается первым кандидатом и для общего пула.
+     */
+    private Page install(PageKey key, boolean fresh, boolean pin, BufferAccessStrategy strategy) {
+        Frame frame = strategy != null ? allocateRingFrame(strategy) : allocateFrame();
+        Stripe stripe = stripeFor(key);
+        stripe.lock.lock();
+        try {
+            Frame existing = stripe.table.get(key);
+            if (existing != null) {
+                // Другой поток успел загрузить страницу, пока мы искали фрейм
+                returnFrame(frame);
+                touch(existing, pin);
+                return existing.page;
+            }
+            Page page = fresh ? null : key.file.viewPage(key.pageId);
+            if (page == null) {
+                ByteBuffer slot = frame.slot.duplicate();
+                if (fresh) {
+                    slot.put(ZERO_PAGE);
+                } else {
+                    key.file.readPage(key.pageId, slot);
+                }
+                page = new Page(key.pageId, frame.slot.duplicate());
             }
-            bufferPool.put(key, page);
-            accessOrder.put(key, accessCounter++);
+            page.setLatch(frame.latch);
+            page.setDirty(fresh);
+            frame.key = key;
+            frame.page = page;
+            frame.pinCount = 0;
+            stripe.table.put(key, frame);
+            if (strategy != null) {
+                strategy.remember(frame.index, key);
+                if (pin) {
+                    frame.pinCount++;
+                }
+            } else {
+                touch(frame, pin);
+            }
+            return frame.page;
+        } catch (RuntimeException e) {
+            frame.key = null;
+            frame.page = null;
+            returnFrame(frame);
+            throw e;
+        } finally {
+            stripe.lock.unlock();
         }
     }
     
-    public void addPage(TableFile tableFile, Page page) {
-        String key = tableFile.getTableName() + "_" + page.getPageId();
-        if (bufferPool.size() >= poolSize) {
-            evictLRU();
+    private void touch(Frame frame, boolean pin) {
+        policy.recordAccess(frame.index);
+        if (pin) {
+            frame.pinCount++;
         }
-        bufferPool.put(key, page);
-        accessOrder.put(key, accessCounter++);
     }
     
-    public void markDirty(TableFile tableFile, int pageId) {
-        String key = tableFile.getTableName() + "_" + pageId;
-        Page page = bufferPool.get(key);
-        if (page != null) {
-            page.setDirty(true);
+    private Frame allocateFrame() {
+        Frame free = freeFrames.poll();
+        if (free != null) {
+            return free;
+        }
+        evictionLock.lock();
+        try {
+            free = freeFrames.poll();
+            if (free != null) {
+                return free;
+            }
+            return evict();
+        } finally {
+            evictionLock.unlock();
         }
     }
     
-    public void flushPage(String key, Page page) {
-        // Извлекаем tableName и pageId из key
-        String[] parts = key.split("_");
-        if (parts.length >= 2) {
-            String tableName = parts[0];
-            // pageId используется для логирования, но не критичен
-            TableFile tableFile = new TableFile(tableName, "data");
-            tableFile.savePage(page);
-            page.setDirty(false);
+    /**
+     * Фрейм из кольца стратегии: переиспользуем фрейм на текущей позиции, если в нем
+     * все еще лежит страница этого прохода и она не закреплена. Иначе (кольцо еще
+     * не заполнено, страницу закрепил или заменил кто-то другой) берем фрейм из пула.
+     */
+    private Frame allocateRingFrame(BufferAccessStrategy strategy) {
+        strategy.advance();
+        Object ringKey = strategy.currentKey();
+        if (ringKey != null) {
+            Frame candidate = frames[strategy.currentFrame()];
+            if (candidate.key == ringKey && tryReclaim(candidate, (PageKey) ringKey)) {
+                return candidate;
+            }
         }
+        return allocateFrame();
     }
     
-    private void evictLRU() {
-        String lruKey = null;
-        int minAccess = Integer.MAX_VALUE;
-        
-        for (Map.Entry<String, Integer> entry : accessOrder.entrySet()) {
-            if (entry.getValue() < minAccess) {
-                minAccess = entry.getValue();
-                lruKey = entry.getKey();
+    /**
+     * Вытеснить незакрепленную страницу, выбранную политикой (вызывается под evictionLock)
+     */
+    private Frame evict() {
+        while (true) {
+            // Проверка без блокировки - только подсказка, ниже перепроверяем под блокировкой части
+            int victimIndex = policy.chooseVictim(
+                    i -> frames[i].key != null && frames[i].pinCount == 0);
+            if (victimIndex < 0) {
+                throw new RuntimeException("Buffer pool exhausted: all " + poolSize + " frames are pinned");
+            }
+            
+            Frame victim = frames[victimIndex];
+            PageKey victimKey = victim.key;
+            if (victimKey != null && tryReclaim(victim, victimKey)) {
+                return victim;
             }
+            // Фрейм успели закрепить или освободить - ищем заново
         }
-        
-        if (lruKey != null) {
-            Page page = bufferPool.get(lruKey);
-            if (page != null && page.isDirty()) {
-                flushPage(lruKey, page);
+    }
+    
+    /**
+     * Освободить фрейм со страницей expectedKey, если она все еще в нем и не закреплена.
+     * Грязная страница записывается под блокировкой части, чтобы никто не прочитал
+     * с диска устаревшую версию.
+     */
+    private boolean tryReclaim(Frame frame, PageKey expectedKey) {
+        Stripe stripe = stripeFor(expectedKey);
+        stripe.lock.lock();
+        try {
+            if (frame.key != expectedKey || frame.pinCount != 0 || stripe.table.get(expectedKey) != frame) {
+                return false;
             }
-            bufferPool.remove(lruKey);
-            accessOrder.remove(lruKey);
+            writeIfDirty(frame);
+            stripe.table.remove(expectedKey);
+            frame.key = null;
+            frame.page = null;
+            return true;
+        } finally {
+            stripe.lock.unlock();
         }
     }
     
-    public void flushAll() {
-        for (Map.Entry<String, Page> entry : bufferPool.entrySet()) {
-            if (entry.getValue().isDirty()) {
-                flushPage(entry.getKey(), entry.getValue());
+    private void releaseFrame(Frame frame) {
+        frame.key = null;
+        frame.page = null;
+        frame.pinCount = 0;
+        returnFrame(frame);
+    }
+    
+    private void returnFrame(Frame frame) {
+        freeFrames.push(frame);
+    }
+    
+    /**
+     * Записать страницу фрейма, если она грязная и не закреплена. Страницу меняют только
+     * под pin, а закрепить ее нельзя, пока мы держим блокировку части, поэтому
+     * на диск не попадет наполовину измененный образ.
+     */
+    private boolean writeIfUnpinned(Frame frame) {
+        PageKey key = frame.key;
+        Page page = frame.page;
+        if (key == null || page == null || !page.isDirty()) {
+            return false;
+        }
+        Stripe stripe = stripeFor(key);
+        stripe.lock.lock();
+        try {
+            if (frame.key != key || frame.pinCount != 0 || !frame.page.isDirty()) {
+                return false;
+            }
+            writeIfDirty(frame);
+            return true;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+    
+    private void writeIfDirty(Frame frame) {
+        if (frame.page != null && frame.page.isDirty()) {
+            WriteAheadLog log = wal;
+            if (log != null) {
+                log.flush(frame.page.getLsn());
+            }
+            frame.key.file.savePage(frame.page);
+            frame.page.setDirty(false);
+        }
+    }
+    
+    private Stripe stripeFor(PageKey key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+    
+    /**
+     * Часть таблицы страниц со своей блокировкой
+     */
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<PageKey, Frame> table = new HashMap<>();
+    }
+    
+    /**
+     * Фрейм буферного пула. Поля меняются только под блокировкой части,
+     * которой принадлежит key; volatile - для проверок при выборе жертвы.
+     */
+    private static final class Frame {
+        final int index;
+        final ByteBuffer slot;
+        /** Латч содержимого страницы фрейма (см. Page.getLatch) */
+        final ReentrantReadWriteLock latch = new ReentrantReadWriteLock();
+        volatile PageKey key;
+        volatile Page page;
+        volatile int pinCount;
+        
+        Frame(int index, ByteBuffer slot) {
+            this.index = index;
+            this.slot = slot;
+        }
+    }
+    
+    /**
+     * Адрес страницы: файл-сегмент (по ссылке) и номер страницы
+     */
+    private static final class PageKey {
+        final SegmentFile file;
+        final int pageId;
+        
+        PageKey(SegmentFile file, int pageId) {
+            this.file = file;
+            this.pageId = pageId;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
             }
+            if (!(o instanceof PageKey)) {
+                return false;
+            }
+            PageKey other = (PageKey) o;
+            return file == other.file && pageId == other.pageId;
+        }
+        
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(file) * 31 + pageId;
+        }
+        
+        @Override
+        public String toString() {
+            return file.getName() + "#" + pageId;
         }
     }
 }
-
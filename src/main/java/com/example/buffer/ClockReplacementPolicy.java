@@ -0,0 +1,48 @@
+package com.example.buffer;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Clock (second chance): бит обращения на фрейм и стрелка, обходящая массив по кругу.
+ * Обращение только выставляет бит, промах сдвигает стрелку до первого фрейма
+ * со сброшенным битом - в среднем O(1) независимо от размера пула.
+ */
+class ClockReplacementPolicy implements ReplacementPolicy {
+    private final boolean[] referenced;
+    private int hand;
+    
+    ClockReplacementPolicy(int frameCount) {
+        this.referenced = new boolean[frameCount];
+        this.hand = 0;
+    }
+    
+    @Override
+    public void recordAccess(int frameIndex) {
+        // Гонки при записи безопасны: бит - лишь подсказка для стрелки
+        referenced[frameIndex] = true;
+    }
+    
+    @Override
+    public int chooseVictim(IntPredicate evictable) {
+        int frameCount = referenced.length;
+        int fallback = -1;
+        // Двух оборотов достаточно: за первый все биты сбрасываются. Если страницы
+        // продолжают трогать конкурентно, берем первый встреченный свободный от pin фрейм
+        for (int step = 0; step < 2 * frameCount; step++) {
+            int current = hand;
+            hand = (hand + 1) % frameCount;
+            if (!evictable.test(current)) {
+                continue;
+            }
+            if (referenced[current]) {
+                referenced[current] = false;
+                if (fallback < 0) {
+                    fallback = current;
+                }
+                continue;
+            }
+            return current;
+        }
+        return fallback;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.buffer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntPredicate;
+
+/**
+ * Точный LRU: у каждого фрейма отметка времени последнего обращения,
+ * поиск жертвы - линейный проход по всем фреймам (O(размер пула) на промах)
+ */
+class LruReplacementPolicy implements ReplacementPolicy {
+    private final long[] lastAccess;
+    private final AtomicLong accessCounter;
+    
+    LruReplacementPolicy(int frameCount) {
+        this.lastAccess = new long[frameCount];
+        this.accessCounter = new AtomicLong();
+    }
+    
+    @Override
+    public void recordAccess(int frameIndex) {
+        lastAccess[frameIndex] = accessCounter.incrementAndGet();
+    }
+    
+    @Override
+    public int chooseVictim(IntPredicate evictable) {
+        int victim = -1;
+        long minAccess = Long.MAX_VALUE;
+        for (int i = 0; i < lastAccess.length; i++) {
+            if (lastAccess[i] < minAccess && evictable.test(i)) {
+                minAccess = lastAccess[i];
+                victim = i;
+            }
+        }
+        return victim;
+    }
+}
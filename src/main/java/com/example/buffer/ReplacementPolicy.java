@@ -0,0 +1,38 @@
+package com.example.buffer;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Политика выбора жертвы для вытеснения из буферного пула.
+ * Работает с номерами фреймов фиксированного массива BufferManager.
+ *
+ * recordAccess вызывается конкурентно из разных частей таблицы страниц,
+ * chooseVictim - только под блокировкой вытеснения.
+ */
+public interface ReplacementPolicy {
+    enum Type {
+        LRU,
+        CLOCK
+    }
+    
+    static ReplacementPolicy create(Type type, int frameCount) {
+        switch (type) {
+            case LRU:
+                return new LruReplacementPolicy(frameCount);
+            case CLOCK:
+                return new ClockReplacementPolicy(frameCount);
+            default:
+                throw new IllegalArgumentException("Unknown replacement policy: " + type);
+        }
+    }
+    
+    /**
+     * Фрейм был прочитан или в него загружена страница
+     */
+    void recordAccess(int frameIndex);
+    
+    /**
+     * Номер фрейма для вытеснения среди тех, что допускает evictable, или -1
+     */
+    int chooseVictim(IntPredicate evictable);
+}
@@ -0,0 +1,343 @@
+package com.example.catalog;
+
+import com.example.storage.TableMetadata;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+
+/**
+ * Системный каталог: таблицы с колонками, индексы и статистика оптимизатора.
+ *
+ * Каталог читается из файла один раз при открытии и дальше живет в конкурентных картах:
+ * планирование и поиск индексов не обращаются к диску. Каждое изменение (создание или
+ * удаление таблицы, индекса) сразу переписывает файл catalog.dat целиком - он маленький.
+ * Запись атомарная: временный файл, fsync, переименование.
+ *
+ * Формат catalog.dat: [MAGIC int][версия int][число таблиц int]
+ * {имя, число колонок int, {имя, тип}}[число индексов int]{имя, таблица, колонка}
+ * [число статистик int]{таблица, строки long, страницы long, число колонок int,
+ * {колонка, NDV long, min, max, число MCV int, {значение, частота double}, число границ int, {значение}}}
+ * [CRC32C int]. Строки - в modified UTF-8 (DataOutputStream.writeUTF), значения статистики -
+ * с тегом типа (0 - null, 1 - int, 2 - строка). Файлы версии 1 (без статистики) читаются как есть.
+ *
+ * Каталог один на каталог данных: StorageManager и IndexManager работают с одним экземпляром.
+ */
+public class Catalog {
+    public static final String CATALOG_FILE = "catalog.dat";
+    private static final int MAGIC = 0x43415431; // "CAT1"
+    private static final int VERSION = 2;
+    private static final int VERSION_NO_STATISTICS = 1;
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_INT = 1;
+    private static final byte VALUE_STRING = 2;
+    
+    private final String dataDir;
+    private final Path catalogPath;
+    private final Map<String, TableMetadata> tables = new ConcurrentHashMap<>();
+    private final Map<String, IndexInfo> indexes = new ConcurrentHashMap<>();
+    private final Map<String, TableStatistics> statistics = new ConcurrentHashMap<>();
+    
+    public Catalog(String dataDir) {
+        this.dataDir = dataDir;
+        this.catalogPath = Paths.get(dataDir, CATALOG_FILE);
+        try {
+            Files.createDirectories(catalogPath.getParent());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create data directory", e);
+        }
+        load();
+    }
+    
+    public String getDataDir() {
+        return dataDir;
+    }
+    
+    public TableMetadata getTable(String tableName) {
+        return tables.get(tableName);
+    }
+    
+    public boolean tableExists(String tableName) {
+        return tables.containsKey(tableName);
+    }
+    
+    public List<TableMetadata> getTables() {
+        return new ArrayList<>(tables.values());
+    }
+    
+    public synchronized void createTable(TableMetadata metadata) {
+        tables.put(metadata.getTableName(), metadata);
+        save();
+    }
+    
+    /**
+     * Удалить таблицу вместе с описаниями ее индексов и статистикой
+     */
+    public synchronized void dropTable(String tableName) {
+        tables.remove(tableName);
+        statistics.remove(tableName);
+        indexes.values().removeIf(index -> index.getTableName().equals(tableName));
+        save();
+    }
+    
+    public IndexInfo getIndex(String indexName) {
+        return indexes.get(indexName);
+    }
+    
+    public List<IndexInfo> getIndexes() {
+        return new ArrayList<>(indexes.values());
+    }
+    
+    public List<IndexInfo> getIndexesForTable(String tableName) {
+        List<IndexInfo> result = new ArrayList<>();
+        for (IndexInfo index : indexes.values()) {
+            if (index.getTableName().equals(tableName)) {
+                result.add(index);
+            }
+        }
+        return result;
+    }
+    
+    public synchronized void createIndex(IndexInfo index) {
+        indexes.put(index.getIndexName(), index);
+        save();
+    }
+    
+    public synchronized void dropIndex(String indexName) {
+        if (indexes.remove(indexName) != null) {
+            save();
+        }
+    }
+    
+    /**
+     * Статистика таблицы из последнего ANALYZE или null, если ее не собирали
+     */
+    public TableStatistics getStatistics(String tableName) {
+        return statistics.get(tableName);
+    }
+    
+    public synchronized void setStatistics(String tableName, TableStatistics tableStatistics) {
+        statistics.put(tableName, tableStatistics);
+        save();
+    }
+    
+    private void load() {
+        if (!Files.exists(catalogPath)) {
+            return;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(catalogPath);
+            if (bytes.length < 12) {
+                throw new IOException("Catalog file is truncated");
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(bytes, 0, bytes.length - 4);
+            if ((int) crc.getValue() != ByteBuffer.wrap(bytes).getInt(bytes.length - 4)) {
+                throw new IOException("Catalog checksum mismatch");
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 4));
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version != VERSION && version != VERSION_NO_STATISTICS) {
+                throw new IOException("Unknown catalog format");
+            }
+            int tableCount = in.readInt();
+            for (int i = 0; i < tableCount; i++) {
+                TableMetadata metadata = new TableMetadata(in.readUTF());
+                int columnCount = in.readInt();
+                for (int c = 0; c < columnCount; c++) {
+                    metadata.addColumn(in.readUTF(), in.readUTF());
+                }
+                tables.put(metadata.getTableName(), metadata);
+            }
+            int indexCount = in.readInt();
+            for (int i = 0; i < indexCount; i++) {
+                IndexInfo index = new IndexInfo(in.readUTF(), in.readUTF(), in.readUTF());
+                indexes.put(index.getIndexName(), index);
+            }
+            if (version >= VERSION) {
+                int statisticsCount = in.readInt();
+                for (int i = 0; i < statisticsCount; i++) {
+                    String tableName = in.readUTF();
+                    statistics.put(tableName, readStatistics(in));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load catalog: " + catalogPath, e);
+        }
+    }
+    
+    /**
+     * Переписать файл каталога (вызывается под блокировкой каталога)
+     */
+    private void save() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            List<TableMetadata> tableList = getTables();
+            out.writeInt(tableList.size());
+            for (TableMetadata metadata : tableList) {
+                out.writeUTF(metadata.getTableName());
+                List<TableMetadata.Column> columns = metadata.getColumns();
+                out.writeInt(columns.size());
+                for (TableMetadata.Column column : columns) {
+                    out.writeUTF(column.getName());
+                    out.writeUTF(column.getType());
+                }
+            }
+            List<IndexInfo> indexList = getIndexes();
+            out.writeInt(indexList.size());
+            for (IndexInfo index : indexList) {
+                out.writeUTF(index.getIndexName());
+                out.writeUTF(index.getTableName());
+                out.writeUTF(index.getColumnName());
+            }
+            out.writeInt(statistics.size());
+            for (Map.Entry<String, TableStatistics> entry : statistics.entrySet()) {
+                out.writeUTF(entry.getKey());
+                writeStatistics(out, entry.getValue());
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(bytes.toByteArray());
+            out.writeInt((int) crc.getValue());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to encode catalog", e);
+        }
+        
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        Path tmp = catalogPath.resolveSibling(CATALOG_FILE + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, catalogPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write catalog file", e);
+        }
+    }
+    
+    private static TableStatistics readStatistics(DataInputStream in) throws IOException {
+        long rowCount = in.readLong();
+        long pageCount = in.readLong();
+        int columnCount = in.readInt();
+        Map<String, ColumnStatistics> columns = new LinkedHashMap<>();
+        for (int c = 0; c < columnCount; c++) {
+            String columnName = in.readUTF();
+            long distinctCount = in.readLong();
+            Object min = readValue(in);
+            Object max = readValue(in);
+            int mcvCount = in.readInt();
+            List<Object> mcvValues = new ArrayList<>(mcvCount);
+            double[] mcvFrequencies = new double[mcvCount];
+            for (int i = 0; i < mcvCount; i++) {
+                mcvValues.add(readValue(in));
+                mcvFrequencies[i] = in.readDouble();
+            }
+            int boundCount = in.readInt();
+            List<Object> bounds = new ArrayList<>(boundCount);
+            for (int i = 0; i < boundCount; i++) {
+                bounds.add(readValue(in));
+            }
+            columns.put(columnName, new ColumnStatistics(distinctCount, min, max, mcvValues, mcvFrequencies, bounds));
+        }
+        return new TableStatistics(rowCount, pageCount, columns);
+    }
+    
+    private static void writeStatistics(DataOutputStream out, TableStatistics tableStatistics) throws IOException {
+        out.writeLong(tableStatistics.getRowCount());
+        out.writeLong(tableStatistics.getPageCount());
+        Map<String, ColumnStatistics> columns = tableStatistics.getColumns();
+        out.writeInt(columns.size());
+        for (Map.Entry<String, ColumnStatistics> entry : columns.entrySet()) {
+            ColumnStatistics column = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeLong(column.getDistinctCount());
+            writeValue(out, column.getMin());
+            writeValue(out, column.getMax());
+            List<Object> mcvValues = column.getMostCommonValues();
+            double[] mcvFrequencies = column.getMostCommonFrequencies();
+            out.writeInt(mcvValues.size());
+            for (int i = 0; i < mcvValues.size(); i++) {
+                writeValue(out, mcvValues.get(i));
+                out.writeDouble(mcvFrequencies[i]);
+            }
+            List<Object> bounds = column.getHistogramBounds();
+            out.writeInt(bounds.size());
+            for (Object bound : bounds) {
+                writeValue(out, bound);
+            }
+        }
+    }
+    
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_INT:
+                return in.readInt();
+            case VALUE_STRING:
+                return in.readUTF();
+            default:
+                throw new IOException("Unknown statistics value tag: " + tag);
+        }
+    }
+    
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof Integer) {
+            out.writeByte(VALUE_INT);
+            out.writeInt((Integer) value);
+        } else {
+            out.writeByte(VALUE_STRING);
+            out.writeUTF(value.toString());
+        }
+    }
+    
+    /**
+     * Описание индекса в каталоге
+     */
+    public static final class IndexInfo {
+        private final String indexName;
+        private final String tableName;
+        private final String columnName;
+        
+        public IndexInfo(String indexName, String tableName, String columnName) {
+            this.indexName = indexName;
+            this.tableName = tableName;
+            this.columnName = columnName;
+        }
+        
+        public String getIndexName() {
+            return indexName;
+        }
+        
+        public String getTableName() {
+            return tableName;
+        }
+        
+        public String getColumnName() {
+            return columnName;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.catalog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Статистика колонки, собранная ANALYZE: число различных значений (NDV), минимум и максимум,
+ * самые частые значения (MCV) с их долями и границы равноглубинной гистограммы.
+ *
+ * Гистограмма строится по значениям, не вошедшим в MCV: между соседними границами лежит
+ * примерно одинаковая доля таких строк. Оценки селективности - доли строк таблицы (0..1).
+ */
+public class ColumnStatistics {
+    /** Селективность условия, для которого оценка невозможна (несравнимые типы) */
+    static final double DEFAULT_SELECTIVITY = 0.33;
+    
+    private final long distinctCount;
+    private final Object min;
+    private final Object max;
+    private final List<Object> mostCommonValues;
+    private final double[] mostCommonFrequencies;
+    private final List<Object> histogramBounds;
+    
+    public ColumnStatistics(long distinctCount, Object min, Object max,
+                            List<Object> mostCommonValues, double[] mostCommonFrequencies,
+                            List<Object> histogramBounds) {
+        if (mostCommonValues.size() != mostCommonFrequencies.length) {
+            throw new IllegalArgumentException("MCV values and frequencies differ in length");
+        }
+        this.distinctCount = distinctCount;
+        this.min = min;
+        this.max = max;
+        this.mostCommonValues = Collections.unmodifiableList(new ArrayList<>(mostCommonValues));
+        this.mostCommonFrequencies = mostCommonFrequencies.clone();
+        this.histogramBounds = Collections.unmodifiableList(new ArrayList<>(histogramBounds));
+    }
+    
+    public long getDistinctCount() {
+        return distinctCount;
+    }
+    
+    public Object getMin() {
+        return min;
+    }
+    
+    public Object getMax() {
+        return max;
+    }
+    
+    public List<Object> getMostCommonValues() {
+        return mostCommonValues;
+    }
+    
+    public double[] getMostCommonFrequencies() {
+        return mostCommonFrequencies.clone();
+    }
+    
+    public List<Object> getHistogramBounds() {
+        return histogramBounds;
+    }
+    
+    /**
+     * Доля строк, удовлетворяющих условию "колонка operator value"
+     * (для BETWEEN value - нижняя граница, upperValue - верхняя)
+     */
+    public double selectivity(String operator, Object value, Object upperValue) {
+        try {
+            switch (operator) {
+                case "=":
+                    return equalSelectivity(value);
+                case "<>":
+                    return 1.0 - equalSelectivity(value);
+                case "<":
+                    return rangeSelectivity(null, false, value, false);
+                case "<=":
+                    return rangeSelectivity(null, false, value, true);
+                case ">":
+                    return rangeSelectivity(value, false, null, false);
+                case ">=":
+                    return rangeSelectivity(value, true, null, false);
+                case "BETWEEN":
+                    return rangeSelectivity(value, true, upperValue, true);
+                default:
+                    return DEFAULT_SELECTIVITY;
+            }
+        } catch (ClassCastException e) {
+            return DEFAULT_SELECTIVITY;
+        }
+    }
+    
+    private double equalSelectivity(Object value) {
+        if (min == null || compare(value, min) < 0 || compare(value, max) > 0) {
+            return 0.0;
+        }
+        double mcvTotal = 0;
+        for (int i = 0; i < mostCommonValues.size(); i++) {
+            if (compare(mostCommonValues.get(i), value) == 0) {
+                return mostCommonFrequencies[i];
+            }
+            mcvTotal += mostCommonFrequencies[i];
+        }
+        // Остальные строки делятся поровну между значениями вне MCV
+        long otherValues = distinctCount - mostCommonValues.size();
+        if (otherValues <= 0) {
+            return 0.0;
+        }
+        return clamp((1.0 - mcvTotal) / otherValues);
+    }
+    
+    /**
+     * Доля строк с low < (<=) x < (<=) high; null - нет границы
+     */
+    private double rangeSelectivity(Object low, boolean lowInclusive, Object high, boolean highInclusive) {
+        if (min == null) {
+            return 0.0;
+        }
+        double mcvMatched = 0;
+        double mcvTotal = 0;
+        for (int i = 0; i < mostCommonValues.size(); i++) {
+            Object mcv = mostCommonValues.get(i);
+            mcvTotal += mostCommonFrequencies[i];
+            if (inRange(mcv, low, lowInclusive, high, highInclusive)) {
+                mcvMatched += mostCommonFrequencies[i];
+            }
+        }
+        double histogramFraction;
+        if (histogramBounds.size() < 2) {
+            // Все значения в MCV (или одно значение вне их)
+            histogramFraction = histogramBounds.size() == 1
+                    && inRange(histogramBounds.get(0), low, lowInclusive, high, highInclusive) ? 1.0 : 0.0;
+        } else {
+            double below = low == null ? 0.0 : histogramPosition(low);
+            double upTo = high == null ? 1.0 : histogramPosition(high);
+            histogramFraction = Math.max(0.0, upTo - below);
+        }
+        return clamp(mcvMatched + (1.0 - mcvTotal) * histogramFraction);
+    }
+    
+    /**
+     * Доля значений гистограммы, меньших value: номер корзины плюс положение внутри нее
+     * (линейная интерполяция для целых, середина корзины для строк)
+     */
+    private double histogramPosition(Object value) {
+        int buckets = histogramBounds.size() - 1;
+        if (compare(value, histogramBounds.get(0)) <= 0) {
+            return 0.0;
+        }
+        if (compare(value, histogramBounds.get(buckets)) >= 0) {
+            return 1.0;
+        }
+        int low = 0;
+        int high = buckets;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (compare(histogramBounds.get(mid), value) <= 0) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        Object from = histogramBounds.get(low);
+        Object to = histogramBounds.get(high);
+        double inBucket = 0.5;
+        if (from instanceof Integer && to instanceof Integer && value instanceof Integer) {
+            long width = (long) (Integer) to - (Integer) from;
+            inBucket = width == 0 ? 0.5 : ((long) (Integer) value - (Integer) from) / (double) width;
+        }
+        return (low + inBucket) / buckets;
+    }
+    
+    private static boolean inRange(Object x, Object low, boolean lowInclusive, Object high, boolean highInclusive) {
+        if (low != null) {
+            int cmp = compare(x, low);
+            if (cmp < 0 || (cmp == 0 && !lowInclusive)) {
+                return false;
+            }
+        }
+        if (high != null) {
+            int cmp = compare(x, high);
+            if (cmp > 0 || (cmp == 0 && !highInclusive)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b) {
+        return ((Comparable) a).compareTo(b);
+    }
+    
+    private static double clamp(double selectivity) {
+        return Math.max(0.0, Math.min(1.0, selectivity));
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.catalog;
+
+import com.example.buffer.BufferAccessStrategy;
+import com.example.buffer.BufferManager;
+import com.example.storage.Page;
+import com.example.storage.TableFile;
+import com.example.storage.TableMetadata;
+import com.example.storage.TupleCodec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Сбор статистики таблицы для ANALYZE.
+ *
+ * Таблица читается одним последовательным проходом (через кольцо фреймов, как SeqScan):
+ * число строк и страниц, минимум и максимум колонок считаются точно, а MCV, гистограммы
+ * и NDV - по равномерной выборке строк (reservoir sampling) размером до sampleRows.
+ * NDV оценивается по выборке оценкой Haas-Stokes (Duj1); если выборка - вся таблица, он точный.
+ * Генератор выборки с фиксированным зерном: повторный ANALYZE неизменной таблицы дает те же планы.
+ */
+public class StatisticsCollector {
+    public static final int DEFAULT_SAMPLE_ROWS = 30_000;
+    public static final int DEFAULT_MCV_COUNT = 10;
+    public static final int DEFAULT_HISTOGRAM_BUCKETS = 100;
+    
+    private final BufferManager bufferManager;
+    private final int sampleRows;
+    private final int mcvCount;
+    private final int histogramBuckets;
+    
+    public StatisticsCollector(BufferManager bufferManager) {
+        this(bufferManager, DEFAULT_SAMPLE_ROWS, DEFAULT_MCV_COUNT, DEFAULT_HISTOGRAM_BUCKETS);
+    }
+    
+    public StatisticsCollector(BufferManager bufferManager, int sampleRows, int mcvCount, int histogramBuckets) {
+        if (sampleRows <= 0 || mcvCount < 0 || histogramBuckets <= 0) {
+            throw new IllegalArgumentException("Invalid statistics target: sample " + sampleRows
+                    + ", MCV " + mcvCount + ", buckets " + histogramBuckets);
+        }
+        this.bufferManager = bufferManager;
+        this.sampleRows = sampleRows;
+        this.mcvCount = mcvCount;
+        this.histogramBuckets = histogramBuckets;
+    }
+    
+    public TableStatistics collect(TableFile tableFile, TableMetadata metadata) {
+        List<Integer> pageIds = tableFile.getPageIds();
+        List<TableMetadata.Column> columns = metadata.getColumns();
+        BufferAccessStrategy strategy = bufferManager.bulkReadStrategy(pageIds.size());
+        Random random = new Random(0);
+        List<List<Object>> sample = new ArrayList<>();
+        Object[] min = new Object[columns.size()];
+        Object[] max = new Object[columns.size()];
+        long rowCount = 0;
+        
+        for (int pageId : pageIds) {
+            Page page = bufferManager.pinPage(tableFile, pageId, strategy);
+            Lock latch = page.getLatch().readLock();
+            latch.lock();
+            try {
+                int slotCount = page.getSlotCount();
+                for (int slot = 0; slot < slotCount; slot++) {
+                    ByteBuffer record = page.getRecordBuffer(slot);
+                    if (record == null) {
+                        continue; // Удаленный кортеж
+                    }
+                    List<Object> row = TupleCodec.decode(metadata, record);
+                    rowCount++;
+                    for (int c = 0; c < row.size(); c++) {
+                        Object value = row.get(c);
+                        if (value != null && (min[c] == null || compare(value, min[c]) < 0)) {
+                            min[c] = value;
+                        }
+                        if (value != null && (max[c] == null || compare(value, max[c]) > 0)) {
+                            max[c] = value;
+                        }
+                    }
+                    // Reservoir sampling: каждая строка попадает в выборку с вероятностью sampleRows / rowCount
+                    if (sample.size() < sampleRows) {
+                        sample.add(row);
+                    } else {
+                        long replace = (long) (random.nextDouble() * rowCount);
+                        if (replace < sampleRows) {
+                            sample.set((int) replace, row);
+                        }
+                    }
+                }
+            } finally {
+                latch.unlock();
+                bufferManager.unpinPage(tableFile, pageId, false);
+            }
+        }
+        
+        Map<String, ColumnStatistics> columnStats = new LinkedHashMap<>();
+        for (int c = 0; c < columns.size(); c++) {
+            List<Object> values = new ArrayList<>(sample.size());
+            for (List<Object> row : sample) {
+                if (row.get(c) != null) {
+                    values.add(row.get(c));
+                }
+            }
+            columnStats.put(columns.get(c).getName(), columnStatistics(values, rowCount, min[c], max[c]));
+        }
+        return new TableStatistics(rowCount, pageIds.size(), columnStats);
+    }
+    
+    private ColumnStatistics columnStatistics(List<Object> values, long rowCount, Object min, Object max) {
+        int n = values.size();
+        if (n == 0) {
+            return new ColumnStatistics(0, null, null, new ArrayList<>(), new double[0], new ArrayList<>());
+        }
+        values.sort(StatisticsCollector::compare);
+        
+        // Серии равных значений в отсортированной выборке
+        List<Object> distinct = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        int singletons = 0;
+        for (int i = 0; i < n; ) {
+            int j = i + 1;
+            while (j < n && compare(values.get(j), values.get(i)) == 0) {
+                j++;
+            }
+            distinct.add(values.get(i));
+            counts.add(j - i);
+            if (j - i == 1) {
+                singletons++;
+            }
+            i = j;
+        }
+        int d = distinct.size();
+        long ndv = n == rowCount ? d : estimateDistinct(n, d, singletons, rowCount);
+        
+        // MCV: значения, встречающиеся в выборке хотя бы дважды и чаще среднего
+        double average = (double) n / d;
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < d; i++) {
+            if (counts.get(i) >= 2 && counts.get(i) > average) {
+                candidates.add(i);
+            }
+        }
+        candidates.sort((a, b) -> Integer.compare(counts.get(b), counts.get(a)));
+        if (candidates.size() > mcvCount) {
+            candidates = new ArrayList<>(candidates.subList(0, mcvCount));
+        }
+        List<Object> mcvValues = new ArrayList<>();
+        double[] mcvFrequencies = new double[candidates.size()];
+        Map<Integer, Boolean> inMcv = new HashMap<>();
+        for (int k = 0; k < candidates.size(); k++) {
+            int i = candidates.get(k);
+            mcvValues.add(distinct.get(i));
+            mcvFrequencies[k] = (double) counts.get(i) / n;
+            inMcv.put(i, true);
+        }
+        
+        // Равноглубинная гистограмма по остальным значениям выборки
+        List<Object> rest = new ArrayList<>();
+        for (int i = 0; i < d; i++) {
+            if (!inMcv.containsKey(i)) {
+                for (int k = 0; k < counts.get(i); k++) {
+                    rest.add(distinct.get(i));
+                }
+            }
+        }
+        List<Object> bounds = new ArrayList<>();
+        if (rest.size() == 1) {
+            bounds.add(rest.get(0));
+        } else if (rest.size() > 1) {
+            int buckets = Math.min(histogramBuckets, rest.size() - 1);
+            for (int b = 0; b <= buckets; b++) {
+                bounds.add(rest.get((int) ((long) b * (rest.size() - 1) / buckets)));
+            }
+        }
+        return new ColumnStatistics(ndv, min, max, mcvValues, mcvFrequencies, bounds);
+    }
+    
+    /**
+     * Оценка Duj1 (Haas, Stokes): n * d / (n - f1 + f1 * n / N), где f1 - значения,
+     * встреченные в выборке один раз
+     */
+    private static long estimateDistinct(int n, int d, int singletons, long rowCount) {
+        double estimate = (double) n * d / (n - singletons + (double) singletons * n / rowCount);
+        return Math.max(d, Math.min(rowCount, Math.round(estimate)));
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b) {
+        return ((Comparable) a).compareTo(b);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.catalog;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Статистика таблицы, собранная ANALYZE: число строк и страниц и статистика колонок
+ */
+public class TableStatistics {
+    private final long rowCount;
+    private final long pageCount;
+    private final Map<String, ColumnStatistics> columns;
+    
+    public TableStatistics(long rowCount, long pageCount, Map<String, ColumnStatistics> columns) {
+        this.rowCount = rowCount;
+        this.pageCount = pageCount;
+        Map<String, ColumnStatistics> byName = new LinkedHashMap<>();
+        for (Map.Entry<String, ColumnStatistics> entry : columns.entrySet()) {
+            byName.put(entry.getKey().toLowerCase(), entry.getValue());
+        }
+        this.columns = Collections.unmodifiableMap(byName);
+    }
+    
+    public long getRowCount() {
+        return rowCount;
+    }
+    
+    public long getPageCount() {
+        return pageCount;
+    }
+    
+    /**
+     * Статистика колонки (имя без учета регистра) или null
+     */
+    public ColumnStatistics getColumn(String columnName) {
+        return columns.get(columnName.toLowerCase());
+    }
+    
+    public Map<String, ColumnStatistics> getColumns() {
+        return columns;
+    }
+}
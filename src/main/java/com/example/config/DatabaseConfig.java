@@ -0,0 +1,289 @@
+package com.example.config;
+
+import com.example.buffer.ReplacementPolicy;
+import com.example.executor.HashJoinExecutor;
+import com.example.sql.optimizer.Optimizer;
+import com.example.storage.Page;
+import com.example.storage.TableFile;
+
+/**
+ * Настройки сервера СУБД.
+ * Значения по умолчанию можно переопределить системными свойствами JVM (-Ddb.*).
+ */
+public class DatabaseConfig {
+    public static final String STORAGE_IO_MODE = "db.storage.io";
+    public static final String BUFFER_POLICY = "db.buffer.policy";
+    public static final String BUFFER_POOL_SIZE = "db.buffer.size";
+    public static final String BGWRITER_DELAY = "db.bgwriter.delay";
+    public static final String BGWRITER_MAX_PAGES = "db.bgwriter.maxpages";
+    public static final String CHECKPOINT_INTERVAL = "db.checkpoint.interval";
+    public static final String INDEX_FILL_FACTOR = "db.index.fillfactor";
+    public static final String INDEX_SORT_MEMORY = "db.index.sortmem";
+    public static final String INDEX_FANOUT = "db.index.fanout";
+    public static final String EXECUTOR_VECTORIZED = "db.executor.vectorized";
+    public static final String EXECUTOR_PARALLEL_WORKERS = "db.executor.parallel.workers";
+    public static final String EXECUTOR_PARALLEL_PAGES = "db.executor.parallel.minpages";
+    public static final String EXECUTOR_JOIN_MEMORY = "db.executor.joinmem";
+    
+    private TableFile.IoMode storageIoMode = TableFile.IoMode.BUFFERED;
+    private ReplacementPolicy.Type bufferPolicy = ReplacementPolicy.Type.CLOCK;
+    private long bufferPoolBytes = 32L * 1024 * 1024;
+    private long bgWriterDelayMillis = 200;
+    private int bgWriterMaxPages = 100;
+    private long checkpointIntervalMillis = 30_000;
+    private int indexFillFactor = 90;
+    private long indexSortMemoryBytes = 16L * 1024 * 1024;
+    private int indexFanout = 0;
+    private boolean vectorizedExecution = true;
+    private int maxParallelWorkers = Optimizer.DEFAULT_MAX_PARALLEL_WORKERS;
+    private int parallelScanPages = Optimizer.DEFAULT_PARALLEL_SCAN_PAGES;
+    private long joinMemoryBytes = HashJoinExecutor.DEFAULT_MEMORY_BYTES;
+    
+    /**
+     * Настройки по умолчанию с учетом системных свойств:
+     * <ul>
+     *   <li>db.storage.io = buffered | mmap - способ чтения страниц таблиц</li>
+     *   <li>db.buffer.policy = clock | lru - политика вытеснения буферного пула</li>
+     *   <li>db.buffer.size = размер буферного пула в байтах, допускаются суффиксы k, m, g (32m)</li>
+     *   <li>db.bgwriter.delay = пауза фонового писателя между проходами, мс (200)</li>
+     *   <li>db.bgwriter.maxpages = максимум страниц за один проход писателя (100)</li>
+     *   <li>db.checkpoint.interval = интервал контрольных точек, мс (30000)</li>
+     *   <li>db.index.fillfactor = заполнение страниц индекса при построении, % (90)</li>
+     *   <li>db.index.sortmem = память под сортировку при построении индекса, байт (16m)</li>
+     *   <li>db.index.fanout = наибольшее число ключей в узле индекса, 0 - сколько поместится в страницу (0)</li>
+     *   <li>db.executor.vectorized = true | false - выполнять SELECT пакетами строк (true)</li>
+     *   <li>db.executor.parallel.workers = наибольшее число потоков SeqScan одного запроса,
+     *       1 - без параллельного сканирования (число ядер, не больше 8)</li>
+     *   <li>db.executor.parallel.minpages = размер таблицы в страницах, с которого SeqScan
+     *       выполняется параллельно (1024)</li>
+     *   <li>db.executor.joinmem = память под хеш-таблицу соединения, байт; сверх нее соединение
+     *       раскладывается по временным файлам (4m)</li>
+     * </ul>
+     */
+    public static DatabaseConfig fromSystemProperties() {
+        DatabaseConfig config = new DatabaseConfig();
+        String ioMode = System.getProperty(STORAGE_IO_MODE);
+        if (ioMode != null) {
+            config.setStorageIoMode(TableFile.IoMode.valueOf(ioMode.trim().toUpperCase()));
+        }
+        String policy = System.getProperty(BUFFER_POLICY);
+        if (policy != null) {
+            config.setBufferPolicy(ReplacementPolicy.Type.valueOf(policy.trim().toUpperCase()));
+        }
+        String poolSize = System.getProperty(BUFFER_POOL_SIZE);
+        if (poolSize != null) {
+            config.setBufferPoolBytes(parseSize(poolSize));
+        }
+        String bgWriterDelay = System.getProperty(BGWRITER_DELAY);
+        if (bgWriterDelay != null) {
+            config.setBgWriterDelayMillis(Long.parseLong(bgWriterDelay.trim()));
+        }
+        String bgWriterMaxPages = System.getProperty(BGWRITER_MAX_PAGES);
+        if (bgWriterMaxPages != null) {
+            config.setBgWriterMaxPages(Integer.parseInt(bgWriterMaxPages.trim()));
+        }
+        String checkpointInterval = System.getProperty(CHECKPOINT_INTERVAL);
+        if (checkpointInterval != null) {
+            config.setCheckpointIntervalMillis(Long.parseLong(checkpointInterval.trim()));
+        }
+        String fillFactor = System.getProperty(INDEX_FILL_FACTOR);
+        if (fillFactor != null) {
+            config.setIndexFillFactor(Integer.parseInt(fillFactor.trim()));
+        }
+        String sortMemory = System.getProperty(INDEX_SORT_MEMORY);
+        if (sortMemory != null) {
+            config.setIndexSortMemoryBytes(parseSize(sortMemory));
+        }
+        String fanout = System.getProperty(INDEX_FANOUT);
+        if (fanout != null) {
+            config.setIndexFanout(Integer.parseInt(fanout.trim()));
+        }
+        String vectorized = System.getProperty(EXECUTOR_VECTORIZED);
+        if (vectorized != null) {
+            config.setVectorizedExecution(Boolean.parseBoolean(vectorized.trim()));
+        }
+        String parallelWorkers = System.getProperty(EXECUTOR_PARALLEL_WORKERS);
+        if (parallelWorkers != null) {
+            config.setMaxParallelWorkers(Integer.parseInt(parallelWorkers.trim()));
+        }
+        String parallelPages = System.getProperty(EXECUTOR_PARALLEL_PAGES);
+        if (parallelPages != null) {
+            config.setParallelScanPages(Integer.parseInt(parallelPages.trim()));
+        }
+        String joinMemory = System.getProperty(EXECUTOR_JOIN_MEMORY);
+        if (joinMemory != null) {
+            config.setJoinMemoryBytes(parseSize(joinMemory));
+        }
+        return config;
+    }
+    
+    /**
+     * Размер в байтах: число с необязательным суффиксом k, m или g
+     */
+    static long parseSize(String value) {
+        String text = value.trim().toLowerCase();
+        long multiplier = 1;
+        if (text.endsWith("k")) {
+            multiplier = 1024L;
+        } else if (text.endsWith("m")) {
+            multiplier = 1024L * 1024;
+        } else if (text.endsWith("g")) {
+            multiplier = 1024L * 1024 * 1024;
+        }
+        if (multiplier != 1) {
+            text = text.substring(0, text.length() - 1).trim();
+        }
+        try {
+            return Long.parseLong(text) * multiplier;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid size: " + value, e);
+        }
+    }
+    
+    public TableFile.IoMode getStorageIoMode() {
+        return storageIoMode;
+    }
+    
+    public void setStorageIoMode(TableFile.IoMode storageIoMode) {
+        this.storageIoMode = storageIoMode;
+    }
+    
+    public ReplacementPolicy.Type getBufferPolicy() {
+        return bufferPolicy;
+    }
+    
+    public void setBufferPolicy(ReplacementPolicy.Type bufferPolicy) {
+        this.bufferPolicy = bufferPolicy;
+    }
+    
+    public long getBufferPoolBytes() {
+        return bufferPoolBytes;
+    }
+    
+    public void setBufferPoolBytes(long bufferPoolBytes) {
+        if (bufferPoolBytes < Page.PAGE_SIZE) {
+            throw new IllegalArgumentException("Buffer pool must hold at least one page: " + bufferPoolBytes);
+        }
+        this.bufferPoolBytes = bufferPoolBytes;
+    }
+    
+    /**
+     * Число фреймов буферного пула: размер пула в байтах, деленный на размер страницы
+     */
+    public int getBufferPoolPages() {
+        return (int) Math.min(Integer.MAX_VALUE, bufferPoolBytes / Page.PAGE_SIZE);
+    }
+    
+    public long getBgWriterDelayMillis() {
+        return bgWriterDelayMillis;
+    }
+    
+    public void setBgWriterDelayMillis(long bgWriterDelayMillis) {
+        if (bgWriterDelayMillis <= 0) {
+            throw new IllegalArgumentException("Background writer delay must be positive: " + bgWriterDelayMillis);
+        }
+        this.bgWriterDelayMillis = bgWriterDelayMillis;
+    }
+    
+    public int getBgWriterMaxPages() {
+        return bgWriterMaxPages;
+    }
+    
+    public void setBgWriterMaxPages(int bgWriterMaxPages) {
+        if (bgWriterMaxPages <= 0) {
+            throw new IllegalArgumentException("Background writer batch must be positive: " + bgWriterMaxPages);
+        }
+        this.bgWriterMaxPages = bgWriterMaxPages;
+    }
+    
+    public long getCheckpointIntervalMillis() {
+        return checkpointIntervalMillis;
+    }
+    
+    public void setCheckpointIntervalMillis(long checkpointIntervalMillis) {
+        if (checkpointIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + checkpointIntervalMillis);
+        }
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+    }
+    
+    /**
+     * Заполнение страниц индекса при построении, в процентах (10..100)
+     */
+    public int getIndexFillFactor() {
+        return indexFillFactor;
+    }
+    
+    public void setIndexFillFactor(int indexFillFactor) {
+        if (indexFillFactor < 10 || indexFillFactor > 100) {
+            throw new IllegalArgumentException("Index fill factor must be between 10 and 100: " + indexFillFactor);
+        }
+        this.indexFillFactor = indexFillFactor;
+    }
+    
+    public long getIndexSortMemoryBytes() {
+        return indexSortMemoryBytes;
+    }
+    
+    public void setIndexSortMemoryBytes(long indexSortMemoryBytes) {
+        if (indexSortMemoryBytes <= 0) {
+            throw new IllegalArgumentException("Index sort memory must be positive: " + indexSortMemoryBytes);
+        }
+        this.indexSortMemoryBytes = indexSortMemoryBytes;
+    }
+    
+    /**
+     * Наибольшее число ключей в узле индекса; 0 - узел ограничен только размером страницы
+     */
+    public int getIndexFanout() {
+        return indexFanout;
+    }
+    
+    public void setIndexFanout(int indexFanout) {
+        if (indexFanout != 0 && indexFanout < 3) {
+            throw new IllegalArgumentException("Index fanout must be 0 or at least 3: " + indexFanout);
+        }
+        this.indexFanout = indexFanout;
+    }
+    
+    public boolean isVectorizedExecution() {
+        return vectorizedExecution;
+    }
+    
+    public void setVectorizedExecution(boolean vectorizedExecution) {
+        this.vectorizedExecution = vectorizedExecution;
+    }
+    
+    public int getMaxParallelWorkers() {
+        return maxParallelWorkers;
+    }
+    
+    public void setMaxParallelWorkers(int maxParallelWorkers) {
+        if (maxParallelWorkers < 1) {
+            throw new IllegalArgumentException("Parallel workers must be positive: " + maxParallelWorkers);
+        }
+        this.maxParallelWorkers = maxParallelWorkers;
+    }
+    
+    public int getParallelScanPages() {
+        return parallelScanPages;
+    }
+    
+    public void setParallelScanPages(int parallelScanPages) {
+        if (parallelScanPages < 1) {
+            throw new IllegalArgumentException("Parallel scan threshold must be positive: " + parallelScanPages);
+        }
+        this.parallelScanPages = parallelScanPages;
+    }
+    
+    public long getJoinMemoryBytes() {
+        return joinMemoryBytes;
+    }
+    
+    public void setJoinMemoryBytes(long joinMemoryBytes) {
+        if (joinMemoryBytes <= 0) {
+            throw new IllegalArgumentException("Join memory must be positive: " + joinMemoryBytes);
+        }
+        this.joinMemoryBytes = joinMemoryBytes;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.example.executor;
+
+/**
+ * Векторный executor: тот же протокол open / next / close, что у Executor,
+ * но данные отдаются пакетами до ColumnBatch.CAPACITY строк
+ */
+public interface BatchExecutor {
+    /**
+     * Открыть executor и подготовить к выполнению
+     */
+    void open();
+    
+    /**
+     * Следующий пакет хотя бы с одной выбранной строкой (null если больше нет).
+     * Пакет действителен до следующего вызова nextBatch.
+     */
+    ColumnBatch nextBatch();
+    
+    /**
+     * Закрыть executor и освободить ресурсы
+     */
+    void close();
+}
@@ -0,0 +1,46 @@
+package com.example.executor;
+
+/**
+ * Построчный интерфейс над векторным executor: выбранные строки пакетов отдаются по одной
+ */
+public class BatchRowAdapter implements Executor {
+    private BatchExecutor child;
+    private ColumnBatch batch;
+    private int position;
+    private boolean isOpen;
+    
+    public BatchRowAdapter(BatchExecutor child) {
+        this.child = child;
+    }
+    
+    @Override
+    public void open() {
+        child.open();
+        batch = null;
+        position = 0;
+        isOpen = true;
+    }
+    
+    @Override
+    public Row next() {
+        if (!isOpen) {
+            return null;
+        }
+        
+        while (batch == null || position >= batch.getSelectedCount()) {
+            batch = child.nextBatch();
+            position = 0;
+            if (batch == null) {
+                return null;
+            }
+        }
+        return batch.getRow(position++);
+    }
+    
+    @Override
+    public void close() {
+        child.close();
+        batch = null;
+        isOpen = false;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.executor;
+
+import com.example.buffer.BufferAccessStrategy;
+import com.example.buffer.BufferManager;
+import com.example.storage.Page;
+import com.example.storage.StorageManager;
+import com.example.storage.TableFile;
+import com.example.storage.TableMetadata;
+import com.example.storage.TupleCodec;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+/**
+ * BitmapHeapScan executor - чтение строк по битовой карте адресов, построенной индексами
+ * (пересечение или объединение нескольких индексных сканирований).
+ * Карта строится при open; страницы таблицы читаются по возрастанию номеров, каждая один раз,
+ * и остается закрепленной, пока из нее отдаются строки.
+ */
+public class BitmapHeapScanExecutor implements Executor {
+    private StorageManager storageManager;
+    private BufferManager bufferManager;
+    private String tableName;
+    private Supplier<RidBitmap> bitmapSource;
+    private TableMetadata metadata;
+    private TableFile tableFile;
+    private BufferAccessStrategy strategy;
+    private Iterator<Map.Entry<Integer, BitSet>> pages;
+    private Page currentPage;
+    private BitSet currentSlots;
+    private int currentSlot;
+    private boolean isOpen;
+    
+    BitmapHeapScanExecutor(StorageManager storageManager,
+                           BufferManager bufferManager,
+                           String tableName,
+                           Supplier<RidBitmap> bitmapSource) {
+        this.storageManager = storageManager;
+        this.bufferManager = bufferManager;
+        this.tableName = tableName;
+        this.bitmapSource = bitmapSource;
+    }
+    
+    @Override
+    public void open() {
+        this.metadata = storageManager.getTableMetadata(tableName);
+        this.tableFile = storageManager.getTableFile(tableName);
+        RidBitmap bitmap = bitmapSource.get();
+        this.strategy = bufferManager.bulkReadStrategy(bitmap.pageCount());
+        this.pages = bitmap.pages();
+        this.isOpen = true;
+    }
+    
+    @Override
+    public Row next() {
+        if (!isOpen) {
+            return null;
+        }
+        
+        while (true) {
+            if (currentPage == null) {
+                if (!pages.hasNext()) {
+                    return null;
+                }
+                Map.Entry<Integer, BitSet> entry = pages.next();
+                currentPage = bufferManager.pinPage(tableFile, entry.getKey(), strategy);
+                currentSlots = entry.getValue();
+                currentSlot = currentSlots.nextSetBit(0);
+            }
+            
+            // Удаленные после построения индекса кортежи пропускаем
+            while (currentSlot >= 0) {
+                int slot = currentSlot;
+                currentSlot = currentSlots.nextSetBit(currentSlot + 1);
+                Row row = readRow(slot);
+                if (row != null) {
+                    return row;
+                }
+            }
+            releaseCurrentPage();
+        }
+    }
+    
+    @Override
+    public void close() {
+        releaseCurrentPage();
+        this.pages = null;
+        this.isOpen = false;
+    }
+    
+    /**
+     * Декодировать кортеж под shared-латчем страницы или null, если он удален
+     */
+    private Row readRow(int slot) {
+        Lock latch = currentPage.getLatch().readLock();
+        latch.lock();
+        try {
+            ByteBuffer record = currentPage.getRecordBuffer(slot);
+            return record == null ? null : new Row(TupleCodec.decode(metadata, record));
+        } finally {
+            latch.unlock();
+        }
+    }
+    
+    private void releaseCurrentPage() {
+        if (currentPage != null) {
+            bufferManager.unpinPage(tableFile, currentPage.getPageId(), false);
+            currentPage = null;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.executor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пакет строк в колоночном виде для векторного исполнения: до CAPACITY строк, по вектору
+ * на колонку и вектор выбора - номера строк, прошедших фильтры (null - выбраны все).
+ * Фильтр не перемещает значения, а только сужает вектор выбора.
+ *
+ * Пакет действителен до следующего вызова nextBatch у его источника: сканирование
+ * заполняет одни и те же векторы заново.
+ */
+public final class ColumnBatch {
+    public static final int CAPACITY = 1024;
+    
+    private final ColumnVector[] columns;
+    private int size;
+    private int[] selection;
+    private int selectedCount;
+    
+    public ColumnBatch(ColumnVector[] columns) {
+        this.columns = columns;
+    }
+    
+    /**
+     * Пустой пакет с векторами под колонки указанных типов
+     */
+    public static ColumnBatch forTypes(List<String> types) {
+        ColumnVector[] columns = new ColumnVector[types.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = ColumnVector.forType(types.get(i), CAPACITY);
+        }
+        return new ColumnBatch(columns);
+    }
+    
+    /**
+     * Пакет, в котором заполняются только колонки с present[c]; остальные колонки
+     * не заполняются и читаются как null (present == null - все колонки)
+     */
+    static ColumnBatch forTypes(List<String> types, boolean[] present) {
+        ColumnVector[] columns = new ColumnVector[types.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = present == null || present[i]
+                ? ColumnVector.forType(types.get(i), CAPACITY)
+                : new ColumnVector.ObjectVector(types.get(i), CAPACITY);
+        }
+        return new ColumnBatch(columns);
+    }
+    
+    public int getColumnCount() {
+        return columns.length;
+    }
+    
+    public ColumnVector getColumn(int index) {
+        return columns[index];
+    }
+    
+    /**
+     * Число строк в векторах, включая отброшенные фильтром
+     */
+    public int size() {
+        return size;
+    }
+    
+    public int getSelectedCount() {
+        return selectedCount;
+    }
+    
+    /**
+     * Номер строки в векторах для i-й выбранной строки
+     */
+    public int getSelectedRow(int i) {
+        return selection == null ? i : selection[i];
+    }
+    
+    /**
+     * Вектор выбора или null, если выбраны все size строк
+     */
+    int[] getSelection() {
+        return selection;
+    }
+    
+    /**
+     * Выбранная строка в построчном виде
+     */
+    public Row getRow(int i) {
+        int row = getSelectedRow(i);
+        List<Object> values = new ArrayList<>(columns.length);
+        for (ColumnVector column : columns) {
+            values.add(column.get(row));
+        }
+        return new Row(values);
+    }
+    
+    /**
+     * Начать заполнение заново: пакет пуст, векторы готовы к записи
+     */
+    void reset() {
+        for (ColumnVector column : columns) {
+            column.reset();
+        }
+        size = 0;
+        selection = null;
+        selectedCount = 0;
+    }
+    
+    /**
+     * Заполнено count строк, выбраны все
+     */
+    void setSize(int count) {
+        this.size = count;
+        this.selection = null;
+        this.selectedCount = count;
+    }
+    
+    void select(int[] selection, int count) {
+        this.selection = selection;
+        this.selectedCount = count;
+    }
+    
+    /**
+     * Пакет из части колонок: векторы и вектор выбора общие с исходным пакетом
+     */
+    ColumnBatch project(int[] columnIndices) {
+        ColumnVector[] projected = new ColumnVector[columnIndices.length];
+        for (int i = 0; i < columnIndices.length; i++) {
+            projected[i] = columns[columnIndices[i]];
+        }
+        ColumnBatch batch = new ColumnBatch(projected);
+        batch.size = size;
+        batch.selection = selection;
+        batch.selectedCount = selectedCount;
+        return batch;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.executor;
+
+import com.example.storage.TupleCodec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Колонка пакета ColumnBatch: значения одной колонки подряд для всех строк пакета.
+ * INTEGER хранится в int[] без упаковки, VARCHAR - кодами в словарь строк пакета,
+ * поэтому одинаковые строки хранятся и сравниваются с константой один раз на пакет.
+ * Прочие типы - массивом объектов.
+ */
+public abstract class ColumnVector {
+    
+    /**
+     * Вектор для колонки типа type на capacity строк
+     */
+    public static ColumnVector forType(String type, int capacity) {
+        switch (type.toUpperCase()) {
+            case "INT":
+            case "INTEGER":
+                return new IntVector(capacity);
+            case "VARCHAR":
+            case "STRING":
+                return new StringVector(capacity);
+            default:
+                return new ObjectVector(type, capacity);
+        }
+    }
+    
+    /**
+     * Значение строки row (с упаковкой - для перехода к построчному интерфейсу)
+     */
+    public abstract Object get(int row);
+    
+    abstract void set(int row, Object value);
+    
+    /**
+     * Прочитать значение колонки из кортежа (формат TupleCodec) в строку row
+     */
+    abstract void read(ByteBuffer record, int row);
+    
+    /**
+     * Подготовить вектор к заполнению следующего пакета
+     */
+    void reset() {
+    }
+    
+    public static final class IntVector extends ColumnVector {
+        final int[] values;
+        
+        IntVector(int capacity) {
+            this.values = new int[capacity];
+        }
+        
+        public int getInt(int row) {
+            return values[row];
+        }
+        
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+        
+        @Override
+        void set(int row, Object value) {
+            values[row] = (Integer) value;
+        }
+        
+        @Override
+        void read(ByteBuffer record, int row) {
+            values[row] = record.getInt();
+        }
+    }
+    
+    public static final class StringVector extends ColumnVector {
+        final int[] codes;
+        final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> codeByValue = new HashMap<>();
+        
+        StringVector(int capacity) {
+            this.codes = new int[capacity];
+        }
+        
+        public int getCode(int row) {
+            return codes[row];
+        }
+        
+        public List<String> getDictionary() {
+            return dictionary;
+        }
+        
+        @Override
+        public Object get(int row) {
+            return dictionary.get(codes[row]);
+        }
+        
+        @Override
+        void set(int row, Object value) {
+            String text = value.toString();
+            Integer code = codeByValue.get(text);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(text);
+                codeByValue.put(text, code);
+            }
+            codes[row] = code;
+        }
+        
+        @Override
+        void read(ByteBuffer record, int row) {
+            int len = record.getInt();
+            byte[] bytes = new byte[len];
+            record.get(bytes);
+            set(row, new String(bytes, StandardCharsets.UTF_8));
+        }
+        
+        @Override
+        void reset() {
+            dictionary.clear();
+            codeByValue.clear();
+        }
+    }
+    
+    public static final class ObjectVector extends ColumnVector {
+        private final String type;
+        final Object[] values;
+        
+        ObjectVector(String type, int capacity) {
+            this.type = type;
+            this.values = new Object[capacity];
+        }
+        
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+        
+        @Override
+        void set(int row, Object value) {
+            values[row] = value;
+        }
+        
+        @Override
+        void read(ByteBuffer record, int row) {
+            values[row] = TupleCodec.readValue(record, type);
+        }
+    }
+}
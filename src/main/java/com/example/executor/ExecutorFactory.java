@@ -6,6 +6,12 @@ import com.example.sql.optimizer.PhysicalPlan;
 import com.example.storage.StorageManager;
 import com.example.storage.TableMetadata;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
 /**
  * Фабрика executors - создание дерева executors из физического плана
  */
@@ -13,6 +19,7 @@ public class ExecutorFactory {
     private StorageManager storageManager;
     private BufferManager bufferManager;
     private IndexManager indexManager;
+    private long joinMemoryBytes = HashJoinExecutor.DEFAULT_MEMORY_BYTES;
     
     public ExecutorFactory(StorageManager storageManager,
                           BufferManager bufferManager,
@@ -22,36 +29,74 @@ public class ExecutorFactory {
         this.indexManager = indexManager;
     }
     
+    /**
+     * Память под хеш-таблицу одного соединения, байт; сверх нее соединение идет через диск
+     */
+    public void setJoinMemoryBytes(long joinMemoryBytes) {
+        if (joinMemoryBytes <= 0) {
+            throw new IllegalArgumentException("Join memory must be positive: " + joinMemoryBytes);
+        }
+        this.joinMemoryBytes = joinMemoryBytes;
+    }
+    
+    /**
+     * Схема строк, которые отдает оператор: метаданные таблицы сканирования
+     * или колонки соединения с именами "t.col"
+     */
+    public TableMetadata schemaOf(PhysicalPlan.PhysicalOperator operator) {
+        List<PhysicalPlan.ColumnDef> joinColumns = null;
+        if (operator instanceof PhysicalPlan.HashJoinOperator) {
+            joinColumns = ((PhysicalPlan.HashJoinOperator) operator).getColumns();
+        } else if (operator instanceof PhysicalPlan.IndexNestedLoopJoinOperator) {
+            joinColumns = ((PhysicalPlan.IndexNestedLoopJoinOperator) operator).getColumns();
+        }
+        if (joinColumns != null) {
+            TableMetadata schema = new TableMetadata("join");
+            for (PhysicalPlan.ColumnDef column : joinColumns) {
+                schema.addColumn(column.getName(), column.getType());
+            }
+            return schema;
+        }
+        String tableName = scannedTable(operator);
+        if (tableName != null) {
+            return storageManager.getTableMetadata(tableName);
+        }
+        return schemaOf(operator.getChildren().get(0));
+    }
+    
     public Executor createExecutor(PhysicalPlan.PhysicalOperator operator,
                                    TableMetadata metadata) {
         if (operator instanceof PhysicalPlan.SeqScanOperator) {
             PhysicalPlan.SeqScanOperator scan = 
                 (PhysicalPlan.SeqScanOperator) operator;
             return new SeqScanExecutor(storageManager, bufferManager, 
-                                     scan.getTableName());
+                                     scan.getTableName(), scan.getColumns(),
+                                     pushedFilter(scan, metadata));
             
         } else if (operator instanceof PhysicalPlan.IndexScanOperator) {
-            PhysicalPlan.IndexScanOperator indexScan = 
-                (PhysicalPlan.IndexScanOperator) operator;
-            IndexScanExecutor executor = new IndexScanExecutor(storageManager, bufferManager,
-                                       indexScan.getTableName(),
-                                       indexScan.getIndexName(),
-                                       indexScan.getColumnName(),
-                                       indexScan.getValue());
-            // IndexScanExecutor использует indexManager внутри, что нормально
-            return executor;
+            return createIndexScan((PhysicalPlan.IndexScanOperator) operator);
+            
+        } else if (operator instanceof PhysicalPlan.BitmapHeapScanOperator) {
+            PhysicalPlan.BitmapHeapScanOperator heapScan =
+                (PhysicalPlan.BitmapHeapScanOperator) operator;
+            return new BitmapHeapScanExecutor(storageManager, bufferManager,
+                                            heapScan.getTableName(),
+                                            createBitmapSource(heapScan.getChildren().get(0)));
+            
+        } else if (operator instanceof PhysicalPlan.GatherOperator) {
+            return createGather((PhysicalPlan.GatherOperator) operator, metadata);
+            
+        } else if (operator instanceof PhysicalPlan.HashJoinOperator) {
+            return createHashJoin((PhysicalPlan.HashJoinOperator) operator, false);
+            
+        } else if (operator instanceof PhysicalPlan.IndexNestedLoopJoinOperator) {
+            return createIndexJoin((PhysicalPlan.IndexNestedLoopJoinOperator) operator, false);
             
         } else if (operator instanceof PhysicalPlan.FilterOperator) {
             PhysicalPlan.FilterOperator filter = 
                 (PhysicalPlan.FilterOperator) operator;
             Executor child = createExecutor(filter.getChildren().get(0), metadata);
-            int columnIndex = metadata.getColumnIndex(filter.getColumnName());
-            if (columnIndex == -1) {
-                throw new RuntimeException("Column not found: " + filter.getColumnName());
-            }
-            return new FilterExecutor(child, filter.getColumnName(),
-                                    filter.getOperator(), filter.getValue(),
-                                    columnIndex);
+            return new FilterExecutor(child, createCondition(filter.getCondition(), metadata), metadata);
             
         } else if (operator instanceof PhysicalPlan.ProjectOperator) {
             PhysicalPlan.ProjectOperator project = 
@@ -62,5 +107,233 @@ public class ExecutorFactory {
         
         throw new RuntimeException("Unknown operator type: " + operator.getClass());
     }
+    
+    /**
+     * Векторное дерево executors: SeqScan, Filter и Project - векторные версии,
+     * остальные операторы работают построчно через RowBatchAdapter.
+     * Построчные листья отдают строки таблицы целиком, поэтому типы колонок берутся из metadata.
+     * Входы соединения читаются векторно, само соединение - построчное.
+     */
+    public BatchExecutor createBatchExecutor(PhysicalPlan.PhysicalOperator operator,
+                                             TableMetadata metadata) {
+        if (operator instanceof PhysicalPlan.SeqScanOperator) {
+            PhysicalPlan.SeqScanOperator scan = 
+                (PhysicalPlan.SeqScanOperator) operator;
+            return new VectorizedSeqScanExecutor(storageManager, bufferManager,
+                                               scan.getTableName(), scan.getColumns(),
+                                               pushedFilter(scan, metadata));
+            
+        } else if (operator instanceof PhysicalPlan.FilterOperator) {
+            PhysicalPlan.FilterOperator filter = 
+                (PhysicalPlan.FilterOperator) operator;
+            BatchExecutor child = createBatchExecutor(filter.getChildren().get(0), metadata);
+            return new VectorizedFilterExecutor(child, createCondition(filter.getCondition(), metadata));
+            
+        } else if (operator instanceof PhysicalPlan.ProjectOperator) {
+            PhysicalPlan.ProjectOperator project = 
+                (PhysicalPlan.ProjectOperator) operator;
+            BatchExecutor child = createBatchExecutor(project.getChildren().get(0), metadata);
+            return new VectorizedProjectExecutor(child, project.getColumns(), metadata);
+        }
+        
+        List<String> types = new ArrayList<>();
+        for (TableMetadata.Column column : metadata.getColumns()) {
+            types.add(column.getType());
+        }
+        if (operator instanceof PhysicalPlan.GatherOperator) {
+            // Потоки Gather декодируют только колонки своего SeqScan
+            PhysicalPlan.SeqScanOperator scan = (PhysicalPlan.SeqScanOperator) operator.getChildren().get(0);
+            boolean[] present = scan.getColumns() == null
+                ? null : SeqScanExecutor.neededColumns(metadata, scan.getColumns());
+            return new RowBatchAdapter(createExecutor(operator, metadata), types, present);
+        }
+        if (operator instanceof PhysicalPlan.HashJoinOperator) {
+            return new RowBatchAdapter(createHashJoin((PhysicalPlan.HashJoinOperator) operator, true), types);
+        }
+        if (operator instanceof PhysicalPlan.IndexNestedLoopJoinOperator) {
+            return new RowBatchAdapter(
+                createIndexJoin((PhysicalPlan.IndexNestedLoopJoinOperator) operator, true), types);
+        }
+        return new RowBatchAdapter(createExecutor(operator, metadata), types);
+    }
+    
+    /**
+     * Хеш-соединение: ключи разрешаются по схеме соединения (колонки правого входа - после
+     * колонок левого), входы строятся со своими схемами. Партиции, не поместившиеся
+     * в память, пишутся во временный каталог рядом с файлами таблиц.
+     */
+    private Executor createHashJoin(PhysicalPlan.HashJoinOperator join, boolean vectorized) {
+        TableMetadata schema = schemaOf(join);
+        PhysicalPlan.PhysicalOperator leftOp = join.getChildren().get(0);
+        PhysicalPlan.PhysicalOperator rightOp = join.getChildren().get(1);
+        TableMetadata leftSchema = schemaOf(leftOp);
+        TableMetadata rightSchema = schemaOf(rightOp);
+        int[] leftKeys = keyColumns(schema, join.getLeftKeys(), 0);
+        int[] rightKeys = keyColumns(schema, join.getRightKeys(), leftSchema.getColumns().size());
+        
+        Executor left = vectorized
+            ? new BatchRowAdapter(createBatchExecutor(leftOp, leftSchema))
+            : createExecutor(leftOp, leftSchema);
+        Executor right = vectorized
+            ? new BatchRowAdapter(createBatchExecutor(rightOp, rightSchema))
+            : createExecutor(rightOp, rightSchema);
+        Path tempDir = storageManager.getTableFile(tableOf(join)).getFilePath().getParent().resolve("tmp");
+        return new HashJoinExecutor(left, right, leftKeys, rightKeys, join.isBuildLeft(),
+                                    joinMemoryBytes, tempDir);
+    }
+    
+    /**
+     * Index nested-loop join: единственный вход - внешний, внутренняя таблица читается
+     * по индексу. Ключи разрешаются по схеме соединения так же, как у хеш-соединения,
+     * условие на внутреннюю таблицу компилируется по ее схеме.
+     */
+    private Executor createIndexJoin(PhysicalPlan.IndexNestedLoopJoinOperator join, boolean vectorized) {
+        TableMetadata schema = schemaOf(join);
+        PhysicalPlan.PhysicalOperator outerOp = join.getChildren().get(0);
+        TableMetadata outerSchema = schemaOf(outerOp);
+        TableMetadata innerSchema = storageManager.getTableMetadata(join.getInnerTable());
+        boolean innerLeft = join.isInnerLeft();
+        int leftWidth = (innerLeft ? innerSchema : outerSchema).getColumns().size();
+        int[] leftKeys = keyColumns(schema, join.getLeftKeys(), 0);
+        int[] rightKeys = keyColumns(schema, join.getRightKeys(), leftWidth);
+        int[] outerKeys = innerLeft ? rightKeys : leftKeys;
+        int[] innerKeys = innerLeft ? leftKeys : rightKeys;
+        
+        int indexColumn = innerSchema.getColumnIndex(join.getIndexColumn());
+        int indexKey = -1;
+        for (int k = 0; k < innerKeys.length; k++) {
+            if (innerKeys[k] == indexColumn) {
+                indexKey = k;
+            }
+        }
+        if (indexKey < 0) {
+            throw new RuntimeException("Join column not found: " + join.getIndexColumn());
+        }
+        
+        Executor outer = vectorized
+            ? new BatchRowAdapter(createBatchExecutor(outerOp, outerSchema))
+            : createExecutor(outerOp, outerSchema);
+        Predicate<Row> innerFilter = join.getInnerFilter() == null ? null
+            : ExpressionCompiler.compileFilter(createCondition(join.getInnerFilter(), innerSchema), innerSchema);
+        return new IndexNestedLoopJoinExecutor(outer, storageManager, bufferManager, indexManager,
+                                               join.getInnerTable(), join.getIndexName(),
+                                               outerKeys, innerKeys, indexKey, innerFilter, innerLeft);
+    }
+    
+    /**
+     * Номера ключевых колонок во входе, чьи колонки начинаются в схеме соединения с offset
+     */
+    private static int[] keyColumns(TableMetadata schema, List<String> keys, int offset) {
+        int[] columns = new int[keys.size()];
+        for (int i = 0; i < columns.length; i++) {
+            int index = schema.getColumnIndex(keys.get(i));
+            if (index < offset) {
+                throw new RuntimeException("Join column not found: " + keys.get(i));
+            }
+            columns[i] = index - offset;
+        }
+        return columns;
+    }
+    
+    /**
+     * Первая таблица, которую читает поддерево
+     */
+    private static String tableOf(PhysicalPlan.PhysicalOperator operator) {
+        String tableName = scannedTable(operator);
+        return tableName != null ? tableName : tableOf(operator.getChildren().get(0));
+    }
+    
+    private static String scannedTable(PhysicalPlan.PhysicalOperator operator) {
+        if (operator instanceof PhysicalPlan.SeqScanOperator) {
+            return ((PhysicalPlan.SeqScanOperator) operator).getTableName();
+        } else if (operator instanceof PhysicalPlan.IndexScanOperator) {
+            return ((PhysicalPlan.IndexScanOperator) operator).getTableName();
+        } else if (operator instanceof PhysicalPlan.BitmapHeapScanOperator) {
+            return ((PhysicalPlan.BitmapHeapScanOperator) operator).getTableName();
+        }
+        return null;
+    }
+    
+    /**
+     * Параллельный SeqScan: в каждом потоке - векторное сканирование своих порций страниц
+     * с протолкнутым условием, строки собирает GatherExecutor
+     */
+    private Executor createGather(PhysicalPlan.GatherOperator gather, TableMetadata metadata) {
+        PhysicalPlan.SeqScanOperator scan = (PhysicalPlan.SeqScanOperator) gather.getChildren().get(0);
+        PageMorsels morsels = new PageMorsels(storageManager.getTableFile(scan.getTableName()),
+                                              gather.getWorkers());
+        List<Executor> workers = new ArrayList<>();
+        for (int i = 0; i < gather.getWorkers(); i++) {
+            workers.add(new BatchRowAdapter(new VectorizedSeqScanExecutor(storageManager, bufferManager,
+                scan.getTableName(), scan.getColumns(), pushedFilter(scan, metadata), morsels)));
+        }
+        return new GatherExecutor(workers, morsels);
+    }
+    
+    private IndexScanExecutor createIndexScan(PhysicalPlan.IndexScanOperator indexScan) {
+        return new IndexScanExecutor(storageManager, bufferManager, indexManager,
+                                   indexScan.getTableName(),
+                                   indexScan.getIndexName(),
+                                   indexScan.getColumnName(),
+                                   indexScan.getLowerBound(),
+                                   indexScan.isLowerInclusive(),
+                                   indexScan.getUpperBound(),
+                                   indexScan.isUpperInclusive());
+    }
+    
+    /**
+     * Источник битовой карты: адреса из IndexScan или пересечение/объединение карт детей.
+     * Пересечение прекращается, как только карта стала пустой.
+     */
+    private Supplier<RidBitmap> createBitmapSource(PhysicalPlan.PhysicalOperator operator) {
+        if (operator instanceof PhysicalPlan.IndexScanOperator) {
+            IndexScanExecutor indexScan = createIndexScan((PhysicalPlan.IndexScanOperator) operator);
+            return indexScan::collectRids;
+        } else if (operator instanceof PhysicalPlan.BitmapOperator) {
+            boolean and = ((PhysicalPlan.BitmapOperator) operator).getConnective().equals("AND");
+            List<Supplier<RidBitmap>> sources = new ArrayList<>();
+            for (PhysicalPlan.PhysicalOperator child : operator.getChildren()) {
+                sources.add(createBitmapSource(child));
+            }
+            return () -> {
+                RidBitmap result = sources.get(0).get();
+                for (int i = 1; i < sources.size(); i++) {
+                    if (and && result.isEmpty()) {
+                        break;
+                    }
+                    if (and) {
+                        result.and(sources.get(i).get());
+                    } else {
+                        result.or(sources.get(i).get());
+                    }
+                }
+                return result;
+            };
+        }
+        
+        throw new RuntimeException("Unknown bitmap operator type: " + operator.getClass());
+    }
+    
+    private FilterExecutor.Condition pushedFilter(PhysicalPlan.SeqScanOperator scan,
+                                                  TableMetadata metadata) {
+        return scan.getFilter() == null ? null : createCondition(scan.getFilter(), metadata);
+    }
+    
+    private FilterExecutor.Condition createCondition(PhysicalPlan.Condition condition,
+                                                     TableMetadata metadata) {
+        if (condition.isConnective()) {
+            List<FilterExecutor.Condition> operands = new ArrayList<>();
+            for (PhysicalPlan.Condition operand : condition.getOperands()) {
+                operands.add(createCondition(operand, metadata));
+            }
+            return FilterExecutor.Condition.connective(condition.getOperator(), operands);
+        }
+        int columnIndex = metadata.getColumnIndex(condition.getColumnName());
+        if (columnIndex == -1) {
+            throw new RuntimeException("Column not found: " + condition.getColumnName());
+        }
+        return FilterExecutor.Condition.comparison(columnIndex, condition.getOperator(),
+                                                   condition.getValue(), condition.getUpperValue());
+    }
 }
 
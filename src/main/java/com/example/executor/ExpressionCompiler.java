@@ -0,0 +1,184 @@
+package com.example.executor;
+
+import com.example.storage.TableMetadata;
+import com.example.storage.TupleCodec;
+
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Компиляция условий WHERE и проекций в лямбды один раз на запрос.
+ *
+ * Интерпретатор (FilterExecutor.Condition.evaluate) на каждой строке выбирает ветку по строке
+ * оператора и сравнивает через сырой Comparable. Здесь оператор, тип колонки и константа
+ * разбираются при компиляции: для каждого сочетания - своя лямбда с распакованной константой
+ * (int или String), так что в цикле по строкам нет ни switch, ни виртуального compareTo
+ * по неизвестному типу, и JIT встраивает тело сравнения в место вызова.
+ *
+ * Сравнения, которые не удается специализировать (тип константы не совпадает с типом колонки,
+ * неизвестный тип), вычисляются интерпретатором - результат такой же, как у Condition.test.
+ */
+public final class ExpressionCompiler {
+    
+    private ExpressionCompiler() {
+    }
+    
+    /**
+     * Условие над строками таблицы metadata (номера колонок - как в таблице)
+     */
+    public static Predicate<Row> compileFilter(FilterExecutor.Condition condition, TableMetadata metadata) {
+        if (condition.isConnective()) {
+            List<FilterExecutor.Condition> operands = condition.getOperands();
+            boolean and = condition.getOperator().equals("AND");
+            Predicate<Row> result = compileFilter(operands.get(operands.size() - 1), metadata);
+            // Сворачиваем справа, чтобы операнды проверялись слева направо с коротким замыканием
+            for (int i = operands.size() - 2; i >= 0; i--) {
+                Predicate<Row> left = compileFilter(operands.get(i), metadata);
+                Predicate<Row> right = result;
+                result = and
+                    ? row -> left.test(row) && right.test(row)
+                    : row -> left.test(row) || right.test(row);
+            }
+            return result;
+        }
+        
+        int column = condition.getColumnIndex();
+        int width = TupleCodec.fixedWidth(metadata.getColumns().get(column).getType());
+        Object value = condition.getValue();
+        Object upper = condition.getUpperValue();
+        if (width == 4 && condition.intBounds() != null) {
+            return compileInt(column, condition.getOperator(), (Integer) value, upper == null ? 0 : (Integer) upper);
+        }
+        if (width == -1 && value instanceof String && (upper == null || upper instanceof String)) {
+            Predicate<Row> compiled = compileString(column, condition.getOperator(), (String) value, (String) upper);
+            if (compiled != null) {
+                return compiled;
+            }
+        }
+        return row -> condition.test(row.getValue(column));
+    }
+    
+    /**
+     * Проекция строк таблицы metadata на колонки columns. Если проекция выбирает все колонки
+     * по порядку, строка передается без копирования.
+     */
+    public static UnaryOperator<Row> compileProjection(List<String> columns, TableMetadata metadata) {
+        int[] indices = new int[columns.size()];
+        boolean identity = indices.length == metadata.getColumns().size();
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = metadata.getColumnIndex(columns.get(i));
+            if (indices[i] == -1) {
+                throw new RuntimeException("Column not found: " + columns.get(i));
+            }
+            identity &= indices[i] == i;
+        }
+        if (identity) {
+            return UnaryOperator.identity();
+        }
+        return row -> {
+            Row projected = new Row(indices.length);
+            for (int index : indices) {
+                projected.addValue(row.getValue(index));
+            }
+            return projected;
+        };
+    }
+    
+    /**
+     * INTEGER-колонка и целая константа: значения колонки всегда Integer (или null)
+     */
+    private static Predicate<Row> compileInt(int column, String operator, int constant, int upper) {
+        switch (operator) {
+            case "=":
+                return row -> {
+                    Object v = row.getValue(column);
+                    return v != null && (Integer) v == constant;
+                };
+            case "<>":
+                return row -> {
+                    Object v = row.getValue(column);
+                    return v != null && (Integer) v != constant;
+                };
+            case "<":
+                return row -> {
+                    Object v = row.getValue(column);
+                    return v != null && (Integer) v < constant;
+                };
+            case "<=":
+                return row -> {
+                    Object v = row.getValue(column);
+                    return v != null && (Integer) v <= constant;
+                };
+            case ">":
+                return row -> {
+                    Object v = row.getValue(column);
+                    return v != null && (Integer) v > constant;
+                };
+            case ">=":
+                return row -> {
+                    Object v = row.getValue(column);
+                    return v != null && (Integer) v >= constant;
+                };
+            default: // BETWEEN
+                return row -> {
+                    Object v = row.getValue(column);
+                    if (v == null) {
+                        return false;
+                    }
+                    int x = (Integer) v;
+                    return x >= constant && x <= upper;
+                };
+        }
+    }
+    
+    /**
+     * VARCHAR-колонка и строковая константа: String.equals / String.compareTo без Comparable.
+     * null, если оператор неизвестен или у BETWEEN нет верхней границы.
+     */
+    private static Predicate<Row> compileString(int column, String operator, String constant, String upper) {
+        switch (operator) {
+            case "=":
+                return row -> constant.equals(row.getValue(column));
+            case "<>":
+                return row -> {
+                    Object v = row.getValue(column);
+                    return v != null && !constant.equals(v);
+                };
+            case "<":
+                return row -> {
+                    Object v = row.getValue(column);
+                    return v != null && ((String) v).compareTo(constant) < 0;
+                };
+            case "<=":
+                return row -> {
+                    Object v = row.getValue(column);
+                    return v != null && ((String) v).compareTo(constant) <= 0;
+                };
+            case ">":
+                return row -> {
+                    Object v = row.getValue(column);
+                    return v != null && ((String) v).compareTo(constant) > 0;
+                };
+            case ">=":
+                return row -> {
+                    Object v = row.getValue(column);
+                    return v != null && ((String) v).compareTo(constant) >= 0;
+                };
+            case "BETWEEN":
+                if (upper == null) {
+                    return null;
+                }
+                return row -> {
+                    Object v = row.getValue(column);
+                    if (v == null) {
+                        return false;
+                    }
+                    String s = (String) v;
+                    return s.compareTo(constant) >= 0 && s.compareTo(upper) <= 0;
+                };
+            default:
+                return null;
+        }
+    }
+}
@@ -1,23 +1,45 @@
 package com.example.executor;
 
+import com.example.storage.TableMetadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
 /**
- * Filter executor - фильтрация строк по условию
+ * Filter executor - фильтрация строк по условию (сравнение или дерево AND/OR).
+ * Если известна схема строк, условие компилируется (ExpressionCompiler), иначе интерпретируется.
  */
 public class FilterExecutor implements Executor {
     private Executor child;
-    private String columnName;
-    private String operator;
-    private Object value;
-    private int columnIndex;
+    private Predicate<Row> predicate;
     private boolean isOpen;
     
     public FilterExecutor(Executor child, String columnName, 
                          String operator, Object value, int columnIndex) {
+        this(child, columnName, operator, value, null, columnIndex);
+    }
+    
+    /**
+     * upperValue - верхняя граница для BETWEEN (value - нижняя)
+     */
+    public FilterExecutor(Executor child, String columnName, String operator,
+                         Object value, Object upperValue, int columnIndex) {
+        this(child, Condition.comparison(columnIndex, operator, value, upperValue));
+    }
+    
+    public FilterExecutor(Executor child, Condition condition) {
         this.child = child;
-        this.columnName = columnName;
-        this.operator = operator;
-        this.value = value;
-        this.columnIndex = columnIndex;
+        this.predicate = condition::evaluate;
+    }
+    
+    /**
+     * Условие над строками таблицы metadata, скомпилированное под типы ее колонок
+     */
+    public FilterExecutor(Executor child, Condition condition, TableMetadata metadata) {
+        this.child = child;
+        this.predicate = ExpressionCompiler.compileFilter(condition, metadata);
     }
     
     @Override
@@ -34,7 +56,7 @@ public class FilterExecutor implements Executor {
         
         Row row;
         while ((row = child.next()) != null) {
-            if (evaluateCondition(row)) {
+            if (predicate.test(row)) {
                 return row;
             }
         }
@@ -48,37 +70,247 @@ public class FilterExecutor implements Executor {
         isOpen = false;
     }
     
-    private boolean evaluateCondition(Row row) {
-        Object rowValue = row.getValue(columnIndex);
-        
-        if (rowValue == null) {
-            return false;
-        }
-        
-        switch (operator) {
-            case "=":
-                return compareValues(rowValue, value) == 0;
-            case "<>":
-                return compareValues(rowValue, value) != 0;
-            case "<":
-                return compareValues(rowValue, value) < 0;
-            case "<=":
-                return compareValues(rowValue, value) <= 0;
-            case ">":
-                return compareValues(rowValue, value) > 0;
-            case ">=":
-                return compareValues(rowValue, value) >= 0;
-            default:
+    /**
+     * Условие над колонками строки (по номерам): сравнение с константой или связка AND/OR.
+     * Связки вычисляются слева направо с коротким замыканием.
+     */
+    public static final class Condition {
+        private final String operator;
+        private final int columnIndex;
+        private final Object value;
+        private final Object upperValue;
+        private final List<Condition> operands;
+        
+        private Condition(String operator, int columnIndex, Object value, Object upperValue,
+                          List<Condition> operands) {
+            this.operator = operator;
+            this.columnIndex = columnIndex;
+            this.value = value;
+            this.upperValue = upperValue;
+            this.operands = operands;
+        }
+        
+        public static Condition comparison(int columnIndex, String operator, Object value, Object upperValue) {
+            return new Condition(operator, columnIndex, value, upperValue, Collections.emptyList());
+        }
+        
+        public static Condition connective(String operator, List<Condition> operands) {
+            if (!operator.equals("AND") && !operator.equals("OR")) {
+                throw new IllegalArgumentException("Unknown connective: " + operator);
+            }
+            return new Condition(operator, -1, null, null,
+                Collections.unmodifiableList(new ArrayList<>(operands)));
+        }
+        
+        boolean isConnective() {
+            return !operands.isEmpty();
+        }
+        
+        String getOperator() {
+            return operator;
+        }
+        
+        int getColumnIndex() {
+            return columnIndex;
+        }
+        
+        Object getValue() {
+            return value;
+        }
+        
+        Object getUpperValue() {
+            return upperValue;
+        }
+        
+        List<Condition> getOperands() {
+            return operands;
+        }
+        
+        /**
+         * Интерпретация условия на строке: разбор оператора и сравнение через Comparable
+         * при каждом вызове
+         */
+        public boolean evaluate(Row row) {
+            if (!operands.isEmpty()) {
+                boolean and = operator.equals("AND");
+                for (Condition operand : operands) {
+                    if (operand.evaluate(row) != and) {
+                        return !and;
+                    }
+                }
+                return and;
+            }
+            return test(row.getValue(columnIndex));
+        }
+        
+        /**
+         * Векторная проверка: из count строк пакета (номера в selection, null - строки 0..count-1)
+         * записать в out номера удовлетворяющих условию, сохраняя порядок; вернуть их число.
+         * out может совпадать с selection.
+         */
+        int select(ColumnBatch batch, int[] selection, int count, int[] out) {
+            if (!operands.isEmpty()) {
+                return operator.equals("AND")
+                    ? selectAll(batch, selection, count, out)
+                    : selectAny(batch, selection, count, out);
+            }
+            
+            ColumnVector column = batch.getColumn(columnIndex);
+            if (column instanceof ColumnVector.IntVector && intBounds() != null) {
+                return selectInts(((ColumnVector.IntVector) column).values, selection, count, out);
+            }
+            if (column instanceof ColumnVector.StringVector) {
+                // Условие проверяется один раз на значение словаря, строки - по кодам
+                ColumnVector.StringVector strings = (ColumnVector.StringVector) column;
+                boolean[] matches = new boolean[strings.dictionary.size()];
+                for (int code = 0; code < matches.length; code++) {
+                    matches[code] = test(strings.dictionary.get(code));
+                }
+                int selected = 0;
+                for (int i = 0; i < count; i++) {
+                    int row = selection == null ? i : selection[i];
+                    if (matches[strings.codes[row]]) {
+                        out[selected++] = row;
+                    }
+                }
+                return selected;
+            }
+            int selected = 0;
+            for (int i = 0; i < count; i++) {
+                int row = selection == null ? i : selection[i];
+                if (test(column.get(row))) {
+                    out[selected++] = row;
+                }
+            }
+            return selected;
+        }
+        
+        /**
+         * AND: каждый операнд сужает результат предыдущего
+         */
+        private int selectAll(ColumnBatch batch, int[] selection, int count, int[] out) {
+            for (Condition operand : operands) {
+                count = operand.select(batch, selection, count, out);
+                selection = out;
+                if (count == 0) {
+                    break;
+                }
+            }
+            return count;
+        }
+        
+        /**
+         * OR: строка выбрана, если ее выбрал хоть один операнд; каждый следующий операнд
+         * проверяет только еще не выбранные строки
+         */
+        private int selectAny(ColumnBatch batch, int[] selection, int count, int[] out) {
+            boolean[] chosen = new boolean[batch.size()];
+            int[] remaining = new int[count];
+            int remainingCount = 0;
+            for (int i = 0; i < count; i++) {
+                remaining[remainingCount++] = selection == null ? i : selection[i];
+            }
+            int[] matched = new int[count];
+            for (Condition operand : operands) {
+                int matchedCount = operand.select(batch, remaining, remainingCount, matched);
+                for (int i = 0; i < matchedCount; i++) {
+                    chosen[matched[i]] = true;
+                }
+                int left = 0;
+                for (int i = 0; i < remainingCount; i++) {
+                    if (!chosen[remaining[i]]) {
+                        remaining[left++] = remaining[i];
+                    }
+                }
+                remainingCount = left;
+                if (remainingCount == 0) {
+                    break;
+                }
+            }
+            int selected = 0;
+            for (int i = 0; i < count; i++) {
+                int row = selection == null ? i : selection[i];
+                if (chosen[row]) {
+                    out[selected++] = row;
+                }
+            }
+            return selected;
+        }
+        
+        /**
+         * Сравнение INTEGER-колонки с целой константой без упаковки значений
+         */
+        private int selectInts(int[] values, int[] selection, int count, int[] out) {
+            long[] bounds = intBounds();
+            long lo = bounds[0];
+            long hi = bounds[1];
+            boolean negate = bounds[2] != 0;
+            int selected = 0;
+            for (int i = 0; i < count; i++) {
+                int row = selection == null ? i : selection[i];
+                int v = values[row];
+                if ((v >= lo && v <= hi) != negate) {
+                    out[selected++] = row;
+                }
+            }
+            return selected;
+        }
+        
+        /**
+         * Сравнение с целой константой как проверка lo <= v <= hi (для <> - с отрицанием),
+         * чтобы в цикле по строкам не было ветвления по оператору: {lo, hi, 1 - отрицание}.
+         * null, если оператор или константа не целые.
+         */
+        long[] intBounds() {
+            if (!(value instanceof Integer) || !(upperValue == null || upperValue instanceof Integer)) {
+                return null;
+            }
+            long constant = (Integer) value;
+            switch (operator) {
+                case "=": return new long[] {constant, constant, 0};
+                case "<>": return new long[] {constant, constant, 1};
+                case "<": return new long[] {Integer.MIN_VALUE, constant - 1, 0};
+                case "<=": return new long[] {Integer.MIN_VALUE, constant, 0};
+                case ">": return new long[] {constant + 1, Integer.MAX_VALUE, 0};
+                case ">=": return new long[] {constant, Integer.MAX_VALUE, 0};
+                case "BETWEEN":
+                    return upperValue == null ? null : new long[] {constant, (Integer) upperValue, 0};
+                default:
+                    return null;
+            }
+        }
+        
+        boolean test(Object rowValue) {
+            if (rowValue == null) {
                 return false;
+            }
+            
+            switch (operator) {
+                case "=":
+                    return compareValues(rowValue, value) == 0;
+                case "<>":
+                    return compareValues(rowValue, value) != 0;
+                case "<":
+                    return compareValues(rowValue, value) < 0;
+                case "<=":
+                    return compareValues(rowValue, value) <= 0;
+                case ">":
+                    return compareValues(rowValue, value) > 0;
+                case ">=":
+                    return compareValues(rowValue, value) >= 0;
+                case "BETWEEN":
+                    return compareValues(rowValue, value) >= 0 && compareValues(rowValue, upperValue) <= 0;
+                default:
+                    return false;
+            }
         }
-    }
-    
-    @SuppressWarnings({"unchecked", "rawtypes"})
-    private int compareValues(Object a, Object b) {
-        if (a instanceof Comparable && b instanceof Comparable) {
-            return ((Comparable) a).compareTo(b);
+        
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static int compareValues(Object a, Object b) {
+            if (a instanceof Comparable && b instanceof Comparable) {
+                return ((Comparable) a).compareTo(b);
+            }
+            return a.toString().compareTo(b.toString());
         }
-        return a.toString().compareTo(b.toString());
     }
 }
-
@@ -0,0 +1,168 @@
+package com.example.executor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Gather - параллельное сканирование: дочерние executors (по одному на поток) выполняются
+ * в общем пуле рабочих потоков и делят страницы таблицы через PageMorsels. Строки потоков
+ * передаются пачками через ограниченную очередь и отдаются одним потоком в порядке прихода -
+ * порядок строк, в отличие от SeqScan, не определен.
+ *
+ * Ошибка любого потока пробрасывается из next() и сразу останавливает остальные потоки.
+ * close() останавливает потоки и ждет их завершения, так что после него ни одна страница
+ * прохода не остается закрепленной.
+ */
+public class GatherExecutor implements Executor {
+    /** Строк в одной пачке от потока */
+    static final int CHUNK_ROWS = ColumnBatch.CAPACITY;
+    /** Пачек в очереди на поток: сканирование не уходит далеко вперед потребителя */
+    private static final int QUEUE_CHUNKS_PER_WORKER = 4;
+    private static final long OFFER_TIMEOUT_MILLIS = 10;
+    private static final List<Row> END = new ArrayList<>();
+    
+    private static final ExecutorService WORKER_POOL = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "db-parallel-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private List<Executor> workers;
+    private PageMorsels morsels;
+    private BlockingQueue<List<Row>> queue;
+    private List<Future<?>> futures;
+    private AtomicReference<Throwable> failure;
+    private volatile boolean cancelled;
+    private List<Row> chunk;
+    private int position;
+    private int finishedWorkers;
+    private boolean isOpen;
+    
+    GatherExecutor(List<Executor> workers, PageMorsels morsels) {
+        this.workers = workers;
+        this.morsels = morsels;
+    }
+    
+    @Override
+    public void open() {
+        morsels.reset();
+        queue = new ArrayBlockingQueue<>(workers.size() * QUEUE_CHUNKS_PER_WORKER);
+        failure = new AtomicReference<>();
+        cancelled = false;
+        chunk = null;
+        position = 0;
+        finishedWorkers = 0;
+        futures = new ArrayList<>();
+        for (Executor worker : workers) {
+            futures.add(WORKER_POOL.submit(() -> runWorker(worker)));
+        }
+        isOpen = true;
+    }
+    
+    @Override
+    public Row next() {
+        if (!isOpen) {
+            return null;
+        }
+        
+        while (chunk == null || position >= chunk.size()) {
+            if (finishedWorkers == workers.size()) {
+                return null;
+            }
+            try {
+                chunk = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while gathering rows", e);
+            }
+            position = 0;
+            if (chunk == END) {
+                finishedWorkers++;
+                Throwable error = failure.get();
+                if (error != null) {
+                    cancelled = true;
+                    throw new RuntimeException("Parallel scan worker failed", error);
+                }
+            }
+        }
+        return chunk.get(position++);
+    }
+    
+    @Override
+    public void close() {
+        if (futures == null) {
+            return;
+        }
+        cancelled = true;
+        for (Future<?> future : futures) {
+            // Поток мог ждать места в очереди: очищаем ее, пока он не заметит отмену
+            while (!future.isDone()) {
+                queue.clear();
+                try {
+                    future.get(OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // Повторяем, пока поток не завершится
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    break;
+                }
+            }
+        }
+        futures = null;
+        chunk = null;
+        isOpen = false;
+    }
+    
+    private void runWorker(Executor worker) {
+        try {
+            worker.open();
+            try {
+                List<Row> rows = new ArrayList<>(CHUNK_ROWS);
+                Row row;
+                while (!cancelled && (row = worker.next()) != null) {
+                    rows.add(row);
+                    if (rows.size() == CHUNK_ROWS) {
+                        put(rows);
+                        rows = new ArrayList<>(CHUNK_ROWS);
+                    }
+                }
+                if (!rows.isEmpty()) {
+                    put(rows);
+                }
+            } finally {
+                worker.close();
+            }
+        } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+        } finally {
+            put(END);
+        }
+    }
+    
+    /**
+     * Положить пачку в очередь; после отмены пачка отбрасывается
+     */
+    private void put(List<Row> rows) {
+        try {
+            while (!cancelled) {
+                if (queue.offer(rows, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,503 @@
+package com.example.executor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash join - внутреннее соединение по равенству ключей.
+ *
+ * Строки входа build (левого или правого - выбирает оптимизатор) складываются в хеш-таблицу
+ * по ключу, затем строки другого входа (probe) ищутся в ней. Строка результата - колонки
+ * левого входа, затем правого. Строки с null в ключе ни с чем не соединяются.
+ *
+ * Хеш-таблица занимает не больше memoryLimit байт (по оценке). Если build в нее не помещается,
+ * соединение переходит к grace hash join: оба входа раскладываются по хешу ключа на PARTITIONS
+ * временных файлов, и пары партиций соединяются по очереди. Партиция, которая сама не помещается
+ * в память, делится дальше по другим битам хеша (не глубже MAX_SPILL_DEPTH: дальше в ней
+ * остаются одинаковые ключи, и она строится в памяти целиком). close() удаляет временные файлы.
+ */
+public class HashJoinExecutor implements Executor {
+    /** Память под хеш-таблицу по умолчанию, байт */
+    public static final long DEFAULT_MEMORY_BYTES = 4L * 1024 * 1024;
+    /** Партиций при сбросе на диск (на каждом уровне) */
+    static final int PARTITIONS = 16;
+    private static final int PARTITION_BITS = 4;
+    /** Уровней деления партиций; хеш 32-битный, каждый уровень берет PARTITION_BITS бит */
+    static final int MAX_SPILL_DEPTH = 32 / PARTITION_BITS;
+    
+    private static final byte VALUE_NULL = 'N';
+    private static final byte VALUE_INTEGER = 'I';
+    private static final byte VALUE_STRING = 'S';
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    
+    private Executor left;
+    private Executor right;
+    private int[] leftKeys;
+    private int[] rightKeys;
+    private boolean buildLeft;
+    private long memoryLimit;
+    private Path tempDir;
+    
+    private Map<Object, List<Row>> table;
+    private long tableBytes;
+    private Executor probeInput;
+    private SpillReader probeReader;
+    private Deque<Partition> pending;
+    private List<Path> spillFiles;
+    private Row probeRow;
+    private List<Row> matches;
+    private int matchIndex;
+    private int spilledPartitions;
+    private boolean isOpen;
+    
+    /**
+     * leftKeys, rightKeys - номера ключевых колонок в строках левого и правого входа;
+     * tempDir - каталог для партиций, сброшенных на диск
+     */
+    public HashJoinExecutor(Executor left, Executor right, int[] leftKeys, int[] rightKeys,
+                            boolean buildLeft, long memoryLimit, Path tempDir) {
+        if (leftKeys.length == 0 || leftKeys.length != rightKeys.length) {
+            throw new IllegalArgumentException("Join keys mismatch: " + leftKeys.length + " and " + rightKeys.length);
+        }
+        if (memoryLimit <= 0) {
+            throw new IllegalArgumentException("Join memory must be positive: " + memoryLimit);
+        }
+        this.left = left;
+        this.right = right;
+        this.leftKeys = leftKeys;
+        this.rightKeys = rightKeys;
+        this.buildLeft = buildLeft;
+        this.memoryLimit = memoryLimit;
+        this.tempDir = tempDir;
+    }
+    
+    @Override
+    public void open() {
+        pending = new ArrayDeque<>();
+        spillFiles = new ArrayList<>();
+        spilledPartitions = 0;
+        probeRow = null;
+        matches = null;
+        probeReader = null;
+        // Открыт с первого шага: close() после ошибки в open закроет входы и удалит партиции
+        isOpen = true;
+        left.open();
+        right.open();
+        
+        Executor build = buildLeft ? left : right;
+        Executor probe = buildLeft ? right : left;
+        SpillWriter[] buildParts = buildTable(build::next, 0);
+        if (buildParts == null) {
+            // С пустой хеш-таблицей соединять нечего - probe можно не читать
+            probeInput = table.isEmpty() ? null : probe;
+        } else {
+            // Не поместилось: probe раскладывается по тем же партициям
+            probeInput = null;
+            schedule(buildParts, partition(probe::next, probeKeys(), 0), 0);
+        }
+    }
+    
+    @Override
+    public Row next() {
+        if (!isOpen) {
+            return null;
+        }
+        
+        while (true) {
+            if (matches != null && matchIndex < matches.size()) {
+                Row match = matches.get(matchIndex++);
+                return buildLeft ? Row.concat(match, probeRow) : Row.concat(probeRow, match);
+            }
+            matches = null;
+            
+            Row row = nextProbeRow();
+            if (row == null) {
+                if (pending.isEmpty()) {
+                    return null;
+                }
+                joinPartition(pending.pop());
+                continue;
+            }
+            Object key = key(row, probeKeys());
+            if (key != null) {
+                probeRow = row;
+                matches = table.get(key);
+                matchIndex = 0;
+            }
+        }
+    }
+    
+    @Override
+    public void close() {
+        if (!isOpen) {
+            return;
+        }
+        left.close();
+        right.close();
+        if (probeReader != null) {
+            probeReader.close();
+            probeReader = null;
+        }
+        for (Path file : new ArrayList<>(spillFiles)) {
+            delete(file);
+        }
+        spillFiles.clear();
+        pending.clear();
+        table = null;
+        matches = null;
+        isOpen = false;
+    }
+    
+    /**
+     * Сколько партиций было сброшено на диск за последний проход (0 - соединение в памяти)
+     */
+    public int getSpilledPartitions() {
+        return spilledPartitions;
+    }
+    
+    private int[] buildKeys() {
+        return buildLeft ? leftKeys : rightKeys;
+    }
+    
+    private int[] probeKeys() {
+        return buildLeft ? rightKeys : leftKeys;
+    }
+    
+    private Row nextProbeRow() {
+        if (probeInput != null) {
+            return probeInput.next();
+        }
+        if (probeReader == null) {
+            return null;
+        }
+        Row row = probeReader.read();
+        if (row == null) {
+            probeReader.close();
+            delete(probeReader.path);
+            probeReader = null;
+        }
+        return row;
+    }
+    
+    /**
+     * Построить хеш-таблицу по строкам rows. Если она превысила memoryLimit (и партицию еще
+     * можно делить), все строки раскладываются по партициям уровня depth; тогда возвращаются
+     * эти партиции, иначе null
+     */
+    private SpillWriter[] buildTable(RowSource rows, int depth) {
+        table = new HashMap<>();
+        tableBytes = 0;
+        SpillWriter[] parts = null;
+        try {
+            Row row;
+            while ((row = rows.next()) != null) {
+                Object key = key(row, buildKeys());
+                if (key == null) {
+                    continue;
+                }
+                if (parts != null) {
+                    parts[partitionOf(key, depth)].write(row);
+                    continue;
+                }
+                List<Row> bucket = table.get(key);
+                if (bucket == null) {
+                    bucket = new ArrayList<>(1);
+                    table.put(key, bucket);
+                    // Запись хеш-таблицы и ключ
+                    tableBytes += 48 + estimateSize(key);
+                }
+                bucket.add(row);
+                tableBytes += estimateSize(row);
+                if (tableBytes > memoryLimit && depth < MAX_SPILL_DEPTH) {
+                    parts = createPartitions();
+                    for (Map.Entry<Object, List<Row>> entry : table.entrySet()) {
+                        SpillWriter part = parts[partitionOf(entry.getKey(), depth)];
+                        for (Row buffered : entry.getValue()) {
+                            part.write(buffered);
+                        }
+                    }
+                    table = null;
+                }
+            }
+        } finally {
+            if (parts != null) {
+                closeAll(parts);
+            }
+        }
+        return parts;
+    }
+    
+    /**
+     * Разложить строки rows по партициям уровня depth
+     */
+    private SpillWriter[] partition(RowSource rows, int[] keys, int depth) {
+        SpillWriter[] parts = createPartitions();
+        try {
+            Row row;
+            while ((row = rows.next()) != null) {
+                Object key = key(row, keys);
+                if (key != null) {
+                    parts[partitionOf(key, depth)].write(row);
+                }
+            }
+        } finally {
+            closeAll(parts);
+        }
+        return parts;
+    }
+    
+    /**
+     * Поставить в очередь пары партиций; пары с пустой стороной в соединении ничего не дают
+     */
+    private void schedule(SpillWriter[] buildParts, SpillWriter[] probeParts, int depth) {
+        for (int i = 0; i < PARTITIONS; i++) {
+            if (buildParts[i].rows > 0 && probeParts[i].rows > 0) {
+                pending.push(new Partition(buildParts[i].path, probeParts[i].path, depth + 1));
+            } else {
+                delete(buildParts[i].path);
+                delete(probeParts[i].path);
+            }
+        }
+    }
+    
+    /**
+     * Загрузить build-партицию в хеш-таблицу и начать чтение парной probe-партиции;
+     * слишком большая партиция делится на следующем уровне
+     */
+    private void joinPartition(Partition partition) {
+        SpillWriter[] buildParts;
+        try (SpillReader buildReader = new SpillReader(partition.build)) {
+            buildParts = buildTable(buildReader::read, partition.depth);
+        }
+        delete(partition.build);
+        if (buildParts == null) {
+            probeReader = new SpillReader(partition.probe);
+            return;
+        }
+        SpillWriter[] probeParts;
+        try (SpillReader reader = new SpillReader(partition.probe)) {
+            probeParts = partition(reader::read, probeKeys(), partition.depth);
+        }
+        delete(partition.probe);
+        schedule(buildParts, probeParts, partition.depth);
+    }
+    
+    private SpillWriter[] createPartitions() {
+        SpillWriter[] parts = new SpillWriter[PARTITIONS];
+        try {
+            Files.createDirectories(tempDir);
+            for (int i = 0; i < PARTITIONS; i++) {
+                Path file = Files.createTempFile(tempDir, "hash_join_", ".part");
+                spillFiles.add(file);
+                parts[i] = new SpillWriter(file);
+            }
+        } catch (IOException e) {
+            for (SpillWriter part : parts) {
+                if (part != null) {
+                    part.close();
+                }
+            }
+            throw new RuntimeException("Failed to create hash join partition", e);
+        }
+        spilledPartitions += PARTITIONS;
+        return parts;
+    }
+    
+    private static void closeAll(SpillWriter[] parts) {
+        for (SpillWriter part : parts) {
+            part.close();
+        }
+    }
+    
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Игнорируем: временный файл
+        }
+        spillFiles.remove(file);
+    }
+    
+    /**
+     * Ключ строки: значение колонки или список значений составного ключа; null, если в ключе есть null
+     */
+    private static Object key(Row row, int[] keys) {
+        if (keys.length == 1) {
+            return row.getValue(keys[0]);
+        }
+        Object[] values = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = row.getValue(keys[i]);
+            if (values[i] == null) {
+                return null;
+            }
+        }
+        return Arrays.asList(values);
+    }
+    
+    /**
+     * Партиция ключа на уровне depth: очередные PARTITION_BITS старших бит перемешанного хеша
+     * (HashMap внутри партиции опирается на младшие биты hashCode)
+     */
+    private static int partitionOf(Object key, int depth) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return (hash >>> (32 - PARTITION_BITS * (depth + 1))) & (PARTITIONS - 1);
+    }
+        
+    /**
+     * Грубая оценка места строки в куче: объект строки, список значений, ссылка в корзине
+     */
+    private static long estimateSize(Row row) {
+        long size = 64;
+        for (int i = 0; i < row.size(); i++) {
+            size += 8 + estimateSize(row.getValue(i));
+        }
+        return size;
+    }
+    
+    private static long estimateSize(Object value) {
+        if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        }
+        if (value instanceof List) {
+            long size = 40;
+            for (Object item : (List<?>) value) {
+                size += 8 + estimateSize(item);
+            }
+            return size;
+        }
+        return 16;
+    }
+    
+    /**
+     * Источник строк: executor или партиция на диске; null - строки кончились
+     */
+    private interface RowSource {
+        Row next();
+    }
+    
+    /**
+     * Пара партиций build и probe с одинаковыми хешами ключей; depth - уровень следующего деления
+     */
+    private static final class Partition {
+        final Path build;
+        final Path probe;
+        final int depth;
+        
+        Partition(Path build, Path probe, int depth) {
+            this.build = build;
+            this.probe = probe;
+            this.depth = depth;
+        }
+    }
+    
+    /**
+     * Запись строк в файл партиции: число значений, затем значения с тегом типа
+     */
+    private static final class SpillWriter {
+        final Path path;
+        final DataOutputStream out;
+        long rows;
+        
+        SpillWriter(Path path) throws IOException {
+            this.path = path;
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), IO_BUFFER_SIZE));
+        }
+        
+        void write(Row row) {
+            try {
+                out.writeShort(row.size());
+                for (int i = 0; i < row.size(); i++) {
+                    Object value = row.getValue(i);
+                    if (value == null) {
+                        out.writeByte(VALUE_NULL);
+                    } else if (value instanceof Integer) {
+                        out.writeByte(VALUE_INTEGER);
+                        out.writeInt((Integer) value);
+                    } else if (value instanceof String) {
+                        out.writeByte(VALUE_STRING);
+                        out.writeUTF((String) value);
+                    } else {
+                        throw new RuntimeException("Unsupported value type in join: "
+                                + value.getClass().getSimpleName());
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write hash join partition", e);
+            }
+            rows++;
+        }
+        
+        void close() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write hash join partition", e);
+            }
+        }
+    }
+    
+    /**
+     * Чтение строк партиции по одной
+     */
+    private static final class SpillReader implements AutoCloseable {
+        final Path path;
+        final DataInputStream in;
+        
+        SpillReader(Path path) {
+            this.path = path;
+            try {
+                this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), IO_BUFFER_SIZE));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open hash join partition", e);
+            }
+        }
+        
+        Row read() {
+            try {
+                int high = in.read();
+                if (high < 0) {
+                    return null;
+                }
+                int count = (high << 8) | in.readUnsignedByte();
+                Row row = new Row(count);
+                for (int i = 0; i < count; i++) {
+                    int tag = in.readUnsignedByte();
+                    if (tag == VALUE_NULL) {
+                        row.addValue(null);
+                    } else if (tag == VALUE_INTEGER) {
+                        row.addValue(in.readInt());
+                    } else if (tag == VALUE_STRING) {
+                        row.addValue(in.readUTF());
+                    } else {
+                        throw new IOException("Corrupted hash join partition: unknown value tag " + tag);
+                    }
+                }
+                return row;
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read hash join partition", e);
+            }
+        }
+        
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Игнорируем
+            }
+        }
+    }
+}
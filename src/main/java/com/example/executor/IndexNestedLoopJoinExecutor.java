@@ -0,0 +1,267 @@
+package com.example.executor;
+
+import com.example.buffer.BufferManager;
+import com.example.index.BPlusTree;
+import com.example.index.IndexManager;
+import com.example.index.IntBPlusTree;
+import com.example.storage.Page;
+import com.example.storage.StorageManager;
+import com.example.storage.TableFile;
+import com.example.storage.TableMetadata;
+import com.example.storage.TupleCodec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Predicate;
+
+/**
+ * Index nested-loop join - внутреннее соединение, в котором для строк внешнего входа
+ * парные строки внутренней таблицы ищутся по B+Tree индексу на ее ключевой колонке.
+ *
+ * Внешние строки обрабатываются пакетами по BATCH_ROWS: пакет сортируется по ключу, и каждый
+ * различный ключ ищется в индексе один раз, по возрастанию - спуски идут по соседним листьям.
+ * Найденные адреса кортежей сортируются по (pageId, slotId), так что каждая страница таблицы
+ * закрепляется один раз на пакет. По INTEGER-индексу ключи ищутся одним переставляемым
+ * курсором IntBPlusTree - без списков IndexEntry на каждый ключ. Условие на саму внутреннюю таблицу (innerFilter) проверяется
+ * после чтения кортежа; составной ключ - индекс по одной колонке, остальные пары сравниваются.
+ * Строка результата - колонки левого входа, затем правого (innerLeft - внутренняя таблица слева).
+ */
+public class IndexNestedLoopJoinExecutor implements Executor {
+    /** Внешних строк в пакете */
+    static final int BATCH_ROWS = ColumnBatch.CAPACITY;
+    
+    private Executor outer;
+    private StorageManager storageManager;
+    private BufferManager bufferManager;
+    private IndexManager indexManager;
+    private String innerTable;
+    private String indexName;
+    private int[] outerKeys;
+    private int[] innerKeys;
+    private int indexKey;
+    private Predicate<Row> innerFilter;
+    private boolean innerLeft;
+    
+    private BPlusTree index;
+    /** Курсор для поиска ключей в INTEGER-индексе (null - индекс другого типа) */
+    private IntBPlusTree.IntCursor intLookup;
+    private TableMetadata innerMetadata;
+    private TableFile innerFile;
+    private List<Row> output;
+    private int position;
+    private boolean outerDone;
+    private boolean isOpen;
+    
+    /**
+     * outerKeys, innerKeys - номера ключевых колонок во внешних и внутренних строках (попарно равны);
+     * indexKey - пара, по внутренней колонке которой построен индекс indexName;
+     * innerFilter - условие на строки внутренней таблицы (null - нет)
+     */
+    public IndexNestedLoopJoinExecutor(Executor outer,
+                                       StorageManager storageManager,
+                                       BufferManager bufferManager,
+                                       IndexManager indexManager,
+                                       String innerTable,
+                                       String indexName,
+                                       int[] outerKeys,
+                                       int[] innerKeys,
+                                       int indexKey,
+                                       Predicate<Row> innerFilter,
+                                       boolean innerLeft) {
+        this.outer = outer;
+        this.storageManager = storageManager;
+        this.bufferManager = bufferManager;
+        this.indexManager = indexManager;
+        this.innerTable = innerTable;
+        this.indexName = indexName;
+        this.outerKeys = outerKeys;
+        this.innerKeys = innerKeys;
+        this.indexKey = indexKey;
+        this.innerFilter = innerFilter;
+        this.innerLeft = innerLeft;
+    }
+    
+    @Override
+    public void open() {
+        this.index = indexManager.getIndex(indexName);
+        if (index == null) {
+            throw new RuntimeException("Index not found: " + indexName);
+        }
+        this.intLookup = index instanceof IntBPlusTree ? ((IntBPlusTree) index).cursor() : null;
+        this.innerMetadata = storageManager.getTableMetadata(innerTable);
+        this.innerFile = storageManager.getTableFile(innerTable);
+        this.output = new ArrayList<>();
+        this.position = 0;
+        this.outerDone = false;
+        // Открыт до outer.open(): close() после ошибки закроет внешний вход
+        this.isOpen = true;
+        outer.open();
+    }
+    
+    @Override
+    public Row next() {
+        if (!isOpen) {
+            return null;
+        }
+        
+        while (position >= output.size()) {
+            if (outerDone) {
+                return null;
+            }
+            output.clear();
+            position = 0;
+            joinBatch(readBatch());
+        }
+        return output.get(position++);
+    }
+    
+    @Override
+    public void close() {
+        if (!isOpen) {
+            return;
+        }
+        outer.close();
+        output = null;
+        intLookup = null;
+        isOpen = false;
+    }
+    
+    /**
+     * Следующие внешние строки с непустым ключом индекса, не больше BATCH_ROWS
+     */
+    private List<Row> readBatch() {
+        List<Row> batch = new ArrayList<>(BATCH_ROWS);
+        while (batch.size() < BATCH_ROWS) {
+            Row row = outer.next();
+            if (row == null) {
+                outerDone = true;
+                break;
+            }
+            if (row.getValue(outerKeys[indexKey]) != null) {
+                batch.add(row);
+            }
+        }
+        return batch;
+    }
+    
+    /**
+     * Соединить пакет внешних строк: поиск различных ключей в индексе по возрастанию,
+     * затем чтение найденных кортежей в порядке адресов
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void joinBatch(List<Row> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int outerKey = outerKeys[indexKey];
+        batch.sort((a, b) -> ((Comparable) a.getValue(outerKey)).compareTo(b.getValue(outerKey)));
+        
+        // Группы строк с одинаковым ключом: groupStart[g] - первая строка группы g в пакете
+        int[] groupStart = new int[batch.size() + 1];
+        int groups = 0;
+        // Адрес кортежа и номер группы в одном long (packRid): сортировка чисел - сортировка по адресу
+        long[] rids = new long[16];
+        int ridCount = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Object key = batch.get(i).getValue(outerKey);
+            if (i > 0 && key.equals(batch.get(i - 1).getValue(outerKey))) {
+                continue;
+            }
+            groupStart[groups] = i;
+            BPlusTree.Cursor cursor = intLookup != null && key instanceof Integer
+                    ? intLookup.seek((Integer) key, (Integer) key)
+                    : index.cursor((Comparable<?>) key, true, (Comparable<?>) key, true);
+            while (cursor.next()) {
+                if (ridCount == rids.length) {
+                    rids = Arrays.copyOf(rids, ridCount * 2);
+                }
+                rids[ridCount++] = packRid(cursor.getPageId(), cursor.getSlotId(), groups);
+            }
+            groups++;
+        }
+        groupStart[groups] = batch.size();
+        Arrays.sort(rids, 0, ridCount);
+        
+        int pinnedPageId = -1;
+        Page page = null;
+        try {
+            for (int r = 0; r < ridCount; r++) {
+                int pageId = (int) (rids[r] >>> 32);
+                int slotId = (int) (rids[r] >>> 16) & 0xFFFF;
+                int group = (int) rids[r] & 0xFFFF;
+                if (pageId != pinnedPageId) {
+                    if (page != null) {
+                        bufferManager.unpinPage(innerFile, pinnedPageId, false);
+                        page = null;
+                    }
+                    page = bufferManager.pinPage(innerFile, pageId);
+                    pinnedPageId = pageId;
+                }
+                // Удаленные после построения индекса кортежи пропускаем
+                Row inner = readRow(page, slotId);
+                if (inner == null) {
+                    continue;
+                }
+                if (innerFilter != null && !innerFilter.test(inner)) {
+                    continue;
+                }
+                for (int i = groupStart[group]; i < groupStart[group + 1]; i++) {
+                    Row outerRow = batch.get(i);
+                    if (keysMatch(outerRow, inner)) {
+                        output.add(innerLeft ? Row.concat(inner, outerRow) : Row.concat(outerRow, inner));
+                    }
+                }
+            }
+        } finally {
+            if (page != null) {
+                bufferManager.unpinPage(innerFile, pinnedPageId, false);
+            }
+        }
+    }
+    
+    /**
+     * Адрес кортежа и номер группы пакета в неотрицательном long: pageId - старшие 32 бита,
+     * slotId и группа - по 16 младших. Слотов в странице и групп в пакете (не больше
+     * BATCH_ROWS) меньше 2^16, pageId неотрицателен - порядок чисел совпадает с порядком адресов
+     */
+    static long packRid(int pageId, int slotId, int group) {
+        if (pageId < 0 || slotId < 0 || slotId > 0xFFFF || group < 0 || group > 0xFFFF) {
+            throw new RuntimeException("Row address out of range for index join: page " + pageId
+                    + ", slot " + slotId + ", group " + group);
+        }
+        return ((long) pageId << 32) | ((long) slotId << 16) | group;
+    }
+    
+    /**
+     * Декодировать кортеж под shared-латчем страницы или null, если он удален
+     */
+    private Row readRow(Page page, int slot) {
+        Lock latch = page.getLatch().readLock();
+        latch.lock();
+        try {
+            ByteBuffer record = page.getRecordBuffer(slot);
+            return record == null ? null : new Row(TupleCodec.decode(innerMetadata, record));
+        } finally {
+            latch.unlock();
+        }
+    }
+    
+    /**
+     * Равны ли остальные пары составного ключа (пара индекса уже совпала при поиске)
+     */
+    private boolean keysMatch(Row outerRow, Row inner) {
+        for (int k = 0; k < outerKeys.length; k++) {
+            if (k == indexKey) {
+                continue;
+            }
+            Object value = outerRow.getValue(outerKeys[k]);
+            if (value == null || !value.equals(inner.getValue(innerKeys[k]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
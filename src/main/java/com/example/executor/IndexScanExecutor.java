@@ -2,43 +2,70 @@ package com.example.executor;
 
 import com.example.buffer.BufferManager;
 import com.example.index.BPlusTree;
+import com.example.index.IndexManager;
 import com.example.storage.Page;
 import com.example.storage.TableFile;
 import com.example.storage.TableMetadata;
 import com.example.storage.StorageManager;
+import com.example.storage.TupleCodec;
 
 import java.nio.ByteBuffer;
-import java.util.List;
+import java.util.concurrent.locks.Lock;
 
 /**
- * IndexScan executor - сканирование через индекс
+ * IndexScan executor - сканирование через индекс: точный поиск или диапазон ключей
+ * между нижней и верхней границами (null - без границы) по цепочке листов.
+ * Адреса кортежей берутся из курсора индекса по мере вызовов next, а не списком заранее.
+ * По INTEGER-индексу курсор - IntBPlusTree.IntCursor: границы и ключи листа сравниваются как int.
  */
 public class IndexScanExecutor implements Executor {
     private StorageManager storageManager;
     private BufferManager bufferManager;
+    private IndexManager indexManager;
     private String tableName;
     private String indexName;
     private String columnName;
-    private Object value;
+    private Object lowerBound;
+    private boolean lowerInclusive;
+    private Object upperBound;
+    private boolean upperInclusive;
     private BPlusTree index;
     private TableMetadata metadata;
     private TableFile tableFile;
-    private List<BPlusTree.IndexEntry> indexEntries;
-    private int currentIndex;
+    private BPlusTree.Cursor cursor;
     private boolean isOpen;
     
     public IndexScanExecutor(StorageManager storageManager,
                             BufferManager bufferManager,
+                            IndexManager indexManager,
                             String tableName,
                             String indexName,
                             String columnName,
                             Object value) {
+        this(storageManager, bufferManager, indexManager, tableName, indexName, columnName,
+                value, true, value, true);
+    }
+    
+    public IndexScanExecutor(StorageManager storageManager,
+                            BufferManager bufferManager,
+                            IndexManager indexManager,
+                            String tableName,
+                            String indexName,
+                            String columnName,
+                            Object lowerBound,
+                            boolean lowerInclusive,
+                            Object upperBound,
+                            boolean upperInclusive) {
         this.storageManager = storageManager;
         this.bufferManager = bufferManager;
+        this.indexManager = indexManager;
         this.tableName = tableName;
         this.indexName = indexName;
         this.columnName = columnName;
-        this.value = value;
+        this.lowerBound = lowerBound;
+        this.lowerInclusive = lowerInclusive;
+        this.upperBound = upperBound;
+        this.upperInclusive = upperInclusive;
     }
     
     @Override
@@ -46,11 +73,7 @@ public class IndexScanExecutor implements Executor {
         this.metadata = storageManager.getTableMetadata(tableName);
         this.tableFile = storageManager.getTableFile(tableName);
         
-        // Загружаем индекс через IndexManager
-        // IndexManager должен быть передан извне, но для упрощения создаем новый
-        // В реальной системе это было бы через dependency injection
-        com.example.index.IndexManager indexManager = 
-            new com.example.index.IndexManager("data");
+        // Страницы индекса читаются через общий буферный менеджер
         this.index = indexManager.getIndex(indexName);
         
         if (this.index == null) {
@@ -62,85 +85,71 @@ public class IndexScanExecutor implements Executor {
             throw new RuntimeException("Index not found: " + indexName);
         }
         
-        // Выполняем поиск по индексу
-        @SuppressWarnings("unchecked")
-        List<BPlusTree.IndexEntry> entries = index.search((Comparable<?>) value);
-        this.indexEntries = entries;
-        this.currentIndex = 0;
+        // Курсор встает на первый ключ диапазона; листы читаются лениво в next()
+        this.cursor = index.cursor((Comparable<?>) lowerBound, lowerInclusive,
+                (Comparable<?>) upperBound, upperInclusive);
         this.isOpen = true;
     }
     
     @Override
     public Row next() {
-        if (!isOpen || currentIndex >= indexEntries.size()) {
+        if (!isOpen) {
             return null;
         }
         
-        BPlusTree.IndexEntry entry = indexEntries.get(currentIndex++);
-        
-        // Загружаем страницу и читаем строку
-        Page page = bufferManager.getPage(tableFile, entry.getPageId());
-        return readRowFromPage(page, entry.getSlotId());
+        while (cursor.next()) {
+            int pageId = cursor.getPageId();
+            
+            // Загружаем страницу и читаем строку; удаленные кортежи пропускаем.
+            // Строка декодируется целиком, поэтому страницу сразу отпускаем
+            Page page = bufferManager.pinPage(tableFile, pageId);
+            Row row;
+            try {
+                row = readRowFromPage(page, cursor.getSlotId());
+            } finally {
+                bufferManager.unpinPage(tableFile, pageId, false);
+            }
+            if (row != null) {
+                return row;
+            }
+        }
+        return null;
     }
     
     @Override
     public void close() {
         this.isOpen = false;
-        this.indexEntries = null;
+        this.cursor = null;
     }
     
-    private Row readRowFromPage(Page page, int slot) {
-        ByteBuffer buffer = page.getBuffer();
-        buffer.rewind();
-        
-        int rowCount = buffer.getInt();
-        if (slot >= rowCount) {
-            return null;
-        }
-        
-        int offset = 4 + slot * estimateRowSize();
-        buffer.position(offset);
-        
-        Row row = new Row();
-        for (TableMetadata.Column col : metadata.getColumns()) {
-            Object val = readValue(buffer, col.getType());
-            row.addValue(val);
+    /**
+     * Собрать адреса всех кортежей диапазона в битовую карту (источник для BitmapHeapScan);
+     * страницы таблицы при этом не читаются
+     */
+    RidBitmap collectRids() {
+        open();
+        try {
+            RidBitmap bitmap = new RidBitmap();
+            while (cursor.next()) {
+                bitmap.add(cursor.getPageId(), cursor.getSlotId());
+            }
+            return bitmap;
+        } finally {
+            close();
         }
-        
-        return row;
     }
     
-    private Object readValue(ByteBuffer buffer, String type) {
-        switch (type.toUpperCase()) {
-            case "INT":
-            case "INTEGER":
-                return buffer.getInt();
-            case "VARCHAR":
-            case "STRING":
-                int len = buffer.getInt();
-                byte[] bytes = new byte[len];
-                buffer.get(bytes);
-                return new String(bytes);
-            default:
+    private Row readRowFromPage(Page page, int slot) {
+        Lock latch = page.getLatch().readLock();
+        latch.lock();
+        try {
+            ByteBuffer record = page.getRecordBuffer(slot);
+            if (record == null) {
                 return null;
-        }
-    }
-    
-    private int estimateRowSize() {
-        int size = 0;
-        for (TableMetadata.Column col : metadata.getColumns()) {
-            switch (col.getType().toUpperCase()) {
-                case "INT":
-                case "INTEGER":
-                    size += 4;
-                    break;
-                case "VARCHAR":
-                case "STRING":
-                    size += 4 + 100;
-                    break;
             }
+            return new Row(TupleCodec.decode(metadata, record));
+        } finally {
+            latch.unlock();
         }
-        return size;
     }
 }
-
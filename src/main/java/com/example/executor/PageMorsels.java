@@ -0,0 +1,56 @@
+package com.example.executor;
+
+import com.example.storage.TableFile;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Раздача страниц таблицы параллельным сканированиям порциями (morsel) по нескольку
+ * страниц подряд. Порции берутся по мере готовности: быстрый поток обработает больше
+ * порций, чем медленный, и никто не простаивает, пока остались страницы.
+ *
+ * Список страниц фиксируется при reset (в начале прохода); сами порции выдаются без блокировок.
+ */
+class PageMorsels {
+    /** Наибольшая порция, страниц */
+    static final int MAX_MORSEL_PAGES = 64;
+    
+    private final TableFile tableFile;
+    private final int workers;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile List<Integer> pageIds;
+    private volatile int morselPages;
+    
+    PageMorsels(TableFile tableFile, int workers) {
+        this.tableFile = tableFile;
+        this.workers = workers;
+    }
+    
+    /**
+     * Начать новый проход: снимок списка страниц и раздача с начала.
+     * Порция - не больше восьмой части доли одного потока, чтобы хвост делился поровну.
+     */
+    void reset() {
+        List<Integer> ids = tableFile.getPageIds();
+        this.morselPages = Math.max(1, Math.min(MAX_MORSEL_PAGES, ids.size() / (workers * 8)));
+        this.pageIds = ids;
+        next.set(0);
+    }
+    
+    List<Integer> getPageIds() {
+        return pageIds;
+    }
+    
+    int getMorselPages() {
+        return morselPages;
+    }
+    
+    /**
+     * Индекс первой страницы следующей порции (в getPageIds) или не меньше размера
+     * списка, если страницы кончились
+     */
+    int claim() {
+        return next.getAndAdd(morselPages);
+    }
+}
@@ -2,32 +2,23 @@ package com.example.executor;
 
 import com.example.storage.TableMetadata;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 /**
- * Project executor - проекция колонок
+ * Project executor - проекция колонок (номера колонок разрешаются один раз, см. ExpressionCompiler)
  */
 public class ProjectExecutor implements Executor {
     private Executor child;
     private List<String> columns;
-    private List<Integer> columnIndices;
+    private UnaryOperator<Row> projection;
     private boolean isOpen;
     
     public ProjectExecutor(Executor child, List<String> columns, 
                           TableMetadata metadata) {
         this.child = child;
         this.columns = columns;
-        this.columnIndices = new ArrayList<>();
-        
-        // Определяем индексы колонок
-        for (String colName : columns) {
-            int index = metadata.getColumnIndex(colName);
-            if (index == -1) {
-                throw new RuntimeException("Column not found: " + colName);
-            }
-            columnIndices.add(index);
-        }
+        this.projection = ExpressionCompiler.compileProjection(columns, metadata);
     }
     
     @Override
@@ -47,13 +38,8 @@ public class ProjectExecutor implements Executor {
             return null;
         }
         
-        // Создаем новую строку только с нужными колонками
-        Row outputRow = new Row();
-        for (int index : columnIndices) {
-            outputRow.addValue(inputRow.getValue(index));
-        }
-        
-        return outputRow;
+        // Новая строка только с нужными колонками
+        return projection.apply(inputRow);
     }
     
     @Override
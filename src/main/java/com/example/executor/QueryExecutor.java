@@ -1,35 +1,80 @@
 package com.example.executor;
 
 import com.example.buffer.BufferManager;
+import com.example.catalog.StatisticsCollector;
+import com.example.catalog.TableStatistics;
 import com.example.index.BPlusTree;
+import com.example.index.IndexBuilder;
 import com.example.index.IndexManager;
 import com.example.sql.optimizer.PhysicalPlan;
 import com.example.storage.Page;
 import com.example.storage.StorageManager;
 import com.example.storage.TableFile;
 import com.example.storage.TableMetadata;
+import com.example.storage.TupleCodec;
+import com.example.wal.LogRecord;
+import com.example.wal.WriteAheadLog;
 
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 
 /**
- * Главный исполнитель запросов
+ * Главный исполнитель запросов.
+ *
+ * Если задан журнал, изменения данных сначала пишутся в WAL: INSERT считается
+ * выполненным, когда его записи сброшены на диск (с group commit), а сами страницы
+ * и индексы записываются позже фоновым писателем и контрольной точкой.
+ * Вставки в индексы не журналируются: после падения индексы затронутых таблиц
+ * перестраиваются по таблицам (см. WalRecovery).
  */
 public class QueryExecutor {
     private StorageManager storageManager;
     private BufferManager bufferManager;
     private IndexManager indexManager;
+    private WriteAheadLog wal;
     private ExecutorFactory executorFactory;
+    private IndexBuilder indexBuilder;
+    private boolean vectorized = true;
     
     public QueryExecutor(StorageManager storageManager,
                         BufferManager bufferManager,
                         IndexManager indexManager) {
+        this(storageManager, bufferManager, indexManager, null);
+    }
+    
+    public QueryExecutor(StorageManager storageManager,
+                        BufferManager bufferManager,
+                        IndexManager indexManager,
+                        WriteAheadLog wal) {
+        this.wal = wal;
         this.storageManager = storageManager;
         this.bufferManager = bufferManager;
         this.indexManager = indexManager;
         this.executorFactory = new ExecutorFactory(storageManager, 
                                                   bufferManager, indexManager);
+        this.indexBuilder = new IndexBuilder(bufferManager);
+    }
+    
+    /**
+     * Параметры построения индексов (память под сортировку, заполнение страниц)
+     */
+    public void setIndexBuilder(IndexBuilder indexBuilder) {
+        this.indexBuilder = indexBuilder;
+    }
+    
+    /**
+     * Выполнять SELECT векторными executors (пакетами строк) или построчно
+     */
+    public void setVectorized(boolean vectorized) {
+        this.vectorized = vectorized;
+    }
+    
+    /**
+     * Память под хеш-таблицу одного соединения (JOIN), байт
+     */
+    public void setJoinMemoryBytes(long joinMemoryBytes) {
+        executorFactory.setJoinMemoryBytes(joinMemoryBytes);
     }
     
     public QueryResult execute(PhysicalPlan plan) {
@@ -40,6 +85,8 @@ public class QueryExecutor {
                 return executeCreateIndex(plan);
             case DROP_TABLE:
                 return executeDropTable(plan);
+            case ANALYZE:
+                return executeAnalyze(plan);
             case INSERT:
                 return executeInsert(plan);
             case SELECT:
@@ -56,6 +103,10 @@ public class QueryExecutor {
             throw new RuntimeException("Table does not exist: " + tableName);
         }
         
+        // Страницы таблицы в буфере больше не нужны и не должны сбрасываться. Выбрасываем
+        // первыми: если таблицу еще читают, DROP падает, ничего не удалив
+        bufferManager.discardPages(storageManager.getTableFile(tableName));
+        
         // Удаляем все индексы для этой таблицы
         indexManager.dropIndexesForTable(tableName);
         
@@ -65,6 +116,24 @@ public class QueryExecutor {
         return new QueryResult(true, "Table dropped: " + tableName);
     }
     
+    /**
+     * ANALYZE: собрать статистику таблицы и сохранить ее в каталоге для оптимизатора
+     */
+    private QueryResult executeAnalyze(PhysicalPlan plan) {
+        String tableName = plan.getTableName();
+        
+        if (!storageManager.tableExists(tableName)) {
+            throw new RuntimeException("Table does not exist: " + tableName);
+        }
+        
+        TableStatistics statistics = new StatisticsCollector(bufferManager).collect(
+                storageManager.getTableFile(tableName), storageManager.getTableMetadata(tableName));
+        storageManager.getCatalog().setStatistics(tableName, statistics);
+        
+        return new QueryResult(true, "Table analyzed: " + tableName + " (" + statistics.getRowCount()
+                + " rows, " + statistics.getPageCount() + " pages)");
+    }
+    
     private QueryResult executeCreateIndex(PhysicalPlan plan) {
         if (plan.getColumns().isEmpty()) {
             throw new RuntimeException("Invalid CREATE INDEX: missing index name or column");
@@ -83,81 +152,31 @@ public class QueryExecutor {
             throw new RuntimeException("Column does not exist: " + columnName);
         }
         
-        indexManager.createIndex(indexName, tableName, columnName);
-        
-        // Построить индекс для существующих данных
-        buildIndexForExistingData(indexName, tableName, columnName);
+        long lsn;
+        beginChange();
+        try {
+            indexManager.createIndex(indexName, tableName, metadata.getColumn(columnName));
+            // Индекс, созданный после контрольной точки, при восстановлении перестраивается по таблице
+            lsn = logRecord(LogRecord.createIndex(indexName));
+            
+            // Построить индекс для существующих данных
+            buildIndexForExistingData(indexName, tableName);
+        } finally {
+            endChange();
+        }
+        commit(lsn);
         
         return new QueryResult(true, "Index created: " + indexName);
     }
     
-    private void buildIndexForExistingData(String indexName, String tableName, String columnName) {
+    private void buildIndexForExistingData(String indexName, String tableName) {
         BPlusTree index = indexManager.getIndex(indexName);
         if (index == null) {
             return;
         }
         
-        TableMetadata metadata = storageManager.getTableMetadata(tableName);
-        TableFile tableFile = storageManager.getTableFile(tableName);
-        List<Integer> pageIds = tableFile.getPageIds();
-        int columnIndex = metadata.getColumnIndex(columnName);
-        
-        for (int pageId : pageIds) {
-            Page page = bufferManager.getPage(tableFile, pageId);
-            ByteBuffer buffer = page.getBuffer();
-            buffer.rewind();
-            
-            int rowCount = buffer.getInt();
-            for (int slot = 0; slot < rowCount; slot++) {
-                int offset = 4 + slot * estimateRowSize(metadata);
-                buffer.position(offset);
-                
-                // Пропускаем колонки до нужной
-                for (int i = 0; i < columnIndex; i++) {
-                    skipValue(buffer, metadata.getColumns().get(i).getType());
-                }
-                
-                // Читаем значение для индекса
-                Object key = readValue(buffer, metadata.getColumns().get(columnIndex).getType());
-                if (key != null) {
-                    @SuppressWarnings("unchecked")
-                    Comparable<?> compKey = (Comparable<?>) key;
-                    index.insert(compKey, pageId, slot);
-                }
-            }
-        }
-        
-        index.saveIndex();
-    }
-    
-    private void skipValue(ByteBuffer buffer, String type) {
-        switch (type.toUpperCase()) {
-            case "INT":
-            case "INTEGER":
-                buffer.getInt();
-                break;
-            case "VARCHAR":
-            case "STRING":
-                int len = buffer.getInt();
-                buffer.position(buffer.position() + len);
-                break;
-        }
-    }
-    
-    private Object readValue(ByteBuffer buffer, String type) {
-        switch (type.toUpperCase()) {
-            case "INT":
-            case "INTEGER":
-                return buffer.getInt();
-            case "VARCHAR":
-            case "STRING":
-                int len = buffer.getInt();
-                byte[] bytes = new byte[len];
-                buffer.get(bytes);
-                return new String(bytes);
-            default:
-                return null;
-        }
+        indexBuilder.build(index, storageManager.getTableFile(tableName),
+                storageManager.getTableMetadata(tableName));
     }
     
     private QueryResult executeCreateTable(PhysicalPlan plan) {
@@ -166,6 +185,7 @@ public class QueryExecutor {
             metadata.addColumn(col.getName(), col.getType());
         }
         storageManager.createTable(metadata);
+        commit(logRecord(LogRecord.createTable(plan.getTableName())));
         return new QueryResult(true, "Table created: " + plan.getTableName());
     }
     
@@ -173,140 +193,132 @@ public class QueryExecutor {
         TableMetadata metadata = storageManager.getTableMetadata(plan.getTableName());
         TableFile tableFile = storageManager.getTableFile(plan.getTableName());
         
-        // Находим или создаем страницу для вставки
-        List<Integer> pageIds = tableFile.getPageIds();
-        Page page;
-        int pageId;
-        int slotId;
-        
-        if (pageIds.isEmpty()) {
-            pageId = tableFile.allocatePage();
-            page = new Page(pageId);
-            bufferManager.addPage(tableFile, page);
-        } else {
-            pageId = pageIds.get(pageIds.size() - 1);
-            page = bufferManager.getPage(tableFile, pageId);
-        }
-        
-        // Записываем строку в страницу
-        ByteBuffer buffer = page.getBuffer();
-        buffer.rewind();
-        
-        // Читаем количество строк
-        int rowCount = 0;
-        if (buffer.remaining() >= 4) {
-            rowCount = buffer.getInt();
+        byte[] record = TupleCodec.encode(metadata, plan.getInsertValues());
+        if (record.length > Page.MAX_RECORD_SIZE) {
+            throw new RuntimeException("Row too large: " + record.length + " bytes, max "
+                    + Page.MAX_RECORD_SIZE);
         }
         
-        // Вычисляем offset для новой строки
-        int rowSize = estimateRowSize(metadata);
-        int offset = 4 + rowCount * rowSize;
-        
-        if (offset + rowSize > Page.PAGE_SIZE) {
-            // Сохраняем текущую страницу
-            bufferManager.markDirty(tableFile, pageId);
-            tableFile.savePage(page);
+        int pageId;
+        int slotId = -1;
+        long[] lsn = new long[1];
+        // Вставка в таблицу и индексы целиком попадает по одну сторону от контрольной точки
+        beginChange();
+        try {
+            // Вставляем в последнюю страницу таблицы, при нехватке места - в новую.
+            // Вставки в одну таблицу сериализуются, чтобы две сессии не делили последнюю страницу
+            synchronized (tableFile) {
+                List<Integer> pageIds = tableFile.getPageIds();
+                Page page = null;
+                if (!pageIds.isEmpty()) {
+                    page = bufferManager.pinPage(tableFile, pageIds.get(pageIds.size() - 1));
+                    slotId = insertIntoPage(tableFile, page, plan.getTableName(), record, lsn);
+                }
+                if (slotId < 0) {
+                    page = bufferManager.newPage(tableFile);
+                    slotId = insertIntoPage(tableFile, page, plan.getTableName(), record, lsn);
+                }
+                pageId = page.getPageId();
+            }
             
-            // Нужна новая страница
-            pageId = tableFile.allocatePage();
-            page = new Page(pageId);
-            bufferManager.addPage(tableFile, page);
-            buffer = page.getBuffer();
-            buffer.rewind();
-            buffer.putInt(0);
-            rowCount = 0;
-            offset = 4;
-        }
-        
-        // Записываем строку
-        buffer.position(offset);
-        int colIndex = 0;
-        for (TableMetadata.Column col : metadata.getColumns()) {
-            Object value = plan.getInsertValues().get(colIndex++);
-            writeValue(buffer, col.getType(), value);
+            // Обновляем индексы
+            updateIndexes(plan.getTableName(), pageId, slotId, metadata, plan.getInsertValues());
+        } finally {
+            endChange();
         }
         
-        // Обновляем счетчик строк
-        buffer.position(0);
-        buffer.putInt(rowCount + 1);
-        
-        slotId = rowCount;
-        
-        // Сохраняем страницу
-        tableFile.savePage(page);
-        bufferManager.markDirty(tableFile, pageId);
-        
-        // Убеждаемся, что страница в буфере
-        bufferManager.pinPage(tableFile, pageId);
-        
-        // Обновляем индексы
-        updateIndexes(plan.getTableName(), pageId, slotId, metadata, plan.getInsertValues());
+        // Ждем сброса журнала
+        commit(lsn[0]);
         
         return new QueryResult(true, "1 row inserted");
     }
     
+    /**
+     * Вставить кортеж в закрепленную страницу и записать вставку в журнал под exclusive-латчем
+     * страницы (читатели той же страницы держат его shared). Страница открепляется
+     * и при ошибке; грязной она остается в буфере - на диск ее запишут фоновый писатель,
+     * контрольная точка или вытеснение. Возвращает слот или -1, если места нет; LSN записи - в lsn[0].
+     */
+    private int insertIntoPage(TableFile tableFile, Page page, String tableName, byte[] record, long[] lsn) {
+        boolean changed = false;
+        Lock latch = page.getLatch().writeLock();
+        latch.lock();
+        try {
+            int slotId = page.insertRecord(record);
+            if (slotId < 0) {
+                return -1;
+            }
+            changed = true;
+            lsn[0] = logRecord(LogRecord.heapInsert(tableName, page.getPageId(), slotId, record));
+            if (lsn[0] > 0) {
+                page.setLsn(lsn[0]);
+            }
+            return slotId;
+        } finally {
+            latch.unlock();
+            bufferManager.unpinPage(tableFile, page.getPageId(), changed);
+        }
+    }
+    
     private QueryResult executeSelect(PhysicalPlan plan) {
-        TableMetadata metadata = storageManager.getTableMetadata(plan.getTableName());
-        Executor executor = executorFactory.createExecutor(plan.getRootOperator(), metadata);
+        // Таблица запроса или схема соединения таблиц
+        TableMetadata metadata = executorFactory.schemaOf(plan.getRootOperator());
+        Executor executor = vectorized
+            ? new BatchRowAdapter(executorFactory.createBatchExecutor(plan.getRootOperator(), metadata))
+            : executorFactory.createExecutor(plan.getRootOperator(), metadata);
         
-        executor.open();
+        // close() и при ошибке: иначе страницы, закрепленные сканированием, не освободятся
         List<Row> rows = new ArrayList<>();
-        Row row;
-        while ((row = executor.next()) != null) {
-            rows.add(row);
+        try {
+            executor.open();
+            Row row;
+            while ((row = executor.next()) != null) {
+                rows.add(row);
+            }
+        } finally {
+            executor.close();
         }
-        executor.close();
         
         return new QueryResult(true, rows, plan.getSelectColumns());
     }
     
     private void updateIndexes(String tableName, int pageId, int slotId,
                               TableMetadata metadata, List<Object> values) {
-        // Обновляем все индексы для этой таблицы
-        for (int i = 0; i < metadata.getColumns().size(); i++) {
-            TableMetadata.Column col = metadata.getColumns().get(i);
-            String indexName = tableName + "_" + col.getName() + "_idx";
-            BPlusTree index = indexManager.getIndex(indexName);
-            
-            if (index != null) {
-                Object key = values.get(i);
-                @SuppressWarnings("unchecked")
-                Comparable<?> compKey = (Comparable<?>) key;
-                index.insert(compKey, pageId, slotId);
+        // Обновляем все индексы этой таблицы из каталога, как бы они ни назывались
+        for (BPlusTree index : indexManager.getIndexesForTable(tableName)) {
+            int columnIndex = metadata.getColumnIndex(index.getColumnName());
+            if (columnIndex != -1) {
+                Comparable<?> key = (Comparable<?>) values.get(columnIndex);
+                index.insert(key, pageId, slotId);
             }
         }
-        indexManager.saveAll();
     }
     
-    private int estimateRowSize(TableMetadata metadata) {
-        int size = 0;
-        for (TableMetadata.Column col : metadata.getColumns()) {
-            switch (col.getType().toUpperCase()) {
-                case "INT":
-                case "INTEGER":
-                    size += 4;
-                    break;
-                case "VARCHAR":
-                case "STRING":
-                    size += 4 + 100; // Примерная длина
-                    break;
-            }
+    /**
+     * Добавить запись в журнал; возвращает ее LSN или 0, если журнал не ведется
+     */
+    private long logRecord(LogRecord record) {
+        return wal != null ? wal.append(record) : 0;
+    }
+    
+    private void beginChange() {
+        if (wal != null) {
+            wal.beginChange();
+        }
+    }
+    
+    private void endChange() {
+        if (wal != null) {
+            wal.endChange();
         }
-        return size;
     }
     
-    private void writeValue(ByteBuffer buffer, String type, Object value) {
-        switch (type.toUpperCase()) {
-            case "INT":
-            case "INTEGER":
-                buffer.putInt((Integer) value);
-                break;
-            case "VARCHAR":
-            case "STRING":
-                String str = value.toString();
-                buffer.putInt(str.length());
-                buffer.put(str.getBytes());
-                break;
+    /**
+     * Дождаться сброса журнала до lsn (group commit с другими сессиями)
+     */
+    private void commit(long lsn) {
+        if (wal != null && lsn > 0) {
+            wal.flush(lsn);
         }
     }
     
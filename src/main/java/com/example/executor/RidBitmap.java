@@ -0,0 +1,62 @@
+package com.example.executor;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Битовая карта адресов кортежей (pageId, slot): на каждую страницу - BitSet занятых слотов,
+ * страницы упорядочены по номеру. Карты разных индексов одной таблицы пересекаются (AND)
+ * и объединяются (OR) без сортировки адресов.
+ */
+class RidBitmap {
+    private final TreeMap<Integer, BitSet> pages = new TreeMap<>();
+    
+    void add(int pageId, int slot) {
+        pages.computeIfAbsent(pageId, id -> new BitSet()).set(slot);
+    }
+    
+    /**
+     * Оставить только адреса, которые есть и в other
+     */
+    void and(RidBitmap other) {
+        Iterator<Map.Entry<Integer, BitSet>> it = pages.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, BitSet> entry = it.next();
+            BitSet otherSlots = other.pages.get(entry.getKey());
+            if (otherSlots == null) {
+                it.remove();
+                continue;
+            }
+            entry.getValue().and(otherSlots);
+            if (entry.getValue().isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+    
+    /**
+     * Добавить все адреса other
+     */
+    void or(RidBitmap other) {
+        for (Map.Entry<Integer, BitSet> entry : other.pages.entrySet()) {
+            pages.computeIfAbsent(entry.getKey(), id -> new BitSet()).or(entry.getValue());
+        }
+    }
+    
+    boolean isEmpty() {
+        return pages.isEmpty();
+    }
+    
+    int pageCount() {
+        return pages.size();
+    }
+    
+    /**
+     * Страницы по возрастанию номера со слотами на каждой
+     */
+    Iterator<Map.Entry<Integer, BitSet>> pages() {
+        return pages.entrySet().iterator();
+    }
+}
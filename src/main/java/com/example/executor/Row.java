@@ -13,10 +13,31 @@ public class Row {
         this.values = new ArrayList<>();
     }
     
+    /**
+     * Пустая строка под capacity значений
+     */
+    public Row(int capacity) {
+        this.values = new ArrayList<>(capacity);
+    }
+    
     public Row(List<Object> values) {
         this.values = new ArrayList<>(values);
     }
     
+    /**
+     * Строка из значений first, затем second (строка соединения)
+     */
+    public static Row concat(Row first, Row second) {
+        Row row = new Row(first.size() + second.size());
+        for (int i = 0; i < first.size(); i++) {
+            row.addValue(first.getValue(i));
+        }
+        for (int i = 0; i < second.size(); i++) {
+            row.addValue(second.getValue(i));
+        }
+        return row;
+    }
+    
     public void addValue(Object value) {
         values.add(value);
     }
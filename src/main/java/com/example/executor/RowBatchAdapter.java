@@ -0,0 +1,67 @@
+package com.example.executor;
+
+import java.util.List;
+
+/**
+ * Векторный интерфейс над построчным executor (IndexScan и другие операторы без
+ * векторной версии): строки собираются в пакеты по ColumnBatch.CAPACITY
+ */
+public class RowBatchAdapter implements BatchExecutor {
+    private Executor child;
+    private List<String> columnTypes;
+    private boolean[] presentColumns;
+    private ColumnBatch batch;
+    private boolean isOpen;
+    
+    /**
+     * columnTypes - типы колонок строк, которые отдает child
+     */
+    public RowBatchAdapter(Executor child, List<String> columnTypes) {
+        this.child = child;
+        this.columnTypes = columnTypes;
+    }
+    
+    /**
+     * presentColumns - колонки, которые child заполняет; в остальных у строк null
+     */
+    RowBatchAdapter(Executor child, List<String> columnTypes, boolean[] presentColumns) {
+        this(child, columnTypes);
+        this.presentColumns = presentColumns;
+    }
+    
+    @Override
+    public void open() {
+        child.open();
+        batch = ColumnBatch.forTypes(columnTypes, presentColumns);
+        isOpen = true;
+    }
+    
+    @Override
+    public ColumnBatch nextBatch() {
+        if (!isOpen) {
+            return null;
+        }
+        
+        batch.reset();
+        int rows = 0;
+        Row row;
+        while (rows < ColumnBatch.CAPACITY && (row = child.next()) != null) {
+            for (int c = 0; c < batch.getColumnCount(); c++) {
+                batch.getColumn(c).set(rows, row.getValue(c));
+            }
+            rows++;
+        }
+        
+        if (rows == 0) {
+            return null;
+        }
+        batch.setSize(rows);
+        return batch;
+    }
+    
+    @Override
+    public void close() {
+        child.close();
+        isOpen = false;
+    }
+}
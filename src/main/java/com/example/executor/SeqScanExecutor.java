@@ -1,24 +1,36 @@
 package com.example.executor;
 
+import com.example.buffer.BufferAccessStrategy;
 import com.example.buffer.BufferManager;
 import com.example.storage.Page;
 import com.example.storage.TableFile;
 import com.example.storage.TableMetadata;
 import com.example.storage.StorageManager;
+import com.example.storage.TupleCodec;
 
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 
 /**
- * SeqScan executor - последовательное сканирование таблицы
+ * SeqScan executor - последовательное сканирование таблицы.
+ *
+ * Условие фильтра, протолкнутое в сканирование, проверяется на байтах кортежа в странице,
+ * а декодируются только прошедшие его строки и только нужные колонки: на месте остальных
+ * колонок в строке null, номера колонок для операторов выше не меняются.
  */
 public class SeqScanExecutor implements Executor {
     private StorageManager storageManager;
     private BufferManager bufferManager;
     private String tableName;
+    private List<String> columns;
+    private FilterExecutor.Condition filter;
     private TableMetadata metadata;
+    private boolean[] neededColumns;
+    private TuplePredicate predicate;
     private TableFile tableFile;
     private List<Integer> pageIds;
+    private BufferAccessStrategy strategy;
     private int currentPageIndex;
     private int currentSlot;
     private Page currentPage;
@@ -27,23 +39,38 @@ public class SeqScanExecutor implements Executor {
     public SeqScanExecutor(StorageManager storageManager, 
                           BufferManager bufferManager, 
                           String tableName) {
+        this(storageManager, bufferManager, tableName, null, null);
+    }
+    
+    /**
+     * columns - колонки, которые нужно декодировать (null - все),
+     * filter - условие, проверяемое до декодирования (null - без фильтра)
+     */
+    public SeqScanExecutor(StorageManager storageManager,
+                          BufferManager bufferManager,
+                          String tableName,
+                          List<String> columns,
+                          FilterExecutor.Condition filter) {
         this.storageManager = storageManager;
         this.bufferManager = bufferManager;
         this.tableName = tableName;
+        this.columns = columns;
+        this.filter = filter;
     }
     
     @Override
     public void open() {
         this.metadata = storageManager.getTableMetadata(tableName);
+        this.neededColumns = columns == null ? null : neededColumns(metadata, columns);
+        this.predicate = filter == null ? null : TuplePredicate.compile(filter, metadata);
         this.tableFile = storageManager.getTableFile(tableName);
         this.pageIds = tableFile.getPageIds();
+        // Большую таблицу читаем через кольцо фреймов, чтобы не вымывать горячие страницы
+        this.strategy = bufferManager.bulkReadStrategy(pageIds.size());
         this.currentPageIndex = 0;
         this.currentSlot = 0;
+        this.currentPage = null;
         this.isOpen = true;
-        
-        if (!pageIds.isEmpty()) {
-            loadCurrentPage();
-        }
     }
     
     @Override
@@ -57,20 +84,19 @@ public class SeqScanExecutor implements Executor {
                 loadCurrentPage();
             }
             
-            Row row = readRowFromPage(currentSlot);
-            if (row != null) {
-                currentSlot++;
-                return row;
+            // Пропускаем удаленные слоты до конца каталога страницы
+            int slotCount = currentPage.getSlotCount();
+            while (currentSlot < slotCount) {
+                Row row = readRowFromPage(currentSlot++);
+                if (row != null) {
+                    return row;
+                }
             }
             
-            // Переходим к следующей странице
+            // Переходим к следующей странице, отпуская текущую
+            releaseCurrentPage();
             currentPageIndex++;
             currentSlot = 0;
-            if (currentPageIndex < pageIds.size()) {
-                loadCurrentPage();
-            } else {
-                currentPage = null;
-            }
         }
         
         return null;
@@ -78,80 +104,57 @@ public class SeqScanExecutor implements Executor {
     
     @Override
     public void close() {
+        releaseCurrentPage();
         this.isOpen = false;
-        this.currentPage = null;
     }
     
     private void loadCurrentPage() {
         if (currentPageIndex < pageIds.size()) {
             int pageId = pageIds.get(currentPageIndex);
-            currentPage = bufferManager.getPage(tableFile, pageId);
+            currentPage = bufferManager.pinPage(tableFile, pageId, strategy);
         }
     }
     
-    private Row readRowFromPage(int slot) {
-        if (currentPage == null) {
-            return null;
-        }
-        
-        ByteBuffer buffer = currentPage.getBuffer();
-        buffer.rewind();
-        
-        // Простая схема: первые 4 байта - количество строк
-        int rowCount = buffer.getInt();
-        
-        if (slot >= rowCount) {
-            return null;
+    private void releaseCurrentPage() {
+        if (currentPage != null) {
+            bufferManager.unpinPage(tableFile, currentPage.getPageId(), false);
+            currentPage = null;
         }
-        
-        // Пропускаем заголовок (4 байта) и читаем строку
-        int offset = 4 + slot * estimateRowSize();
-        if (offset >= Page.PAGE_SIZE) {
-            return null;
-        }
-        
-        buffer.position(offset);
-        Row row = new Row();
-        
-        for (TableMetadata.Column col : metadata.getColumns()) {
-            Object value = readValue(buffer, col.getType());
-            row.addValue(value);
-        }
-        
-        return row;
     }
     
-    private Object readValue(ByteBuffer buffer, String type) {
-        switch (type.toUpperCase()) {
-            case "INT":
-            case "INTEGER":
-                return buffer.getInt();
-            case "VARCHAR":
-            case "STRING":
-                int len = buffer.getInt();
-                byte[] bytes = new byte[len];
-                buffer.get(bytes);
-                return new String(bytes);
-            default:
+    /**
+     * Прочитать кортеж под shared-латчем страницы: кортеж декодируется в копию,
+     * поэтому латч не держим между вызовами next()
+     */
+    private Row readRowFromPage(int slot) {
+        Lock latch = currentPage.getLatch().readLock();
+        latch.lock();
+        try {
+            ByteBuffer record = currentPage.getRecordBuffer(slot);
+            if (record == null || (predicate != null && !predicate.test(record))) {
                 return null;
+            }
+            if (neededColumns == null) {
+                return new Row(TupleCodec.decode(metadata, record));
+            }
+            return new Row(TupleCodec.decode(metadata, record, neededColumns));
+        } finally {
+            latch.unlock();
         }
     }
     
-    private int estimateRowSize() {
-        int size = 0;
-        for (TableMetadata.Column col : metadata.getColumns()) {
-            switch (col.getType().toUpperCase()) {
-                case "INT":
-                case "INTEGER":
-                    size += 4;
-                    break;
-                case "VARCHAR":
-                case "STRING":
-                    size += 4 + 100; // Примерная длина
-                    break;
+    /**
+     * Отметки колонок таблицы, перечисленных в columns
+     */
+    static boolean[] neededColumns(TableMetadata metadata, List<String> columns) {
+        boolean[] needed = new boolean[metadata.getColumns().size()];
+        for (String column : columns) {
+            int index = metadata.getColumnIndex(column);
+            if (index == -1) {
+                throw new RuntimeException("Column not found: " + column);
             }
+            needed[index] = true;
         }
-        return size;
+        return needed;
     }
 }
-
@@ -0,0 +1,260 @@
+package com.example.executor;
+
+import com.example.storage.TableMetadata;
+import com.example.storage.TupleCodec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Условие фильтра, проверяемое прямо на байтах кортежа в странице (формат TupleCodec),
+ * до декодирования строки. Находятся только смещения нужных колонок (по длинам строк),
+ * INTEGER читается из буфера на месте, VARCHAR сравнивается с UTF-8 байтами константы.
+ *
+ * Порядок байтов UTF-8 совпадает с порядком String.compareTo, когда константа - ASCII:
+ * первое различие тогда либо между ASCII-символами, либо между ASCII и не-ASCII.
+ * Для прочих констант (и несовпадающих типов) значение колонки декодируется и
+ * сравнивается как в FilterExecutor.
+ *
+ * Экземпляр не потокобезопасен: смещения колонок хранятся в общем массиве.
+ */
+final class TuplePredicate {
+    private final Node root;
+    private final int[] widths;
+    private final String[] types;
+    private final int[] offsets;
+    
+    private TuplePredicate(FilterExecutor.Condition condition, TableMetadata metadata) {
+        List<TableMetadata.Column> columns = metadata.getColumns();
+        this.types = new String[columns.size()];
+        this.widths = new int[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            types[i] = columns.get(i).getType();
+            widths[i] = TupleCodec.fixedWidth(types[i]);
+        }
+        this.offsets = new int[maxColumn(condition) + 1];
+        this.root = compile(condition);
+    }
+    
+    static TuplePredicate compile(FilterExecutor.Condition condition, TableMetadata metadata) {
+        return new TuplePredicate(condition, metadata);
+    }
+    
+    /**
+     * Удовлетворяет ли кортеж условию; позиция буфера не меняется
+     */
+    boolean test(ByteBuffer record) {
+        int pos = record.position();
+        for (int c = 0; c < offsets.length; c++) {
+            offsets[c] = pos;
+            int width = widths[c];
+            pos += width >= 0 ? width : 4 + record.getInt(pos);
+        }
+        return root.test(record);
+    }
+    
+    private Node compile(FilterExecutor.Condition condition) {
+        if (condition.isConnective()) {
+            List<FilterExecutor.Condition> operands = condition.getOperands();
+            Node[] nodes = new Node[operands.size()];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = compile(operands.get(i));
+            }
+            return new Connective(condition.getOperator().equals("AND"), nodes);
+        }
+        
+        int column = condition.getColumnIndex();
+        long[] bounds = condition.intBounds();
+        if (widths[column] == 4 && bounds != null) {
+            return new IntRange(column, bounds[0], bounds[1], bounds[2] != 0);
+        }
+        if (widths[column] == -1 && condition.getValue() instanceof String
+                && (condition.getUpperValue() == null || condition.getUpperValue() instanceof String)) {
+            String operator = condition.getOperator();
+            boolean equality = operator.equals("=") || operator.equals("<>");
+            byte[] constant = utf8(condition.getValue());
+            if (equality) {
+                return new StringEquals(column, constant, operator.equals("<>"));
+            }
+            if (isAscii(condition.getValue()) && isAscii(condition.getUpperValue())) {
+                switch (operator) {
+                    case "<": return new StringRange(column, null, false, constant, false);
+                    case "<=": return new StringRange(column, null, false, constant, true);
+                    case ">": return new StringRange(column, constant, false, null, false);
+                    case ">=": return new StringRange(column, constant, true, null, false);
+                    case "BETWEEN":
+                        if (condition.getUpperValue() != null) {
+                            return new StringRange(column, constant, true, utf8(condition.getUpperValue()), true);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return new Decoded(column, condition);
+    }
+    
+    private static int maxColumn(FilterExecutor.Condition condition) {
+        if (!condition.isConnective()) {
+            return condition.getColumnIndex();
+        }
+        int max = 0;
+        for (FilterExecutor.Condition operand : condition.getOperands()) {
+            max = Math.max(max, maxColumn(operand));
+        }
+        return max;
+    }
+    
+    private static boolean isAscii(Object value) {
+        if (value == null) {
+            return true;
+        }
+        String text = (String) value;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static byte[] utf8(Object value) {
+        return value == null ? null : ((String) value).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private abstract class Node {
+        abstract boolean test(ByteBuffer record);
+    }
+    
+    private final class Connective extends Node {
+        private final boolean and;
+        private final Node[] operands;
+        
+        Connective(boolean and, Node[] operands) {
+            this.and = and;
+            this.operands = operands;
+        }
+        
+        @Override
+        boolean test(ByteBuffer record) {
+            for (Node operand : operands) {
+                if (operand.test(record) != and) {
+                    return !and;
+                }
+            }
+            return and;
+        }
+    }
+    
+    private final class IntRange extends Node {
+        private final int column;
+        private final long lo;
+        private final long hi;
+        private final boolean negate;
+        
+        IntRange(int column, long lo, long hi, boolean negate) {
+            this.column = column;
+            this.lo = lo;
+            this.hi = hi;
+            this.negate = negate;
+        }
+        
+        @Override
+        boolean test(ByteBuffer record) {
+            int v = record.getInt(offsets[column]);
+            return (v >= lo && v <= hi) != negate;
+        }
+    }
+    
+    /**
+     * VARCHAR = / <> константа: сначала длина, потом байты
+     */
+    private final class StringEquals extends Node {
+        private final int column;
+        private final byte[] constant;
+        private final boolean negate;
+        
+        StringEquals(int column, byte[] constant, boolean negate) {
+            this.column = column;
+            this.constant = constant;
+            this.negate = negate;
+        }
+        
+        @Override
+        boolean test(ByteBuffer record) {
+            int offset = offsets[column];
+            return (record.getInt(offset) == constant.length
+                && compare(record, offset + 4, constant.length, constant) == 0) != negate;
+        }
+    }
+    
+    /**
+     * VARCHAR в диапазоне: оператор сравнения при компиляции сведен к границам
+     * (null - граница не задана) и признакам их включения
+     */
+    private final class StringRange extends Node {
+        private final int column;
+        private final byte[] lower;
+        private final boolean lowerInclusive;
+        private final byte[] upper;
+        private final boolean upperInclusive;
+        
+        StringRange(int column, byte[] lower, boolean lowerInclusive, byte[] upper, boolean upperInclusive) {
+            this.column = column;
+            this.lower = lower;
+            this.lowerInclusive = lowerInclusive;
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+        }
+        
+        @Override
+        boolean test(ByteBuffer record) {
+            int offset = offsets[column];
+            int length = record.getInt(offset);
+            if (lower != null) {
+                int cmp = compare(record, offset + 4, length, lower);
+                if (cmp < 0 || (cmp == 0 && !lowerInclusive)) {
+                    return false;
+                }
+            }
+            if (upper != null) {
+                int cmp = compare(record, offset + 4, length, upper);
+                return cmp < 0 || (cmp == 0 && upperInclusive);
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * Лексикографическое сравнение байтов без знака; короткий префикс меньше
+     */
+    private static int compare(ByteBuffer record, int start, int length, byte[] other) {
+        int n = Math.min(length, other.length);
+        for (int i = 0; i < n; i++) {
+            int diff = (record.get(start + i) & 0xFF) - (other[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - other.length;
+    }
+    
+    private final class Decoded extends Node {
+        private final int column;
+        private final FilterExecutor.Condition condition;
+        
+        Decoded(int column, FilterExecutor.Condition condition) {
+            this.column = column;
+            this.condition = condition;
+        }
+        
+        @Override
+        boolean test(ByteBuffer record) {
+            ByteBuffer value = record.duplicate();
+            value.position(offsets[column]);
+            return condition.test(TupleCodec.readValue(value, types[column]));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.executor;
+
+/**
+ * Векторный Filter: условие вычисляется сразу для всех выбранных строк пакета
+ * и сужает вектор выбора; пакеты, где не осталось строк, пропускаются
+ */
+public class VectorizedFilterExecutor implements BatchExecutor {
+    private BatchExecutor child;
+    private FilterExecutor.Condition condition;
+    private int[] selection;
+    private boolean isOpen;
+    
+    public VectorizedFilterExecutor(BatchExecutor child, FilterExecutor.Condition condition) {
+        this.child = child;
+        this.condition = condition;
+    }
+    
+    @Override
+    public void open() {
+        child.open();
+        selection = new int[ColumnBatch.CAPACITY];
+        isOpen = true;
+    }
+    
+    @Override
+    public ColumnBatch nextBatch() {
+        if (!isOpen) {
+            return null;
+        }
+        
+        ColumnBatch batch;
+        while ((batch = child.nextBatch()) != null) {
+            int[] input = batch.getSelection();
+            int count = condition.select(batch, input, batch.getSelectedCount(),
+                input != null ? input : selection);
+            if (count > 0) {
+                batch.select(input != null ? input : selection, count);
+                return batch;
+            }
+        }
+        
+        return null;
+    }
+    
+    @Override
+    public void close() {
+        child.close();
+        isOpen = false;
+    }
+}
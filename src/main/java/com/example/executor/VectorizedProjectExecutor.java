@@ -0,0 +1,52 @@
+package com.example.executor;
+
+import com.example.storage.TableMetadata;
+
+import java.util.List;
+
+/**
+ * Векторный Project: пакет с нужными колонками собирается из векторов дочернего
+ * пакета без копирования значений
+ */
+public class VectorizedProjectExecutor implements BatchExecutor {
+    private BatchExecutor child;
+    private int[] columnIndices;
+    private boolean isOpen;
+    
+    public VectorizedProjectExecutor(BatchExecutor child, List<String> columns,
+                                     TableMetadata metadata) {
+        this.child = child;
+        this.columnIndices = new int[columns.size()];
+        
+        // Определяем индексы колонок
+        for (int i = 0; i < columns.size(); i++) {
+            int index = metadata.getColumnIndex(columns.get(i));
+            if (index == -1) {
+                throw new RuntimeException("Column not found: " + columns.get(i));
+            }
+            columnIndices[i] = index;
+        }
+    }
+    
+    @Override
+    public void open() {
+        child.open();
+        isOpen = true;
+    }
+    
+    @Override
+    public ColumnBatch nextBatch() {
+        if (!isOpen) {
+            return null;
+        }
+        
+        ColumnBatch batch = child.nextBatch();
+        return batch == null ? null : batch.project(columnIndices);
+    }
+    
+    @Override
+    public void close() {
+        child.close();
+        isOpen = false;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.executor;
+
+import com.example.buffer.BufferAccessStrategy;
+import com.example.buffer.BufferManager;
+import com.example.storage.Page;
+import com.example.storage.StorageManager;
+import com.example.storage.TableFile;
+import com.example.storage.TableMetadata;
+import com.example.storage.TupleCodec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Векторный SeqScan: кортежи страниц декодируются прямо в векторы колонок пакета,
+ * без промежуточных Row и упаковки целых. Пакет может захватывать несколько страниц;
+ * недочитанная страница остается закрепленной до следующего вызова.
+ *
+ * Как и SeqScanExecutor, проверяет протолкнутое условие на байтах кортежа и заполняет
+ * векторы только нужных колонок; остальные колонки пакета читаются как null.
+ *
+ * В параллельном сканировании (GatherExecutor) каждый поток читает не всю таблицу,
+ * а порции страниц, которые раздает общий PageMorsels.
+ */
+public class VectorizedSeqScanExecutor implements BatchExecutor {
+    private StorageManager storageManager;
+    private BufferManager bufferManager;
+    private String tableName;
+    private List<String> columns;
+    private FilterExecutor.Condition filter;
+    private PageMorsels morsels;
+    private TableFile tableFile;
+    private int[] columnWidths;
+    private boolean[] readColumns;
+    private TuplePredicate predicate;
+    private List<Integer> pageIds;
+    private BufferAccessStrategy strategy;
+    private ColumnBatch batch;
+    private int currentPageIndex;
+    private int morselEnd;
+    private int currentSlot;
+    private Page currentPage;
+    private boolean isOpen;
+    
+    public VectorizedSeqScanExecutor(StorageManager storageManager,
+                                     BufferManager bufferManager,
+                                     String tableName) {
+        this(storageManager, bufferManager, tableName, null, null);
+    }
+    
+    /**
+     * columns - колонки, которые нужно декодировать (null - все),
+     * filter - условие, проверяемое до декодирования (null - без фильтра)
+     */
+    public VectorizedSeqScanExecutor(StorageManager storageManager,
+                                     BufferManager bufferManager,
+                                     String tableName,
+                                     List<String> columns,
+                                     FilterExecutor.Condition filter) {
+        this.storageManager = storageManager;
+        this.bufferManager = bufferManager;
+        this.tableName = tableName;
+        this.columns = columns;
+        this.filter = filter;
+    }
+    
+    /**
+     * Сканирование страниц, выданных morsels (часть параллельного прохода)
+     */
+    VectorizedSeqScanExecutor(StorageManager storageManager, BufferManager bufferManager,
+                              String tableName, List<String> columns,
+                              FilterExecutor.Condition filter, PageMorsels morsels) {
+        this(storageManager, bufferManager, tableName, columns, filter);
+        this.morsels = morsels;
+    }
+    
+    @Override
+    public void open() {
+        TableMetadata metadata = storageManager.getTableMetadata(tableName);
+        List<String> types = new ArrayList<>();
+        for (TableMetadata.Column column : metadata.getColumns()) {
+            types.add(column.getType());
+        }
+        // Читаем колонки до последней нужной; ненужные среди них только пропускаются
+        boolean[] needed = columns == null ? null : SeqScanExecutor.neededColumns(metadata, columns);
+        this.batch = ColumnBatch.forTypes(types, needed);
+        int last = types.size() - 1;
+        while (needed != null && last >= 0 && !needed[last]) {
+            last--;
+        }
+        this.readColumns = new boolean[last + 1];
+        this.columnWidths = new int[last + 1];
+        for (int c = 0; c <= last; c++) {
+            readColumns[c] = needed == null || needed[c];
+            columnWidths[c] = TupleCodec.fixedWidth(types.get(c));
+        }
+        this.predicate = filter == null ? null : TuplePredicate.compile(filter, metadata);
+        this.tableFile = storageManager.getTableFile(tableName);
+        this.pageIds = morsels == null ? tableFile.getPageIds() : morsels.getPageIds();
+        // Большую таблицу читаем через кольцо фреймов, чтобы не вымывать горячие страницы
+        this.strategy = bufferManager.bulkReadStrategy(pageIds.size());
+        this.currentPageIndex = -1;
+        this.morselEnd = 0;
+        advancePage();
+        this.currentPage = null;
+        this.isOpen = true;
+    }
+    
+    @Override
+    public ColumnBatch nextBatch() {
+        if (!isOpen) {
+            return null;
+        }
+        
+        batch.reset();
+        int rows = 0;
+        while (rows < ColumnBatch.CAPACITY && currentPageIndex < pageIds.size()) {
+            if (currentPage == null) {
+                currentPage = bufferManager.pinPage(tableFile, pageIds.get(currentPageIndex), strategy);
+            }
+            
+            // Удаленные слоты пропускаем; колонки кортежа читаются подряд.
+            // Кортежи копируются в пакет под shared-латчем страницы
+            int slotCount;
+            Lock latch = currentPage.getLatch().readLock();
+            latch.lock();
+            try {
+                slotCount = currentPage.getSlotCount();
+                while (currentSlot < slotCount && rows < ColumnBatch.CAPACITY) {
+                    ByteBuffer record = currentPage.getRecordBuffer(currentSlot++);
+                    if (record == null || (predicate != null && !predicate.test(record))) {
+                        continue;
+                    }
+                    for (int c = 0; c < readColumns.length; c++) {
+                        if (readColumns[c]) {
+                            batch.getColumn(c).read(record, rows);
+                        } else {
+                            int width = columnWidths[c];
+                            int skip = width >= 0 ? width : 4 + record.getInt(record.position());
+                            record.position(record.position() + skip);
+                        }
+                    }
+                    rows++;
+                }
+            } finally {
+                latch.unlock();
+            }
+            
+            if (currentSlot >= slotCount) {
+                releaseCurrentPage();
+                advancePage();
+            }
+        }
+        
+        if (rows == 0) {
+            return null;
+        }
+        batch.setSize(rows);
+        return batch;
+    }
+    
+    @Override
+    public void close() {
+        releaseCurrentPage();
+        this.isOpen = false;
+    }
+    
+    /**
+     * Перейти к следующей странице прохода: подряд или в начало следующей порции
+     */
+    private void advancePage() {
+        currentPageIndex++;
+        currentSlot = 0;
+        if (morsels != null && currentPageIndex >= morselEnd) {
+            currentPageIndex = morsels.claim();
+            morselEnd = Math.min(pageIds.size(), currentPageIndex + morsels.getMorselPages());
+        }
+    }
+    
+    private void releaseCurrentPage() {
+        if (currentPage != null) {
+            bufferManager.unpinPage(tableFile, currentPage.getPageId(), false);
+            currentPage = null;
+        }
+    }
+}
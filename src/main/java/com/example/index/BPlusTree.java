@@ -1,221 +1,717 @@
 package com.example.index;
 
-import java.io.*;
+import com.example.buffer.BufferManager;
+import com.example.storage.Page;
+import com.example.storage.SegmentFile;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.*;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 /**
- * B+Tree индекс для поддержки поиска и range-сканов
+ * B+Tree индекс для поддержки поиска и range-сканов.
+ * Методы синхронизированы: индекс общий для всех сессий.
+ *
+ * Дерево хранится в файле indexName.idx из страниц по PAGE_SIZE байт и читается
+ * через буферный менеджер: узел - страница, к которой обращаются, закрепив ее
+ * (pinPage/unpinPage). Вставка меняет только страницы на пути от корня к листу
+ * и страницы, появившиеся при расщеплении; на диск их пишут фоновый писатель
+ * и контрольная точка.
+ *
+ * Страница 0 - метастраница: [MAGIC int][корень int][LSN long][формат узлов int].
+ * Страница узла - заголовок NodeLayout и ячейки в формате дерева: SlottedNodeLayout
+ * (ключи переменной длины с тегом типа) или IntNodeLayout у IntBPlusTree (массив int
+ * ключей и упакованные адреса). Файл другого формата при открытии считается испорченным.
+ *
+ * Одинаковые ключи допустимы: вставка идет правее равных, поиск спускается
+ * к самому левому листу, где может быть ключ, и идет вправо по листам.
+ *
+ * Внутри узла ключ ищется бинарным поиском; целые ключи сравниваются прямо
+ * в странице, без распаковки. Ветвление ограничено размером страницы, а если
+ * задан maxKeys - еще и числом ключей в узле.
  */
 public class BPlusTree {
+    private static final int MAGIC = 0x42505431; // "BPT1"
+    private static final int META_PAGE = 0;
+    private static final int META_ROOT_OFFSET = 4;
+    private static final int META_LAYOUT_OFFSET = 16;
+    static final int NO_PAGE = -1;
+    
+    /** Ячейка не больше четверти узла: после расщепления обе половины гарантированно помещаются */
+    public static final int MAX_KEY_SIZE = SlottedNodeLayout.MAX_KEY_SIZE;
+    
+    /** Размер пула для дерева, открытого без общего буферного менеджера */
+    private static final int PRIVATE_POOL_PAGES = 256;
+    /** maxKeys по умолчанию: узел заполняется, пока ключи помещаются в страницу */
+    public static final int PAGE_FANOUT = 0;
+    /** Наименьший допустимый maxKeys: при расщеплении внутреннего узла обе половины не пусты */
+    public static final int MIN_FANOUT = 3;
+    
     private String indexName;
     private String tableName;
     private String columnName;
     private String dataDir;
-    private Node root;
-    private int order; // Порядок дерева
+    private final SegmentFile file;
+    private final BufferManager bufferManager;
+    private final NodeLayout layout;
+    private final int maxKeys;
+    private int rootPageId;
+    private boolean needsRebuild;
     
     public BPlusTree(String indexName, String tableName, String columnName, String dataDir) {
+        this(indexName, tableName, columnName, dataDir, new BufferManager(PRIVATE_POOL_PAGES));
+    }
+    
+    public BPlusTree(String indexName, String tableName, String columnName, String dataDir,
+                     BufferManager bufferManager) {
+        this(indexName, tableName, columnName, dataDir, bufferManager, PAGE_FANOUT);
+    }
+    
+    /**
+     * maxKeys - наибольшее число ключей в узле (PAGE_FANOUT - сколько поместится в страницу)
+     */
+    public BPlusTree(String indexName, String tableName, String columnName, String dataDir,
+                     BufferManager bufferManager, int maxKeys) {
+        this(indexName, tableName, columnName, dataDir, bufferManager, maxKeys, SlottedNodeLayout.INSTANCE);
+    }
+    
+    BPlusTree(String indexName, String tableName, String columnName, String dataDir,
+              BufferManager bufferManager, int maxKeys, NodeLayout layout) {
+        if (maxKeys != PAGE_FANOUT && maxKeys < MIN_FANOUT) {
+            throw new IllegalArgumentException("Index fanout must be at least " + MIN_FANOUT + ": " + maxKeys);
+        }
+        this.maxKeys = maxKeys;
+        this.layout = layout;
         this.indexName = indexName;
         this.tableName = tableName;
         this.columnName = columnName;
         this.dataDir = dataDir;
-        this.order = 4; // Минимум 2 ключа на узел
+        this.bufferManager = bufferManager;
+        this.file = new SegmentFile(indexName, Paths.get(dataDir, indexName + ".idx"));
         loadIndex();
     }
     
-    private void loadIndex() {
-        Path indexPath = Paths.get(dataDir, indexName + ".idx");
-        if (Files.exists(indexPath)) {
-            try (ObjectInputStream ois = new ObjectInputStream(
-                    new FileInputStream(indexPath.toFile()))) {
-                this.root = (Node) ois.readObject();
-            } catch (Exception e) {
-                this.root = new LeafNode();
+    /**
+     * Формат узлов индекса по его файлу на диске: IntNodeLayout.CODE, SlottedNodeLayout.CODE
+     * или 0, если файла нет или он не похож на индекс. Читается до открытия дерева,
+     * чтобы выбрать класс (BPlusTree или IntBPlusTree).
+     */
+    static int readLayoutCode(String dataDir, String indexName) {
+        Path path = Paths.get(dataDir, indexName + ".idx");
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer meta = ByteBuffer.allocate(META_LAYOUT_OFFSET + 4);
+            while (meta.hasRemaining() && channel.read(meta) >= 0) {
+                // Читаем начало метастраницы
+            }
+            if (meta.hasRemaining() || meta.getInt(0) != MAGIC) {
+                return 0;
             }
-        } else {
-            this.root = new LeafNode();
+            return layoutCode(meta.getInt(META_LAYOUT_OFFSET));
+        } catch (IOException e) {
+            return 0;
         }
     }
     
-    public void saveIndex() {
+    /**
+     * Файлы без кода формата записаны до появления IntNodeLayout - в них ячейки с тегами
+     */
+    private static int layoutCode(int stored) {
+        return stored == 0 ? SlottedNodeLayout.CODE : stored;
+    }
+    
+    private void loadIndex() {
+        if (file.getPageCount() == 0) {
+            // Непустой файл короче страницы - не дерево (например, сериализованный
+            // индекс старого формата): его тоже нужно перестроить по таблице
+            boolean foreign = fileSize() > 0;
+            file.truncate(0);
+            initialize();
+            needsRebuild = foreign;
+            return;
+        }
+        Page meta = bufferManager.pinPage(file, META_PAGE);
         try {
-            Files.createDirectories(Paths.get(dataDir));
-            Path indexPath = Paths.get(dataDir, indexName + ".idx");
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-                    new FileOutputStream(indexPath.toFile()))) {
-                oos.writeObject(root);
+            ByteBuffer buf = meta.getBuffer();
+            if (buf.getInt(0) == MAGIC && layoutCode(buf.getInt(META_LAYOUT_OFFSET)) == layout.code()) {
+                rootPageId = buf.getInt(META_ROOT_OFFSET);
+                return;
             }
+        } finally {
+            bufferManager.unpinPage(file, META_PAGE, false);
+        }
+        // Файл старого или другого формата либо испорчен: начинаем с пустого дерева,
+        // его нужно перестроить по таблице
+        bufferManager.discardPages(file);
+        file.truncate(0);
+        initialize();
+        needsRebuild = true;
+    }
+    
+    private long fileSize() {
+        try {
+            return Files.exists(file.getFilePath()) ? Files.size(file.getFilePath()) : 0;
         } catch (IOException e) {
-            throw new RuntimeException("Failed to save index", e);
+            throw new RuntimeException("Failed to read size of index file: " + indexName, e);
         }
     }
     
-    @SuppressWarnings("unchecked")
-    public void insert(Comparable<?> key, int pageId, int slotId) {
-        IndexEntry entry = new IndexEntry(key, pageId, slotId);
-        InsertResult result = root.insert(entry, order);
-        
-        if (result != null && result.newNode != null) {
-            // Нужно создать новый корень
-            InternalNode newRoot = new InternalNode();
-            newRoot.keys.add(result.newNode.keys.get(0));
-            newRoot.children.add(root);
-            newRoot.children.add(result.newNode);
-            root = newRoot;
+    /**
+     * Создать метастраницу и пустой корневой лист и сразу сбросить их на диск,
+     * чтобы открытие индекса после падения всегда видело корректный файл
+     */
+    private void initialize() {
+        Page meta = bufferManager.newPage(file);
+        Page root = bufferManager.newPage(file);
+        try {
+            if (meta.getPageId() != META_PAGE) {
+                throw new IllegalStateException("Index file is not empty: " + indexName);
+            }
+            rootPageId = root.getPageId();
+            ByteBuffer rootBuf = root.getBuffer();
+            layout.writeNode(rootBuf, true, NO_PAGE, new ArrayList<>());
+            ByteBuffer metaBuf = meta.getBuffer();
+            metaBuf.putInt(0, MAGIC);
+            metaBuf.putInt(META_ROOT_OFFSET, rootPageId);
+            metaBuf.putInt(META_LAYOUT_OFFSET, layout.code());
+        } finally {
+            bufferManager.unpinPage(file, root.getPageId(), true);
+            bufferManager.unpinPage(file, META_PAGE, true);
         }
+        saveIndex();
     }
     
-    @SuppressWarnings("unchecked")
-    public List<IndexEntry> search(Comparable<?> key) {
-        return root.search(key);
+    /**
+     * Записать измененные страницы индекса и сбросить файл на диск
+     */
+    public void saveIndex() {
+        bufferManager.flushPages(file);
+        file.sync();
+    }
+    
+    /**
+     * fsync файла индекса (страницы на диск уже записал буферный менеджер)
+     */
+    public void sync() {
+        file.sync();
+    }
+    
+    /**
+     * Удалить все ключи: файл обрезается, страницы выбрасываются из буфера
+     */
+    public synchronized void truncate() {
+        bufferManager.discardPages(file);
+        file.truncate(0);
+        initialize();
+        needsRebuild = false;
+    }
+    
+    /**
+     * Закрыть файл индекса и удалить его (страницы выбрасываются без записи)
+     */
+    public synchronized void drop() {
+        bufferManager.discardPages(file);
+        file.close();
+        try {
+            Files.deleteIfExists(file.getFilePath());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete index file: " + indexName, e);
+        }
     }
     
-    @SuppressWarnings("unchecked")
-    public List<IndexEntry> rangeScan(Comparable<?> start, Comparable<?> end) {
-        return root.rangeScan(start, end);
+    public void close() {
+        file.close();
     }
     
-    public boolean isEmpty() {
-        return root instanceof LeafNode && ((LeafNode) root).entries.isEmpty();
+    public synchronized void insert(Comparable<?> key, int pageId, int slotId) {
+        byte[] cell = layout.leafCell(key, pageId, slotId);
+        
+        // Спуск к листу с запоминанием пути: номер страницы и позиция потомка; лист остается закрепленным
+        List<int[]> path = new ArrayList<>();
+        int nodeId = rootPageId;
+        ByteBuffer leafBuf = pin(nodeId);
+        while (!NodeLayout.isLeaf(leafBuf)) {
+            int pos = layout.upperBound(leafBuf, key);
+            path.add(new int[]{nodeId, pos});
+            int child = layout.childAt(leafBuf, pos);
+            bufferManager.unpinPage(file, nodeId, false);
+            nodeId = child;
+            leafBuf = pin(nodeId);
+        }
+        
+        Split split;
+        try {
+            split = insertCell(nodeId, leafBuf, layout.upperBound(leafBuf, key), cell);
+        } finally {
+            bufferManager.unpinPage(file, nodeId, true);
+        }
+        
+        // Поднимаем разделители вверх по пути
+        for (int level = path.size() - 1; level >= 0 && split != null; level--) {
+            int parentId = path.get(level)[0];
+            int pos = path.get(level)[1];
+            ByteBuffer parentBuf = pin(parentId);
+            try {
+                split = insertCell(parentId, parentBuf, pos, layout.internalCell(split.separator, split.rightPageId));
+            } finally {
+                bufferManager.unpinPage(file, parentId, true);
+            }
+        }
+        
+        if (split != null) {
+            growRoot(split);
+        }
     }
     
-    // Базовый класс для узлов
-    @SuppressWarnings("rawtypes")
-    abstract static class Node implements Serializable {
-        List<Comparable> keys = new ArrayList<>();
+    /**
+     * Построить дерево снизу вверх из записей, отсортированных по ключу (дерево должно быть пустым).
+     * Листья заполняются подряд до доли fillFactor страницы и связываются по порядку, затем
+     * из первых ключей узлов каждого уровня так же строится уровень выше - без расщеплений.
+     * Запас места 1 - fillFactor оставляется под последующие вставки.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public synchronized void bulkLoad(Iterator<IndexEntry> sortedEntries, double fillFactor) {
+        if (fillFactor <= 0 || fillFactor > 1) {
+            throw new IllegalArgumentException("Fill factor must be in (0, 1]: " + fillFactor);
+        }
+        if (!isEmpty()) {
+            throw new IllegalStateException("Bulk load requires an empty index: " + indexName);
+        }
+        int leafLimit = (int) (layout.capacity(true) * fillFactor);
+        int internalLimit = (int) (layout.capacity(false) * fillFactor);
+        int keyLimit = maxKeys == PAGE_FANOUT ? Integer.MAX_VALUE
+                : Math.max(MIN_FANOUT - 1, (int) (maxKeys * fillFactor));
         
-        abstract InsertResult insert(IndexEntry entry, int order);
-        @SuppressWarnings("unchecked")
-        abstract List<IndexEntry> search(Comparable key);
-        @SuppressWarnings("unchecked")
-        abstract List<IndexEntry> rangeScan(Comparable start, Comparable end);
+        // Листья: первый лист - текущий пустой корень
+        List<byte[]> levelKeys = new ArrayList<>();
+        List<Integer> levelPages = new ArrayList<>();
+        List<byte[]> cells = new ArrayList<>();
+        int used = 0;
+        int leafId = rootPageId;
+        Comparable previous = null;
+        while (sortedEntries.hasNext()) {
+            IndexEntry entry = sortedEntries.next();
+            if (previous != null && previous.compareTo(entry.key) > 0) {
+                throw new IllegalArgumentException("Bulk load input is not sorted: " + entry.key + " after " + previous);
+            }
+            previous = entry.key;
+            byte[] cell = layout.leafCell(entry.key, entry.pageId, entry.slotId);
+            int cost = layout.cellCost(cell, true);
+            if (!cells.isEmpty() && (used + cost > leafLimit || cells.size() >= keyLimit)) {
+                int nextId = allocateNode();
+                writeNodePage(leafId, true, nextId, cells);
+                levelKeys.add(layout.separatorOf(cells.get(0)));
+                levelPages.add(leafId);
+                leafId = nextId;
+                cells = new ArrayList<>();
+                used = 0;
+            }
+            cells.add(cell);
+            used += cost;
+        }
+        if (levelPages.isEmpty()) {
+            // Все поместилось в корневой лист (или таблица пуста)
+            writeNodePage(leafId, true, NO_PAGE, cells);
+            return;
+        }
+        writeNodePage(leafId, true, NO_PAGE, cells);
+        levelKeys.add(layout.separatorOf(cells.get(0)));
+        levelPages.add(leafId);
         
-        @SuppressWarnings({"rawtypes", "unchecked"})
-        static int findInsertPosition(List<Comparable> keys, Comparable key) {
-            int pos = 0;
-            for (int i = 0; i < keys.size(); i++) {
-                if (keys.get(i).compareTo(key) > 0) {
-                    break;
+        // Внутренние уровни: первый потомок узла - ссылка, его ключ уходит на уровень выше
+        while (levelPages.size() > 1) {
+            List<byte[]> parentKeys = new ArrayList<>();
+            List<Integer> parentPages = new ArrayList<>();
+            int nodeId = allocateNode();
+            int link = levelPages.get(0);
+            parentKeys.add(levelKeys.get(0));
+            parentPages.add(nodeId);
+            cells = new ArrayList<>();
+            used = 0;
+            for (int i = 1; i < levelPages.size(); i++) {
+                byte[] cell = layout.internalCell(levelKeys.get(i), levelPages.get(i));
+                int cost = layout.cellCost(cell, false);
+                if (!cells.isEmpty() && (used + cost > internalLimit || cells.size() >= keyLimit)) {
+                    writeNodePage(nodeId, false, link, cells);
+                    nodeId = allocateNode();
+                    link = levelPages.get(i);
+                    parentKeys.add(levelKeys.get(i));
+                    parentPages.add(nodeId);
+                    cells = new ArrayList<>();
+                    used = 0;
+                    continue;
                 }
-                pos = i + 1;
+                cells.add(cell);
+                used += cost;
             }
-            return pos;
-        }
-    }
-    
-    // Внутренний узел
-    static class InternalNode extends Node {
-        List<Node> children = new ArrayList<>();
-        
-        @Override
-        @SuppressWarnings({"unchecked", "rawtypes"})
-        InsertResult insert(IndexEntry entry, int order) {
-            int pos = findInsertPosition(keys, entry.key);
-            
-            InsertResult result = children.get(pos).insert(entry, order);
-            
-            if (result != null && result.newNode != null) {
-                keys.add(pos, result.newNode.keys.get(0));
-                children.add(pos + 1, result.newNode);
-                
-                if (keys.size() > order) {
-                    // Разделение
-                    int mid = keys.size() / 2;
-                    InternalNode newNode = new InternalNode();
-                    newNode.keys = new ArrayList<>(keys.subList(mid + 1, keys.size()));
-                    newNode.children = new ArrayList<>(children.subList(mid + 1, children.size()));
-                    keys = new ArrayList<>(keys.subList(0, mid));
-                    children = new ArrayList<>(children.subList(0, mid + 1));
-                    return new InsertResult(newNode);
+            writeNodePage(nodeId, false, link, cells);
+            levelKeys = parentKeys;
+            levelPages = parentPages;
+        }
+        
+        int newRootId = levelPages.get(0);
+        ByteBuffer meta = pin(META_PAGE);
+        try {
+            meta.putInt(META_ROOT_OFFSET, newRootId);
+        } finally {
+            bufferManager.unpinPage(file, META_PAGE, true);
+        }
+        rootPageId = newRootId;
+    }
+    
+    public synchronized List<IndexEntry> search(Comparable<?> key) {
+        return rangeScan(key, key);
+    }
+    
+    public synchronized List<IndexEntry> rangeScan(Comparable<?> start, Comparable<?> end) {
+        return rangeScan(start, true, end, true);
+    }
+    
+    /**
+     * Записи с ключами между start и end по цепочке листов. null вместо границы -
+     * диапазон не ограничен с этой стороны; флаги задают, входит ли граница в диапазон.
+     * Весь результат собирается в список - для больших диапазонов лучше cursor.
+     */
+    public synchronized List<IndexEntry> rangeScan(Comparable<?> start, boolean startInclusive,
+                                                   Comparable<?> end, boolean endInclusive) {
+        List<IndexEntry> result = new ArrayList<>();
+        Cursor cursor = cursor(start, startInclusive, end, endInclusive);
+        while (cursor.next()) {
+            result.add(new IndexEntry(cursor.getKey(), cursor.getPageId(), cursor.getSlotId()));
+        }
+        return result;
+    }
+    
+    /**
+     * Курсор по записям с ключами между start и end (границы - как у rangeScan).
+     * Записи читаются по мере вызовов next, по одному листу за раз.
+     */
+    public synchronized Cursor cursor(Comparable<?> start, boolean startInclusive,
+                                      Comparable<?> end, boolean endInclusive) {
+        return new Cursor(start, startInclusive, end, endInclusive);
+    }
+    
+    public synchronized boolean isEmpty() {
+        ByteBuffer buf = pin(rootPageId);
+        try {
+            return NodeLayout.isLeaf(buf) && NodeLayout.keyCount(buf) == 0;
+        } finally {
+            bufferManager.unpinPage(file, rootPageId, false);
+        }
+    }
+    
+    /**
+     * Число уровней дерева (1 - корень-лист)
+     */
+    public synchronized int getHeight() {
+        int height = 1;
+        int nodeId = rootPageId;
+        while (true) {
+            ByteBuffer buf = pin(nodeId);
+            int child;
+            try {
+                if (NodeLayout.isLeaf(buf)) {
+                    return height;
                 }
+                child = layout.childAt(buf, 0);
+            } finally {
+                bufferManager.unpinPage(file, nodeId, false);
             }
+            nodeId = child;
+            height++;
+        }
+    }
+    
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+    
+    /**
+     * Индекс открыт с пустым деревом вместо испорченного файла или файла старого формата
+     */
+    public synchronized boolean needsRebuild() {
+        return needsRebuild;
+    }
+    
+    public String getIndexName() {
+        return indexName;
+    }
+    
+    public String getTableName() {
+        return tableName;
+    }
+    
+    public String getColumnName() {
+        return columnName;
+    }
+    
+    /**
+     * Самый левый лист, в котором может лежать key (для null - самый левый лист дерева)
+     */
+    int findLeaf(Comparable<?> key) {
+        int nodeId = rootPageId;
+        while (true) {
+            ByteBuffer buf = pin(nodeId);
+            int child;
+            try {
+                if (NodeLayout.isLeaf(buf)) {
+                    return nodeId;
+                }
+                child = layout.childAt(buf, key == null ? 0 : layout.lowerBound(buf, key));
+            } finally {
+                bufferManager.unpinPage(file, nodeId, false);
+            }
+            nodeId = child;
+        }
+    }
+    
+    /**
+     * Вставить ячейку в узел на позицию pos. Если места нет - расщепить узел и вернуть
+     * разделитель для родителя. Узел nodeId закреплен вызывающим.
+     */
+    private Split insertCell(int nodeId, ByteBuffer buf, int pos, byte[] cell) {
+        int count = NodeLayout.keyCount(buf);
+        if (layout.hasRoom(buf, cell) && (maxKeys == PAGE_FANOUT || count < maxKeys)) {
+            layout.insertAt(buf, pos, cell);
             return null;
         }
         
-        @Override
-        @SuppressWarnings({"unchecked", "rawtypes"})
-        List<IndexEntry> search(Comparable key) {
-            int pos = findInsertPosition(keys, key);
-            return children.get(pos).search(key);
-        }
-        
-        @Override
-        @SuppressWarnings({"unchecked", "rawtypes"})
-        List<IndexEntry> rangeScan(Comparable start, Comparable end) {
-            int pos = findInsertPosition(keys, start);
-            return children.get(pos).rangeScan(start, end);
-        }
-    }
-    
-    // Листовой узел
-    static class LeafNode extends Node {
-        List<IndexEntry> entries = new ArrayList<>();
-        LeafNode next; // Связь для range-сканов
-        
-        @Override
-        @SuppressWarnings({"unchecked", "rawtypes"})
-        InsertResult insert(IndexEntry entry, int order) {
-            int pos = findInsertPosition(keys, entry.key);
-            
-            keys.add(pos, entry.key);
-            entries.add(pos, entry);
-            
-            if (keys.size() > order) {
-                // Разделение
-                int mid = keys.size() / 2;
-                LeafNode newNode = new LeafNode();
-                newNode.keys = new ArrayList<>(keys.subList(mid, keys.size()));
-                newNode.entries = new ArrayList<>(entries.subList(mid, entries.size()));
-                keys = new ArrayList<>(keys.subList(0, mid));
-                entries = new ArrayList<>(entries.subList(0, mid));
-                newNode.next = this.next;
-                this.next = newNode;
-                return new InsertResult(newNode);
+        boolean leaf = NodeLayout.isLeaf(buf);
+        List<byte[]> cells = new ArrayList<>(count + 1);
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            byte[] existing = layout.readCell(buf, i);
+            cells.add(existing);
+            total += existing.length;
+        }
+        cells.add(pos, cell);
+        total += cell.length;
+        
+        // Делим по объему, а не по числу ключей: ключи переменной длины
+        int mid = 0;
+        for (int half = 0; mid < cells.size() - 1 && half + cells.get(mid).length <= total / 2; mid++) {
+            half += cells.get(mid).length;
+        }
+        mid = Math.max(1, Math.min(mid, cells.size() - (leaf ? 1 : 2)));
+        
+        Page rightPage = bufferManager.newPage(file);
+        int rightId = rightPage.getPageId();
+        try {
+            ByteBuffer rightBuf = rightPage.getBuffer();
+            byte[] middle = cells.get(mid);
+            byte[] separator = layout.separatorOf(middle);
+            if (leaf) {
+                layout.writeNode(rightBuf, true, NodeLayout.link(buf), cells.subList(mid, cells.size()));
+                layout.writeNode(buf, true, rightId, cells.subList(0, mid));
+            } else {
+                // Средний ключ уходит в родителя, его потомок становится левым у правого узла
+                layout.writeNode(rightBuf, false, layout.childOf(middle), cells.subList(mid + 1, cells.size()));
+                layout.writeNode(buf, false, NodeLayout.link(buf), cells.subList(0, mid));
             }
-            return null;
+            return new Split(separator, rightId);
+        } finally {
+            bufferManager.unpinPage(file, rightId, true);
+        }
+    }
+    
+    /**
+     * Корень расщепился: новый корень с двумя потомками, метастраница указывает на него
+     */
+    private void growRoot(Split split) {
+        Page newRoot = bufferManager.newPage(file);
+        int newRootId = newRoot.getPageId();
+        try {
+            List<byte[]> cells = new ArrayList<>();
+            cells.add(layout.internalCell(split.separator, split.rightPageId));
+            layout.writeNode(newRoot.getBuffer(), false, rootPageId, cells);
+        } finally {
+            bufferManager.unpinPage(file, newRootId, true);
+        }
+        ByteBuffer meta = pin(META_PAGE);
+        try {
+            meta.putInt(META_ROOT_OFFSET, newRootId);
+        } finally {
+            bufferManager.unpinPage(file, META_PAGE, true);
+        }
+        rootPageId = newRootId;
+    }
+    
+    /**
+     * Выделить страницу под узел; содержимое запишет writeNodePage
+     */
+    private int allocateNode() {
+        Page page = bufferManager.newPage(file);
+        bufferManager.unpinPage(file, page.getPageId(), true);
+        return page.getPageId();
+    }
+    
+    private void writeNodePage(int pageId, boolean leaf, int link, List<byte[]> cells) {
+        ByteBuffer buf = pin(pageId);
+        try {
+            layout.writeNode(buf, leaf, link, cells);
+        } finally {
+            bufferManager.unpinPage(file, pageId, true);
+        }
+    }
+    
+    ByteBuffer pin(int pageId) {
+        return bufferManager.pinPage(file, pageId).getBuffer();
+    }
+    
+    void unpin(int pageId) {
+        unpin(pageId, false);
+    }
+    
+    void unpin(int pageId, boolean dirty) {
+        bufferManager.unpinPage(file, pageId, dirty);
+    }
+    
+    int rootPageId() {
+        return rootPageId;
+    }
+    
+    /**
+     * Курсор по цепочке листов: seek при создании, затем next по ссылкам на следующий лист.
+     *
+     * Записи очередного листа копируются в буфер курсора под блокировкой дерева, страница
+     * сразу отпускается. Между вызовами next курсор ничего не держит закрепленным, поэтому
+     * его можно бросить, не дочитав. Вставки, сделанные во время обхода в уже прочитанную
+     * часть диапазона, курсор не увидит; уже выданные записи не повторяются.
+     */
+    public class Cursor {
+        private final Comparable<?> start;
+        private final boolean startInclusive;
+        private final Comparable<?> end;
+        private final boolean endInclusive;
+        /** Следующий лист для чтения, NO_PAGE - диапазон дочитан */
+        int leafId;
+        /** Найдена первая запись диапазона: дальше листы читаются с начала */
+        boolean started;
+        private Comparable<?>[] keys = new Comparable<?>[0];
+        private int[] pageIds = new int[0];
+        private int[] slotIds = new int[0];
+        /** Записей в буфере и позиция текущей */
+        int count;
+        int index = -1;
+        
+        Cursor(Comparable<?> start, boolean startInclusive, Comparable<?> end, boolean endInclusive) {
+            this(start, startInclusive, end, endInclusive, BPlusTree.this.findLeaf(start));
+        }
+        
+        Cursor(Comparable<?> start, boolean startInclusive, Comparable<?> end, boolean endInclusive, int leafId) {
+            this.start = start;
+            this.startInclusive = startInclusive;
+            this.end = end;
+            this.endInclusive = endInclusive;
+            this.leafId = leafId;
         }
         
-        @Override
-        @SuppressWarnings({"unchecked", "rawtypes"})
-        List<IndexEntry> search(Comparable key) {
-            List<IndexEntry> result = new ArrayList<>();
-            for (int i = 0; i < keys.size(); i++) {
-                if (keys.get(i).equals(key)) {
-                    result.add(entries.get(i));
+        /**
+         * Перейти к следующей записи; false - записей в диапазоне больше нет
+         */
+        public boolean next() {
+            index++;
+            while (index >= count) {
+                if (leafId == NO_PAGE) {
+                    index = count;
+                    return false;
                 }
+                readLeaf();
             }
-            return result;
-        }
-        
-        @Override
-        @SuppressWarnings({"unchecked", "rawtypes"})
-        List<IndexEntry> rangeScan(Comparable start, Comparable end) {
-            List<IndexEntry> result = new ArrayList<>();
-            LeafNode node = this;
-            
-            while (node != null) {
-                for (int i = 0; i < node.keys.size(); i++) {
-                    Comparable key = node.keys.get(i);
-                    if (key.compareTo(start) >= 0 && key.compareTo(end) <= 0) {
-                        result.add(node.entries.get(i));
-                    } else if (key.compareTo(end) > 0) {
-                        return result;
+            return true;
+        }
+        
+        @SuppressWarnings("rawtypes")
+        public Comparable getKey() {
+            return (Comparable) keys[index];
+        }
+        
+        public int getPageId() {
+            return pageIds[index];
+        }
+        
+        public int getSlotId() {
+            return slotIds[index];
+        }
+        
+        /**
+         * Скопировать записи листа leafId, попадающие в диапазон, и запомнить следующий лист
+         */
+        void readLeaf() {
+            synchronized (BPlusTree.this) {
+                ByteBuffer buf = pin(leafId);
+                int next;
+                try {
+                    int keyCount = NodeLayout.keyCount(buf);
+                    int pos = 0;
+                    // Равные start ключи с исключенной границей могут тянуться на несколько листов
+                    if (!started && start != null) {
+                        pos = startInclusive ? layout.lowerBound(buf, start) : layout.upperBound(buf, start);
+                    }
+                    reserve(keyCount - pos);
+                    next = NodeLayout.link(buf);
+                    count = 0;
+                    for (; pos < keyCount; pos++) {
+                        if (end != null && pastEnd(layout.compareKeyAt(buf, pos, end))) {
+                            next = NO_PAGE;
+                            break;
+                        }
+                        copyEntry(buf, pos, count++);
                     }
+                    started |= count > 0;
+                } finally {
+                    unpin(leafId);
                 }
-                node = node.next;
+                leafId = next;
             }
-            return result;
+            index = 0;
+        }
+        
+        private boolean pastEnd(int compareToEnd) {
+            return endInclusive ? compareToEnd > 0 : compareToEnd >= 0;
+        }
+        
+        /**
+         * Буфер курсора вмещает не меньше size записей
+         */
+        void reserve(int size) {
+            if (pageIds.length < size) {
+                keys = new Comparable<?>[size];
+                pageIds = new int[size];
+                slotIds = new int[size];
+            }
+        }
+        
+        /**
+         * Скопировать запись pos листа в позицию i буфера
+         */
+        void copyEntry(ByteBuffer buf, int pos, int i) {
+            keys[i] = layout.keyAt(buf, pos);
+            pageIds[i] = layout.pageIdAt(buf, pos);
+            slotIds[i] = layout.slotIdAt(buf, pos);
         }
     }
     
-    static class InsertResult {
-        Node newNode;
+    /**
+     * Результат расщепления: ключ-разделитель и новая правая страница
+     */
+    private static final class Split {
+        final byte[] separator;
+        final int rightPageId;
         
-        InsertResult(Node newNode) {
-            this.newNode = newNode;
+        Split(byte[] separator, int rightPageId) {
+            this.separator = separator;
+            this.rightPageId = rightPageId;
         }
     }
     
@@ -246,4 +742,3 @@ public class BPlusTree {
         }
     }
 }
-
@@ -0,0 +1,94 @@
+package com.example.index;
+
+import com.example.buffer.BufferAccessStrategy;
+import com.example.buffer.BufferManager;
+import com.example.storage.Page;
+import com.example.storage.TableFile;
+import com.example.storage.TableMetadata;
+import com.example.storage.TupleCodec;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Построение индекса по существующим строкам таблицы (CREATE INDEX, перестроение при восстановлении).
+ *
+ * Пары (ключ, pageId, slotId) извлекаются одним последовательным проходом по таблице,
+ * сортируются (внешней сортировкой, если не помещаются в sortMemoryBytes) и загружаются
+ * в пустое дерево снизу вверх (BPlusTree.bulkLoad) с заданным заполнением страниц.
+ */
+public class IndexBuilder {
+    public static final long DEFAULT_SORT_MEMORY_BYTES = 16L * 1024 * 1024;
+    public static final double DEFAULT_FILL_FACTOR = 0.9;
+    
+    private final BufferManager bufferManager;
+    private final long sortMemoryBytes;
+    private final double fillFactor;
+    
+    public IndexBuilder(BufferManager bufferManager) {
+        this(bufferManager, DEFAULT_SORT_MEMORY_BYTES, DEFAULT_FILL_FACTOR);
+    }
+    
+    public IndexBuilder(BufferManager bufferManager, long sortMemoryBytes, double fillFactor) {
+        if (sortMemoryBytes <= 0) {
+            throw new IllegalArgumentException("Sort memory must be positive: " + sortMemoryBytes);
+        }
+        if (fillFactor <= 0 || fillFactor > 1) {
+            throw new IllegalArgumentException("Fill factor must be in (0, 1]: " + fillFactor);
+        }
+        this.bufferManager = bufferManager;
+        this.sortMemoryBytes = sortMemoryBytes;
+        this.fillFactor = fillFactor;
+    }
+    
+    /**
+     * Загрузить в пустой индекс ключи всех строк таблицы. Возвращает число загруженных ключей.
+     */
+    public int build(BPlusTree index, TableFile tableFile, TableMetadata metadata) {
+        List<Integer> pageIds = tableFile.getPageIds();
+        int columnIndex = metadata.getColumnIndex(index.getColumnName());
+        BufferAccessStrategy strategy = bufferManager.bulkReadStrategy(pageIds.size());
+        int extracted = 0;
+        
+        // Серии внешней сортировки - во временном каталоге рядом с данными
+        try (IndexEntrySorter sorter = new IndexEntrySorter(sortMemoryBytes,
+                tableFile.getFilePath().getParent().resolve("tmp"))) {
+            for (int pageId : pageIds) {
+                Page page = bufferManager.pinPage(tableFile, pageId, strategy);
+                Lock latch = page.getLatch().readLock();
+                latch.lock();
+                try {
+                    int slotCount = page.getSlotCount();
+                    for (int slot = 0; slot < slotCount; slot++) {
+                        ByteBuffer record = page.getRecordBuffer(slot);
+                        if (record == null) {
+                            continue; // Удаленный кортеж
+                        }
+                        
+                        // Читаем значение для индекса, пропуская колонки до нужной
+                        Object key = TupleCodec.readColumn(metadata, record, columnIndex);
+                        if (key != null) {
+                            sorter.add(new BPlusTree.IndexEntry((Comparable<?>) key, pageId, slot));
+                            extracted++;
+                        }
+                    }
+                } finally {
+                    latch.unlock();
+                    bufferManager.unpinPage(tableFile, pageId, false);
+                }
+            }
+            
+            index.bulkLoad(sorter.sorted(), fillFactor);
+        }
+        return extracted;
+    }
+    
+    public long getSortMemoryBytes() {
+        return sortMemoryBytes;
+    }
+    
+    public double getFillFactor() {
+        return fillFactor;
+    }
+}
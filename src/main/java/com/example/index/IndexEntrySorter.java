@@ -0,0 +1,211 @@
+package com.example.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Внешняя сортировка записей индекса для bulk load.
+ *
+ * Записи копятся в памяти, пока их оценочный объем не превысит memoryLimit; тогда
+ * порция сортируется и сбрасывается во временный файл-серию. sorted() возвращает
+ * записи по возрастанию ключа (при равных ключах - в порядке адреса кортежа):
+ * из памяти, если сбросов не было, иначе слиянием всех серий через очередь с приоритетом.
+ * close() удаляет временные файлы.
+ */
+final class IndexEntrySorter implements AutoCloseable {
+    @SuppressWarnings("unchecked")
+    static final Comparator<BPlusTree.IndexEntry> ORDER = (a, b) -> {
+        int cmp = a.key.compareTo(b.key);
+        if (cmp != 0) {
+            return cmp;
+        }
+        cmp = Integer.compare(a.pageId, b.pageId);
+        return cmp != 0 ? cmp : Integer.compare(a.slotId, b.slotId);
+    };
+    
+    private static final byte KEY_INTEGER = 'I';
+    private static final byte KEY_STRING = 'S';
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    
+    private final long memoryLimit;
+    private final Path tempDir;
+    private final List<Path> runs;
+    private final List<RunReader> readers;
+    private List<BPlusTree.IndexEntry> buffer;
+    private long bufferedBytes;
+    
+    IndexEntrySorter(long memoryLimit, Path tempDir) {
+        this.memoryLimit = memoryLimit;
+        this.tempDir = tempDir;
+        this.runs = new ArrayList<>();
+        this.readers = new ArrayList<>();
+        this.buffer = new ArrayList<>();
+    }
+    
+    void add(BPlusTree.IndexEntry entry) {
+        buffer.add(entry);
+        bufferedBytes += estimateSize(entry);
+        if (bufferedBytes >= memoryLimit) {
+            spill();
+        }
+    }
+    
+    /**
+     * Число серий, сброшенных на диск
+     */
+    int getRunCount() {
+        return runs.size();
+    }
+    
+    Iterator<BPlusTree.IndexEntry> sorted() {
+        if (runs.isEmpty()) {
+            buffer.sort(ORDER);
+            return buffer.iterator();
+        }
+        if (!buffer.isEmpty()) {
+            spill();
+        }
+        
+        PriorityQueue<RunReader> heads = new PriorityQueue<>(
+                (a, b) -> ORDER.compare(a.head, b.head));
+        try {
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.advance()) {
+                    heads.add(reader);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open sort run", e);
+        }
+        
+        return new Iterator<BPlusTree.IndexEntry>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+            
+            @Override
+            public BPlusTree.IndexEntry next() {
+                RunReader reader = heads.poll();
+                if (reader == null) {
+                    throw new NoSuchElementException();
+                }
+                BPlusTree.IndexEntry entry = reader.head;
+                try {
+                    if (reader.advance()) {
+                        heads.add(reader);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to read sort run", e);
+                }
+                return entry;
+            }
+        };
+    }
+    
+    @Override
+    public void close() {
+        for (RunReader reader : readers) {
+            try {
+                reader.in.close();
+            } catch (IOException e) {
+                // Игнорируем
+            }
+        }
+        readers.clear();
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                // Игнорируем: временный файл
+            }
+        }
+        runs.clear();
+        buffer = new ArrayList<>();
+    }
+    
+    /**
+     * Отсортировать порцию в памяти и записать ее в новую серию
+     */
+    private void spill() {
+        buffer.sort(ORDER);
+        try {
+            Files.createDirectories(tempDir);
+            Path run = Files.createTempFile(tempDir, "index_sort_", ".run");
+            runs.add(run);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(run), IO_BUFFER_SIZE))) {
+                for (BPlusTree.IndexEntry entry : buffer) {
+                    if (entry.key instanceof Integer) {
+                        out.writeByte(KEY_INTEGER);
+                        out.writeInt((Integer) entry.key);
+                    } else if (entry.key instanceof String) {
+                        out.writeByte(KEY_STRING);
+                        out.writeUTF((String) entry.key);
+                    } else {
+                        throw new RuntimeException("Unsupported index key type: "
+                                + entry.key.getClass().getSimpleName());
+                    }
+                    out.writeInt(entry.pageId);
+                    out.writeInt(entry.slotId);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write sort run", e);
+        }
+        buffer = new ArrayList<>();
+        bufferedBytes = 0;
+    }
+    
+    /**
+     * Грубая оценка места, занимаемого записью в куче: объект записи, ключ и ссылка в списке
+     */
+    private static long estimateSize(BPlusTree.IndexEntry entry) {
+        long keySize = entry.key instanceof String ? 40 + 2L * ((String) entry.key).length() : 16;
+        return 32 + keySize + 8;
+    }
+    
+    /**
+     * Чтение серии по одной записи; head - текущая запись
+     */
+    private static final class RunReader {
+        final DataInputStream in;
+        BPlusTree.IndexEntry head;
+        
+        RunReader(Path run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), IO_BUFFER_SIZE));
+        }
+        
+        boolean advance() throws IOException {
+            int tag = in.read();
+            if (tag < 0) {
+                head = null;
+                in.close();
+                return false;
+            }
+            Comparable<?> key;
+            if (tag == KEY_INTEGER) {
+                key = in.readInt();
+            } else if (tag == KEY_STRING) {
+                key = in.readUTF();
+            } else {
+                throw new IOException("Corrupted sort run: unknown key tag " + tag);
+            }
+            head = new BPlusTree.IndexEntry(key, in.readInt(), in.readInt());
+            return true;
+        }
+    }
+}
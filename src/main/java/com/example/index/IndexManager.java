@@ -1,79 +1,122 @@
 package com.example.index;
 
+import com.example.buffer.BufferManager;
+import com.example.catalog.Catalog;
+import com.example.storage.TableMetadata;
+
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * Менеджер индексов - управление всеми индексами
+ * Менеджер индексов - управление всеми индексами.
+ * Страницы индексов кешируются в том же буферном менеджере, что и страницы таблиц.
+ *
+ * Описания индексов хранятся в системном каталоге (Catalog), здесь - открытые деревья.
+ * Оптимизатор и исполнители находят индексы по имени или по таблице без обращения к диску.
+ * Менеджер один на сервер и общий для всех сессий.
  */
 public class IndexManager {
+    private static final String LEGACY_META_SUFFIX = ".idxmeta";
+    
     private String dataDir;
+    private final Catalog catalog;
     private Map<String, BPlusTree> indexes;
+    /** Индексы по имени таблицы: поиск индекса для фильтра и обновление индексов при вставке */
+    private final Map<String, List<BPlusTree>> indexesByTable;
+    private final BufferManager bufferManager;
+    private final int maxKeys;
+    
+    public IndexManager(Catalog catalog, BufferManager bufferManager) {
+        this(catalog, bufferManager, BPlusTree.PAGE_FANOUT);
+    }
     
-    public IndexManager(String dataDir) {
-        this.dataDir = dataDir;
-        this.indexes = new HashMap<>();
+    /**
+     * maxKeys - ветвление узлов индексов (BPlusTree.PAGE_FANOUT - по размеру страницы)
+     */
+    public IndexManager(Catalog catalog, BufferManager bufferManager, int maxKeys) {
+        this.catalog = catalog;
+        this.dataDir = catalog.getDataDir();
+        this.bufferManager = bufferManager;
+        this.maxKeys = maxKeys;
+        this.indexes = new ConcurrentHashMap<>();
+        this.indexesByTable = new ConcurrentHashMap<>();
         loadIndexes();
     }
     
     private void loadIndexes() {
-        Path dir = Paths.get(dataDir);
-        if (!Files.exists(dir)) {
-            try {
-                Files.createDirectories(dir);
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to create data directory", e);
-            }
-            return;
-        }
-        
-        try {
-            Files.list(dir).forEach(path -> {
-                String fileName = path.getFileName().toString();
-                if (fileName.endsWith(".idx")) {
-                    String indexName = fileName.substring(0, fileName.length() - 4);
-                    loadIndexMetadata(indexName);
-                }
-            });
-        } catch (IOException e) {
-            // Игнорируем ошибки при загрузке
+        migrateLegacyMetadata();
+        for (Catalog.IndexInfo info : catalog.getIndexes()) {
+            // Формат узлов записан в самом файле индекса; файла может еще не быть,
+            // если его страницы не успели записать
+            boolean intKeys = BPlusTree.readLayoutCode(dataDir, info.getIndexName()) == IntNodeLayout.CODE;
+            register(openTree(info.getIndexName(), info.getTableName(), info.getColumnName(), intKeys));
         }
     }
     
-    private void loadIndexMetadata(String indexName) {
-        Path metaPath = Paths.get(dataDir, indexName + ".idxmeta");
-        if (Files.exists(metaPath)) {
+    /**
+     * Перенести описания индексов старого формата (indexName.idxmeta, сериализованный
+     * IndexMetadata) в каталог и удалить их файлы. Выполняется один раз при открытии.
+     */
+    private void migrateLegacyMetadata() {
+        List<Path> metaFiles;
+        try (Stream<Path> stream = Files.list(Paths.get(dataDir))) {
+            metaFiles = stream
+                    .filter(path -> path.getFileName().toString().endsWith(LEGACY_META_SUFFIX))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load indexes", e);
+        }
+        
+        for (Path metaPath : metaFiles) {
+            String fileName = metaPath.getFileName().toString();
+            String indexName = fileName.substring(0, fileName.length() - LEGACY_META_SUFFIX.length());
             try (ObjectInputStream ois = new ObjectInputStream(
                     new FileInputStream(metaPath.toFile()))) {
                 IndexMetadata meta = (IndexMetadata) ois.readObject();
-                BPlusTree tree = new BPlusTree(indexName, meta.tableName, 
-                        meta.columnName, dataDir);
-                indexes.put(indexName, tree);
+                if (catalog.getIndex(indexName) == null) {
+                    catalog.createIndex(new Catalog.IndexInfo(indexName, meta.tableName, meta.columnName));
+                }
+                Files.delete(metaPath);
             } catch (Exception e) {
-                // Игнорируем ошибки
+                // Испорченное описание пропускаем, как и раньше: индекс можно создать заново
             }
         }
     }
     
-    public void createIndex(String indexName, String tableName, String columnName) {
-        IndexMetadata meta = new IndexMetadata(tableName, columnName);
-        Path metaPath = Paths.get(dataDir, indexName + ".idxmeta");
-        try {
-            Files.createDirectories(metaPath.getParent());
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-                    new FileOutputStream(metaPath.toFile()))) {
-                oos.writeObject(meta);
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to save index metadata", e);
+    /**
+     * Создать пустой индекс по колонке. Для INTEGER-колонки создается IntBPlusTree
+     * (ключи int без упаковки в объекты), для остальных - BPlusTree.
+     */
+    public void createIndex(String indexName, String tableName, TableMetadata.Column column) {
+        String columnName = column.getName();
+        register(openTree(indexName, tableName, columnName, IntBPlusTree.supportsType(column.getType())));
+        catalog.createIndex(new Catalog.IndexInfo(indexName, tableName, columnName));
+    }
+    
+    private synchronized void register(BPlusTree index) {
+        BPlusTree previous = indexes.put(index.getIndexName(), index);
+        if (previous != null) {
+            indexesByTable.get(previous.getTableName()).remove(previous);
         }
-        
-        BPlusTree tree = new BPlusTree(indexName, tableName, columnName, dataDir);
-        indexes.put(indexName, tree);
+        indexesByTable.computeIfAbsent(index.getTableName(), t -> new CopyOnWriteArrayList<>()).add(index);
+    }
+    
+    private BPlusTree openTree(String indexName, String tableName, String columnName, boolean intKeys) {
+        if (intKeys) {
+            return new IntBPlusTree(indexName, tableName, columnName, dataDir, bufferManager, maxKeys);
+        }
+        return new BPlusTree(indexName, tableName, columnName, dataDir, bufferManager, maxKeys);
     }
     
     public BPlusTree getIndex(String indexName) {
@@ -81,35 +124,24 @@ public class IndexManager {
     }
     
     public BPlusTree findIndexForColumn(String tableName, String columnName) {
-        for (Map.Entry<String, BPlusTree> entry : indexes.entrySet()) {
-            String indexName = entry.getKey();
-            BPlusTree index = entry.getValue();
-            
-            // Проверяем по метаданным
-            Path metaPath = Paths.get(dataDir, indexName + ".idxmeta");
-            if (Files.exists(metaPath)) {
-                try (ObjectInputStream ois = new ObjectInputStream(
-                        new FileInputStream(metaPath.toFile()))) {
-                    IndexMetadata meta = (IndexMetadata) ois.readObject();
-                    if (meta.tableName.equals(tableName) && 
-                        meta.columnName.equalsIgnoreCase(columnName)) {
-                        return index;
-                    }
-                } catch (Exception e) {
-                    // Продолжаем поиск
-                }
+        for (BPlusTree index : getIndexesForTable(tableName)) {
+            if (index.getColumnName().equalsIgnoreCase(columnName)) {
+                return index;
             }
         }
         return null;
     }
     
-    private String indexName(BPlusTree tree) {
-        for (Map.Entry<String, BPlusTree> entry : indexes.entrySet()) {
-            if (entry.getValue() == tree) {
-                return entry.getKey();
-            }
-        }
-        return null;
+    /**
+     * Индексы таблицы (пустой список, если их нет)
+     */
+    public List<BPlusTree> getIndexesForTable(String tableName) {
+        List<BPlusTree> tableIndexes = indexesByTable.get(tableName);
+        return tableIndexes != null ? Collections.unmodifiableList(tableIndexes) : Collections.emptyList();
+    }
+    
+    public Collection<BPlusTree> getIndexes() {
+        return new ArrayList<>(indexes.values());
     }
     
     public void saveAll() {
@@ -118,47 +150,42 @@ public class IndexManager {
         }
     }
     
+    /**
+     * fsync файлов всех индексов (контрольная точка: страницы уже записаны буферным менеджером)
+     */
+    public void syncAll() {
+        for (BPlusTree index : indexes.values()) {
+            index.sync();
+        }
+    }
+    
+    public void closeAll() {
+        for (BPlusTree index : indexes.values()) {
+            index.close();
+        }
+    }
+    
     public void dropIndexesForTable(String tableName) {
-        // Находим все индексы для таблицы и удаляем их
-        java.util.List<String> indexesToRemove = new java.util.ArrayList<>();
-        
-        for (Map.Entry<String, BPlusTree> entry : indexes.entrySet()) {
-            String indexName = entry.getKey();
-            Path metaPath = Paths.get(dataDir, indexName + ".idxmeta");
-            if (Files.exists(metaPath)) {
-                try (ObjectInputStream ois = new ObjectInputStream(
-                        new FileInputStream(metaPath.toFile()))) {
-                    IndexMetadata meta = (IndexMetadata) ois.readObject();
-                    if (meta.tableName.equals(tableName)) {
-                        indexesToRemove.add(indexName);
-                    }
-                } catch (Exception e) {
-                    // Игнорируем ошибки
-                }
+        // Убираем индексы таблицы из каталога и удаляем их файлы
+        List<BPlusTree> tableIndexes;
+        synchronized (this) {
+            tableIndexes = indexesByTable.remove(tableName);
+            if (tableIndexes == null) {
+                return;
             }
-        }
-        
-        // Удаляем индексы из памяти и с диска
-        for (String indexName : indexesToRemove) {
-            indexes.remove(indexName);
-            
-            // Удаляем файлы индекса
-            try {
-                Path metaPath = Paths.get(dataDir, indexName + ".idxmeta");
-                if (Files.exists(metaPath)) {
-                    Files.delete(metaPath);
-                }
-                
-                Path idxPath = Paths.get(dataDir, indexName + ".idx");
-                if (Files.exists(idxPath)) {
-                    Files.delete(idxPath);
-                }
-            } catch (IOException e) {
-                // Игнорируем ошибки удаления файлов
+            for (BPlusTree index : tableIndexes) {
+                indexes.remove(index.getIndexName());
             }
         }
+        for (BPlusTree index : tableIndexes) {
+            index.drop();
+            catalog.dropIndex(index.getIndexName());
+        }
     }
     
+    /**
+     * Описание индекса в старом формате .idxmeta - читается только при миграции в каталог
+     */
     public static class IndexMetadata implements Serializable {
         public String tableName;
         public String columnName;
@@ -0,0 +1,211 @@
+package com.example.index;
+
+import com.example.buffer.BufferManager;
+
+import java.nio.ByteBuffer;
+
+/**
+ * B+Tree по INTEGER-колонке: узлы в формате IntNodeLayout (массив int ключей
+ * и адреса кортежей, упакованные в long). IndexManager выбирает его сам по типу колонки.
+ *
+ * Вставка int-ключа и курсор дерева (IntCursor) работают с ключами как с int: спуск,
+ * сравнение с границами и запись в лист идут без упаковки ключей в объекты и без
+ * промежуточных ячеек. Курсор отдает адреса упакованными (getRid, pageId и slotId
+ * достаются ridPageId/ridSlotId) и переставляется на новый диапазон через seek, так что
+ * поиск по многим ключам обходится одним курсором. Расщепление узла идет общим путем BPlusTree.
+ */
+public class IntBPlusTree extends BPlusTree {
+    private static final long[] NO_RIDS = new long[0];
+    
+    public IntBPlusTree(String indexName, String tableName, String columnName, String dataDir,
+                        BufferManager bufferManager) {
+        this(indexName, tableName, columnName, dataDir, bufferManager, PAGE_FANOUT);
+    }
+    
+    public IntBPlusTree(String indexName, String tableName, String columnName, String dataDir,
+                        BufferManager bufferManager, int maxKeys) {
+        super(indexName, tableName, columnName, dataDir, bufferManager, maxKeys, IntNodeLayout.INSTANCE);
+    }
+    
+    /**
+     * Подходит ли int-дерево для колонки этого типа
+     */
+    public static boolean supportsType(String columnType) {
+        return "INT".equalsIgnoreCase(columnType) || "INTEGER".equalsIgnoreCase(columnType);
+    }
+    
+    public static long rid(int pageId, int slotId) {
+        return IntNodeLayout.rid(pageId, slotId);
+    }
+    
+    public static int ridPageId(long rid) {
+        return IntNodeLayout.ridPageId(rid);
+    }
+    
+    public static int ridSlotId(long rid) {
+        return IntNodeLayout.ridSlotId(rid);
+    }
+    
+    /**
+     * Курсор по ключам между start и end (null - без границы с этой стороны).
+     * Исключенные границы сдвигаются на единицу - для int-ключей это тот же диапазон.
+     */
+    @Override
+    public synchronized IntCursor cursor(Comparable<?> start, boolean startInclusive,
+                                         Comparable<?> end, boolean endInclusive) {
+        int low = Integer.MIN_VALUE;
+        int high = Integer.MAX_VALUE;
+        IntCursor cursor = new IntCursor();
+        if (start != null) {
+            int key = IntNodeLayout.toInt(start);
+            if (!startInclusive && key == Integer.MAX_VALUE) {
+                return cursor;
+            }
+            low = startInclusive ? key : key + 1;
+        }
+        if (end != null) {
+            int key = IntNodeLayout.toInt(end);
+            if (!endInclusive && key == Integer.MIN_VALUE) {
+                return cursor;
+            }
+            high = endInclusive ? key : key - 1;
+        }
+        return cursor.seek(low, high);
+    }
+    
+    /**
+     * Пустой курсор; диапазон задается seek
+     */
+    public IntCursor cursor() {
+        return new IntCursor();
+    }
+    
+    @Override
+    public synchronized void insert(Comparable<?> key, int pageId, int slotId) {
+        insert(IntNodeLayout.toInt(key), pageId, slotId);
+    }
+    
+    /**
+     * Вставка без расщепления пишет ключ и адрес прямо в лист; если лист полон,
+     * вставка повторяется общим путем BPlusTree с расщеплением по пути от корня
+     */
+    public synchronized void insert(int key, int pageId, int slotId) {
+        int nodeId = findLeaf(key, true);
+        ByteBuffer buf = pin(nodeId);
+        boolean inserted = false;
+        try {
+            int count = NodeLayout.keyCount(buf);
+            if (count < IntNodeLayout.LEAF_CAPACITY && (getMaxKeys() == PAGE_FANOUT || count < getMaxKeys())) {
+                IntNodeLayout.insertLeaf(buf, IntNodeLayout.upperBound(buf, key), key, rid(pageId, slotId));
+                inserted = true;
+            }
+        } finally {
+            unpin(nodeId, inserted);
+        }
+        if (!inserted) {
+            super.insert(Integer.valueOf(key), pageId, slotId);
+        }
+    }
+    
+    /**
+     * Лист для key: самый левый, где он может лежать (для поиска), или тот, куда
+     * его вставит BPlusTree - после равных ключей (upper)
+     */
+    private int findLeaf(int key, boolean upper) {
+        int nodeId = rootPageId();
+        while (true) {
+            ByteBuffer buf = pin(nodeId);
+            int child;
+            try {
+                if (NodeLayout.isLeaf(buf)) {
+                    return nodeId;
+                }
+                int pos = upper ? IntNodeLayout.upperBound(buf, key) : IntNodeLayout.lowerBound(buf, key);
+                child = IntNodeLayout.INSTANCE.childAt(buf, pos);
+            } finally {
+                unpin(nodeId);
+            }
+            nodeId = child;
+        }
+    }
+    
+    /**
+     * Курсор по ключам из [low, high] с буфером из int ключей и упакованных адресов
+     */
+    public class IntCursor extends Cursor {
+        private int low;
+        private int high;
+        private int[] keys = new int[0];
+        private long[] rids = NO_RIDS;
+        
+        IntCursor() {
+            super(null, true, null, true, NO_PAGE);
+        }
+        
+        /**
+         * Переставить курсор на ключи из [low, high]; буфер курсора переиспользуется
+         */
+        public IntCursor seek(int low, int high) {
+            synchronized (IntBPlusTree.this) {
+                this.low = low;
+                this.high = high;
+                leafId = low > high ? NO_PAGE : findLeaf(low, false);
+            }
+            started = false;
+            count = 0;
+            index = -1;
+            return this;
+        }
+        
+        public long getRid() {
+            return rids[index];
+        }
+        
+        @Override
+        public Comparable<Integer> getKey() {
+            return keys[index];
+        }
+        
+        @Override
+        public int getPageId() {
+            return ridPageId(rids[index]);
+        }
+        
+        @Override
+        public int getSlotId() {
+            return ridSlotId(rids[index]);
+        }
+        
+        @Override
+        void readLeaf() {
+            synchronized (IntBPlusTree.this) {
+                ByteBuffer buf = pin(leafId);
+                int next;
+                try {
+                    int keyCount = NodeLayout.keyCount(buf);
+                    int pos = started ? 0 : IntNodeLayout.lowerBound(buf, low);
+                    if (rids.length < keyCount - pos) {
+                        keys = new int[keyCount - pos];
+                        rids = new long[keyCount - pos];
+                    }
+                    next = NodeLayout.link(buf);
+                    count = 0;
+                    for (; pos < keyCount; pos++) {
+                        int key = IntNodeLayout.intKeyAt(buf, pos);
+                        if (key > high) {
+                            next = NO_PAGE;
+                            break;
+                        }
+                        keys[count] = key;
+                        rids[count++] = IntNodeLayout.ridAt(buf, pos);
+                    }
+                    started |= count > 0;
+                } finally {
+                    unpin(leafId);
+                }
+                leafId = next;
+            }
+            index = 0;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.index;
+
+import com.example.storage.Page;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Узел индекса по INTEGER-колонке: ключи и адреса лежат в странице двумя
+ * массивами фиксированной ширины, без тегов типа и таблицы смещений.
+ *
+ * Лист:  [заголовок][ключи int x LEAF_CAPACITY][адреса long x LEAF_CAPACITY]
+ * Внутренний узел: [заголовок][ключи int x INTERNAL_CAPACITY][потомки int x INTERNAL_CAPACITY]
+ * Адрес кортежа упакован в long: pageId << 32 | slotId; потомок с номером i + 1
+ * лежит в i-м элементе массива потомков, самый левый - в ссылке заголовка.
+ *
+ * Бинарный поиск идет по непрерывному массиву int прямо в странице: 12 байт на запись
+ * листа вместо 17 у формата с тегами (плюс 2 байта смещения), и соседние ключи лежат рядом.
+ */
+final class IntNodeLayout extends NodeLayout {
+    static final int CODE = 2;
+    static final IntNodeLayout INSTANCE = new IntNodeLayout();
+    
+    static final int LEAF_CAPACITY = (Page.PAGE_SIZE - NODE_HEADER_SIZE) / 12;
+    static final int INTERNAL_CAPACITY = (Page.PAGE_SIZE - NODE_HEADER_SIZE) / 8;
+    private static final int RIDS_OFFSET = NODE_HEADER_SIZE + LEAF_CAPACITY * 4;
+    private static final int CHILDREN_OFFSET = NODE_HEADER_SIZE + INTERNAL_CAPACITY * 4;
+    
+    private IntNodeLayout() {
+    }
+    
+    static long rid(int pageId, int slotId) {
+        return ((long) pageId << 32) | (slotId & 0xFFFFFFFFL);
+    }
+    
+    static int ridPageId(long rid) {
+        return (int) (rid >>> 32);
+    }
+    
+    static int ridSlotId(long rid) {
+        return (int) rid;
+    }
+    
+    static int intKeyAt(ByteBuffer buf, int index) {
+        return buf.getInt(NODE_HEADER_SIZE + index * 4);
+    }
+    
+    static long ridAt(ByteBuffer buf, int index) {
+        return buf.getLong(RIDS_OFFSET + index * 8);
+    }
+    
+    /**
+     * Число ключей узла, меньших key
+     */
+    static int lowerBound(ByteBuffer buf, int key) {
+        int low = 0;
+        int high = keyCount(buf);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (intKeyAt(buf, mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Число ключей узла, не больших key
+     */
+    static int upperBound(ByteBuffer buf, int key) {
+        int low = 0;
+        int high = keyCount(buf);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (intKeyAt(buf, mid) <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Вставить запись в лист на позицию pos без промежуточной ячейки; место проверяет вызывающий
+     */
+    static void insertLeaf(ByteBuffer buf, int pos, int key, long rid) {
+        int count = keyCount(buf);
+        int keyAt = NODE_HEADER_SIZE + pos * 4;
+        buf.put(keyAt + 4, buf, keyAt, (count - pos) * 4);
+        buf.putInt(keyAt, key);
+        int ridAt = RIDS_OFFSET + pos * 8;
+        buf.put(ridAt + 8, buf, ridAt, (count - pos) * 8);
+        buf.putLong(ridAt, rid);
+        buf.putInt(KEY_COUNT_OFFSET, count + 1);
+    }
+    
+    @Override
+    int code() {
+        return CODE;
+    }
+    
+    @Override
+    byte[] leafCell(Comparable<?> key, int pageId, int slotId) {
+        return ByteBuffer.allocate(12).putInt(toInt(key)).putLong(rid(pageId, slotId)).array();
+    }
+    
+    @Override
+    byte[] internalCell(byte[] separator, int child) {
+        return ByteBuffer.allocate(8).put(separator, 0, 4).putInt(child).array();
+    }
+    
+    @Override
+    byte[] separatorOf(byte[] cell) {
+        byte[] key = new byte[4];
+        System.arraycopy(cell, 0, key, 0, 4);
+        return key;
+    }
+    
+    @Override
+    int childOf(byte[] internalCell) {
+        return ByteBuffer.wrap(internalCell).getInt(4);
+    }
+    
+    @Override
+    int cellCost(byte[] cell, boolean leaf) {
+        return leaf ? 12 : 8;
+    }
+    
+    @Override
+    int capacity(boolean leaf) {
+        return leaf ? LEAF_CAPACITY * 12 : INTERNAL_CAPACITY * 8;
+    }
+    
+    @Override
+    boolean hasRoom(ByteBuffer buf, byte[] cell) {
+        return keyCount(buf) < (isLeaf(buf) ? LEAF_CAPACITY : INTERNAL_CAPACITY);
+    }
+    
+    @Override
+    void insertAt(ByteBuffer buf, int pos, byte[] cell) {
+        int count = keyCount(buf);
+        int valueWidth = isLeaf(buf) ? 8 : 4;
+        int valuesOffset = isLeaf(buf) ? RIDS_OFFSET : CHILDREN_OFFSET;
+        // Сдвигаем хвосты обоих массивов одним копированием внутри страницы
+        int keyAt = NODE_HEADER_SIZE + pos * 4;
+        buf.put(keyAt + 4, buf, keyAt, (count - pos) * 4);
+        buf.put(keyAt, cell, 0, 4);
+        int valueAt = valuesOffset + pos * valueWidth;
+        buf.put(valueAt + valueWidth, buf, valueAt, (count - pos) * valueWidth);
+        buf.put(valueAt, cell, 4, valueWidth);
+        buf.putInt(KEY_COUNT_OFFSET, count + 1);
+    }
+    
+    @Override
+    byte[] readCell(ByteBuffer buf, int index) {
+        if (isLeaf(buf)) {
+            return ByteBuffer.allocate(12).putInt(intKeyAt(buf, index)).putLong(ridAt(buf, index)).array();
+        }
+        return ByteBuffer.allocate(8).putInt(intKeyAt(buf, index))
+                .putInt(buf.getInt(CHILDREN_OFFSET + index * 4)).array();
+    }
+    
+    @Override
+    void writeNode(ByteBuffer buf, boolean leaf, int link, List<byte[]> cells) {
+        writeHeader(buf, leaf, link, cells.size());
+        for (int i = 0; i < cells.size(); i++) {
+            ByteBuffer cell = ByteBuffer.wrap(cells.get(i));
+            buf.putInt(NODE_HEADER_SIZE + i * 4, cell.getInt(0));
+            if (leaf) {
+                buf.putLong(RIDS_OFFSET + i * 8, cell.getLong(4));
+            } else {
+                buf.putInt(CHILDREN_OFFSET + i * 4, cell.getInt(4));
+            }
+        }
+    }
+    
+    @Override
+    int childAt(ByteBuffer buf, int pos) {
+        return pos == 0 ? link(buf) : buf.getInt(CHILDREN_OFFSET + (pos - 1) * 4);
+    }
+    
+    @Override
+    int compareKeyAt(ByteBuffer buf, int index, Comparable<?> key) {
+        return Integer.compare(intKeyAt(buf, index), toInt(key));
+    }
+    
+    /**
+     * Границы поиска сравниваются как int: ключ распаковывается один раз, а не в каждой итерации
+     */
+    @Override
+    int lowerBound(ByteBuffer buf, Comparable<?> key) {
+        return lowerBound(buf, toInt(key));
+    }
+    
+    @Override
+    int upperBound(ByteBuffer buf, Comparable<?> key) {
+        return upperBound(buf, toInt(key));
+    }
+    
+    @Override
+    @SuppressWarnings("rawtypes")
+    Comparable keyAt(ByteBuffer buf, int index) {
+        return intKeyAt(buf, index);
+    }
+    
+    @Override
+    int pageIdAt(ByteBuffer buf, int index) {
+        return ridPageId(ridAt(buf, index));
+    }
+    
+    @Override
+    int slotIdAt(ByteBuffer buf, int index) {
+        return ridSlotId(ridAt(buf, index));
+    }
+    
+    static int toInt(Comparable<?> key) {
+        if (key instanceof Integer) {
+            return (Integer) key;
+        }
+        throw new RuntimeException("Integer index does not accept key of type "
+                + (key == null ? "null" : key.getClass().getSimpleName()));
+    }
+}
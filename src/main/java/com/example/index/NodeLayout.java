@@ -0,0 +1,138 @@
+package com.example.index;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Формат страницы-узла B+Tree: как в странице лежат ключи, адреса кортежей и потомки.
+ *
+ * Заголовок у всех форматов общий:
+ * [число ключей int][флаги int][LSN long][ссылка int][служебное int] - 24 байта.
+ * Ссылка у листа - следующий лист (-1, если его нет), у внутреннего узла - самый левый потомок.
+ *
+ * Алгоритмы дерева (спуск, расщепление, bulk load) работают с ячейками в виде byte[]:
+ * ячейка листа - ключ и адрес кортежа, ячейка внутреннего узла - разделитель и потомок
+ * справа от него. Как ячейки раскладываются по странице, решает формат.
+ */
+abstract class NodeLayout {
+    static final int KEY_COUNT_OFFSET = 0;
+    static final int FLAGS_OFFSET = 4;
+    static final int LINK_OFFSET = 16;
+    static final int NODE_HEADER_SIZE = 24;
+    static final int FLAG_LEAF = 1;
+    
+    /**
+     * Код формата в метастранице индекса
+     */
+    abstract int code();
+    
+    abstract byte[] leafCell(Comparable<?> key, int pageId, int slotId);
+    
+    abstract byte[] internalCell(byte[] separator, int child);
+    
+    /**
+     * Ключ ячейки (листа или внутреннего узла) в виде разделителя для родителя
+     */
+    abstract byte[] separatorOf(byte[] cell);
+    
+    /**
+     * Потомок, записанный в ячейке внутреннего узла
+     */
+    abstract int childOf(byte[] internalCell);
+    
+    /**
+     * Сколько байт узла занимает ячейка вместе со служебными данными
+     */
+    abstract int cellCost(byte[] cell, boolean leaf);
+    
+    /**
+     * Байт узла под ячейки
+     */
+    abstract int capacity(boolean leaf);
+    
+    /**
+     * Поместится ли ячейка в узел без расщепления
+     */
+    abstract boolean hasRoom(ByteBuffer buf, byte[] cell);
+    
+    /**
+     * Вставить ячейку на позицию pos (место проверено hasRoom)
+     */
+    abstract void insertAt(ByteBuffer buf, int pos, byte[] cell);
+    
+    abstract byte[] readCell(ByteBuffer buf, int index);
+    
+    /**
+     * Переписать узел целиком: заголовок и ячейки по порядку
+     */
+    abstract void writeNode(ByteBuffer buf, boolean leaf, int link, List<byte[]> cells);
+    
+    /**
+     * Потомок внутреннего узла с номером pos (0 - самый левый)
+     */
+    abstract int childAt(ByteBuffer buf, int pos);
+    
+    /**
+     * Сравнить ключ с номером index с key
+     */
+    abstract int compareKeyAt(ByteBuffer buf, int index, Comparable<?> key);
+    
+    @SuppressWarnings("rawtypes")
+    abstract Comparable keyAt(ByteBuffer buf, int index);
+    
+    abstract int pageIdAt(ByteBuffer buf, int index);
+    
+    abstract int slotIdAt(ByteBuffer buf, int index);
+    
+    /**
+     * Число ключей узла, меньших key (бинарный поиск)
+     */
+    int lowerBound(ByteBuffer buf, Comparable<?> key) {
+        int low = 0;
+        int high = keyCount(buf);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareKeyAt(buf, mid, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Число ключей узла, не больших key (бинарный поиск)
+     */
+    int upperBound(ByteBuffer buf, Comparable<?> key) {
+        int low = 0;
+        int high = keyCount(buf);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareKeyAt(buf, mid, key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    static int keyCount(ByteBuffer buf) {
+        return buf.getInt(KEY_COUNT_OFFSET);
+    }
+    
+    static boolean isLeaf(ByteBuffer buf) {
+        return (buf.getInt(FLAGS_OFFSET) & FLAG_LEAF) != 0;
+    }
+    
+    static int link(ByteBuffer buf) {
+        return buf.getInt(LINK_OFFSET);
+    }
+    
+    static void writeHeader(ByteBuffer buf, boolean leaf, int link, int count) {
+        buf.putInt(KEY_COUNT_OFFSET, count);
+        buf.putInt(FLAGS_OFFSET, leaf ? FLAG_LEAF : 0);
+        buf.putInt(LINK_OFFSET, link);
+    }
+}
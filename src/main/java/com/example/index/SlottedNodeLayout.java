@@ -0,0 +1,201 @@
+package com.example.index;
+
+import com.example.storage.Page;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Узел с ключами переменной длины (INTEGER и VARCHAR):
+ * [заголовок][смещения ячеек u16 ...] ... [ячейки]
+ * Ячейки пишутся от конца страницы, смещения упорядочены по ключу; служебное поле
+ * заголовка - начало занятой ячейками области (конец свободного места).
+ * Ячейка листа - [ключ][pageId int][slotId int], ячейка внутреннего узла -
+ * [ключ][потомок int]. Ключ - 'I' + int или 'S' + u16 длина + UTF-8.
+ */
+final class SlottedNodeLayout extends NodeLayout {
+    static final int CODE = 1;
+    static final SlottedNodeLayout INSTANCE = new SlottedNodeLayout();
+    
+    private static final int FREE_END_OFFSET = 20;
+    private static final int CELL_POINTER_SIZE = 2;
+    
+    /** Ячейка не больше четверти узла: после расщепления обе половины гарантированно помещаются */
+    static final int MAX_KEY_SIZE = (Page.PAGE_SIZE - NODE_HEADER_SIZE) / 4 - CELL_POINTER_SIZE - 8;
+    
+    private SlottedNodeLayout() {
+    }
+    
+    @Override
+    int code() {
+        return CODE;
+    }
+    
+    @Override
+    byte[] leafCell(Comparable<?> key, int pageId, int slotId) {
+        byte[] keyBytes = encodeKey(key);
+        if (keyBytes.length > MAX_KEY_SIZE) {
+            throw new RuntimeException("Index key too large: " + keyBytes.length + " bytes (max " + MAX_KEY_SIZE + ")");
+        }
+        return ByteBuffer.allocate(keyBytes.length + 8)
+                .put(keyBytes).putInt(pageId).putInt(slotId).array();
+    }
+    
+    @Override
+    byte[] internalCell(byte[] separator, int child) {
+        return ByteBuffer.allocate(separator.length + 4).put(separator).putInt(child).array();
+    }
+    
+    @Override
+    byte[] separatorOf(byte[] cell) {
+        byte[] key = new byte[keySize(ByteBuffer.wrap(cell), 0)];
+        System.arraycopy(cell, 0, key, 0, key.length);
+        return key;
+    }
+    
+    @Override
+    int childOf(byte[] internalCell) {
+        ByteBuffer cell = ByteBuffer.wrap(internalCell);
+        return cell.getInt(keySize(cell, 0));
+    }
+    
+    @Override
+    int cellCost(byte[] cell, boolean leaf) {
+        return cell.length + CELL_POINTER_SIZE;
+    }
+    
+    @Override
+    int capacity(boolean leaf) {
+        return Page.PAGE_SIZE - NODE_HEADER_SIZE;
+    }
+    
+    @Override
+    boolean hasRoom(ByteBuffer buf, byte[] cell) {
+        int freeSpace = buf.getInt(FREE_END_OFFSET) - (NODE_HEADER_SIZE + keyCount(buf) * CELL_POINTER_SIZE);
+        return cell.length + CELL_POINTER_SIZE <= freeSpace;
+    }
+    
+    @Override
+    void insertAt(ByteBuffer buf, int pos, byte[] cell) {
+        int count = keyCount(buf);
+        int offset = buf.getInt(FREE_END_OFFSET) - cell.length;
+        buf.put(offset, cell);
+        for (int i = count; i > pos; i--) {
+            setCellOffset(buf, i, cellOffset(buf, i - 1));
+        }
+        setCellOffset(buf, pos, offset);
+        buf.putInt(KEY_COUNT_OFFSET, count + 1);
+        buf.putInt(FREE_END_OFFSET, offset);
+    }
+    
+    @Override
+    byte[] readCell(ByteBuffer buf, int index) {
+        int offset = cellOffset(buf, index);
+        int length = keySize(buf, offset) + (isLeaf(buf) ? 8 : 4);
+        byte[] cell = new byte[length];
+        buf.get(offset, cell);
+        return cell;
+    }
+    
+    @Override
+    void writeNode(ByteBuffer buf, boolean leaf, int link, List<byte[]> cells) {
+        int offset = Page.PAGE_SIZE;
+        writeHeader(buf, leaf, link, cells.size());
+        for (int i = 0; i < cells.size(); i++) {
+            byte[] cell = cells.get(i);
+            offset -= cell.length;
+            buf.put(offset, cell);
+            setCellOffset(buf, i, offset);
+        }
+        buf.putInt(FREE_END_OFFSET, offset);
+    }
+    
+    @Override
+    int childAt(ByteBuffer buf, int pos) {
+        if (pos == 0) {
+            return link(buf);
+        }
+        int offset = cellOffset(buf, pos - 1);
+        return buf.getInt(offset + keySize(buf, offset));
+    }
+    
+    /**
+     * Целые ключи сравниваются прямо в странице, без распаковки
+     */
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    int compareKeyAt(ByteBuffer buf, int index, Comparable<?> key) {
+        int offset = cellOffset(buf, index);
+        if (key instanceof Integer && buf.get(offset) == 'I') {
+            return Integer.compare(buf.getInt(offset + 1), (Integer) key);
+        }
+        return readKey(buf, offset).compareTo(key);
+    }
+    
+    @Override
+    @SuppressWarnings("rawtypes")
+    Comparable keyAt(ByteBuffer buf, int index) {
+        return readKey(buf, cellOffset(buf, index));
+    }
+    
+    @Override
+    int pageIdAt(ByteBuffer buf, int index) {
+        int offset = cellOffset(buf, index);
+        return buf.getInt(offset + keySize(buf, offset));
+    }
+    
+    @Override
+    int slotIdAt(ByteBuffer buf, int index) {
+        int offset = cellOffset(buf, index);
+        return buf.getInt(offset + keySize(buf, offset) + 4);
+    }
+    
+    private static int cellOffset(ByteBuffer buf, int index) {
+        return Short.toUnsignedInt(buf.getShort(NODE_HEADER_SIZE + index * CELL_POINTER_SIZE));
+    }
+    
+    private static void setCellOffset(ByteBuffer buf, int index, int offset) {
+        buf.putShort(NODE_HEADER_SIZE + index * CELL_POINTER_SIZE, (short) offset);
+    }
+    
+    private static byte[] encodeKey(Comparable<?> key) {
+        if (key instanceof Integer) {
+            return ByteBuffer.allocate(5).put((byte) 'I').putInt((Integer) key).array();
+        }
+        if (key instanceof String) {
+            byte[] utf = ((String) key).getBytes(StandardCharsets.UTF_8);
+            if (utf.length > 0xFFFF) {
+                throw new RuntimeException("Index key too large: " + utf.length + " bytes");
+            }
+            return ByteBuffer.allocate(3 + utf.length).put((byte) 'S')
+                    .putShort((short) utf.length).put(utf).array();
+        }
+        throw new RuntimeException("Unsupported index key type: " + key.getClass().getSimpleName());
+    }
+    
+    @SuppressWarnings("rawtypes")
+    private static Comparable readKey(ByteBuffer buf, int offset) {
+        byte tag = buf.get(offset);
+        if (tag == 'I') {
+            return buf.getInt(offset + 1);
+        }
+        if (tag == 'S') {
+            byte[] utf = new byte[Short.toUnsignedInt(buf.getShort(offset + 1))];
+            buf.get(offset + 3, utf);
+            return new String(utf, StandardCharsets.UTF_8);
+        }
+        throw new RuntimeException("Corrupted index page: unknown key tag " + tag);
+    }
+    
+    private static int keySize(ByteBuffer buf, int offset) {
+        byte tag = buf.get(offset);
+        if (tag == 'I') {
+            return 5;
+        }
+        if (tag == 'S') {
+            return 3 + Short.toUnsignedInt(buf.getShort(offset + 1));
+        }
+        throw new RuntimeException("Corrupted index page: unknown key tag " + tag);
+    }
+}
@@ -1,7 +1,11 @@
 package com.example.server;
 
+import com.example.buffer.BackgroundWriter;
 import com.example.buffer.BufferManager;
+import com.example.catalog.Catalog;
+import com.example.config.DatabaseConfig;
 import com.example.executor.QueryExecutor;
+import com.example.index.IndexBuilder;
 import com.example.index.IndexManager;
 import com.example.sql.lexer.Lexer;
 import com.example.sql.optimizer.Optimizer;
@@ -12,6 +16,9 @@ import com.example.sql.planner.Planner;
 import com.example.sql.semantic.QueryTree;
 import com.example.sql.semantic.SemanticAnalyzer;
 import com.example.storage.StorageManager;
+import com.example.wal.Checkpointer;
+import com.example.wal.WalRecovery;
+import com.example.wal.WriteAheadLog;
 
 import java.io.*;
 import java.net.ServerSocket;
@@ -28,23 +35,54 @@ public class DatabaseServer {
     private StorageManager storageManager;
     private BufferManager bufferManager;
     private IndexManager indexManager;
+    private WriteAheadLog wal;
+    private BackgroundWriter backgroundWriter;
+    private Checkpointer checkpointer;
     private QueryExecutor queryExecutor;
+    private DatabaseConfig config;
     private Logger logger;
     private boolean running;
     private ExecutorService threadPool;
     
     public DatabaseServer(int port, String dataDir) {
+        this(port, dataDir, DatabaseConfig.fromSystemProperties());
+    }
+    
+    public DatabaseServer(int port, String dataDir, DatabaseConfig config) {
         this.port = port;
-        this.storageManager = new StorageManager(dataDir);
-        this.bufferManager = new BufferManager(100); // 100 страниц в буфере
-        this.indexManager = new IndexManager(dataDir);
-        this.queryExecutor = new QueryExecutor(storageManager, bufferManager, indexManager);
+        this.config = config;
+        Catalog catalog = new Catalog(dataDir);
+        this.storageManager = new StorageManager(catalog, config.getStorageIoMode());
+        this.bufferManager = new BufferManager(config.getBufferPoolPages(), config.getBufferPolicy());
+        this.wal = new WriteAheadLog(dataDir);
+        this.bufferManager.setWriteAheadLog(wal);
+        this.indexManager = new IndexManager(catalog, bufferManager, config.getIndexFanout());
+        this.backgroundWriter = new BackgroundWriter(bufferManager,
+                config.getBgWriterDelayMillis(), config.getBgWriterMaxPages());
+        this.checkpointer = new Checkpointer(bufferManager, storageManager, indexManager, wal,
+                config.getCheckpointIntervalMillis());
+        this.queryExecutor = new QueryExecutor(storageManager, bufferManager, indexManager, wal);
+        IndexBuilder indexBuilder = new IndexBuilder(bufferManager, config.getIndexSortMemoryBytes(),
+                config.getIndexFillFactor() / 100.0);
+        queryExecutor.setIndexBuilder(indexBuilder);
+        queryExecutor.setVectorized(config.isVectorizedExecution());
+        queryExecutor.setJoinMemoryBytes(config.getJoinMemoryBytes());
         this.logger = new Logger();
+        
+        // Redo после падения, перестроение затронутых индексов и контрольная точка,
+        // чтобы не повторять их при следующем старте
+        int replayed = new WalRecovery(wal, storageManager, bufferManager, indexManager, indexBuilder).recover();
+        if (replayed > 0) {
+            logger.log("Recovery replayed " + replayed + " WAL records");
+        }
+        checkpointer.checkpoint();
         this.threadPool = Executors.newCachedThreadPool();
     }
     
     public void start() {
         running = true;
+        backgroundWriter.start();
+        checkpointer.start();
         try (ServerSocket serverSocket = new ServerSocket(port)) {
             logger.log("Server started on port " + port);
             
@@ -88,8 +126,12 @@ public class DatabaseServer {
     
     public void stop() {
         running = false;
-        bufferManager.flushAll();
-        indexManager.saveAll();
+        backgroundWriter.stop();
+        checkpointer.stop();
+        checkpointer.checkpoint();
+        storageManager.close();
+        indexManager.closeAll();
+        wal.close();
         threadPool.shutdown();
         logger.log("Server stopped");
     }
@@ -127,6 +169,8 @@ public class DatabaseServer {
             
             // Optimizer
             Optimizer optimizer = new Optimizer(storageManager, indexManager);
+            optimizer.setMaxParallelWorkers(config.getMaxParallelWorkers());
+            optimizer.setParallelScanPages(config.getParallelScanPages());
             PhysicalPlan physicalPlan = optimizer.optimize(logicalPlan);
             
             // Детальное логирование физического плана
@@ -197,18 +241,46 @@ public class DatabaseServer {
         
         if (op instanceof PhysicalPlan.SeqScanOperator) {
             PhysicalPlan.SeqScanOperator scan = (PhysicalPlan.SeqScanOperator) op;
-            sb.append("\n").append(indent).append("SeqScan(table=").append(scan.getTableName()).append(")");
+            sb.append("\n").append(indent).append("SeqScan(table=").append(scan.getTableName());
+            if (scan.getColumns() != null) {
+                sb.append(", columns=").append(scan.getColumns());
+            }
+            if (scan.getFilter() != null) {
+                sb.append(", filter=").append(scan.getFilter());
+            }
+            sb.append(")");
         } else if (op instanceof PhysicalPlan.IndexScanOperator) {
             PhysicalPlan.IndexScanOperator indexScan = (PhysicalPlan.IndexScanOperator) op;
             sb.append("\n").append(indent).append("IndexScan(table=").append(indexScan.getTableName())
               .append(", index=").append(indexScan.getIndexName())
               .append(", column=").append(indexScan.getColumnName())
               .append(", value=").append(indexScan.getValue()).append(")");
+        } else if (op instanceof PhysicalPlan.BitmapHeapScanOperator) {
+            PhysicalPlan.BitmapHeapScanOperator heapScan = (PhysicalPlan.BitmapHeapScanOperator) op;
+            sb.append("\n").append(indent).append("BitmapHeapScan(table=").append(heapScan.getTableName()).append(")");
+        } else if (op instanceof PhysicalPlan.GatherOperator) {
+            sb.append("\n").append(indent).append("Gather(workers=")
+              .append(((PhysicalPlan.GatherOperator) op).getWorkers()).append(")");
+        } else if (op instanceof PhysicalPlan.HashJoinOperator) {
+            PhysicalPlan.HashJoinOperator join = (PhysicalPlan.HashJoinOperator) op;
+            sb.append("\n").append(indent).append("HashJoin(").append(join.getLeftKeys())
+              .append(" = ").append(join.getRightKeys())
+              .append(", build=").append(join.isBuildLeft() ? "left" : "right").append(")");
+        } else if (op instanceof PhysicalPlan.IndexNestedLoopJoinOperator) {
+            PhysicalPlan.IndexNestedLoopJoinOperator join = (PhysicalPlan.IndexNestedLoopJoinOperator) op;
+            sb.append("\n").append(indent).append("IndexNestedLoopJoin(").append(join.getLeftKeys())
+              .append(" = ").append(join.getRightKeys())
+              .append(", inner=").append(join.getInnerTable())
+              .append(", index=").append(join.getIndexName());
+            if (join.getInnerFilter() != null) {
+                sb.append(", filter=").append(join.getInnerFilter());
+            }
+            sb.append(")");
+        } else if (op instanceof PhysicalPlan.BitmapOperator) {
+            sb.append("\n").append(indent).append(op.getOperatorType());
         } else if (op instanceof PhysicalPlan.FilterOperator) {
             PhysicalPlan.FilterOperator filter = (PhysicalPlan.FilterOperator) op;
-            sb.append("\n").append(indent).append("Filter(column=").append(filter.getColumnName())
-              .append(", op=").append(filter.getOperator())
-              .append(", value=").append(filter.getValue()).append(")");
+            sb.append("\n").append(indent).append("Filter(condition=").append(filter.getCondition()).append(")");
         } else if (op instanceof PhysicalPlan.ProjectOperator) {
             PhysicalPlan.ProjectOperator project = (PhysicalPlan.ProjectOperator) op;
             sb.append("\n").append(indent).append("Project(columns=").append(project.getColumns()).append(")");
@@ -216,6 +216,10 @@ public class Lexer {
             case "AS": return Token.Type.AS;
             case "INDEX": return Token.Type.INDEX;
             case "ON": return Token.Type.ON;
+            case "BETWEEN": return Token.Type.BETWEEN;
+            case "ANALYZE": return Token.Type.ANALYZE;
+            case "JOIN": return Token.Type.JOIN;
+            case "INNER": return Token.Type.INNER;
             default: return null;
         }
     }
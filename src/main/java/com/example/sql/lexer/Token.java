@@ -7,7 +7,7 @@ public class Token {
     public enum Type {
         // Ключевые слова
         CREATE, TABLE, INSERT, INTO, VALUES, SELECT, FROM, WHERE,
-        AND, OR, NOT, AS, INDEX, ON, DROP,
+        AND, OR, NOT, AS, INDEX, ON, DROP, BETWEEN, ANALYZE, JOIN, INNER,
         // Операторы
         EQ, NE, LT, LE, GT, GE, PLUS, MINUS, STAR, SLASH,
         // Знаки препинания
@@ -1,21 +1,102 @@
 package com.example.sql.optimizer;
 
+import com.example.catalog.ColumnStatistics;
+import com.example.catalog.TableStatistics;
 import com.example.index.IndexManager;
 import com.example.sql.planner.LogicalPlan;
 import com.example.storage.StorageManager;
+import com.example.storage.TableMetadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
- * Оптимизатор - преобразование логического плана в физический
+ * Оптимизатор - преобразование логического плана в физический.
+ *
+ * Условие WHERE делится на конъюнкты (операнды верхнего AND). Конъюнкты по индексированным
+ * колонкам могут обслуживаться индексом: одним IndexScan или пересечением битовых карт адресов
+ * нескольких индексов (BitmapHeapScan); OR из индексируемых сравнений - объединением карт.
+ * Остальные конъюнкты проверяет Filter над выбранным доступом; Filter прямо над SeqScan
+ * проталкивается в само сканирование вместе со списком нужных колонок.
+ *
+ * Если для таблицы собрана статистика (ANALYZE), доступ выбирается по стоимости: SeqScan читает
+ * все страницы последовательно, IndexScan - по одной случайной странице на найденную строку
+ * (но не больше страниц таблицы), BitmapHeapScan - нужные страницы по возрастанию номеров.
+ * Стоимость в условных единицах последовательного чтения страницы, как в PostgreSQL.
+ * Без статистики индекс используется всегда, когда он подходит к условию.
+ *
+ * SeqScan большой таблицы (от parallelScanPages страниц) выполняется параллельно под Gather:
+ * два потока на пороге и еще один на каждое утроение размера, но не больше maxParallelWorkers.
+ * Процессорная часть стоимости такого SeqScan делится на число потоков. Число потоков
+ * можно задать и явно для запроса (setParallelWorkers).
+ *
+ * Соединение (JOIN) выполняется хешированием: хеш-таблица строится по входу с меньшей оценкой
+ * числа строк, другой вход проверяется по ней. Если же одна сторона - таблица с индексом
+ * по колонке ключа, а другая мала, дешевле index nested-loop join: поиск по индексу для каждого
+ * ключа внешней стороны вместо чтения всей таблицы. Условия WHERE на одну таблицу планировщик
+ * ставит под соединение, и для них подбирается доступ, как для запроса к одной таблице.
  */
 public class Optimizer {
+    static final double SEQ_PAGE_COST = 1.0;
+    static final double RANDOM_PAGE_COST = 4.0;
+    static final double CPU_TUPLE_COST = 0.01;
+    static final double CPU_INDEX_TUPLE_COST = 0.005;
+    static final double CPU_OPERATOR_COST = 0.0025;
+    /** Селективность условия, для которого нет статистики колонки */
+    static final double DEFAULT_SELECTIVITY = 0.33;
+    /** Строк на странице таблицы, для которой нет статистики */
+    static final double DEFAULT_ROWS_PER_PAGE = 50;
+    /** Наибольшее число потоков параллельного SeqScan по умолчанию */
+    public static final int DEFAULT_MAX_PARALLEL_WORKERS =
+        Math.min(8, Runtime.getRuntime().availableProcessors());
+    /** Размер таблицы в страницах, с которого SeqScan выполняется параллельно (4 МБ) */
+    public static final int DEFAULT_PARALLEL_SCAN_PAGES = 1024;
+    
     private StorageManager storageManager;
     private IndexManager indexManager;
+    private int maxParallelWorkers = DEFAULT_MAX_PARALLEL_WORKERS;
+    private int parallelScanPages = DEFAULT_PARALLEL_SCAN_PAGES;
+    private int parallelWorkers;
     
     public Optimizer(StorageManager storageManager, IndexManager indexManager) {
         this.storageManager = storageManager;
         this.indexManager = indexManager;
     }
     
+    /**
+     * Наибольшее число потоков параллельного SeqScan; 1 - без параллельного сканирования
+     */
+    public void setMaxParallelWorkers(int maxParallelWorkers) {
+        if (maxParallelWorkers < 1) {
+            throw new IllegalArgumentException("Parallel workers must be positive: " + maxParallelWorkers);
+        }
+        this.maxParallelWorkers = maxParallelWorkers;
+    }
+    
+    /**
+     * Размер таблицы в страницах, с которого SeqScan выполняется параллельно
+     */
+    public void setParallelScanPages(int parallelScanPages) {
+        if (parallelScanPages < 1) {
+            throw new IllegalArgumentException("Parallel scan threshold must be positive: " + parallelScanPages);
+        }
+        this.parallelScanPages = parallelScanPages;
+    }
+    
+    /**
+     * Число потоков SeqScan для запросов этого оптимизатора независимо от размера таблицы:
+     * 1 - последовательно, 0 - выбрать по размеру (по умолчанию)
+     */
+    public void setParallelWorkers(int parallelWorkers) {
+        if (parallelWorkers < 0) {
+            throw new IllegalArgumentException("Parallel workers must not be negative: " + parallelWorkers);
+        }
+        this.parallelWorkers = parallelWorkers;
+    }
+    
     public PhysicalPlan optimize(LogicalPlan logicalPlan) {
         PhysicalPlan physicalPlan = new PhysicalPlan(
             PhysicalPlan.Type.valueOf(logicalPlan.getType().name()));
@@ -38,7 +119,8 @@ public class Optimizer {
                 break;
                 
             case DROP_TABLE:
-                // Для DROP TABLE не нужно дополнительных действий
+            case ANALYZE:
+                // Для DROP TABLE и ANALYZE достаточно имени таблицы
                 break;
                 
             case INSERT:
@@ -50,7 +132,7 @@ public class Optimizer {
                 
                 // Преобразуем логические операторы в физические
                 PhysicalPlan.PhysicalOperator root = 
-                    optimizeOperator(logicalPlan.getRootOperator());
+                    parallelize(pushDown(optimizeOperator(logicalPlan.getRootOperator()), null));
                 physicalPlan.setRootOperator(root);
                 break;
         }
@@ -70,42 +152,18 @@ public class Optimizer {
             
         } else if (logicalOp instanceof LogicalPlan.FilterOperator) {
             LogicalPlan.FilterOperator filter = (LogicalPlan.FilterOperator) logicalOp;
-            
-            // Проверяем, можно ли использовать индекс
             PhysicalPlan.PhysicalOperator child = 
                 optimizeOperator(filter.getChildren().get(0));
+            List<LogicalPlan.Condition> conjuncts = conjuncts(filter.getCondition());
             
-            // Если дочерний оператор - Scan, проверяем возможность IndexScan
+            // Над SeqScan подбираем доступ по индексам для конъюнктов условия
             if (child instanceof PhysicalPlan.SeqScanOperator) {
-                PhysicalPlan.SeqScanOperator seqScan = 
-                    (PhysicalPlan.SeqScanOperator) child;
-                String tableName = seqScan.getTableName();
-                
-                // Ищем индекс для колонки в условии фильтра
-                com.example.index.BPlusTree index = 
-                    indexManager.findIndexForColumn(tableName, filter.getColumnName());
-                
-                if (index != null) {
-                    // Используем IndexScan вместо SeqScan
-                    String indexName = findIndexNameForColumn(tableName, filter.getColumnName());
-                    if (indexName == null) {
-                        indexName = tableName + "_" + filter.getColumnName() + "_idx";
-                    }
-                    PhysicalPlan.IndexScanOperator indexScan = new PhysicalPlan.IndexScanOperator(
-                        tableName, indexName, filter.getColumnName(), filter.getValue());
-                    // IndexScan заменяет SeqScan, поэтому не добавляем Filter поверх
-                    return indexScan;
-                }
+                return accessPath((PhysicalPlan.SeqScanOperator) child, conjuncts);
             }
+            return withFilter(child, conjuncts);
             
-            // Обычный Filter
-            PhysicalPlan.FilterOperator physicalFilter = 
-                new PhysicalPlan.FilterOperator(
-                    filter.getColumnName(), 
-                    filter.getOperator(), 
-                    filter.getValue());
-            physicalFilter.addChild(child);
-            return physicalFilter;
+        } else if (logicalOp instanceof LogicalPlan.JoinOperator) {
+            return optimizeJoin((LogicalPlan.JoinOperator) logicalOp);
             
         } else if (logicalOp instanceof LogicalPlan.ProjectOperator) {
             LogicalPlan.ProjectOperator project = (LogicalPlan.ProjectOperator) logicalOp;
@@ -121,66 +179,497 @@ public class Optimizer {
         throw new RuntimeException("Unknown logical operator: " + logicalOp.getClass());
     }
     
-    private String findIndexName(String tableName, String columnName) {
-        // Ищем реальное имя индекса
-        java.nio.file.Path dir = java.nio.file.Paths.get("data");
-        if (java.nio.file.Files.exists(dir)) {
-            try {
-                java.nio.file.Files.list(dir).forEach(path -> {
-                    String fileName = path.getFileName().toString();
-                    if (fileName.endsWith(".idxmeta")) {
-                        try (java.io.ObjectInputStream ois = new java.io.ObjectInputStream(
-                                new java.io.FileInputStream(path.toFile()))) {
-                            com.example.index.IndexManager.IndexMetadata meta = 
-                                (com.example.index.IndexManager.IndexMetadata) ois.readObject();
-                            if (meta.tableName.equals(tableName) && 
-                                meta.columnName.equalsIgnoreCase(columnName)) {
-                                // Найден индекс
-                            }
-                        } catch (Exception e) {
-                            // Игнорируем
-                        }
-                    }
-                });
-            } catch (java.io.IOException e) {
-                // Игнорируем
+    /**
+     * Протолкнуть в SeqScan набор нужных колонок и Filter, стоящий прямо над ним:
+     * сканирование проверит условие до декодирования строки и декодирует только эти колонки.
+     * required - колонки, нужные операторам выше (null - все).
+     */
+    private PhysicalPlan.PhysicalOperator pushDown(PhysicalPlan.PhysicalOperator operator,
+                                                   Set<String> required) {
+        if (operator instanceof PhysicalPlan.ProjectOperator) {
+            Set<String> projected = new LinkedHashSet<>();
+            for (String column : ((PhysicalPlan.ProjectOperator) operator).getColumns()) {
+                projected.add(column.toLowerCase());
             }
+            operator.getChildren().set(0, pushDown(operator.getChildren().get(0), projected));
+            return operator;
+        }
+        if (operator instanceof PhysicalPlan.FilterOperator) {
+            PhysicalPlan.FilterOperator filter = (PhysicalPlan.FilterOperator) operator;
+            PhysicalPlan.PhysicalOperator child = filter.getChildren().get(0);
+            if (child instanceof PhysicalPlan.SeqScanOperator) {
+                return new PhysicalPlan.SeqScanOperator(((PhysicalPlan.SeqScanOperator) child).getTableName(),
+                    required == null ? null : new ArrayList<>(required), filter.getCondition());
+            }
+            Set<String> needed = null;
+            if (required != null) {
+                needed = new LinkedHashSet<>(required);
+                filter.getCondition().collectColumns(needed);
+            }
+            filter.getChildren().set(0, pushDown(child, needed));
+            return filter;
+        }
+        if (operator instanceof PhysicalPlan.HashJoinOperator
+                || operator instanceof PhysicalPlan.IndexNestedLoopJoinOperator) {
+            // Входы соединения отдают строки целиком: колонки своих таблиц называются иначе
+            List<PhysicalPlan.PhysicalOperator> children = operator.getChildren();
+            for (int i = 0; i < children.size(); i++) {
+                children.set(i, pushDown(children.get(i), null));
+            }
+            return operator;
+        }
+        if (operator instanceof PhysicalPlan.SeqScanOperator && required != null) {
+            return new PhysicalPlan.SeqScanOperator(((PhysicalPlan.SeqScanOperator) operator).getTableName(),
+                new ArrayList<>(required), null);
+        }
+        return operator;
+    }
+    
+    /**
+     * Поставить Gather над SeqScan, если таблицу стоит сканировать в несколько потоков
+     */
+    private PhysicalPlan.PhysicalOperator parallelize(PhysicalPlan.PhysicalOperator operator) {
+        if (operator instanceof PhysicalPlan.SeqScanOperator) {
+            int workers = workersFor(((PhysicalPlan.SeqScanOperator) operator).getTableName());
+            if (workers < 2) {
+                return operator;
+            }
+            PhysicalPlan.GatherOperator gather = new PhysicalPlan.GatherOperator(workers);
+            gather.addChild(operator);
+            return gather;
+        }
+        List<PhysicalPlan.PhysicalOperator> children = operator.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            children.set(i, parallelize(children.get(i)));
+        }
+        return operator;
+    }
+    
+    /**
+     * Число потоков SeqScan таблицы: заданное явно или по ее размеру
+     * (статистика ANALYZE, без нее - текущее число страниц)
+     */
+    private int workersFor(String tableName) {
+        if (parallelWorkers > 0) {
+            return parallelWorkers;
+        }
+        if (maxParallelWorkers < 2) {
+            return 1;
         }
+        TableStatistics stats = storageManager.getCatalog().getStatistics(tableName);
+        long pages = stats != null
+            ? stats.getPageCount()
+            : storageManager.getTableFile(tableName).getPageIds().size();
+        if (pages < parallelScanPages) {
+            return 1;
+        }
+        int workers = 2;
+        for (long threshold = (long) parallelScanPages * 3; pages >= threshold && workers < maxParallelWorkers;
+                threshold *= 3) {
+            workers++;
+        }
+        return Math.min(workers, maxParallelWorkers);
+    }
+    
+    /**
+     * Соединение: HashJoin с хеш-таблицей по меньшему входу или index nested-loop join, если
+     * одна сторона - таблица с индексом по колонке ключа и поиск по нему для строк другой
+     * стороны дешевле, чем прочитать эту таблицу целиком и построить или проверить хеш-таблицу.
+     * Чтение второго (внешнего) входа одинаково в обоих случаях и в сравнении не участвует.
+     */
+    private PhysicalPlan.PhysicalOperator optimizeJoin(LogicalPlan.JoinOperator join) {
+        LogicalPlan.LogicalOperator left = join.getChildren().get(0);
+        LogicalPlan.LogicalOperator right = join.getChildren().get(1);
+        double leftRows = estimateRows(left);
+        double rightRows = estimateRows(right);
+        List<PhysicalPlan.ColumnDef> columns = outputColumns(join);
         
-        // Возвращаем стандартное имя индекса
-        return tableName + "_" + columnName + "_idx";
-    }
-    
-    public String findIndexNameForColumn(String tableName, String columnName) {
-        java.nio.file.Path dir = java.nio.file.Paths.get("data");
-        if (java.nio.file.Files.exists(dir)) {
-            try {
-                final String[] foundIndex = new String[1];
-                java.nio.file.Files.list(dir).forEach(path -> {
-                    String fileName = path.getFileName().toString();
-                    if (fileName.endsWith(".idxmeta")) {
-                        String indexName = fileName.substring(0, fileName.length() - 8);
-                        try (java.io.ObjectInputStream ois = new java.io.ObjectInputStream(
-                                new java.io.FileInputStream(path.toFile()))) {
-                            com.example.index.IndexManager.IndexMetadata meta = 
-                                (com.example.index.IndexManager.IndexMetadata) ois.readObject();
-                            if (meta.tableName.equals(tableName) && 
-                                meta.columnName.equalsIgnoreCase(columnName)) {
-                                foundIndex[0] = indexName;
-                            }
-                        } catch (Exception e) {
-                            // Игнорируем
-                        }
-                    }
-                });
-                if (foundIndex[0] != null) {
-                    return foundIndex[0];
-                }
-            } catch (java.io.IOException e) {
-                // Игнорируем
+        PhysicalPlan.PhysicalOperator best = null;
+        double bestSaving = 0;
+        for (boolean innerLeft : new boolean[] {false, true}) {
+            IndexJoinCandidate candidate = indexJoinCandidate(join, innerLeft, innerLeft ? rightRows : leftRows);
+            if (candidate == null || candidate.hashCost - candidate.indexCost <= bestSaving) {
+                continue;
             }
+            bestSaving = candidate.hashCost - candidate.indexCost;
+            best = new PhysicalPlan.IndexNestedLoopJoinOperator(join.getLeftColumns(), join.getRightColumns(),
+                columns, candidate.tableName, candidate.indexName, candidate.column,
+                candidate.filter == null ? null : physicalCondition(candidate.filter), innerLeft);
+            best.addChild(optimizeOperator(innerLeft ? right : left));
+        }
+        if (best != null) {
+            return best;
+        }
+        
+        PhysicalPlan.HashJoinOperator hashJoin = new PhysicalPlan.HashJoinOperator(
+            join.getLeftColumns(), join.getRightColumns(), columns, leftRows < rightRows);
+        hashJoin.addChild(optimizeOperator(left));
+        hashJoin.addChild(optimizeOperator(right));
+        return hashJoin;
+    }
+    
+    /**
+     * Вариант index nested-loop join с внутренней стороной innerLeft ? левой : правой или null,
+     * если эта сторона - не таблица (с условием) или по ее колонкам ключа нет индекса.
+     * outerRows - оценка числа строк внешней стороны.
+     */
+    private IndexJoinCandidate indexJoinCandidate(LogicalPlan.JoinOperator join, boolean innerLeft,
+                                                  double outerRows) {
+        LogicalPlan.LogicalOperator inner = join.getChildren().get(innerLeft ? 0 : 1);
+        LogicalPlan.Condition filter = null;
+        if (inner instanceof LogicalPlan.FilterOperator) {
+            filter = ((LogicalPlan.FilterOperator) inner).getCondition();
+            inner = inner.getChildren().get(0);
+        }
+        if (!(inner instanceof LogicalPlan.ScanOperator)) {
+            return null;
+        }
+        LogicalPlan.ScanOperator scan = (LogicalPlan.ScanOperator) inner;
+        String tableName = scan.getTableName();
+        TableStatistics stats = storageManager.getCatalog().getStatistics(tableName);
+        double rows = tableRows(tableName);
+        double pages = Math.max(1, stats != null
+            ? stats.getPageCount()
+            : storageManager.getTableFile(tableName).getPageIds().size());
+        int filterOps = filter == null ? 0 : conjuncts(filter).size();
+        
+        for (String key : innerLeft ? join.getLeftColumns() : join.getRightColumns()) {
+            String column = key.substring(scan.getAlias().length() + 1);
+            com.example.index.BPlusTree index = indexManager.findIndexForColumn(tableName, column);
+            if (index == null) {
+                continue;
+            }
+            // Строк на ключ - по числу различных значений, без статистики ключ считается уникальным
+            ColumnStatistics columnStats = stats != null ? stats.getColumn(column) : null;
+            double perKey = columnStats != null && columnStats.getDistinctCount() > 0
+                ? rows / columnStats.getDistinctCount() : 1;
+            double matched = outerRows * perKey;
+            // Адреса пакета читаются по возрастанию страниц - оценка как у BitmapHeapScan
+            double pagesFetched = Math.min(pages, pages * (1 - Math.pow(1 - 1 / pages, matched)));
+            double pageCost = RANDOM_PAGE_COST
+                    - (RANDOM_PAGE_COST - SEQ_PAGE_COST) * Math.sqrt(pagesFetched / pages);
+            double indexCost = outerRows * descentCost(rows)
+                    + pagesFetched * pageCost
+                    + matched * (CPU_INDEX_TUPLE_COST + CPU_TUPLE_COST + filterOps * CPU_OPERATOR_COST);
+            double hashCost = pages * SEQ_PAGE_COST
+                    + rows * (CPU_TUPLE_COST + filterOps * CPU_OPERATOR_COST)
+                    + (outerRows + (filter == null ? rows : rows * selectivity(stats, filter))) * CPU_OPERATOR_COST;
+            return new IndexJoinCandidate(tableName, index.getIndexName(), column, filter, indexCost, hashCost);
         }
         return null;
     }
+    
+    /**
+     * Схема строк логического оператора соединения: колонки таблиц слева направо с именами "t.col"
+     */
+    private List<PhysicalPlan.ColumnDef> outputColumns(LogicalPlan.LogicalOperator logicalOp) {
+        List<PhysicalPlan.ColumnDef> columns = new ArrayList<>();
+        if (logicalOp instanceof LogicalPlan.ScanOperator) {
+            LogicalPlan.ScanOperator scan = (LogicalPlan.ScanOperator) logicalOp;
+            for (TableMetadata.Column column : storageManager.getTableMetadata(scan.getTableName()).getColumns()) {
+                columns.add(new PhysicalPlan.ColumnDef(scan.getAlias() + "." + column.getName(), column.getType()));
+            }
+        } else {
+            for (LogicalPlan.LogicalOperator child : logicalOp.getChildren()) {
+                columns.addAll(outputColumns(child));
+            }
+        }
+        return columns;
+    }
+    
+    /**
+     * Оценка числа строк входа соединения. Для соединения - число строк большего входа
+     * (каждая строка находит одну пару, как по внешнему ключу)
+     */
+    private double estimateRows(LogicalPlan.LogicalOperator logicalOp) {
+        if (logicalOp instanceof LogicalPlan.ScanOperator) {
+            return tableRows(((LogicalPlan.ScanOperator) logicalOp).getTableName());
+        }
+        if (logicalOp instanceof LogicalPlan.FilterOperator) {
+            LogicalPlan.LogicalOperator child = logicalOp.getChildren().get(0);
+            TableStatistics stats = child instanceof LogicalPlan.ScanOperator
+                ? storageManager.getCatalog().getStatistics(((LogicalPlan.ScanOperator) child).getTableName())
+                : null;
+            return estimateRows(child)
+                * selectivity(stats, ((LogicalPlan.FilterOperator) logicalOp).getCondition());
+        }
+        double rows = 0;
+        for (LogicalPlan.LogicalOperator child : logicalOp.getChildren()) {
+            rows = Math.max(rows, estimateRows(child));
+        }
+        return rows;
+    }
+    
+    /**
+     * Число строк таблицы по статистике ANALYZE, без нее - по числу страниц
+     */
+    private double tableRows(String tableName) {
+        TableStatistics stats = storageManager.getCatalog().getStatistics(tableName);
+        if (stats != null) {
+            return stats.getRowCount();
+        }
+        return storageManager.getTableFile(tableName).getPageIds().size() * DEFAULT_ROWS_PER_PAGE;
+    }
+    
+    /**
+     * Выбрать доступ к таблице для условия AND(conjuncts). Каждый конъюнкт, который индекс
+     * вычисляет точно (сравнение по индексированной колонке, OR/AND таких сравнений), - кандидат.
+     * Варианты: Filter над SeqScan; IndexScan по одному кандидату; BitmapHeapScan по пересечению
+     * битовых карт нескольких самых селективных кандидатов. Остальные конъюнкты - Filter сверху.
+     * Без статистики таблицы индексы используются всегда: один - IndexScan, несколько - пересечение.
+     */
+    private PhysicalPlan.PhysicalOperator accessPath(PhysicalPlan.SeqScanOperator seqScan,
+                                                     List<LogicalPlan.Condition> conjuncts) {
+        String tableName = seqScan.getTableName();
+        TableStatistics stats = storageManager.getCatalog().getStatistics(tableName);
+        List<IndexCandidate> candidates = new ArrayList<>();
+        for (LogicalPlan.Condition conjunct : conjuncts) {
+            PhysicalPlan.PhysicalOperator scan = indexAccess(tableName, conjunct);
+            if (scan != null) {
+                candidates.add(new IndexCandidate(conjunct, scan, selectivity(stats, conjunct)));
+            }
+        }
+        if (candidates.isEmpty()) {
+            return withFilter(seqScan, conjuncts);
+        }
+        // Самые селективные - первыми: они лучше всего сужают пересечение
+        candidates.sort((a, b) -> Double.compare(a.selectivity, b.selectivity));
+        
+        if (stats == null) {
+            if (candidates.size() == 1 && candidates.get(0).scan instanceof PhysicalPlan.IndexScanOperator) {
+                return indexPath(candidates.get(0), conjuncts);
+            }
+            return bitmapPath(tableName, candidates, conjuncts);
+        }
+        
+        double rows = stats.getRowCount();
+        double pages = Math.max(1, stats.getPageCount());
+        double bestCost = pages * SEQ_PAGE_COST
+                + rows * (CPU_TUPLE_COST + conjuncts.size() * CPU_OPERATOR_COST)
+                / workersFor(tableName);
+        PhysicalPlan.PhysicalOperator best = withFilter(seqScan, conjuncts);
+        
+        for (IndexCandidate candidate : candidates) {
+            if (candidate.scan instanceof PhysicalPlan.IndexScanOperator) {
+                double matched = rows * candidate.selectivity;
+                // Спуск по дереву плюс выборка строк из кучи: строки одной страницы выгоднее
+                // читать подряд, поэтому случайных чтений не больше, чем страниц в таблице
+                double cost = descentCost(rows)
+                        + Math.min(matched, pages) * RANDOM_PAGE_COST
+                        + matched * (CPU_INDEX_TUPLE_COST + CPU_TUPLE_COST)
+                        + matched * (conjuncts.size() - 1) * CPU_OPERATOR_COST;
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = indexPath(candidate, conjuncts);
+                }
+            }
+        }
+        
+        double indexTuples = 0;
+        double selectivity = 1.0;
+        for (int k = 1; k <= candidates.size(); k++) {
+            IndexCandidate candidate = candidates.get(k - 1);
+            indexTuples += rows * candidate.selectivity;
+            selectivity *= candidate.selectivity;
+            // Карта из одного IndexScan не лучше самого IndexScan
+            if (k == 1 && candidate.scan instanceof PhysicalPlan.IndexScanOperator) {
+                continue;
+            }
+            double matched = rows * selectivity;
+            // Страницы кучи читаются по возрастанию номеров, каждая один раз; чем их больше,
+            // тем ближе чтение к последовательному (оценка стоимости страницы как в PostgreSQL)
+            double pagesFetched = Math.min(pages, pages * (1 - Math.pow(1 - 1 / pages, matched)));
+            double pageCost = RANDOM_PAGE_COST
+                    - (RANDOM_PAGE_COST - SEQ_PAGE_COST) * Math.sqrt(pagesFetched / pages);
+            double cost = k * descentCost(rows)
+                    + indexTuples * CPU_INDEX_TUPLE_COST
+                    + pagesFetched * pageCost
+                    + matched * (CPU_TUPLE_COST + (conjuncts.size() - k) * CPU_OPERATOR_COST);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = bitmapPath(tableName, candidates.subList(0, k), conjuncts);
+            }
+        }
+        return best;
+    }
+    
+    private PhysicalPlan.PhysicalOperator indexPath(IndexCandidate candidate,
+                                                    List<LogicalPlan.Condition> conjuncts) {
+        return withFilter(candidate.scan, without(conjuncts, Collections.singletonList(candidate)));
+    }
+    
+    private PhysicalPlan.PhysicalOperator bitmapPath(String tableName, List<IndexCandidate> chosen,
+                                                     List<LogicalPlan.Condition> conjuncts) {
+        PhysicalPlan.PhysicalOperator source;
+        if (chosen.size() == 1) {
+            source = chosen.get(0).scan;
+        } else {
+            source = new PhysicalPlan.BitmapOperator("AND");
+            for (IndexCandidate candidate : chosen) {
+                source.addChild(candidate.scan);
+            }
+        }
+        PhysicalPlan.BitmapHeapScanOperator heapScan = new PhysicalPlan.BitmapHeapScanOperator(tableName);
+        heapScan.addChild(source);
+        return withFilter(heapScan, without(conjuncts, chosen));
+    }
+    
+    /**
+     * Индексный источник строк, точно удовлетворяющих условию, или null:
+     * сравнение - IndexScan, AND/OR - пересечение/объединение карт, если все операнды индексируемы
+     */
+    private PhysicalPlan.PhysicalOperator indexAccess(String tableName, LogicalPlan.Condition condition) {
+        if (!condition.isConnective()) {
+            com.example.index.BPlusTree index =
+                indexManager.findIndexForColumn(tableName, condition.getColumnName());
+            return index == null ? null : indexScanFor(tableName, index.getIndexName(), condition);
+        }
+        PhysicalPlan.BitmapOperator bitmap = new PhysicalPlan.BitmapOperator(condition.getOperator());
+        for (LogicalPlan.Condition operand : condition.getOperands()) {
+            PhysicalPlan.PhysicalOperator source = indexAccess(tableName, operand);
+            if (source == null) {
+                return null;
+            }
+            bitmap.addChild(source);
+        }
+        return bitmap;
+    }
+    
+    /**
+     * Доля строк таблицы, удовлетворяющих условию; конъюнкты и дизъюнкты считаются независимыми
+     */
+    private double selectivity(TableStatistics stats, LogicalPlan.Condition condition) {
+        if (stats == null) {
+            return DEFAULT_SELECTIVITY;
+        }
+        if (!condition.isConnective()) {
+            ColumnStatistics columnStats = stats.getColumn(condition.getColumnName());
+            if (columnStats == null) {
+                return DEFAULT_SELECTIVITY;
+            }
+            return columnStats.selectivity(condition.getOperator(), condition.getValue(),
+                condition.getUpperValue());
+        }
+        boolean and = condition.getOperator().equals("AND");
+        double result = 1.0;
+        for (LogicalPlan.Condition operand : condition.getOperands()) {
+            double s = selectivity(stats, operand);
+            result *= and ? s : 1 - s;
+        }
+        return and ? result : 1 - result;
+    }
+    
+    private static double descentCost(double rows) {
+        return Math.log(Math.max(2, rows)) / Math.log(2) * CPU_OPERATOR_COST;
+    }
+    
+    /**
+     * Конъюнкты условия: операнды верхнего AND или само условие
+     */
+    private static List<LogicalPlan.Condition> conjuncts(LogicalPlan.Condition condition) {
+        if (condition.isConnective() && condition.getOperator().equals("AND")) {
+            return condition.getOperands();
+        }
+        return Collections.singletonList(condition);
+    }
+    
+    private static List<LogicalPlan.Condition> without(List<LogicalPlan.Condition> conjuncts,
+                                                       List<IndexCandidate> consumed) {
+        List<LogicalPlan.Condition> residual = new ArrayList<>(conjuncts);
+        for (IndexCandidate candidate : consumed) {
+            residual.remove(candidate.conjunct);
+        }
+        return residual;
+    }
+    
+    /**
+     * Filter с оставшимися конъюнктами над child (или сам child, если условий не осталось)
+     */
+    private static PhysicalPlan.PhysicalOperator withFilter(PhysicalPlan.PhysicalOperator child,
+                                                            List<LogicalPlan.Condition> residual) {
+        if (residual.isEmpty()) {
+            return child;
+        }
+        PhysicalPlan.FilterOperator filter = new PhysicalPlan.FilterOperator(
+            physicalCondition(LogicalPlan.Condition.connective("AND", residual)));
+        filter.addChild(child);
+        return filter;
+    }
+    
+    private static PhysicalPlan.Condition physicalCondition(LogicalPlan.Condition condition) {
+        if (!condition.isConnective()) {
+            return PhysicalPlan.Condition.comparison(condition.getColumnName(), condition.getOperator(),
+                condition.getValue(), condition.getUpperValue());
+        }
+        List<PhysicalPlan.Condition> operands = new ArrayList<>();
+        for (LogicalPlan.Condition operand : condition.getOperands()) {
+            operands.add(physicalCondition(operand));
+        }
+        return PhysicalPlan.Condition.connective(condition.getOperator(), operands);
+    }
+    
+    /**
+     * IndexScan для условия фильтра: = - точный поиск, <, <=, >, >= и BETWEEN - диапазон
+     * по цепочке листов. Для <> индекс не помогает - null, остается Filter над SeqScan.
+     */
+    private PhysicalPlan.IndexScanOperator indexScanFor(String tableName, String indexName,
+                                                        LogicalPlan.Condition filter) {
+        String column = filter.getColumnName();
+        Object value = filter.getValue();
+        switch (filter.getOperator()) {
+            case "=":
+                return new PhysicalPlan.IndexScanOperator(tableName, indexName, column, value);
+            case "<":
+                return new PhysicalPlan.IndexScanOperator(tableName, indexName, column, null, false, value, false);
+            case "<=":
+                return new PhysicalPlan.IndexScanOperator(tableName, indexName, column, null, false, value, true);
+            case ">":
+                return new PhysicalPlan.IndexScanOperator(tableName, indexName, column, value, false, null, false);
+            case ">=":
+                return new PhysicalPlan.IndexScanOperator(tableName, indexName, column, value, true, null, false);
+            case "BETWEEN":
+                return new PhysicalPlan.IndexScanOperator(tableName, indexName, column,
+                    value, true, filter.getUpperValue(), true);
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Внутренняя сторона index nested-loop join и стоимости ее соединения через индекс
+     * и хешированием (без общего для обоих чтения внешней стороны)
+     */
+    private static final class IndexJoinCandidate {
+        final String tableName;
+        final String indexName;
+        final String column;
+        final LogicalPlan.Condition filter;
+        final double indexCost;
+        final double hashCost;
+        
+        IndexJoinCandidate(String tableName, String indexName, String column, LogicalPlan.Condition filter,
+                           double indexCost, double hashCost) {
+            this.tableName = tableName;
+            this.indexName = indexName;
+            this.column = column;
+            this.filter = filter;
+            this.indexCost = indexCost;
+            this.hashCost = hashCost;
+        }
+    }
+    
+    /**
+     * Конъюнкт, который можно вычислить индексом, и оценка его селективности
+     */
+    private static final class IndexCandidate {
+        final LogicalPlan.Condition conjunct;
+        final PhysicalPlan.PhysicalOperator scan;
+        final double selectivity;
+        
+        IndexCandidate(LogicalPlan.Condition conjunct, PhysicalPlan.PhysicalOperator scan, double selectivity) {
+            this.conjunct = conjunct;
+            this.scan = scan;
+            this.selectivity = selectivity;
+        }
+    }
 }
-
@@ -1,7 +1,9 @@
 package com.example.sql.optimizer;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Физический план выполнения запроса
@@ -11,6 +13,7 @@ public class PhysicalPlan {
         CREATE_TABLE,
         CREATE_INDEX,
         DROP_TABLE,
+        ANALYZE,
         INSERT,
         SELECT
     }
@@ -101,27 +104,53 @@ public class PhysicalPlan {
         }
     }
     
+    /**
+     * Последовательное сканирование. columns - колонки, которые нужны операторам выше
+     * (null - все), filter - условие, проверяемое в самом сканировании (null - нет)
+     */
     public static class SeqScanOperator extends PhysicalOperator {
         private String tableName;
+        private List<String> columns;
+        private Condition filter;
         
         public SeqScanOperator(String tableName) {
+            this(tableName, null, null);
+        }
+        
+        public SeqScanOperator(String tableName, List<String> columns, Condition filter) {
             super("SeqScan");
             this.tableName = tableName;
+            this.columns = columns;
+            this.filter = filter;
         }
         
         public String getTableName() {
             return tableName;
         }
+        
+        public List<String> getColumns() {
+            return columns;
+        }
+        
+        public Condition getFilter() {
+            return filter;
+        }
     }
     
+    /**
+     * Сканирование по индексу: точный поиск (value) или диапазон ключей.
+     * У диапазона граница null означает "без границы", флаги - включается ли граница.
+     */
     public static class IndexScanOperator extends PhysicalOperator {
         private String tableName;
         private String indexName;
         private String columnName;
         private Object value;
         private boolean isRangeScan;
-        private Object rangeStart;
-        private Object rangeEnd;
+        private Object lowerBound;
+        private boolean lowerInclusive;
+        private Object upperBound;
+        private boolean upperInclusive;
         
         public IndexScanOperator(String tableName, String indexName, 
                                 String columnName, Object value) {
@@ -131,16 +160,23 @@ public class PhysicalPlan {
             this.columnName = columnName;
             this.value = value;
             this.isRangeScan = false;
+            this.lowerBound = value;
+            this.lowerInclusive = true;
+            this.upperBound = value;
+            this.upperInclusive = true;
         }
         
-        public IndexScanOperator(String tableName, String indexName,
-                                String columnName, Object rangeStart, Object rangeEnd) {
+        public IndexScanOperator(String tableName, String indexName, String columnName,
+                                Object lowerBound, boolean lowerInclusive,
+                                Object upperBound, boolean upperInclusive) {
             super("IndexScan");
             this.tableName = tableName;
             this.indexName = indexName;
             this.columnName = columnName;
-            this.rangeStart = rangeStart;
-            this.rangeEnd = rangeEnd;
+            this.lowerBound = lowerBound;
+            this.lowerInclusive = lowerInclusive;
+            this.upperBound = upperBound;
+            this.upperInclusive = upperInclusive;
             this.isRangeScan = true;
         }
         
@@ -164,38 +200,309 @@ public class PhysicalPlan {
             return isRangeScan;
         }
         
-        public Object getRangeStart() {
-            return rangeStart;
+        public Object getLowerBound() {
+            return lowerBound;
+        }
+        
+        public boolean isLowerInclusive() {
+            return lowerInclusive;
         }
         
-        public Object getRangeEnd() {
-            return rangeEnd;
+        public Object getUpperBound() {
+            return upperBound;
+        }
+        
+        public boolean isUpperInclusive() {
+            return upperInclusive;
         }
     }
     
-    public static class FilterOperator extends PhysicalOperator {
-        private String columnName;
-        private String operator;
-        private Object value;
+    /**
+     * Выборка строк по битовой карте адресов (pageId, slot), построенной по индексам.
+     * Строки читаются в порядке страниц, каждая страница таблицы - не больше одного раза.
+     * Единственный дочерний оператор - источник карты: IndexScanOperator или BitmapOperator.
+     */
+    public static class BitmapHeapScanOperator extends PhysicalOperator {
+        private String tableName;
         
-        public FilterOperator(String columnName, String operator, Object value) {
-            super("Filter");
-            this.columnName = columnName;
+        public BitmapHeapScanOperator(String tableName) {
+            super("BitmapHeapScan");
+            this.tableName = tableName;
+        }
+        
+        public String getTableName() {
+            return tableName;
+        }
+    }
+    
+    /**
+     * Пересечение (AND) или объединение (OR) битовых карт дочерних операторов
+     */
+    public static class BitmapOperator extends PhysicalOperator {
+        private String connective;
+        
+        public BitmapOperator(String connective) {
+            super("Bitmap" + (connective.equals("AND") ? "And" : "Or"));
+            this.connective = connective;
+        }
+        
+        public String getConnective() {
+            return connective;
+        }
+    }
+    
+    /**
+     * Параллельное выполнение дочернего SeqScan: workers потоков делят страницы таблицы
+     * на порции и сканируют их независимо, Gather собирает их строки в один поток
+     */
+    public static class GatherOperator extends PhysicalOperator {
+        private int workers;
+        
+        public GatherOperator(int workers) {
+            super("Gather");
+            this.workers = workers;
+        }
+        
+        public int getWorkers() {
+            return workers;
+        }
+    }
+    
+    /**
+     * Хеш-соединение по равенству leftKeys[i] = rightKeys[i] (колонки "t.col"): строки входа
+     * buildLeft ? левого : правого складываются в хеш-таблицу, строки другого входа ищутся в ней.
+     * columns - схема результата: колонки левого входа, затем правого, с именами "t.col".
+     */
+    public static class HashJoinOperator extends PhysicalOperator {
+        private List<String> leftKeys;
+        private List<String> rightKeys;
+        private List<ColumnDef> columns;
+        private boolean buildLeft;
+        
+        public HashJoinOperator(List<String> leftKeys, List<String> rightKeys,
+                                List<ColumnDef> columns, boolean buildLeft) {
+            super("HashJoin");
+            this.leftKeys = leftKeys;
+            this.rightKeys = rightKeys;
+            this.columns = columns;
+            this.buildLeft = buildLeft;
+        }
+        
+        public List<String> getLeftKeys() {
+            return leftKeys;
+        }
+        
+        public List<String> getRightKeys() {
+            return rightKeys;
+        }
+        
+        public List<ColumnDef> getColumns() {
+            return columns;
+        }
+        
+        public boolean isBuildLeft() {
+            return buildLeft;
+        }
+    }
+    
+    /**
+     * Index nested-loop join: для строк единственного дочернего оператора (внешний вход) парные
+     * строки таблицы innerTable ищутся по индексу indexName на ее колонке indexColumn.
+     * innerFilter - условие на строки innerTable (null - нет), innerLeft - стоит ли innerTable
+     * в соединении слева. Ключи и columns - как у HashJoinOperator.
+     */
+    public static class IndexNestedLoopJoinOperator extends PhysicalOperator {
+        private List<String> leftKeys;
+        private List<String> rightKeys;
+        private List<ColumnDef> columns;
+        private String innerTable;
+        private String indexName;
+        private String indexColumn;
+        private Condition innerFilter;
+        private boolean innerLeft;
+        
+        public IndexNestedLoopJoinOperator(List<String> leftKeys, List<String> rightKeys,
+                                           List<ColumnDef> columns, String innerTable,
+                                           String indexName, String indexColumn,
+                                           Condition innerFilter, boolean innerLeft) {
+            super("IndexNestedLoopJoin");
+            this.leftKeys = leftKeys;
+            this.rightKeys = rightKeys;
+            this.columns = columns;
+            this.innerTable = innerTable;
+            this.indexName = indexName;
+            this.indexColumn = indexColumn;
+            this.innerFilter = innerFilter;
+            this.innerLeft = innerLeft;
+        }
+        
+        public List<String> getLeftKeys() {
+            return leftKeys;
+        }
+        
+        public List<String> getRightKeys() {
+            return rightKeys;
+        }
+        
+        public List<ColumnDef> getColumns() {
+            return columns;
+        }
+        
+        public String getInnerTable() {
+            return innerTable;
+        }
+        
+        public String getIndexName() {
+            return indexName;
+        }
+        
+        public String getIndexColumn() {
+            return indexColumn;
+        }
+        
+        public Condition getInnerFilter() {
+            return innerFilter;
+        }
+        
+        public boolean isInnerLeft() {
+            return innerLeft;
+        }
+    }
+    
+    /**
+     * Условие WHERE: сравнение колонки с константой (=, <>, <, <=, >, >=, BETWEEN)
+     * или связка AND/OR над несколькими условиями
+     */
+    public static class Condition {
+        private final String operator;
+        private final String columnName;
+        private final Object value;
+        private final Object upperValue;
+        private final List<Condition> operands;
+        
+        private Condition(String operator, String columnName, Object value, Object upperValue,
+                          List<Condition> operands) {
             this.operator = operator;
+            this.columnName = columnName;
             this.value = value;
+            this.upperValue = upperValue;
+            this.operands = operands;
         }
         
-        public String getColumnName() {
-            return columnName;
+        /**
+         * upperValue - верхняя граница для BETWEEN (value - нижняя)
+         */
+        public static Condition comparison(String columnName, String operator, Object value, Object upperValue) {
+            return new Condition(operator, columnName, value, upperValue, Collections.emptyList());
+        }
+        
+        /**
+         * AND или OR; для одного операнда - сам операнд
+         */
+        public static Condition connective(String operator, List<Condition> operands) {
+            if (operands.size() == 1) {
+                return operands.get(0);
+            }
+            return new Condition(operator, null, null, null,
+                Collections.unmodifiableList(new ArrayList<>(operands)));
+        }
+        
+        public boolean isConnective() {
+            return !operands.isEmpty();
         }
         
         public String getOperator() {
             return operator;
         }
         
+        public String getColumnName() {
+            return columnName;
+        }
+        
         public Object getValue() {
             return value;
         }
+        
+        public Object getUpperValue() {
+            return upperValue;
+        }
+        
+        public List<Condition> getOperands() {
+            return operands;
+        }
+        
+        /**
+         * Добавить в columns все колонки, упомянутые в условии
+         */
+        public void collectColumns(Set<String> columns) {
+            if (columnName != null) {
+                columns.add(columnName.toLowerCase());
+            }
+            for (Condition operand : operands) {
+                operand.collectColumns(columns);
+            }
+        }
+        
+        @Override
+        public String toString() {
+            if (isConnective()) {
+                StringBuilder sb = new StringBuilder("(");
+                for (int i = 0; i < operands.size(); i++) {
+                    if (i > 0) {
+                        sb.append(' ').append(operator).append(' ');
+                    }
+                    sb.append(operands.get(i));
+                }
+                return sb.append(')').toString();
+            }
+            if ("BETWEEN".equals(operator)) {
+                return columnName + " BETWEEN " + value + " AND " + upperValue;
+            }
+            return columnName + " " + operator + " " + value;
+        }
+    }
+    
+    public static class FilterOperator extends PhysicalOperator {
+        private Condition condition;
+        
+        public FilterOperator(String columnName, String operator, Object value) {
+            this(columnName, operator, value, null);
+        }
+        
+        /**
+         * upperValue - верхняя граница для BETWEEN (value - нижняя)
+         */
+        public FilterOperator(String columnName, String operator, Object value, Object upperValue) {
+            this(Condition.comparison(columnName, operator, value, upperValue));
+        }
+        
+        public FilterOperator(Condition condition) {
+            super("Filter");
+            this.condition = condition;
+        }
+        
+        public Condition getCondition() {
+            return condition;
+        }
+        
+        /**
+         * Колонка простого сравнения (null для связки AND/OR)
+         */
+        public String getColumnName() {
+            return condition.getColumnName();
+        }
+        
+        public String getOperator() {
+            return condition.getOperator();
+        }
+        
+        public Object getValue() {
+            return condition.getValue();
+        }
+        
+        public Object getUpperValue() {
+            return condition.getUpperValue();
+        }
     }
     
     public static class ProjectOperator extends PhysicalOperator {
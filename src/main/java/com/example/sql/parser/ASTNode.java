@@ -10,6 +10,7 @@ public class ASTNode {
     public enum Type {
         CREATE_TABLE,
         DROP_TABLE,
+        ANALYZE,
         INSERT,
         SELECT,
         COLUMN_DEF,
@@ -18,6 +19,7 @@ public class ASTNode {
         LITERAL,
         IDENTIFIER,
         WHERE_CLAUSE,
+        JOIN,
         COLUMN_LIST
     }
     
@@ -28,6 +28,8 @@ public class Parser {
                 return parseCreate();
             case DROP:
                 return parseDrop();
+            case ANALYZE:
+                return parseAnalyze();
             case INSERT:
                 return parseInsert();
             case SELECT:
@@ -66,6 +68,14 @@ public class Parser {
         return dropNode;
     }
     
+    private ASTNode parseAnalyze() {
+        // ANALYZE уже прочитан в parse()
+        advance();
+        
+        Token tableNameToken = expect(Token.Type.IDENTIFIER);
+        return new ASTNode(ASTNode.Type.ANALYZE, tableNameToken.getValue());
+    }
+    
     private ASTNode parseCreateTable() {
         expect(Token.Type.TABLE);
         
@@ -214,20 +224,27 @@ public class Parser {
                 }
                 first = false;
                 
-                Token colNameToken = expect(Token.Type.IDENTIFIER);
-                colList.addChild(new ASTNode(ASTNode.Type.IDENTIFIER, colNameToken.getValue()));
+                colList.addChild(new ASTNode(ASTNode.Type.IDENTIFIER, parseColumnReference()));
             }
         }
         selectNode.addChild(colList);
         
         expect(Token.Type.FROM);
         
-        Token tableNameToken = expect(Token.Type.IDENTIFIER);
-        String tableName = tableNameToken.getValue();
-        if (tableName == null || tableName.isEmpty()) {
-            throw new RuntimeException("Table name cannot be empty");
+        selectNode.addChild(parseTableReference());
+        
+        // [INNER] JOIN таблица ON условие - сколько угодно раз
+        while (current().getType() == Token.Type.JOIN || current().getType() == Token.Type.INNER) {
+            if (current().getType() == Token.Type.INNER) {
+                advance();
+            }
+            expect(Token.Type.JOIN);
+            ASTNode joinNode = new ASTNode(ASTNode.Type.JOIN);
+            joinNode.addChild(parseTableReference());
+            expect(Token.Type.ON);
+            joinNode.addChild(parseExpression());
+            selectNode.addChild(joinNode);
         }
-        selectNode.addChild(new ASTNode(ASTNode.Type.IDENTIFIER, tableName));
         
         // Опциональное WHERE условие
         if (current().getType() == Token.Type.WHERE) {
@@ -239,6 +256,39 @@ public class Parser {
         return selectNode;
     }
     
+    /**
+     * Таблица в FROM или JOIN: IDENTIFIER с именем таблицы; псевдоним (t или AS t) -
+     * его единственный дочерний IDENTIFIER
+     */
+    private ASTNode parseTableReference() {
+        Token tableNameToken = expect(Token.Type.IDENTIFIER);
+        String tableName = tableNameToken.getValue();
+        if (tableName == null || tableName.isEmpty()) {
+            throw new RuntimeException("Table name cannot be empty");
+        }
+        ASTNode tableNode = new ASTNode(ASTNode.Type.IDENTIFIER, tableName);
+        if (current().getType() == Token.Type.AS) {
+            advance();
+            tableNode.addChild(new ASTNode(ASTNode.Type.IDENTIFIER, expect(Token.Type.IDENTIFIER).getValue()));
+        } else if (current().getType() == Token.Type.IDENTIFIER) {
+            tableNode.addChild(new ASTNode(ASTNode.Type.IDENTIFIER, current().getValue()));
+            advance();
+        }
+        return tableNode;
+    }
+    
+    /**
+     * Имя колонки, возможно с таблицей: col или t.col (одной строкой "t.col")
+     */
+    private String parseColumnReference() {
+        String name = expect(Token.Type.IDENTIFIER).getValue();
+        if (current().getType() == Token.Type.DOT) {
+            advance();
+            name = name + "." + expect(Token.Type.IDENTIFIER).getValue();
+        }
+        return name;
+    }
+    
     private ASTNode parseWhereClause() {
         ASTNode whereNode = new ASTNode(ASTNode.Type.WHERE_CLAUSE);
         ASTNode expr = parseExpression();
@@ -246,12 +296,31 @@ public class Parser {
         return whereNode;
     }
     
+    /**
+     * Выражение WHERE: OR связывает слабее AND (a OR b AND c = a OR (b AND c))
+     */
     private ASTNode parseExpression() {
+        ASTNode left = parseConjunction();
+        
+        while (current().getType() == Token.Type.OR) {
+            Token op = current();
+            advance();
+            ASTNode right = parseConjunction();
+            ASTNode binOp = new ASTNode(ASTNode.Type.BINARY_OP, op.getValue());
+            binOp.addChild(left);
+            binOp.addChild(right);
+            left = binOp;
+        }
+        
+        return left;
+    }
+    
+    private ASTNode parseConjunction() {
         ASTNode left = parseTerm();
         
-        while (current().getType() == Token.Type.AND || 
-               current().getType() == Token.Type.OR) {
-            Token op = advance();
+        while (current().getType() == Token.Type.AND) {
+            Token op = current();
+            advance();
             ASTNode right = parseTerm();
             ASTNode binOp = new ASTNode(ASTNode.Type.BINARY_OP, op.getValue());
             binOp.addChild(left);
@@ -265,6 +334,20 @@ public class Parser {
     private ASTNode parseTerm() {
         ASTNode left = parseFactor();
         
+        // x BETWEEN a AND b: AND здесь часть оператора, а не логическая связка
+        if (current().getType() == Token.Type.BETWEEN) {
+            Token op = current();
+            advance();
+            ASTNode low = parseFactor();
+            expect(Token.Type.AND);
+            ASTNode high = parseFactor();
+            ASTNode between = new ASTNode(ASTNode.Type.BINARY_OP, op.getValue());
+            between.addChild(left);
+            between.addChild(low);
+            between.addChild(high);
+            return between;
+        }
+        
         while (current().getType() == Token.Type.EQ ||
                current().getType() == Token.Type.NE ||
                current().getType() == Token.Type.LT ||
@@ -294,8 +377,7 @@ public class Parser {
         Token token = current();
         
         if (token.getType() == Token.Type.IDENTIFIER) {
-            advance();
-            return new ASTNode(ASTNode.Type.IDENTIFIER, token.getValue());
+            return new ASTNode(ASTNode.Type.IDENTIFIER, parseColumnReference());
         } else if (token.getType() == Token.Type.STRING) {
             advance();
             return new ASTNode(ASTNode.Type.LITERAL, token.getValue());
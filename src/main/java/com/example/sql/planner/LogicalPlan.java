@@ -1,6 +1,7 @@
 package com.example.sql.planner;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -11,6 +12,7 @@ public class LogicalPlan {
         CREATE_TABLE,
         CREATE_INDEX,
         DROP_TABLE,
+        ANALYZE,
         INSERT,
         SELECT
     }
@@ -97,38 +99,172 @@ public class LogicalPlan {
     
     public static class ScanOperator extends LogicalOperator {
         private String tableName;
+        private String alias;
         
         public ScanOperator(String tableName) {
+            this(tableName, tableName);
+        }
+        
+        /**
+         * alias - имя, которым квалифицируются колонки таблицы в запросе с JOIN
+         */
+        public ScanOperator(String tableName, String alias) {
             this.tableName = tableName;
+            this.alias = alias;
         }
         
         public String getTableName() {
             return tableName;
         }
+        
+        public String getAlias() {
+            return alias;
+        }
     }
     
-    public static class FilterOperator extends LogicalOperator {
-        private String columnName;
-        private String operator;
-        private Object value;
+    /**
+     * Внутреннее соединение двух входов по равенству колонок: leftColumns[i] = rightColumns[i].
+     * Колонки квалифицированы ("t.col"); строка результата - колонки левого входа, затем правого.
+     */
+    public static class JoinOperator extends LogicalOperator {
+        private List<String> leftColumns;
+        private List<String> rightColumns;
         
-        public FilterOperator(String columnName, String operator, Object value) {
-            this.columnName = columnName;
+        public JoinOperator(List<String> leftColumns, List<String> rightColumns) {
+            this.leftColumns = leftColumns;
+            this.rightColumns = rightColumns;
+        }
+        
+        public List<String> getLeftColumns() {
+            return leftColumns;
+        }
+        
+        public List<String> getRightColumns() {
+            return rightColumns;
+        }
+    }
+    
+    /**
+     * Условие WHERE: сравнение колонки с константой (=, <>, <, <=, >, >=, BETWEEN)
+     * или связка AND/OR над несколькими условиями
+     */
+    public static class Condition {
+        private final String operator;
+        private final String columnName;
+        private final Object value;
+        private final Object upperValue;
+        private final List<Condition> operands;
+        
+        private Condition(String operator, String columnName, Object value, Object upperValue,
+                          List<Condition> operands) {
             this.operator = operator;
+            this.columnName = columnName;
             this.value = value;
+            this.upperValue = upperValue;
+            this.operands = operands;
         }
         
-        public String getColumnName() {
-            return columnName;
+        /**
+         * upperValue - верхняя граница для BETWEEN (value - нижняя)
+         */
+        public static Condition comparison(String columnName, String operator, Object value, Object upperValue) {
+            return new Condition(operator, columnName, value, upperValue, Collections.emptyList());
+        }
+        
+        /**
+         * AND или OR; для одного операнда - сам операнд
+         */
+        public static Condition connective(String operator, List<Condition> operands) {
+            if (operands.size() == 1) {
+                return operands.get(0);
+            }
+            return new Condition(operator, null, null, null,
+                Collections.unmodifiableList(new ArrayList<>(operands)));
+        }
+        
+        public boolean isConnective() {
+            return !operands.isEmpty();
         }
         
         public String getOperator() {
             return operator;
         }
         
+        public String getColumnName() {
+            return columnName;
+        }
+        
         public Object getValue() {
             return value;
         }
+        
+        public Object getUpperValue() {
+            return upperValue;
+        }
+        
+        public List<Condition> getOperands() {
+            return operands;
+        }
+        
+        @Override
+        public String toString() {
+            if (isConnective()) {
+                StringBuilder sb = new StringBuilder("(");
+                for (int i = 0; i < operands.size(); i++) {
+                    if (i > 0) {
+                        sb.append(' ').append(operator).append(' ');
+                    }
+                    sb.append(operands.get(i));
+                }
+                return sb.append(')').toString();
+            }
+            if ("BETWEEN".equals(operator)) {
+                return columnName + " BETWEEN " + value + " AND " + upperValue;
+            }
+            return columnName + " " + operator + " " + value;
+        }
+    }
+    
+    public static class FilterOperator extends LogicalOperator {
+        private Condition condition;
+        
+        public FilterOperator(String columnName, String operator, Object value) {
+            this(columnName, operator, value, null);
+        }
+        
+        /**
+         * upperValue - верхняя граница для BETWEEN (value - нижняя)
+         */
+        public FilterOperator(String columnName, String operator, Object value, Object upperValue) {
+            this(Condition.comparison(columnName, operator, value, upperValue));
+        }
+        
+        public FilterOperator(Condition condition) {
+            this.condition = condition;
+        }
+        
+        public Condition getCondition() {
+            return condition;
+        }
+        
+        /**
+         * Колонка простого сравнения (null для связки AND/OR)
+         */
+        public String getColumnName() {
+            return condition.getColumnName();
+        }
+        
+        public String getOperator() {
+            return condition.getOperator();
+        }
+        
+        public Object getValue() {
+            return condition.getValue();
+        }
+        
+        public Object getUpperValue() {
+            return condition.getUpperValue();
+        }
     }
     
     public static class ProjectOperator extends LogicalOperator {
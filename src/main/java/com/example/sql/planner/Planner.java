@@ -2,6 +2,10 @@ package com.example.sql.planner;
 
 import com.example.sql.semantic.QueryTree;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 /**
  * Планировщик - построение логического плана из QueryTree
  */
@@ -29,7 +33,8 @@ public class Planner {
                 break;
                 
             case DROP_TABLE:
-                // Для DROP TABLE не нужно дополнительных действий
+            case ANALYZE:
+                // Для DROP TABLE и ANALYZE достаточно имени таблицы
                 break;
                 
             case INSERT:
@@ -40,12 +45,16 @@ public class Planner {
                 plan.getSelectColumns().addAll(queryTree.getSelectColumns());
                 
                 // Строим дерево операторов снизу вверх
-                LogicalPlan.ScanOperator scan = new LogicalPlan.ScanOperator(queryTree.getTableName());
-                LogicalPlan.LogicalOperator current = scan;
-                
-                // WHERE условия
-                if (queryTree.getWhereCondition() != null) {
-                    current = buildFilterTree(queryTree.getWhereCondition(), current);
+                LogicalPlan.LogicalOperator current;
+                if (!queryTree.getJoins().isEmpty()) {
+                    current = buildJoinTree(queryTree);
+                } else {
+                    current = new LogicalPlan.ScanOperator(queryTree.getTableName());
+                    
+                    // WHERE условия
+                    if (queryTree.getWhereCondition() != null) {
+                        current = buildFilterTree(queryTree.getWhereCondition(), current);
+                    }
                 }
                 
                 // Project
@@ -61,26 +70,125 @@ public class Planner {
         return plan;
     }
     
+    /**
+     * Левостороннее дерево соединений: FROM JOIN t1 JOIN t2 ... Конъюнкты WHERE, которые касаются
+     * одной таблицы, становятся Filter прямо над ее Scan (с неквалифицированными колонками -
+     * так оптимизатор подберет для них индекс); остальные - Filter над соединением.
+     */
+    private LogicalPlan.LogicalOperator buildJoinTree(QueryTree queryTree) {
+        List<LogicalPlan.Condition> conjuncts = new ArrayList<>();
+        if (queryTree.getWhereCondition() != null) {
+            LogicalPlan.Condition condition = buildCondition(queryTree.getWhereCondition());
+            if (condition.isConnective() && condition.getOperator().equals("AND")) {
+                conjuncts.addAll(condition.getOperands());
+            } else {
+                conjuncts.add(condition);
+            }
+        }
+        
+        LogicalPlan.LogicalOperator current = buildTableInput(queryTree.getTableName(),
+            queryTree.getTableQualifier(), conjuncts);
+        for (QueryTree.Join join : queryTree.getJoins()) {
+            LogicalPlan.JoinOperator joinOp =
+                new LogicalPlan.JoinOperator(join.getLeftColumns(), join.getRightColumns());
+            joinOp.addChild(current);
+            joinOp.addChild(buildTableInput(join.getTableName(), join.getQualifier(), conjuncts));
+            current = joinOp;
+        }
+        
+        // Оставшиеся конъюнкты связывают несколько таблиц
+        if (!conjuncts.isEmpty()) {
+            LogicalPlan.FilterOperator filter =
+                new LogicalPlan.FilterOperator(LogicalPlan.Condition.connective("AND", conjuncts));
+            filter.addChild(current);
+            current = filter;
+        }
+        return current;
+    }
+    
+    /**
+     * Scan таблицы с Filter из конъюнктов, которые касаются только ее; они удаляются из conjuncts
+     */
+    private LogicalPlan.LogicalOperator buildTableInput(String tableName, String qualifier,
+                                                        List<LogicalPlan.Condition> conjuncts) {
+        LogicalPlan.LogicalOperator scan = new LogicalPlan.ScanOperator(tableName, qualifier);
+        List<LogicalPlan.Condition> local = new ArrayList<>();
+        Iterator<LogicalPlan.Condition> it = conjuncts.iterator();
+        while (it.hasNext()) {
+            LogicalPlan.Condition conjunct = it.next();
+            LogicalPlan.Condition stripped = withoutQualifier(conjunct, qualifier);
+            if (stripped != null) {
+                local.add(stripped);
+                it.remove();
+            }
+        }
+        if (local.isEmpty()) {
+            return scan;
+        }
+        LogicalPlan.FilterOperator filter =
+            new LogicalPlan.FilterOperator(LogicalPlan.Condition.connective("AND", local));
+        filter.addChild(scan);
+        return filter;
+    }
+    
+    /**
+     * Условие с колонками "qualifier.col", переписанное на col, или null, если в нем есть
+     * колонки других таблиц
+     */
+    private LogicalPlan.Condition withoutQualifier(LogicalPlan.Condition condition, String qualifier) {
+        if (!condition.isConnective()) {
+            String column = condition.getColumnName();
+            if (!column.regionMatches(true, 0, qualifier, 0, qualifier.length())
+                    || column.length() <= qualifier.length() || column.charAt(qualifier.length()) != '.') {
+                return null;
+            }
+            return LogicalPlan.Condition.comparison(column.substring(qualifier.length() + 1),
+                condition.getOperator(), condition.getValue(), condition.getUpperValue());
+        }
+        List<LogicalPlan.Condition> operands = new ArrayList<>();
+        for (LogicalPlan.Condition operand : condition.getOperands()) {
+            LogicalPlan.Condition stripped = withoutQualifier(operand, qualifier);
+            if (stripped == null) {
+                return null;
+            }
+            operands.add(stripped);
+        }
+        return LogicalPlan.Condition.connective(condition.getOperator(), operands);
+    }
+    
+    /**
+     * Один Filter со всем условием WHERE; выбор индексов и разбиение на конъюнкты - в оптимизаторе
+     */
     private LogicalPlan.LogicalOperator buildFilterTree(
             QueryTree.Expression expr, 
             LogicalPlan.LogicalOperator child) {
-        
+        LogicalPlan.FilterOperator filter = new LogicalPlan.FilterOperator(buildCondition(expr));
+        filter.addChild(child);
+        return filter;
+    }
+    
+    /**
+     * Дерево условия; вложенные одноименные связки сливаются: (a AND b) AND c = AND(a, b, c)
+     */
+    private LogicalPlan.Condition buildCondition(QueryTree.Expression expr) {
         if (expr.isBinary() && 
             (expr.getOpType() == QueryTree.Expression.OpType.AND ||
              expr.getOpType() == QueryTree.Expression.OpType.OR)) {
-            // Рекурсивно обрабатываем AND/OR
-            LogicalPlan.LogicalOperator leftChild = buildFilterTree(expr.getLeft(), child);
-            // rightChild обрабатывается, но для упрощения используем только leftChild
-            // В реальной СУБД здесь была бы более сложная логика объединения условий
-            return leftChild; // Упрощение: берем левое условие
-        } else {
-            // Простое условие сравнения
-            String op = opTypeToString(expr.getOpType());
-            LogicalPlan.FilterOperator filter = 
-                new LogicalPlan.FilterOperator(expr.getColumnName(), op, expr.getValue());
-            filter.addChild(child);
-            return filter;
+            String connective = expr.getOpType().name();
+            List<LogicalPlan.Condition> operands = new ArrayList<>();
+            for (QueryTree.Expression side : new QueryTree.Expression[] {expr.getLeft(), expr.getRight()}) {
+                LogicalPlan.Condition operand = buildCondition(side);
+                if (operand.isConnective() && operand.getOperator().equals(connective)) {
+                    operands.addAll(operand.getOperands());
+                } else {
+                    operands.add(operand);
+                }
+            }
+            return LogicalPlan.Condition.connective(connective, operands);
         }
+        // Простое условие сравнения
+        return LogicalPlan.Condition.comparison(expr.getColumnName(),
+            opTypeToString(expr.getOpType()), expr.getValue(), expr.getUpperValue());
     }
     
     private String opTypeToString(QueryTree.Expression.OpType opType) {
@@ -91,6 +199,7 @@ public class Planner {
             case LE: return "<=";
             case GT: return ">";
             case GE: return ">=";
+            case BETWEEN: return "BETWEEN";
             default: return "=";
         }
     }
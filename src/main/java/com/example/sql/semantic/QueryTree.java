@@ -11,6 +11,7 @@ public class QueryTree {
         CREATE_TABLE,
         CREATE_INDEX,
         DROP_TABLE,
+        ANALYZE,
         INSERT,
         SELECT
     }
@@ -21,12 +22,15 @@ public class QueryTree {
     private List<String> selectColumns;
     private List<Object> insertValues;
     private Expression whereCondition;
+    private String tableAlias;
+    private List<Join> joins;
     
     public QueryTree(Type type) {
         this.type = type;
         this.columns = new ArrayList<>();
         this.selectColumns = new ArrayList<>();
         this.insertValues = new ArrayList<>();
+        this.joins = new ArrayList<>();
     }
     
     public Type getType() {
@@ -61,6 +65,67 @@ public class QueryTree {
         this.whereCondition = whereCondition;
     }
     
+    public String getTableAlias() {
+        return tableAlias;
+    }
+    
+    public void setTableAlias(String tableAlias) {
+        this.tableAlias = tableAlias;
+    }
+    
+    /**
+     * Имя, которым колонки таблицы FROM квалифицируются в запросе с JOIN: псевдоним или имя таблицы
+     */
+    public String getTableQualifier() {
+        return tableAlias != null ? tableAlias : tableName;
+    }
+    
+    /**
+     * Соединения с таблицами JOIN по порядку; пусто для запроса к одной таблице.
+     * В запросе с JOIN все колонки (списка SELECT, WHERE, ключей) - квалифицированные: "t.col".
+     */
+    public List<Join> getJoins() {
+        return joins;
+    }
+    
+    /**
+     * Соединение по равенству с очередной таблицей: leftColumns - колонки уже соединенных
+     * таблиц, rightColumns - колонки присоединяемой (попарно равны)
+     */
+    public static class Join {
+        private String tableName;
+        private String alias;
+        private List<String> leftColumns;
+        private List<String> rightColumns;
+        
+        public Join(String tableName, String alias) {
+            this.tableName = tableName;
+            this.alias = alias;
+            this.leftColumns = new ArrayList<>();
+            this.rightColumns = new ArrayList<>();
+        }
+        
+        public String getTableName() {
+            return tableName;
+        }
+        
+        public String getAlias() {
+            return alias;
+        }
+        
+        public String getQualifier() {
+            return alias != null ? alias : tableName;
+        }
+        
+        public List<String> getLeftColumns() {
+            return leftColumns;
+        }
+        
+        public List<String> getRightColumns() {
+            return rightColumns;
+        }
+    }
+    
     public static class ColumnDef {
         private String name;
         private String type;
@@ -81,12 +146,13 @@ public class QueryTree {
     
     public static class Expression {
         public enum OpType {
-            EQ, NE, LT, LE, GT, GE, AND, OR
+            EQ, NE, LT, LE, GT, GE, BETWEEN, AND, OR
         }
         
         private OpType opType;
         private String columnName;
         private Object value;
+        private Object upperValue;
         private Expression left;
         private Expression right;
         
@@ -96,6 +162,14 @@ public class QueryTree {
             this.value = value;
         }
         
+        /**
+         * BETWEEN: value - нижняя граница, upperValue - верхняя (обе включаются)
+         */
+        public Expression(OpType opType, String columnName, Object value, Object upperValue) {
+            this(opType, columnName, value);
+            this.upperValue = upperValue;
+        }
+        
         public Expression(OpType opType, Expression left, Expression right) {
             this.opType = opType;
             this.left = left;
@@ -114,6 +188,10 @@ public class QueryTree {
             return value;
         }
         
+        public Object getUpperValue() {
+            return upperValue;
+        }
+        
         public Expression getLeft() {
             return left;
         }
@@ -3,7 +3,9 @@ package com.example.sql.semantic;
 import com.example.sql.parser.ASTNode;
 import com.example.storage.StorageManager;
 import com.example.storage.TableMetadata;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 /**
  * Семантический анализатор - преобразование AST в QueryTree
@@ -25,6 +27,8 @@ public class SemanticAnalyzer {
                 return analyzeCreateTable(ast);
             case DROP_TABLE:
                 return analyzeDropTable(ast);
+            case ANALYZE:
+                return analyzeAnalyze(ast);
             case INSERT:
                 return analyzeInsert(ast);
             case SELECT:
@@ -61,6 +65,17 @@ public class SemanticAnalyzer {
         return query;
     }
     
+    private QueryTree analyzeAnalyze(ASTNode ast) {
+        QueryTree query = new QueryTree(QueryTree.Type.ANALYZE);
+        query.setTableName(ast.getValue().trim());
+        
+        if (!storageManager.tableExists(query.getTableName())) {
+            throw new RuntimeException("Table does not exist: " + query.getTableName());
+        }
+        
+        return query;
+    }
+    
     private QueryTree analyzeCreateTable(ASTNode ast) {
         QueryTree query = new QueryTree(QueryTree.Type.CREATE_TABLE);
         String tableName = ast.getValue();
@@ -170,9 +185,15 @@ public class SemanticAnalyzer {
         // Таблица
         String tableName = null;
         ASTNode whereClause = null;
+        List<ASTNode> joinNodes = new ArrayList<>();
         for (ASTNode child : ast.getChildren()) {
             if (child.getType() == ASTNode.Type.IDENTIFIER && tableName == null) {
                 tableName = child.getValue();
+                if (!child.getChildren().isEmpty()) {
+                    query.setTableAlias(child.getChildren().get(0).getValue());
+                }
+            } else if (child.getType() == ASTNode.Type.JOIN) {
+                joinNodes.add(child);
             } else if (child.getType() == ASTNode.Type.WHERE_CLAUSE) {
                 whereClause = child;
             } else if (child.getType() == ASTNode.Type.COLUMN_LIST) {
@@ -199,6 +220,18 @@ public class SemanticAnalyzer {
         
         TableMetadata metadata = storageManager.getTableMetadata(tableName);
         
+        if (!joinNodes.isEmpty()) {
+            analyzeJoins(query, metadata, joinNodes, whereClause);
+            return query;
+        }
+        
+        // Колонки можно квалифицировать именем или псевдонимом таблицы: t.col
+        UnaryOperator<String> unqualify = name -> stripQualifier(name, query.getTableQualifier());
+        query.getSelectColumns().replaceAll(name -> name.equals("*") ? name : unqualify.apply(name));
+        if (whereClause != null) {
+            rewriteIdentifiers(whereClause, unqualify);
+        }
+        
         // Проверяем колонки
         if (query.getSelectColumns().contains("*")) {
             query.getSelectColumns().clear();
@@ -221,6 +254,128 @@ public class SemanticAnalyzer {
         return query;
     }
     
+    /**
+     * SELECT с JOIN: таблицы соединяются слева направо, колонки разрешаются в "t.col"
+     * (t - псевдоним или имя таблицы; колонка без t - из единственной таблицы, где она есть).
+     * Из ON равенства колонок присоединяемой и уже соединенных таблиц становятся ключами
+     * соединения, сравнения с константами добавляются к условию WHERE.
+     */
+    private void analyzeJoins(QueryTree query, TableMetadata metadata, List<ASTNode> joinNodes,
+                              ASTNode whereClause) {
+        JoinScope scope = new JoinScope();
+        scope.add(query.getTableQualifier(), metadata);
+        List<QueryTree.Expression> conditions = new ArrayList<>();
+        
+        for (ASTNode joinNode : joinNodes) {
+            ASTNode tableNode = joinNode.getChildren().get(0);
+            String alias = tableNode.getChildren().isEmpty() ? null : tableNode.getChildren().get(0).getValue();
+            QueryTree.Join join = new QueryTree.Join(tableNode.getValue().trim(), alias);
+            if (!storageManager.tableExists(join.getTableName())) {
+                throw new RuntimeException("Table does not exist: " + join.getTableName());
+            }
+            scope.add(join.getQualifier(), storageManager.getTableMetadata(join.getTableName()));
+            
+            List<ASTNode> onConjuncts = new ArrayList<>();
+            splitConjuncts(joinNode.getChildren().get(1), onConjuncts);
+            for (ASTNode conjunct : onConjuncts) {
+                rewriteIdentifiers(conjunct, scope::resolve);
+                if (!isColumnEquality(conjunct)) {
+                    conditions.add(analyzeExpression(conjunct, scope.metadata));
+                    continue;
+                }
+                String left = conjunct.getChildren().get(0).getValue();
+                String right = conjunct.getChildren().get(1).getValue();
+                boolean leftJoined = scope.isLast(left);
+                if (leftJoined == scope.isLast(right)) {
+                    throw new RuntimeException("JOIN condition must compare columns of "
+                        + join.getQualifier() + " and a preceding table: " + left + " = " + right);
+                }
+                if (leftJoined) {
+                    String swap = left;
+                    left = right;
+                    right = swap;
+                }
+                String leftType = scope.metadata.getColumn(left).getType();
+                if (!leftType.equalsIgnoreCase(scope.metadata.getColumn(right).getType())) {
+                    throw new RuntimeException("JOIN columns have different types: " + left + " = " + right);
+                }
+                join.getLeftColumns().add(left);
+                join.getRightColumns().add(right);
+            }
+            if (join.getLeftColumns().isEmpty()) {
+                throw new RuntimeException("JOIN " + join.getQualifier()
+                    + " requires an equality condition between columns in ON");
+            }
+            query.getJoins().add(join);
+        }
+        
+        if (query.getSelectColumns().contains("*")) {
+            query.getSelectColumns().clear();
+            for (TableMetadata.Column col : scope.metadata.getColumns()) {
+                query.getSelectColumns().add(col.getName());
+            }
+        } else {
+            query.getSelectColumns().replaceAll(scope::resolve);
+        }
+        
+        if (whereClause != null && !whereClause.getChildren().isEmpty()) {
+            rewriteIdentifiers(whereClause, scope::resolve);
+            conditions.add(analyzeExpression(whereClause.getChildren().get(0), scope.metadata));
+        }
+        QueryTree.Expression where = null;
+        for (QueryTree.Expression condition : conditions) {
+            where = where == null ? condition
+                : new QueryTree.Expression(QueryTree.Expression.OpType.AND, where, condition);
+        }
+        query.setWhereCondition(where);
+    }
+    
+    private static boolean isColumnEquality(ASTNode node) {
+        return node.getType() == ASTNode.Type.BINARY_OP && "=".equals(node.getValue())
+            && node.getChildren().size() == 2
+            && node.getChildren().get(0).getType() == ASTNode.Type.IDENTIFIER
+            && node.getChildren().get(1).getType() == ASTNode.Type.IDENTIFIER;
+    }
+    
+    /**
+     * Операнды верхнего AND выражения (или само выражение)
+     */
+    private static void splitConjuncts(ASTNode node, List<ASTNode> conjuncts) {
+        if (node.getType() == ASTNode.Type.BINARY_OP && "AND".equals(node.getValue())
+                && node.getChildren().size() == 2) {
+            splitConjuncts(node.getChildren().get(0), conjuncts);
+            splitConjuncts(node.getChildren().get(1), conjuncts);
+        } else {
+            conjuncts.add(node);
+        }
+    }
+    
+    /**
+     * Заменить имена колонок (IDENTIFIER) в выражении
+     */
+    private static void rewriteIdentifiers(ASTNode node, UnaryOperator<String> rename) {
+        if (node.getType() == ASTNode.Type.IDENTIFIER) {
+            node.setValue(rename.apply(node.getValue()));
+        }
+        for (ASTNode child : node.getChildren()) {
+            rewriteIdentifiers(child, rename);
+        }
+    }
+    
+    /**
+     * Колонка запроса к одной таблице: t.col, где t - имя или псевдоним таблицы, - это col
+     */
+    private static String stripQualifier(String name, String qualifier) {
+        int dot = name.indexOf('.');
+        if (dot < 0) {
+            return name;
+        }
+        if (!name.substring(0, dot).equalsIgnoreCase(qualifier)) {
+            throw new RuntimeException("Unknown table in column reference: " + name);
+        }
+        return name.substring(dot + 1);
+    }
+    
     private QueryTree.Expression analyzeExpression(ASTNode ast, TableMetadata metadata) {
         if (ast.getType() == ASTNode.Type.BINARY_OP) {
             String op = ast.getValue();
@@ -231,10 +386,11 @@ public class SemanticAnalyzer {
             // Проверяем, что это действительно оператор, а не число или что-то другое
             String opTrimmed = op.trim();
             if (!opTrimmed.equals("=") && !opTrimmed.equals("<>") && !opTrimmed.equals("<") && !opTrimmed.equals("<=") && 
-                !opTrimmed.equals(">") && !opTrimmed.equals(">=") && !opTrimmed.equals("AND") && !opTrimmed.equals("OR")) {
+                !opTrimmed.equals(">") && !opTrimmed.equals(">=") && !opTrimmed.equals("AND") && !opTrimmed.equals("OR") &&
+                !opTrimmed.equals("BETWEEN")) {
                 // Если это не оператор, возможно AST построен неправильно
                 throw new RuntimeException("Invalid operator in BINARY_OP node: '" + op + 
-                    "'. Expected one of: =, <>, <, <=, >, >=, AND, OR. " +
+                    "'. Expected one of: =, <>, <, <=, >, >=, BETWEEN, AND, OR. " +
                     "AST children: " + ast.getChildren().size() + 
                     (ast.getChildren().size() > 0 ? ", left=" + ast.getChildren().get(0).getType() + "(" + ast.getChildren().get(0).getValue() + ")" : "") +
                     (ast.getChildren().size() > 1 ? ", right=" + ast.getChildren().get(1).getType() + "(" + ast.getChildren().get(1).getValue() + ")" : ""));
@@ -259,6 +415,17 @@ public class SemanticAnalyzer {
                 return new QueryTree.Expression(opType, 
                     analyzeExpression(left, metadata),
                     analyzeExpression(right, metadata));
+            } else if (opType == QueryTree.Expression.OpType.BETWEEN) {
+                // col BETWEEN low AND high: колонка и две границы
+                if (ast.getChildren().size() != 3 || left.getType() != ASTNode.Type.IDENTIFIER) {
+                    throw new RuntimeException("Invalid BETWEEN expression: expected column BETWEEN value AND value");
+                }
+                String colName = left.getValue();
+                if (metadata.getColumn(colName) == null) {
+                    throw new RuntimeException("Column does not exist: " + colName);
+                }
+                return new QueryTree.Expression(opType, colName, extractValue(right),
+                    extractValue(ast.getChildren().get(2)));
             } else {
                 // Оператор сравнения
                 String colName = null;
@@ -304,11 +471,72 @@ public class SemanticAnalyzer {
             case ">=": return QueryTree.Expression.OpType.GE;
             case "AND": return QueryTree.Expression.OpType.AND;
             case "OR": return QueryTree.Expression.OpType.OR;
+            case "BETWEEN": return QueryTree.Expression.OpType.BETWEEN;
             default:
                 throw new RuntimeException("Unknown operator: " + op);
         }
     }
     
+    /**
+     * Таблицы запроса с JOIN, уже добавленные к соединению. metadata - схема результата
+     * соединения: колонки всех таблиц по порядку с именами "t.col".
+     */
+    private static final class JoinScope {
+        final TableMetadata metadata = new TableMetadata("join");
+        final List<String> qualifiers = new ArrayList<>();
+        final List<TableMetadata> tables = new ArrayList<>();
+        
+        void add(String qualifier, TableMetadata table) {
+            for (String existing : qualifiers) {
+                if (existing.equalsIgnoreCase(qualifier)) {
+                    throw new RuntimeException("Table name or alias used twice: " + qualifier);
+                }
+            }
+            qualifiers.add(qualifier);
+            tables.add(table);
+            for (TableMetadata.Column col : table.getColumns()) {
+                metadata.addColumn(qualifier + "." + col.getName(), col.getType());
+            }
+        }
+        
+        /**
+         * Полное имя "t.col" колонки col или t.col среди добавленных таблиц
+         */
+        String resolve(String name) {
+            int dot = name.indexOf('.');
+            String resolved = null;
+            for (int i = 0; i < tables.size(); i++) {
+                String column = name;
+                if (dot >= 0) {
+                    if (!qualifiers.get(i).equalsIgnoreCase(name.substring(0, dot))) {
+                        continue;
+                    }
+                    column = name.substring(dot + 1);
+                }
+                TableMetadata.Column col = tables.get(i).getColumn(column);
+                if (col != null) {
+                    if (resolved != null) {
+                        throw new RuntimeException("Ambiguous column: " + name);
+                    }
+                    resolved = qualifiers.get(i) + "." + col.getName();
+                }
+            }
+            if (resolved == null) {
+                throw new RuntimeException("Column does not exist: " + name);
+            }
+            return resolved;
+        }
+        
+        /**
+         * Принадлежит ли колонка "t.col" последней добавленной таблице
+         */
+        boolean isLast(String resolved) {
+            String last = qualifiers.get(qualifiers.size() - 1);
+            return resolved.regionMatches(true, 0, last, 0, last.length())
+                && resolved.charAt(last.length()) == '.';
+        }
+    }
+    
     private Object extractValue(ASTNode node) {
         if (node.getType() == ASTNode.Type.LITERAL) {
             String value = node.getValue();
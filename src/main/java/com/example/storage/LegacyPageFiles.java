@@ -0,0 +1,142 @@
+package com.example.storage;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Старый формат хранения: каждая страница в отдельном файле tableName_page_N.dat,
+ * сериализованная через ObjectOutputStream. Внутри страницы - не slotted-формат,
+ * а [число строк int] и строки фиксированного размера (см. readRows).
+ * Используется только для миграции в сегментный .tbl файл и для бенчмарков.
+ */
+public final class LegacyPageFiles {
+    private static final String PAGE_INFIX = "_page_";
+    private static final String PAGE_SUFFIX = ".dat";
+    
+    private LegacyPageFiles() {
+    }
+    
+    public static Path pagePath(Path dir, String tableName, int pageId) {
+        return dir.resolve(tableName + PAGE_INFIX + pageId + PAGE_SUFFIX);
+    }
+    
+    /**
+     * Номера страниц таблицы, лежащих в старом формате (по возрастанию)
+     */
+    public static List<Integer> listPageIds(Path dir, String tableName) {
+        List<Integer> pageIds = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return pageIds;
+        }
+        String prefix = tableName + PAGE_INFIX;
+        try (Stream<Path> stream = Files.list(dir)) {
+            stream.forEach(path -> {
+                String fileName = path.getFileName().toString();
+                if (fileName.startsWith(prefix) && fileName.endsWith(PAGE_SUFFIX)) {
+                    String number = fileName.substring(prefix.length(),
+                            fileName.length() - PAGE_SUFFIX.length());
+                    // Отсекаем чужие таблицы с общим префиксом (t и t_page_x)
+                    if (!number.isEmpty() && number.chars().allMatch(Character::isDigit)) {
+                        pageIds.add(Integer.parseInt(number));
+                    }
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list legacy pages: " + tableName, e);
+        }
+        Collections.sort(pageIds);
+        return pageIds;
+    }
+    
+    public static void savePage(Path dir, String tableName, Page page) {
+        try {
+            Files.createDirectories(dir);
+            try (ObjectOutputStream oos = new ObjectOutputStream(
+                    new FileOutputStream(pagePath(dir, tableName, page.getPageId()).toFile()))) {
+                oos.writeObject(page);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to save legacy page", e);
+        }
+    }
+    
+    public static Page loadPage(Path dir, String tableName, int pageId) {
+        Path pagePath = pagePath(dir, tableName, pageId);
+        if (!Files.exists(pagePath)) {
+            return new Page(pageId);
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(
+                new FileInputStream(pagePath.toFile()))) {
+            return (Page) ois.readObject();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load legacy page", e);
+        }
+    }
+    
+    /**
+     * Строки страницы старого формата. Строка slot лежит с offset 4 + slot * rowSize, где
+     * rowSize - 4 байта на INTEGER и 4 + 100 на VARCHAR (длина и байты строки); значения
+     * читаются так же, как их читал прежний SeqScan. Испорченная страница - исключение.
+     */
+    public static List<List<Object>> readRows(Page page, TableMetadata metadata) {
+        List<TableMetadata.Column> columns = metadata.getColumns();
+        int rowSize = 0;
+        for (TableMetadata.Column column : columns) {
+            rowSize += isString(column.getType()) ? 4 + 100 : 4;
+        }
+        
+        ByteBuffer buffer = page.getBuffer();
+        int rowCount = buffer.getInt(0);
+        if (rowCount < 0) {
+            throw new RuntimeException("Corrupted legacy page " + page.getPageId() + " of table "
+                    + metadata.getTableName() + ": row count " + rowCount);
+        }
+        List<List<Object>> rows = new ArrayList<>();
+        try {
+            for (int slot = 0; slot < rowCount; slot++) {
+                int offset = 4 + slot * rowSize;
+                if (offset >= Page.PAGE_SIZE) {
+                    break;
+                }
+                buffer.position(offset);
+                List<Object> values = new ArrayList<>(columns.size());
+                for (TableMetadata.Column column : columns) {
+                    if (isString(column.getType())) {
+                        byte[] bytes = new byte[buffer.getInt()];
+                        buffer.get(bytes);
+                        values.add(new String(bytes));
+                    } else {
+                        values.add(buffer.getInt());
+                    }
+                }
+                rows.add(values);
+            }
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new RuntimeException("Corrupted legacy page " + page.getPageId() + " of table "
+                    + metadata.getTableName(), e);
+        }
+        return rows;
+    }
+    
+    private static boolean isString(String type) {
+        String upper = type.toUpperCase();
+        return upper.equals("VARCHAR") || upper.equals("STRING");
+    }
+    
+    public static void deletePages(Path dir, String tableName) {
+        for (int pageId : listPageIds(dir, tableName)) {
+            try {
+                Files.deleteIfExists(pagePath(dir, tableName, pageId));
+            } catch (IOException e) {
+                // Игнорируем ошибки удаления отдельных страниц
+            }
+        }
+    }
+}
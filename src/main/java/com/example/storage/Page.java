@@ -1,24 +1,87 @@
 package com.example.storage;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReadWriteLock;
 
 /**
- * Страница данных - базовая единица хранения
+ * Страница данных - базовая единица хранения.
+ *
+ * Формат slotted page:
+ * <pre>
+ * [0..4)   slotCount      - число слотов в каталоге (включая удаленные)
+ * [4..8)   freeSpaceEnd   - начало области кортежей (0 у новой страницы = PAGE_SIZE)
+ * [8..16)  lsn            - LSN конца последней записи WAL, изменившей страницу
+ * [16..)   каталог слотов - по SLOT_SIZE байт на слот: offset (u16), length (u16)
+ * ...      свободное место
+ * [..4096) кортежи, растут от конца страницы к началу
+ * </pre>
+ * Удаленный слот имеет offset = 0: кортеж не может начинаться внутри заголовка.
+ *
+ * Содержимое хранится в ByteBuffer: в собственном heap-массиве, в срезе off-heap
+ * арены буферного пула или в read-only срезе отображенного в память сегмента
+ * (режим mmap). Read-only срез перед первым изменением копируется в heap
+ * (copy-on-write), так что запись в отображение идет только через TableFile.savePage.
+ *
+ * Страница буферного пула разделяется сессиями, а pin защищает ее только от вытеснения.
+ * Поэтому содержимое закрепленной страницы читают под латчем getLatch() в режиме shared,
+ * а меняют (вставка, redo) - в режиме exclusive: insertRecord и compact двигают
+ * слоты и кортежи, и без латча читатель увидел бы их наполовину записанными.
  */
 public class Page implements Serializable {
     public static final int PAGE_SIZE = 4096; // 4KB
+    public static final int HEADER_SIZE = 16;
+    public static final int SLOT_SIZE = 4;
+    /** Максимальный размер кортежа, который помещается на пустую страницу */
+    public static final int MAX_RECORD_SIZE = PAGE_SIZE - HEADER_SIZE - SLOT_SIZE;
     private static final long serialVersionUID = 1L;
     
+    private static final int SLOT_COUNT_OFFSET = 0;
+    private static final int FREE_END_OFFSET = 4;
+    private static final int LSN_OFFSET = 8;
+    
+    // Сериализованная форма прежняя (pageId, dirty, data) - ее читает миграция старых .dat файлов
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("pageId", int.class),
+        new ObjectStreamField("dirty", boolean.class),
+        new ObjectStreamField("data", byte[].class)
+    };
+    
     private int pageId;
     private boolean dirty;
-    private byte[] data;
-    private int freeSpace;
+    private transient ByteBuffer buffer;
+    private transient ReadWriteLock latch;
     
     public Page(int pageId) {
+        this(pageId, new byte[PAGE_SIZE]);
+    }
+    
+    /**
+     * Страница поверх уже прочитанного с диска образа
+     */
+    public Page(int pageId, byte[] data) {
+        if (data.length != PAGE_SIZE) {
+            throw new IllegalArgumentException("Page image must be " + PAGE_SIZE + " bytes, got " + data.length);
+        }
         this.pageId = pageId;
-        this.data = new byte[PAGE_SIZE];
-        this.freeSpace = PAGE_SIZE;
+        this.buffer = ByteBuffer.wrap(data);
+        this.dirty = false;
+    }
+    
+    /**
+     * Страница-представление поверх чужой памяти (фрейма буферного пула или
+     * среза MappedByteBuffer). Изменения страницы видны в этой памяти, если она не read-only.
+     */
+    public Page(int pageId, ByteBuffer view) {
+        if (view.capacity() != PAGE_SIZE) {
+            throw new IllegalArgumentException("Page view must be " + PAGE_SIZE + " bytes, got " + view.capacity());
+        }
+        this.pageId = pageId;
+        this.buffer = view;
         this.dirty = false;
     }
     
@@ -34,20 +97,224 @@ public class Page implements Serializable {
         this.dirty = dirty;
     }
     
+    /**
+     * Латч содержимого страницы - латч фрейма буферного пула, в котором она лежит.
+     * У страницы, прочитанной в обход пула, латча нет (null): ее никто не делит.
+     */
+    public ReadWriteLock getLatch() {
+        return latch;
+    }
+    
+    public void setLatch(ReadWriteLock latch) {
+        this.latch = latch;
+    }
+    
+    /**
+     * Массив с содержимым страницы. Представление над памятью вне heap сначала
+     * копируется в собственный массив, чтобы изменения массива были видны странице;
+     * для фрейма буферного пула это отвязывает страницу от фрейма.
+     */
     public byte[] getData() {
-        return data;
+        if (!buffer.hasArray() || buffer.isReadOnly()) {
+            privatize();
+        }
+        return buffer.array();
+    }
+    
+    /**
+     * Независимый буфер поверх содержимого страницы (position = 0, limit = PAGE_SIZE)
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate().clear();
+    }
+    
+    /**
+     * LSN последней записи журнала, отраженной на странице (0 - страница не журналировалась).
+     * Страницу нельзя записывать на диск, пока журнал не сброшен до этого LSN.
+     */
+    public long getLsn() {
+        return buffer.getLong(LSN_OFFSET);
     }
     
+    public void setLsn(long lsn) {
+        ensureWritable();
+        buffer.putLong(LSN_OFFSET, lsn);
+    }
+    
+    public int getSlotCount() {
+        return buffer.getInt(SLOT_COUNT_OFFSET);
+    }
+    
+    /**
+     * Непрерывное свободное место между каталогом слотов и кортежами
+     */
     public int getFreeSpace() {
-        return freeSpace;
+        return freeSpaceEnd() - (HEADER_SIZE + getSlotCount() * SLOT_SIZE);
     }
     
-    public void setFreeSpace(int freeSpace) {
-        this.freeSpace = freeSpace;
+    /**
+     * Вставить кортеж. Возвращает номер слота или -1, если на странице нет места.
+     */
+    public int insertRecord(byte[] record) {
+        if (record.length == 0 || record.length > MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Invalid record size: " + record.length);
+        }
+        
+        int needed = record.length + SLOT_SIZE;
+        if (getFreeSpace() < needed) {
+            if (getFreeSpace() + reclaimableSpace() < needed) {
+                return -1;
+            }
+            compact();
+        }
+        
+        ensureWritable();
+        ByteBuffer buffer = getBuffer();
+        int slotCount = getSlotCount();
+        int offset = freeSpaceEnd() - record.length;
+        
+        // Сначала кортеж и слот, счетчик слотов - последним
+        buffer.position(offset);
+        buffer.put(record);
+        writeSlot(buffer, slotCount, offset, record.length);
+        buffer.putInt(FREE_END_OFFSET, offset);
+        buffer.putInt(SLOT_COUNT_OFFSET, slotCount + 1);
+        dirty = true;
+        return slotCount;
     }
     
-    public ByteBuffer getBuffer() {
-        return ByteBuffer.wrap(data);
+    /**
+     * Копия кортежа из слота или null, если слот пуст/удален
+     */
+    public byte[] getRecord(int slot) {
+        ByteBuffer record = getRecordBuffer(slot);
+        if (record == null) {
+            return null;
+        }
+        byte[] result = new byte[record.remaining()];
+        record.get(result);
+        return result;
+    }
+    
+    /**
+     * Буфер, ограниченный кортежем из слота (без копирования), или null
+     */
+    public ByteBuffer getRecordBuffer(int slot) {
+        ByteBuffer buffer = getBuffer();
+        if (slot < 0 || slot >= buffer.getInt(SLOT_COUNT_OFFSET)) {
+            return null;
+        }
+        int slotPos = HEADER_SIZE + slot * SLOT_SIZE;
+        int offset = Short.toUnsignedInt(buffer.getShort(slotPos));
+        int length = Short.toUnsignedInt(buffer.getShort(slotPos + 2));
+        if (offset == 0) {
+            return null;
+        }
+        buffer.position(offset);
+        buffer.limit(offset + length);
+        return buffer.slice();
+    }
+    
+    /**
+     * Удалить кортеж. Номер слота остается занятым, чтобы не сдвигать адреса (pageId, slot)
+     * других кортежей; место возвращается при следующем уплотнении.
+     */
+    public boolean deleteRecord(int slot) {
+        ByteBuffer buffer = getBuffer();
+        if (slot < 0 || slot >= getSlotCount()) {
+            return false;
+        }
+        int slotPos = HEADER_SIZE + slot * SLOT_SIZE;
+        if (buffer.getShort(slotPos) == 0) {
+            return false;
+        }
+        ensureWritable();
+        buffer = getBuffer();
+        writeSlot(buffer, slot, 0, 0);
+        dirty = true;
+        return true;
+    }
+    
+    private int freeSpaceEnd() {
+        int freeEnd = buffer.getInt(FREE_END_OFFSET);
+        return freeEnd == 0 ? PAGE_SIZE : freeEnd;
+    }
+    
+    /**
+     * Место под удаленными кортежами, которое вернет compact()
+     */
+    private int reclaimableSpace() {
+        ByteBuffer buffer = getBuffer();
+        int used = 0;
+        int slotCount = getSlotCount();
+        for (int slot = 0; slot < slotCount; slot++) {
+            used += Short.toUnsignedInt(buffer.getShort(HEADER_SIZE + slot * SLOT_SIZE + 2));
+        }
+        return (PAGE_SIZE - freeSpaceEnd()) - used;
+    }
+    
+    /**
+     * Сдвинуть живые кортежи к концу страницы, сохранив номера слотов
+     */
+    private void compact() {
+        ensureWritable();
+        ByteBuffer buffer = getBuffer();
+        byte[] data = new byte[PAGE_SIZE];
+        buffer.duplicate().get(data);
+        int slotCount = getSlotCount();
+        byte[] packed = new byte[PAGE_SIZE];
+        int freeEnd = PAGE_SIZE;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int slotPos = HEADER_SIZE + slot * SLOT_SIZE;
+            int offset = Short.toUnsignedInt(buffer.getShort(slotPos));
+            int length = Short.toUnsignedInt(buffer.getShort(slotPos + 2));
+            if (offset == 0) {
+                continue;
+            }
+            freeEnd -= length;
+            System.arraycopy(data, offset, packed, freeEnd, length);
+            writeSlot(buffer, slot, freeEnd, length);
+        }
+        buffer.position(freeEnd);
+        buffer.put(packed, freeEnd, PAGE_SIZE - freeEnd);
+        buffer.putInt(FREE_END_OFFSET, freeEnd);
+    }
+    
+    private static void writeSlot(ByteBuffer buffer, int slot, int offset, int length) {
+        int slotPos = HEADER_SIZE + slot * SLOT_SIZE;
+        buffer.putShort(slotPos, (short) offset);
+        buffer.putShort(slotPos + 2, (short) length);
+    }
+    
+    /**
+     * Copy-on-write: перенести содержимое read-only представления в собственный heap-буфер
+     */
+    private void ensureWritable() {
+        if (!buffer.isReadOnly()) {
+            return;
+        }
+        privatize();
+    }
+    
+    private void privatize() {
+        byte[] copy = new byte[PAGE_SIZE];
+        buffer.duplicate().clear().get(copy);
+        buffer = ByteBuffer.wrap(copy);
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("pageId", pageId);
+        fields.put("dirty", dirty);
+        fields.put("data", getData());
+        out.writeFields();
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        pageId = fields.get("pageId", 0);
+        dirty = fields.get("dirty", false);
+        byte[] data = (byte[]) fields.get("data", null);
+        buffer = ByteBuffer.wrap(data != null ? data : new byte[PAGE_SIZE]);
     }
 }
-
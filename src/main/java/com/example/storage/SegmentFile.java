@@ -0,0 +1,156 @@
+package com.example.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Файл-сегмент из страниц по PAGE_SIZE байт: страница pageId лежит по смещению
+ * pageId * PAGE_SIZE и читается/пишется позиционно через FileChannel.
+ * Через такие файлы работает буферный менеджер (таблицы, индексы).
+ *
+ * Базовая реализация выделяет страницы в конце файла: счетчик начинается
+ * с числа полных страниц в файле при открытии.
+ */
+public class SegmentFile {
+    private static final byte[] ZERO_PAGE = new byte[Page.PAGE_SIZE];
+    
+    private final String name;
+    private final Path filePath;
+    private FileChannel channel;
+    private int nextPageId = -1;
+    
+    public SegmentFile(String name, Path filePath) {
+        this.name = name;
+        this.filePath = filePath;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public Path getFilePath() {
+        return filePath;
+    }
+    
+    /**
+     * Выделить страницу в конце сегмента
+     */
+    public synchronized int allocatePage() {
+        if (nextPageId < 0) {
+            nextPageId = getPageCount();
+        }
+        return nextPageId++;
+    }
+    
+    /**
+     * Число полных страниц в файле
+     */
+    public int getPageCount() {
+        try {
+            return (int) (channel().size() / Page.PAGE_SIZE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read size of " + filePath, e);
+        }
+    }
+    
+    public void savePage(Page page) {
+        try {
+            ByteBuffer src = page.getBuffer();
+            long offset = (long) page.getPageId() * Page.PAGE_SIZE;
+            FileChannel ch = channel();
+            while (src.hasRemaining()) {
+                ch.write(src, offset + src.position());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to save page", e);
+        }
+    }
+    
+    public Page loadPage(int pageId) {
+        byte[] data = new byte[Page.PAGE_SIZE];
+        readPage(pageId, ByteBuffer.wrap(data));
+        return new Page(pageId, data);
+    }
+    
+    /**
+     * Страница-представление над памятью файла без копирования или null, если файл
+     * так читать не умеет (тогда страницу читают в буфер через readPage)
+     */
+    public Page viewPage(int pageId) {
+        return null;
+    }
+    
+    /**
+     * Прочитать образ страницы в dst (ровно PAGE_SIZE байт от position), например
+     * во фрейм буферного пула. Несуществующая часть страницы заполняется нулями.
+     */
+    public void readPage(int pageId, ByteBuffer dst) {
+        try {
+            long offset = (long) pageId * Page.PAGE_SIZE;
+            ByteBuffer target = dst.duplicate();
+            target.limit(target.position() + Page.PAGE_SIZE);
+            int start = target.position();
+            FileChannel ch = channel();
+            while (target.hasRemaining()) {
+                if (ch.read(target, offset + target.position() - start) < 0) {
+                    break;
+                }
+            }
+            // Хвост за концом файла заполняем нулями
+            target.put(ZERO_PAGE, 0, target.remaining());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load page", e);
+        }
+    }
+    
+    /**
+     * Обрезать сегмент до pageCount страниц (страницы должны быть выброшены из буфера)
+     */
+    public synchronized void truncate(int pageCount) {
+        try {
+            channel().truncate((long) pageCount * Page.PAGE_SIZE);
+            nextPageId = pageCount;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to truncate " + filePath, e);
+        }
+    }
+    
+    /**
+     * Сбросить записанные страницы сегмента на диск (fsync). Закрытый файл
+     * не переоткрывается: после close() сбрасывать нечего.
+     */
+    public synchronized void sync() {
+        if (channel == null || !channel.isOpen()) {
+            return;
+        }
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to sync segment file: " + name, e);
+        }
+    }
+    
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Игнорируем
+            }
+            channel = null;
+        }
+    }
+    
+    protected synchronized FileChannel channel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            Files.createDirectories(filePath.getParent());
+            channel = FileChannel.open(filePath, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return channel;
+    }
+}
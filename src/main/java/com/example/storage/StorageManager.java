@@ -1,86 +1,94 @@
 package com.example.storage;
 
+import com.example.catalog.Catalog;
+
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * Менеджер хранилища - управление таблицами и их метаданными
+ * Менеджер хранилища - управление таблицами и их метаданными.
+ * Схемы таблиц хранятся в системном каталоге (Catalog), здесь - открытые файлы таблиц.
+ * Файлы лежат в конкурентной карте: контрольная точка обходит их из своего потока.
  */
 public class StorageManager {
+    private static final String LEGACY_SCHEMA_SUFFIX = ".schema";
+    
     private String dataDir;
-    private Map<String, TableMetadata> tables;
+    private final Catalog catalog;
     private Map<String, TableFile> tableFiles;
+    private TableFile.IoMode ioMode;
     
     public StorageManager(String dataDir) {
-        this.dataDir = dataDir;
-        this.tables = new HashMap<>();
-        this.tableFiles = new HashMap<>();
+        this(new Catalog(dataDir));
+    }
+    
+    public StorageManager(Catalog catalog) {
+        this(catalog, TableFile.IoMode.BUFFERED);
+    }
+    
+    public StorageManager(Catalog catalog, TableFile.IoMode ioMode) {
+        this.catalog = catalog;
+        this.dataDir = catalog.getDataDir();
+        this.ioMode = ioMode;
+        this.tableFiles = new ConcurrentHashMap<>();
         loadTables();
     }
     
     private void loadTables() {
-        Path dir = Paths.get(dataDir);
-        if (!Files.exists(dir)) {
-            try {
-                Files.createDirectories(dir);
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to create data directory", e);
-            }
-            return;
+        migrateLegacySchemas();
+        for (TableMetadata metadata : catalog.getTables()) {
+            TableFile tableFile = new TableFile(metadata.getTableName(), dataDir, ioMode);
+            tableFile.migrateLegacyPages(metadata);
+            tableFiles.put(metadata.getTableName(), tableFile);
         }
-        
-        try {
-            Files.list(dir).forEach(path -> {
-                String fileName = path.getFileName().toString();
-                if (fileName.endsWith(".schema")) {
-                    String tableName = fileName.substring(0, fileName.length() - 7);
-                    loadTableMetadata(tableName);
-                }
-            });
+    }
+    
+    /**
+     * Перенести схемы старого формата (tableName.schema, сериализованный TableMetadata)
+     * в каталог и удалить их файлы. Выполняется один раз при открытии.
+     */
+    private void migrateLegacySchemas() {
+        List<Path> schemaFiles;
+        try (Stream<Path> stream = Files.list(Paths.get(dataDir))) {
+            schemaFiles = stream
+                    .filter(path -> path.getFileName().toString().endsWith(LEGACY_SCHEMA_SUFFIX))
+                    .collect(Collectors.toList());
         } catch (IOException e) {
             throw new RuntimeException("Failed to load tables", e);
         }
-    }
-    
-    private void loadTableMetadata(String tableName) {
-        Path schemaPath = Paths.get(dataDir, tableName + ".schema");
-        if (Files.exists(schemaPath)) {
+        
+        for (Path schemaPath : schemaFiles) {
             try (ObjectInputStream ois = new ObjectInputStream(
                     new FileInputStream(schemaPath.toFile()))) {
                 TableMetadata metadata = (TableMetadata) ois.readObject();
-                tables.put(tableName, metadata);
-                tableFiles.put(tableName, new TableFile(tableName, dataDir));
+                if (!catalog.tableExists(metadata.getTableName())) {
+                    catalog.createTable(metadata);
+                }
+                Files.delete(schemaPath);
             } catch (Exception e) {
-                throw new RuntimeException("Failed to load table metadata: " + tableName, e);
+                throw new RuntimeException("Failed to migrate table metadata: " + schemaPath, e);
             }
         }
     }
     
-    public void createTable(TableMetadata metadata) {
-        tables.put(metadata.getTableName(), metadata);
-        tableFiles.put(metadata.getTableName(), new TableFile(metadata.getTableName(), dataDir));
-        saveTableMetadata(metadata);
+    public Catalog getCatalog() {
+        return catalog;
     }
     
-    private void saveTableMetadata(TableMetadata metadata) {
-        Path schemaPath = Paths.get(dataDir, metadata.getTableName() + ".schema");
-        try {
-            Files.createDirectories(schemaPath.getParent());
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-                    new FileOutputStream(schemaPath.toFile()))) {
-                oos.writeObject(metadata);
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to save table metadata", e);
-        }
+    public void createTable(TableMetadata metadata) {
+        tableFiles.put(metadata.getTableName(), new TableFile(metadata.getTableName(), dataDir, ioMode));
+        catalog.createTable(metadata);
     }
     
     public TableMetadata getTableMetadata(String tableName) {
-        return tables.get(tableName);
+        return catalog.getTable(tableName);
     }
     
     public TableFile getTableFile(String tableName) {
@@ -88,56 +96,39 @@ public class StorageManager {
     }
     
     public boolean tableExists(String tableName) {
-        return tables.containsKey(tableName);
+        return catalog.tableExists(tableName);
     }
     
     public void dropTable(String tableName) {
-        if (!tables.containsKey(tableName)) {
+        if (!catalog.tableExists(tableName)) {
             throw new RuntimeException("Table does not exist: " + tableName);
         }
         
-        // Удаляем из памяти ПЕРЕД удалением файлов
-        tables.remove(tableName);
-        tableFiles.remove(tableName);
+        // Удаляем из каталога ПЕРЕД удалением файлов
+        catalog.dropTable(tableName);
+        TableFile tableFile = tableFiles.remove(tableName);
+        if (tableFile != null) {
+            tableFile.close();
+        }
         
         // Удаляем файлы на диске
         try {
             Path dir = Paths.get(dataDir);
             if (Files.exists(dir)) {
-                // Удаляем .schema файл
-                Path schemaPath = Paths.get(dataDir, tableName + ".schema");
-                if (Files.exists(schemaPath)) {
-                    Files.delete(schemaPath);
-                }
-                
                 // Удаляем .meta файл
                 Path metaPath = Paths.get(dataDir, tableName + ".meta");
                 if (Files.exists(metaPath)) {
                     Files.delete(metaPath);
                 }
                 
-                // Удаляем все страницы - собираем список сначала
-                java.util.List<Path> pagesToDelete = new java.util.ArrayList<>();
-                try (java.util.stream.Stream<Path> stream = Files.list(dir)) {
-                    stream.forEach(path -> {
-                        String fileName = path.getFileName().toString();
-                        if (fileName.startsWith(tableName + "_page_") && fileName.endsWith(".dat")) {
-                            pagesToDelete.add(path);
-                        }
-                    });
-                }
+                // Удаляем сегмент со страницами
+                Files.deleteIfExists(Paths.get(dataDir, tableName + ".tbl"));
                 
-                // Удаляем страницы
-                for (Path pagePath : pagesToDelete) {
-                    try {
-                        Files.delete(pagePath);
-                    } catch (IOException e) {
-                        // Игнорируем ошибки удаления отдельных страниц
-                    }
-                }
+                // И страницы старого формата, если миграция не успела пройти
+                LegacyPageFiles.deletePages(dir, tableName);
                 
                 // Проверяем, что таблица действительно удалена
-                if (Files.exists(schemaPath) || Files.exists(metaPath)) {
+                if (Files.exists(metaPath)) {
                     throw new RuntimeException("Failed to completely delete table files: " + tableName);
                 }
             }
@@ -145,5 +136,23 @@ public class StorageManager {
             throw new RuntimeException("Failed to delete table files: " + tableName, e);
         }
     }
+    
+    /**
+     * Сбросить записанные страницы всех таблиц на диск (fsync), файлы остаются открытыми
+     */
+    public void syncAll() {
+        for (TableFile tableFile : tableFiles.values()) {
+            tableFile.sync();
+        }
+    }
+    
+    /**
+     * Сбросить сегменты всех таблиц на диск и закрыть файлы
+     */
+    public void close() {
+        for (TableFile tableFile : tableFiles.values()) {
+            tableFile.sync();
+            tableFile.close();
+        }
+    }
 }
-
@@ -1,27 +1,69 @@
 package com.example.storage;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
- * Файл таблицы - управление страницами таблицы
+ * Файл таблицы - управление страницами таблицы.
+ * Все страницы лежат в одном сегменте tableName.tbl (см. SegmentFile), список
+ * выделенных страниц и версия формата страниц (FORMAT_VERSION) хранятся в tableName.meta.
+ * Сегмент другой версии не открывается: страницы чужого формата читались бы неверно.
+ *
+ * В режиме MMAP чтение идет через FileChannel.map: сегмент отображается кусками
+ * по MAP_CHUNK_PAGES страниц, а loadPage и viewPage возвращают страницу-представление
+ * над отображением без копирования - так страницы берет и буферный пул (readPage
+ * копирует из отображения в переданный буфер). Запись в обоих режимах идет через канал.
  */
-public class TableFile {
+public class TableFile extends SegmentFile {
+    /**
+     * Способ чтения страниц сегмента
+     */
+    public enum IoMode {
+        BUFFERED,
+        MMAP
+    }
+    
+    private static final int MAP_CHUNK_PAGES = 1024; // 4MB на одно отображение
+    
+    /**
+     * Версия формата страниц: 1 - slotted-страницы с заголовком [slotCount][freeSpaceEnd],
+     * 2 - заголовок Page.HEADER_SIZE байт с LSN страницы
+     */
+    public static final int FORMAT_VERSION = 2;
+    /** Версия в .meta не записана: .meta исходного формата (страницы в файлах .dat) */
+    private static final int FORMAT_UNKNOWN = 0;
+    
     private String tableName;
     private Path filePath;
     private List<Integer> pageIds;
     private int nextPageId;
+    private int storedFormatVersion = FORMAT_VERSION;
+    private final IoMode ioMode;
+    private MappedByteBuffer[] mappedChunks;
     
     public TableFile(String tableName, String dataDir) {
+        this(tableName, dataDir, IoMode.BUFFERED);
+    }
+    
+    public TableFile(String tableName, String dataDir, IoMode ioMode) {
+        super(tableName, Paths.get(dataDir, tableName + ".tbl"));
         this.tableName = tableName;
+        this.ioMode = ioMode;
+        this.mappedChunks = new MappedByteBuffer[0];
         this.filePath = Paths.get(dataDir, tableName + ".tbl");
         this.pageIds = new ArrayList<>();
         this.nextPageId = 0;
         loadMetadata();
+        checkFormat();
     }
     
     private void loadMetadata() {
@@ -33,6 +75,11 @@ public class TableFile {
                 List<Integer> loadedPageIds = (List<Integer>) ois.readObject();
                 this.pageIds = loadedPageIds;
                 this.nextPageId = ois.readInt();
+                try {
+                    this.storedFormatVersion = ois.readInt();
+                } catch (EOFException e) {
+                    this.storedFormatVersion = FORMAT_UNKNOWN;
+                }
             } catch (Exception e) {
                 // Если не удалось загрузить, начинаем с нуля
                 this.pageIds = new ArrayList<>();
@@ -41,7 +88,89 @@ public class TableFile {
         }
     }
     
-    public void saveMetadata() {
+    /**
+     * Сегмент открывается только в текущей версии формата. Без версии - только пустой
+     * сегмент или сегмент прерванной миграции файлов .dat (migrateLegacyPages перепишет его)
+     */
+    private void checkFormat() {
+        if (storedFormatVersion == FORMAT_VERSION) {
+            return;
+        }
+        if (storedFormatVersion == FORMAT_UNKNOWN) {
+            if (getPageCount() == 0
+                    || !LegacyPageFiles.listPageIds(filePath.getParent(), tableName).isEmpty()) {
+                return;
+            }
+            throw new RuntimeException("Table " + tableName + " has pages but no page format version, "
+                    + "this build reads version " + FORMAT_VERSION);
+        }
+        throw new RuntimeException("Table " + tableName + " has page format version " + storedFormatVersion
+                + ", this build reads version " + FORMAT_VERSION);
+    }
+    
+    /**
+     * Переносит таблицу из старого формата (по файлу на страницу, строки фиксированного
+     * размера - см. LegacyPageFiles.readRows) в сегмент .tbl: строки декодируются по старой
+     * раскладке и вставляются в slotted-страницы заново. Адреса строк при этом меняются,
+     * индексы старого формата все равно перестраиваются по таблице.
+     *
+     * Старые файлы удаляются только после fsync сегмента и проверки, что он читается
+     * в те же строки. Прерванная миграция начинается заново при следующем открытии,
+     * при ошибке старые файлы остаются на месте.
+     */
+    public synchronized void migrateLegacyPages(TableMetadata metadata) {
+        Path dir = filePath.getParent();
+        List<Integer> legacyPageIds = LegacyPageFiles.listPageIds(dir, tableName);
+        if (legacyPageIds.isEmpty()) {
+            return;
+        }
+        
+        List<List<Object>> rows = new ArrayList<>();
+        for (int pageId : legacyPageIds) {
+            rows.addAll(LegacyPageFiles.readRows(LegacyPageFiles.loadPage(dir, tableName, pageId), metadata));
+        }
+        
+        // Сегмент прерванной миграции переписывается целиком
+        truncate(0);
+        int pageCount = 0;
+        Page page = null;
+        for (List<Object> values : rows) {
+            byte[] record = TupleCodec.encode(metadata, values);
+            if (page == null || page.insertRecord(record) < 0) {
+                if (page != null) {
+                    savePage(page);
+                }
+                page = new Page(pageCount++);
+                page.insertRecord(record);
+            }
+        }
+        if (page != null) {
+            savePage(page);
+        }
+        sync();
+        
+        List<List<Object>> written = new ArrayList<>();
+        for (int pageId = 0; pageId < pageCount; pageId++) {
+            Page saved = super.loadPage(pageId);
+            for (int slot = 0; slot < saved.getSlotCount(); slot++) {
+                written.add(TupleCodec.decode(metadata, saved.getRecordBuffer(slot)));
+            }
+        }
+        if (!written.equals(rows)) {
+            throw new RuntimeException("Failed to migrate legacy pages of table " + tableName
+                    + ": converted segment does not match, old page files are kept");
+        }
+        
+        pageIds = new ArrayList<>();
+        for (int pageId = 0; pageId < pageCount; pageId++) {
+            pageIds.add(pageId);
+        }
+        nextPageId = pageCount;
+        saveMetadata();
+        LegacyPageFiles.deletePages(dir, tableName);
+    }
+    
+    public synchronized void saveMetadata() {
         try {
             Files.createDirectories(filePath.getParent());
             Path metaPath = Paths.get(filePath.getParent().toString(), tableName + ".meta");
@@ -49,59 +178,143 @@ public class TableFile {
                     new FileOutputStream(metaPath.toFile()))) {
                 oos.writeObject(pageIds);
                 oos.writeInt(nextPageId);
+                oos.writeInt(FORMAT_VERSION);
             }
         } catch (IOException e) {
             throw new RuntimeException("Failed to save metadata", e);
         }
     }
     
-    public int allocatePage() {
+    @Override
+    public synchronized int allocatePage() {
         int pageId = nextPageId++;
         pageIds.add(pageId);
         saveMetadata();
         return pageId;
     }
     
-    public List<Integer> getPageIds() {
-        return new ArrayList<>(pageIds);
+    /**
+     * Зарегистрировать страницу, выделенную до падения, если ее нет в метаданных (redo)
+     */
+    public synchronized void ensurePage(int pageId) {
+        if (pageIds.contains(pageId)) {
+            return;
+        }
+        pageIds.add(pageId);
+        Collections.sort(pageIds);
+        nextPageId = Math.max(nextPageId, pageId + 1);
+        saveMetadata();
     }
     
-    public Path getFilePath() {
-        return filePath;
+    public synchronized List<Integer> getPageIds() {
+        return new ArrayList<>(pageIds);
     }
     
     public String getTableName() {
         return tableName;
     }
     
-    public void savePage(Page page) {
+    public IoMode getIoMode() {
+        return ioMode;
+    }
+    
+    @Override
+    public Page loadPage(int pageId) {
         try {
-            Files.createDirectories(filePath.getParent());
-            Path pagePath = Paths.get(filePath.getParent().toString(), 
-                    tableName + "_page_" + page.getPageId() + ".dat");
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-                    new FileOutputStream(pagePath.toFile()))) {
-                oos.writeObject(page);
+            long offset = (long) pageId * Page.PAGE_SIZE;
+            if (offset >= channel().size()) {
+                // Страница выделена, но еще ни разу не записана
+                return new Page(pageId);
+            }
+            if (ioMode == IoMode.MMAP) {
+                ByteBuffer view = mappedView(pageId);
+                if (view != null) {
+                    return new Page(pageId, view);
+                }
             }
+            return super.loadPage(pageId);
         } catch (IOException e) {
-            throw new RuntimeException("Failed to save page", e);
+            throw new RuntimeException("Failed to load page", e);
         }
     }
     
-    public Page loadPage(int pageId) {
+    /**
+     * В режиме MMAP - read-only представление над отображением (изменение странице
+     * копирует ее в heap), иначе или если страницы еще нет в файле - null
+     */
+    @Override
+    public Page viewPage(int pageId) {
+        if (ioMode != IoMode.MMAP) {
+            return null;
+        }
         try {
-            Path pagePath = Paths.get(filePath.getParent().toString(), 
-                    tableName + "_page_" + pageId + ".dat");
-            if (!Files.exists(pagePath)) {
-                return new Page(pageId);
+            if ((long) pageId * Page.PAGE_SIZE >= channel().size()) {
+                return null;
             }
-            try (ObjectInputStream ois = new ObjectInputStream(
-                    new FileInputStream(pagePath.toFile()))) {
-                return (Page) ois.readObject();
+            ByteBuffer view = mappedView(pageId);
+            return view != null ? new Page(pageId, view) : null;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load page", e);
+        }
+    }
+    
+    /**
+     * В режиме MMAP копирует страницу из отображения, иначе читает через канал
+     */
+    @Override
+    public void readPage(int pageId, ByteBuffer dst) {
+        try {
+            long offset = (long) pageId * Page.PAGE_SIZE;
+            if (ioMode == IoMode.MMAP && offset < channel().size()) {
+                ByteBuffer view = mappedView(pageId);
+                if (view != null) {
+                    ByteBuffer target = dst.duplicate();
+                    target.put(view);
+                    return;
+                }
             }
-        } catch (Exception e) {
+        } catch (IOException e) {
             throw new RuntimeException("Failed to load page", e);
         }
+        super.readPage(pageId, dst);
+    }
+    
+    /**
+     * Read-only срез отображения для страницы или null, если страница целиком
+     * не лежит в файле (тогда читаем обычным способом)
+     */
+    private synchronized ByteBuffer mappedView(int pageId) throws IOException {
+        int chunkIndex = pageId / MAP_CHUNK_PAGES;
+        int pageInChunk = pageId % MAP_CHUNK_PAGES;
+        int needed = (pageInChunk + 1) * Page.PAGE_SIZE;
+        
+        if (chunkIndex >= mappedChunks.length) {
+            mappedChunks = Arrays.copyOf(mappedChunks, chunkIndex + 1);
+        }
+        MappedByteBuffer chunk = mappedChunks[chunkIndex];
+        if (chunk == null || chunk.capacity() < needed) {
+            // Файл вырос с момента отображения - переотображаем кусок по текущему размеру
+            long chunkStart = (long) chunkIndex * MAP_CHUNK_PAGES * Page.PAGE_SIZE;
+            long available = channel().size() - chunkStart;
+            long length = Math.min((long) MAP_CHUNK_PAGES * Page.PAGE_SIZE,
+                    available - available % Page.PAGE_SIZE);
+            if (length < needed) {
+                return null;
+            }
+            chunk = channel().map(FileChannel.MapMode.READ_ONLY, chunkStart, length);
+            mappedChunks[chunkIndex] = chunk;
+        }
+        
+        ByteBuffer view = chunk.duplicate();
+        view.position(pageInChunk * Page.PAGE_SIZE);
+        view.limit(needed);
+        return view.slice();
+    }
+    
+    @Override
+    public synchronized void close() {
+        // Отображения освобождаются сборщиком мусора, когда на них не останется ссылок
+        mappedChunks = new MappedByteBuffer[0];
+        super.close();
     }
 }
-
@@ -0,0 +1,147 @@
+package com.example.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Кодирование строк таблицы в кортежи переменной длины.
+ * INTEGER - 4 байта, VARCHAR - длина в байтах (4 байта) + UTF-8.
+ */
+public final class TupleCodec {
+    private TupleCodec() {
+    }
+    
+    public static byte[] encode(TableMetadata metadata, List<Object> values) {
+        List<TableMetadata.Column> columns = metadata.getColumns();
+        if (values.size() != columns.size()) {
+            throw new RuntimeException("Column count mismatch: expected " + columns.size()
+                    + ", got " + values.size());
+        }
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        for (int i = 0; i < columns.size(); i++) {
+            writeValue(out, columns.get(i).getType(), values.get(i));
+        }
+        return out.toByteArray();
+    }
+    
+    /**
+     * Декодировать все колонки кортежа начиная с текущей позиции буфера
+     */
+    public static List<Object> decode(TableMetadata metadata, ByteBuffer buffer) {
+        List<TableMetadata.Column> columns = metadata.getColumns();
+        List<Object> values = new ArrayList<>(columns.size());
+        for (TableMetadata.Column col : columns) {
+            values.add(readValue(buffer, col.getType()));
+        }
+        return values;
+    }
+    
+    /**
+     * Декодировать только колонки, отмеченные в columns; на месте остальных - null.
+     * Неотмеченные колонки пропускаются без чтения значений, колонки после последней
+     * отмеченной не просматриваются вовсе.
+     */
+    public static List<Object> decode(TableMetadata metadata, ByteBuffer buffer, boolean[] columns) {
+        List<TableMetadata.Column> cols = metadata.getColumns();
+        int last = columns.length - 1;
+        while (last >= 0 && !columns[last]) {
+            last--;
+        }
+        List<Object> values = new ArrayList<>(cols.size());
+        for (int i = 0; i < cols.size(); i++) {
+            if (i > last) {
+                values.add(null);
+            } else if (columns[i]) {
+                values.add(readValue(buffer, cols.get(i).getType()));
+            } else {
+                skipValue(buffer, cols.get(i).getType());
+                values.add(null);
+            }
+        }
+        return values;
+    }
+    
+    /**
+     * Размер значения типа в кортеже: 4 для INTEGER, -1 для VARCHAR (длина записана перед значением),
+     * 0 для неизвестного типа (в кортеж не пишется)
+     */
+    public static int fixedWidth(String type) {
+        switch (type.toUpperCase()) {
+            case "INT":
+            case "INTEGER":
+                return 4;
+            case "VARCHAR":
+            case "STRING":
+                return -1;
+            default:
+                return 0;
+        }
+    }
+    
+    /**
+     * Прочитать одну колонку кортежа, пропустив предыдущие
+     */
+    public static Object readColumn(TableMetadata metadata, ByteBuffer buffer, int columnIndex) {
+        List<TableMetadata.Column> columns = metadata.getColumns();
+        for (int i = 0; i < columnIndex; i++) {
+            skipValue(buffer, columns.get(i).getType());
+        }
+        return readValue(buffer, columns.get(columnIndex).getType());
+    }
+    
+    public static Object readValue(ByteBuffer buffer, String type) {
+        switch (type.toUpperCase()) {
+            case "INT":
+            case "INTEGER":
+                return buffer.getInt();
+            case "VARCHAR":
+            case "STRING":
+                int len = buffer.getInt();
+                byte[] bytes = new byte[len];
+                buffer.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            default:
+                return null;
+        }
+    }
+    
+    public static void skipValue(ByteBuffer buffer, String type) {
+        switch (type.toUpperCase()) {
+            case "INT":
+            case "INTEGER":
+                buffer.position(buffer.position() + 4);
+                break;
+            case "VARCHAR":
+            case "STRING":
+                int len = buffer.getInt();
+                buffer.position(buffer.position() + len);
+                break;
+        }
+    }
+    
+    private static void writeValue(ByteArrayOutputStream out, String type, Object value) {
+        switch (type.toUpperCase()) {
+            case "INT":
+            case "INTEGER":
+                writeInt(out, (Integer) value);
+                break;
+            case "VARCHAR":
+            case "STRING":
+                byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+                writeInt(out, bytes.length);
+                out.write(bytes, 0, bytes.length);
+                break;
+        }
+    }
+    
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.wal;
+
+import com.example.buffer.BufferManager;
+import com.example.index.IndexManager;
+import com.example.storage.StorageManager;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Периодическая контрольная точка: записывает все грязные страницы пула (таблиц
+ * и индексов), делает fsync их файлов и сохраняет LSN начала redo. После нее
+ * восстановлению достаточно журнала с этого LSN, более старые сегменты удаляются.
+ */
+public class Checkpointer {
+    private final BufferManager bufferManager;
+    private final StorageManager storageManager;
+    private final IndexManager indexManager;
+    private final WriteAheadLog wal;
+    private final long intervalMillis;
+    private ScheduledExecutorService scheduler;
+    
+    public Checkpointer(BufferManager bufferManager, StorageManager storageManager,
+                        IndexManager indexManager, WriteAheadLog wal, long intervalMillis) {
+        this.bufferManager = bufferManager;
+        this.storageManager = storageManager;
+        this.indexManager = indexManager;
+        this.wal = wal;
+        this.intervalMillis = intervalMillis;
+    }
+    
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (RuntimeException e) {
+                System.err.println("Checkpoint failed: " + e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+    }
+    
+    /**
+     * Выполнить контрольную точку сейчас; возвращает число записанных страниц
+     */
+    public synchronized int checkpoint() {
+        // Все изменения с записями до redoLsn, включая их ключи в индексах, к концу
+        // контрольной точки будут на диске. Индексы, менявшиеся после redoLsn,
+        // при восстановлении перестраиваются.
+        long redoLsn = wal.checkpointRedoLsn();
+        int written = bufferManager.checkpoint();
+        
+        storageManager.syncAll();
+        indexManager.syncAll();
+        wal.writeCheckpointLsn(redoLsn);
+        wal.removeSegmentsBefore(redoLsn);
+        return written;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.wal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Запись журнала упреждающей записи (WAL).
+ *
+ * HEAP_INSERT   - кортеж вставлен в слот страницы таблицы (физическая запись, redo по LSN страницы)
+ * CREATE_TABLE, CREATE_INDEX - объект создан заново; более ранние записи для объекта
+ * с тем же именем относятся к удаленному объекту и при восстановлении пропускаются.
+ */
+public class LogRecord {
+    public enum Type {
+        HEAP_INSERT,
+        CREATE_TABLE,
+        CREATE_INDEX
+    }
+    
+    private Type type;
+    private String objectName;
+    private int pageId;
+    private int slotId;
+    private byte[] tuple;
+    
+    private LogRecord(Type type, String objectName) {
+        this.type = type;
+        this.objectName = objectName;
+    }
+    
+    public static LogRecord heapInsert(String tableName, int pageId, int slotId, byte[] tuple) {
+        LogRecord record = new LogRecord(Type.HEAP_INSERT, tableName);
+        record.pageId = pageId;
+        record.slotId = slotId;
+        record.tuple = tuple;
+        return record;
+    }
+    
+    public static LogRecord createTable(String tableName) {
+        return new LogRecord(Type.CREATE_TABLE, tableName);
+    }
+    
+    public static LogRecord createIndex(String indexName) {
+        return new LogRecord(Type.CREATE_INDEX, indexName);
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    /**
+     * Имя таблицы или индекса, к которому относится запись
+     */
+    public String getObjectName() {
+        return objectName;
+    }
+    
+    public int getPageId() {
+        return pageId;
+    }
+    
+    public int getSlotId() {
+        return slotId;
+    }
+    
+    public byte[] getTuple() {
+        return tuple;
+    }
+    
+    byte[] encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type.ordinal());
+            out.writeUTF(objectName);
+            switch (type) {
+                case HEAP_INSERT:
+                    out.writeInt(pageId);
+                    out.writeInt(slotId);
+                    out.writeInt(tuple.length);
+                    out.write(tuple);
+                    break;
+                default:
+                    break;
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to encode log record", e);
+        }
+    }
+    
+    static LogRecord decode(byte[] body) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            int ordinal = in.readUnsignedByte();
+            if (ordinal >= Type.values().length) {
+                throw new RuntimeException("Unknown log record type: " + ordinal);
+            }
+            LogRecord record = new LogRecord(Type.values()[ordinal], in.readUTF());
+            switch (record.type) {
+                case HEAP_INSERT:
+                    record.pageId = in.readInt();
+                    record.slotId = in.readInt();
+                    record.tuple = new byte[in.readInt()];
+                    in.readFully(record.tuple);
+                    break;
+                default:
+                    break;
+            }
+            return record;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to decode log record", e);
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return type + "(" + objectName + (type == Type.HEAP_INSERT
+                ? ", " + pageId + ":" + slotId : "") + ")";
+    }
+}
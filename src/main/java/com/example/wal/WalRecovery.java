@@ -0,0 +1,127 @@
+package com.example.wal;
+
+import com.example.buffer.BufferManager;
+import com.example.index.BPlusTree;
+import com.example.index.IndexBuilder;
+import com.example.index.IndexManager;
+import com.example.storage.Page;
+import com.example.storage.StorageManager;
+import com.example.storage.TableFile;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Redo-восстановление после падения: повторяет записи журнала, начиная с LSN последней
+ * контрольной точки, поверх страниц таблиц.
+ *
+ * Повтор идемпотентен: вставка кортежа пропускается, если LSN страницы не меньше LSN записи.
+ * Записи для таблицы, созданной заново после них (CREATE_TABLE с тем же именем), пропускаются.
+ *
+ * Вставки в индексы не журналируются: страницы индекса на диске после падения могут
+ * быть в несогласованном состоянии. Поэтому индексы таблиц, менявшихся после контрольной
+ * точки, индексы, созданные после нее, и индексы, открытые без корректного файла,
+ * перестраиваются по таблицам после redo.
+ */
+public class WalRecovery {
+    private final WriteAheadLog wal;
+    private final StorageManager storageManager;
+    private final BufferManager bufferManager;
+    private final IndexManager indexManager;
+    private final IndexBuilder indexBuilder;
+    
+    public WalRecovery(WriteAheadLog wal, StorageManager storageManager,
+                       BufferManager bufferManager, IndexManager indexManager) {
+        this(wal, storageManager, bufferManager, indexManager, new IndexBuilder(bufferManager));
+    }
+    
+    public WalRecovery(WriteAheadLog wal, StorageManager storageManager,
+                       BufferManager bufferManager, IndexManager indexManager,
+                       IndexBuilder indexBuilder) {
+        this.wal = wal;
+        this.storageManager = storageManager;
+        this.bufferManager = bufferManager;
+        this.indexManager = indexManager;
+        this.indexBuilder = indexBuilder;
+    }
+    
+    /**
+     * Выполнить redo; возвращает число примененных записей
+     */
+    public int recover() {
+        long redoLsn = wal.readCheckpointLsn();
+        
+        // Первый проход: последние пересоздания объектов
+        Map<String, Long> tablesCreated = new HashMap<>();
+        Map<String, Long> indexesCreated = new HashMap<>();
+        wal.readFrom(redoLsn, (lsn, record) -> {
+            if (record.getType() == LogRecord.Type.CREATE_TABLE) {
+                tablesCreated.put(record.getObjectName(), lsn);
+            } else if (record.getType() == LogRecord.Type.CREATE_INDEX) {
+                indexesCreated.put(record.getObjectName(), lsn);
+            }
+        });
+        
+        int[] applied = {0};
+        Set<String> changedTables = new HashSet<>();
+        wal.readFrom(redoLsn, (lsn, record) -> {
+            if (record.getType() == LogRecord.Type.HEAP_INSERT) {
+                changedTables.add(record.getObjectName());
+                if (lsn > tablesCreated.getOrDefault(record.getObjectName(), 0L)
+                        && redoHeapInsert(lsn, record)) {
+                    applied[0]++;
+                }
+            }
+        });
+        
+        for (BPlusTree index : indexManager.getIndexes()) {
+            if (changedTables.contains(index.getTableName())
+                    || indexesCreated.containsKey(index.getIndexName())
+                    || index.needsRebuild()) {
+                rebuildIndex(index);
+            }
+        }
+        return applied[0];
+    }
+    
+    private boolean redoHeapInsert(long lsn, LogRecord record) {
+        TableFile tableFile = storageManager.getTableFile(record.getObjectName());
+        if (tableFile == null) {
+            return false; // Таблица удалена
+        }
+        tableFile.ensurePage(record.getPageId());
+        
+        Page page = bufferManager.pinPage(tableFile, record.getPageId());
+        boolean changed = false;
+        Lock latch = page.getLatch().writeLock();
+        latch.lock();
+        try {
+            if (page.getLsn() >= lsn) {
+                return false; // Изменение уже на странице
+            }
+            int slot = page.insertRecord(record.getTuple());
+            if (slot != record.getSlotId()) {
+                throw new RuntimeException("WAL redo mismatch for " + record + ": tuple went to slot " + slot);
+            }
+            page.setLsn(lsn);
+            changed = true;
+            return true;
+        } finally {
+            latch.unlock();
+            bufferManager.unpinPage(tableFile, record.getPageId(), changed);
+        }
+    }
+    
+    private void rebuildIndex(BPlusTree index) {
+        TableFile tableFile = storageManager.getTableFile(index.getTableName());
+        if (tableFile == null) {
+            return; // Таблица удалена
+        }
+        index.truncate();
+        indexBuilder.build(index, tableFile,
+                storageManager.getTableMetadata(index.getTableName()));
+    }
+}
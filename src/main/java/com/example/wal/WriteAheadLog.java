@@ -0,0 +1,409 @@
+package com.example.wal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал упреждающей записи (WAL).
+ *
+ * Журнал - последовательность сегментов dataDir/wal/XXXXXXXXXXXXXXXX.wal, имя сегмента -
+ * LSN его первого байта в hex. LSN - сквозное смещение в журнале, LSN записи - смещение
+ * ее конца. Формат записи: [длина тела int][CRC32C тела int][тело]. Оборванная или
+ * испорченная запись в конце последнего сегмента считается концом журнала и отрезается.
+ *
+ * Group commit: append только дописывает запись в буфер в памяти, flush(lsn) ждет, пока
+ * журнал не будет сброшен до lsn. Сбрасывает один поток-лидер - все накопленное
+ * за время предыдущего fsync одной записью и одним fsync, остальные сессии ждут его.
+ *
+ * В файле checkpoint хранится LSN, с которого начинается redo после последней контрольной точки.
+ * Изменение из нескольких шагов, часть которых не журналируется (вставка в таблицу и индексы),
+ * выполняется между beginChange и endChange: контрольная точка берет LSN начала redo только
+ * между такими изменениями (checkpointRedoLsn).
+ */
+public class WriteAheadLog {
+    public static final long DEFAULT_SEGMENT_SIZE = 16L * 1024 * 1024;
+    
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int RECORD_HEADER_SIZE = 8;
+    
+    /**
+     * Обработчик записей при чтении журнала
+     */
+    public interface RecordHandler {
+        void handle(long lsn, LogRecord record);
+    }
+    
+    private final Path walDir;
+    private final long segmentSize;
+    private final ReentrantLock lock;
+    private final Condition flushDone;
+    private final ReentrantReadWriteLock changeLock;
+    
+    // Под lock
+    private final ByteArrayOutputStream pending;
+    private long insertLsn;
+    private long flushedLsn;
+    private boolean flushing;
+    private long syncCount;
+    private RuntimeException failure;
+    
+    // Меняются только лидером сброса (flushing = true)
+    private FileChannel segment;
+    private long segmentStart;
+    
+    public WriteAheadLog(String dataDir) {
+        this(dataDir, DEFAULT_SEGMENT_SIZE);
+    }
+    
+    public WriteAheadLog(String dataDir, long segmentSize) {
+        this.walDir = Paths.get(dataDir, "wal");
+        this.segmentSize = segmentSize;
+        this.lock = new ReentrantLock();
+        this.flushDone = lock.newCondition();
+        this.changeLock = new ReentrantReadWriteLock();
+        this.pending = new ByteArrayOutputStream();
+        openLog();
+    }
+    
+    /**
+     * Найти конец журнала и открыть последний сегмент для дозаписи
+     */
+    private void openLog() {
+        try {
+            Files.createDirectories(walDir);
+            List<Long> segments = listSegments();
+            if (segments.isEmpty()) {
+                openSegment(0);
+                insertLsn = 0;
+            } else {
+                long lastStart = segments.get(segments.size() - 1);
+                long end = scanSegment(lastStart, 0, null);
+                openSegment(lastStart);
+                segment.truncate(end - lastStart); // Отрезаем оборванный хвост
+                insertLsn = end;
+            }
+            flushedLsn = insertLsn;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open write-ahead log in " + walDir, e);
+        }
+    }
+    
+    /**
+     * Добавить запись в журнал (пока только в память). Возвращает LSN конца записи.
+     */
+    public long append(LogRecord record) {
+        byte[] body = record.encode();
+        CRC32C crc = new CRC32C();
+        crc.update(body, 0, body.length);
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        header.putInt(body.length);
+        header.putInt((int) crc.getValue());
+        
+        lock.lock();
+        try {
+            checkFailure();
+            pending.write(header.array(), 0, RECORD_HEADER_SIZE);
+            pending.write(body, 0, body.length);
+            insertLsn += RECORD_HEADER_SIZE + body.length;
+            return insertLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Дождаться, пока журнал будет надежно записан на диск хотя бы до lsn
+     */
+    public void flush(long lsn) {
+        lock.lock();
+        try {
+            while (flushedLsn < lsn) {
+                checkFailure();
+                if (flushing) {
+                    // Сбрасывает другой поток - ждем, возможно, он захватит и нашу запись
+                    flushDone.awaitUninterruptibly();
+                    continue;
+                }
+                flushing = true;
+                byte[] batch = pending.toByteArray();
+                pending.reset();
+                long batchEnd = insertLsn;
+                lock.unlock();
+                try {
+                    writeBatch(batch, batchEnd);
+                } catch (IOException | RuntimeException e) {
+                    // Пачка потеряна - дальнейшая запись разорвала бы журнал
+                    lock.lock();
+                    failure = new RuntimeException("Write-ahead log failed", e);
+                    flushing = false;
+                    flushDone.signalAll();
+                    throw failure;
+                }
+                lock.lock();
+                flushedLsn = batchEnd;
+                syncCount++;
+                flushing = false;
+                flushDone.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void writeBatch(byte[] batch, long batchEnd) throws IOException {
+        ByteBuffer src = ByteBuffer.wrap(batch);
+        long position = batchEnd - batch.length - segmentStart;
+        while (src.hasRemaining()) {
+            segment.write(src, position + src.position());
+        }
+        segment.force(false);
+        if (batchEnd - segmentStart >= segmentSize) {
+            // Сегмент заполнен: следующие записи идут в новый файл
+            segment.close();
+            openSegment(batchEnd);
+        }
+    }
+    
+    /**
+     * Начать изменение, которое должно целиком попасть по одну сторону от контрольной точки
+     */
+    public void beginChange() {
+        changeLock.readLock().lock();
+    }
+    
+    public void endChange() {
+        changeLock.readLock().unlock();
+    }
+    
+    /**
+     * LSN начала redo для контрольной точки: ждет завершения начатых изменений, так что
+     * все изменения с записями до этого LSN уже полностью отражены в страницах буфера
+     */
+    public long checkpointRedoLsn() {
+        changeLock.writeLock().lock();
+        try {
+            return getInsertLsn();
+        } finally {
+            changeLock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * LSN конца последней добавленной записи
+     */
+    public long getInsertLsn() {
+        lock.lock();
+        try {
+            return insertLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public long getFlushedLsn() {
+        lock.lock();
+        try {
+            return flushedLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Число выполненных fsync журнала (для диагностики group commit)
+     */
+    public long getSyncCount() {
+        lock.lock();
+        try {
+            return syncCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Прочитать все корректные записи с LSN больше fromLsn в порядке журнала
+     */
+    public void readFrom(long fromLsn, RecordHandler handler) {
+        try {
+            List<Long> segments = listSegments();
+            for (int i = 0; i < segments.size(); i++) {
+                boolean hasNext = i + 1 < segments.size();
+                if (hasNext && segments.get(i + 1) <= fromLsn) {
+                    continue; // Весь сегмент до точки начала чтения
+                }
+                long end = scanSegment(segments.get(i), fromLsn, handler);
+                if (hasNext && end != segments.get(i + 1)) {
+                    throw new RuntimeException("Write-ahead log is corrupted at LSN " + end);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read write-ahead log", e);
+        }
+    }
+    
+    /**
+     * Прочитать записи сегмента, передавая обработчику те, что кончаются после fromLsn.
+     * Возвращает LSN конца последней корректной записи.
+     */
+    private long scanSegment(long start, long fromLsn, RecordHandler handler) throws IOException {
+        byte[] data = Files.readAllBytes(segmentPath(start));
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int position = 0;
+        while (position + RECORD_HEADER_SIZE <= data.length) {
+            int length = buffer.getInt(position);
+            int checksum = buffer.getInt(position + 4);
+            if (length <= 0 || length > data.length - position - RECORD_HEADER_SIZE) {
+                break;
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(data, position + RECORD_HEADER_SIZE, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+            long lsn = start + position;
+            if (handler != null && lsn > fromLsn) {
+                byte[] body = new byte[length];
+                System.arraycopy(data, position - length, body, 0, length);
+                handler.handle(lsn, LogRecord.decode(body));
+            }
+        }
+        return start + position;
+    }
+    
+    /**
+     * LSN начала redo, сохраненный последней контрольной точкой (0, если ее не было)
+     */
+    public long readCheckpointLsn() {
+        Path path = walDir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            if (buffer.remaining() != 12) {
+                return 0;
+            }
+            long lsn = buffer.getLong(0);
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.array(), 0, 8);
+            // Испорченный файл - redo с начала оставшегося журнала, это безопасно
+            return (int) crc.getValue() == buffer.getInt(8) ? lsn : 0;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read checkpoint file", e);
+        }
+    }
+    
+    /**
+     * Атомарно записать LSN начала redo (временный файл, fsync, переименование)
+     */
+    public void writeCheckpointLsn(long redoLsn) {
+        ByteBuffer buffer = ByteBuffer.allocate(12);
+        buffer.putLong(redoLsn);
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, 8);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        
+        Path tmp = walDir.resolve(CHECKPOINT_FILE + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, walDir.resolve(CHECKPOINT_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write checkpoint file", e);
+        }
+    }
+    
+    /**
+     * Удалить сегменты, все записи которых лежат до lsn (текущий сегмент не удаляется)
+     */
+    public void removeSegmentsBefore(long lsn) {
+        try {
+            List<Long> segments = listSegments();
+            for (int i = 0; i + 1 < segments.size(); i++) {
+                if (segments.get(i + 1) <= lsn) {
+                    Files.deleteIfExists(segmentPath(segments.get(i)));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to remove old log segments", e);
+        }
+    }
+    
+    /**
+     * Сбросить журнал и закрыть текущий сегмент
+     */
+    public void close() {
+        flush(getInsertLsn());
+        lock.lock();
+        try {
+            if (segment != null) {
+                segment.close();
+                segment = null;
+            }
+            failure = new RuntimeException("Write-ahead log is closed");
+        } catch (IOException e) {
+            // Игнорируем
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void checkFailure() {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    private void openSegment(long start) throws IOException {
+        segment = FileChannel.open(segmentPath(start), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segmentStart = start;
+    }
+    
+    private Path segmentPath(long start) {
+        return walDir.resolve(String.format("%016X", start) + SEGMENT_SUFFIX);
+    }
+    
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> stream = Files.list(walDir)) {
+            List<Long> segments = new ArrayList<>();
+            for (String name : stream.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .collect(Collectors.toList())) {
+                try {
+                    segments.add(Long.parseUnsignedLong(
+                            name.substring(0, name.length() - SEGMENT_SUFFIX.length()), 16));
+                } catch (NumberFormatException e) {
+                    // Посторонний файл - пропускаем
+                }
+            }
+            segments.sort(null);
+            return segments;
+        }
+    }
+}
@@ -38,12 +38,13 @@ public class BufferManagerTest {
     }
     
     @Test
-    public void testGetPage() {
+    public void testPinPage() {
         TableFile tableFile = new TableFile("test_table", testDataDir);
         
-        Page page = bufferManager.getPage(tableFile, 0);
+        Page page = bufferManager.pinPage(tableFile, 0);
         assertNotNull(page);
         assertEquals(0, page.getPageId());
+        bufferManager.unpinPage(tableFile, 0, false);
     }
     
     @Test
@@ -56,15 +57,15 @@ public class BufferManagerTest {
         TableFile table4 = new TableFile("table4", testDataDir);
         
         // Заполняем буфер
-        smallBuffer.getPage(table1, 0);
-        smallBuffer.getPage(table2, 0);
-        smallBuffer.getPage(table3, 0);
+        access(smallBuffer, table1, 0);
+        access(smallBuffer, table2, 0);
+        access(smallBuffer, table3, 0);
         
         // Добавляем еще одну страницу - должна вытеснить первую
-        smallBuffer.getPage(table4, 0);
+        access(smallBuffer, table4, 0);
         
         // Проверяем, что можем получить страницу
-        Page page1 = smallBuffer.getPage(table1, 0);
+        Page page1 = access(smallBuffer, table1, 0);
         assertNotNull(page1);
     }
     
@@ -72,13 +73,246 @@ public class BufferManagerTest {
     public void testFlushAll() {
         TableFile tableFile = new TableFile("test_table", testDataDir);
         
-        Page page = bufferManager.getPage(tableFile, 0);
-        page.setDirty(true);
+        Page page = bufferManager.pinPage(tableFile, 0);
+        bufferManager.unpinPage(tableFile, 0, true);
         
         bufferManager.flushAll();
         
         // После flush страница не должна быть dirty
         assertFalse(page.isDirty());
     }
+    
+    @Test
+    public void testFlushWaitsForPinnedPage() throws Exception {
+        TableFile tableFile = new TableFile("flush_pinned", testDataDir);
+        Page page = bufferManager.newPage(tableFile);
+        page.insertRecord(new byte[]{1});
+        
+        // Страницу меняют под pin: flush ждет unpin и пишет уже законченное изменение
+        Thread writer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            page.insertRecord(new byte[]{2});
+            bufferManager.unpinPage(tableFile, page.getPageId(), true);
+        });
+        writer.start();
+        bufferManager.flushPages(tableFile);
+        writer.join();
+        
+        assertFalse(page.isDirty());
+        assertArrayEquals(new byte[]{2}, tableFile.loadPage(page.getPageId()).getRecord(1));
+    }
+    
+    @Test
+    public void testDiscardWaitsForPinnedPages() throws Exception {
+        TableFile tableFile = new TableFile("discard", testDataDir);
+        Page page = bufferManager.newPage(tableFile);
+        page.insertRecord(new byte[]{1});
+        
+        // Фрейм читаемой страницы не уходит другой странице, пока сканирование ее не отпустит
+        Thread scanner = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            assertArrayEquals(new byte[]{1}, page.getRecord(0));
+            bufferManager.unpinPage(tableFile, page.getPageId(), false);
+        });
+        scanner.start();
+        bufferManager.discardPages(tableFile);
+        scanner.join();
+        assertNotSame(page, access(bufferManager, tableFile, page.getPageId()));
+        
+        // Страницу так и не отпускают - выбросить нельзя, она остается в пуле
+        Page pinned = bufferManager.pinPage(tableFile, 1);
+        assertThrows(RuntimeException.class, () -> bufferManager.discardPages(tableFile));
+        assertSame(pinned, bufferManager.pinPage(tableFile, 1));
+        bufferManager.unpinPage(tableFile, 1, false);
+        bufferManager.unpinPage(tableFile, 1, false);
+    }
+    
+    @Test
+    public void testPinnedPageNotEvicted() {
+        BufferManager smallBuffer = new BufferManager(2);
+        TableFile tableFile = new TableFile("pinned", testDataDir);
+        
+        Page pinned0 = smallBuffer.pinPage(tableFile, 0);
+        Page pinned1 = smallBuffer.pinPage(tableFile, 1);
+        
+        // Все фреймы закреплены - загрузить третью страницу некуда
+        assertThrows(RuntimeException.class, () -> smallBuffer.pinPage(tableFile, 2));
+        
+        // После unpin вытесняется именно страница 1, закрепленная страница 0 остается
+        smallBuffer.unpinPage(tableFile, 1, false);
+        smallBuffer.pinPage(tableFile, 2);
+        assertSame(pinned0, access(smallBuffer, tableFile, 0));
+        
+        smallBuffer.unpinPage(tableFile, 2, false);
+        assertNotSame(pinned1, access(smallBuffer, tableFile, 1));
+    }
+    
+    @Test
+    public void testClockGivesSecondChance() {
+        BufferManager clockBuffer = new BufferManager(3, ReplacementPolicy.Type.CLOCK);
+        TableFile tableFile = new TableFile("clock", testDataDir);
+        
+        Page page0 = access(clockBuffer, tableFile, 0);
+        access(clockBuffer, tableFile, 1);
+        access(clockBuffer, tableFile, 2);
+        
+        // Первый промах сбрасывает все биты и вытесняет страницу 0
+        access(clockBuffer, tableFile, 3);
+        Page page1 = access(clockBuffer, tableFile, 1);
+        
+        // Страница 1 получила бит обращения, поэтому вытесняется страница 2
+        access(clockBuffer, tableFile, 4);
+        assertSame(page1, access(clockBuffer, tableFile, 1));
+        assertNotSame(page0, access(clockBuffer, tableFile, 0));
+    }
+    
+    @Test
+    public void testBulkReadStrategyKeepsHotPages() {
+        BufferManager pool = new BufferManager(40);
+        TableFile hotTable = new TableFile("hot", testDataDir);
+        TableFile bigTable = new TableFile("big", testDataDir);
+        
+        Page[] hotPages = new Page[10];
+        for (int i = 0; i < hotPages.length; i++) {
+            hotPages[i] = access(pool, hotTable, i);
+        }
+        
+        // Маленькой таблице стратегия не нужна, большая читается через кольцо
+        assertNull(pool.bulkReadStrategy(10));
+        BufferAccessStrategy strategy = pool.bulkReadStrategy(200);
+        assertNotNull(strategy);
+        assertEquals(5, strategy.getRingSize());
+        
+        for (int pageId = 0; pageId < 200; pageId++) {
+            Page page = pool.pinPage(bigTable, pageId, strategy);
+            assertEquals(pageId, page.getPageId());
+            pool.unpinPage(bigTable, pageId, false);
+        }
+        
+        // Горячие страницы пережили полный проход по большой таблице
+        for (int i = 0; i < hotPages.length; i++) {
+            assertSame(hotPages[i], access(pool, hotTable, i));
+        }
+    }
+    
+    @Test
+    public void testFramesAreOffHeap() {
+        BufferManager smallBuffer = new BufferManager(2);
+        TableFile tableFile = new TableFile("offheap", testDataDir);
+        
+        Page page = smallBuffer.newPage(tableFile);
+        assertTrue(page.getBuffer().isDirect());
+        assertEquals(0, page.getSlotCount());
+        int slot = page.insertRecord(new byte[]{4, 5, 6});
+        smallBuffer.unpinPage(tableFile, page.getPageId(), true);
+        
+        // Вытесняем страницу и читаем ее обратно в другой фрейм арены
+        access(smallBuffer, tableFile, 1);
+        access(smallBuffer, tableFile, 2);
+        Page reloaded = access(smallBuffer, tableFile, page.getPageId());
+        assertTrue(reloaded.getBuffer().isDirect());
+        assertArrayEquals(new byte[]{4, 5, 6}, reloaded.getRecord(slot));
+    }
+    
+    @Test
+    public void testMmapPagesAreNotCopied() {
+        TableFile writer = new TableFile("mapped", testDataDir);
+        Page page = new Page(writer.allocatePage());
+        int slot = page.insertRecord(new byte[]{7, 8});
+        writer.savePage(page);
+        writer.close();
+        
+        TableFile tableFile = new TableFile("mapped", testDataDir, TableFile.IoMode.MMAP);
+        Page mapped = bufferManager.pinPage(tableFile, 0);
+        assertTrue(mapped.getBuffer().isReadOnly());
+        assertArrayEquals(new byte[]{7, 8}, mapped.getRecord(slot));
+        
+        // Изменение копирует страницу из отображения, на диск она уходит при сбросе
+        int newSlot = mapped.insertRecord(new byte[]{9});
+        bufferManager.unpinPage(tableFile, 0, true);
+        bufferManager.flushAll();
+        assertArrayEquals(new byte[]{9}, tableFile.loadPage(0).getRecord(newSlot));
+        tableFile.close();
+    }
+    
+    @Test
+    public void testBackgroundWriteSkipsPinnedPages() {
+        BufferManager pool = new BufferManager(8);
+        TableFile tableFile = new TableFile("bgwriter", testDataDir);
+        
+        Page unpinned = pool.newPage(tableFile);
+        unpinned.insertRecord(new byte[]{1});
+        pool.unpinPage(tableFile, unpinned.getPageId(), true);
+        Page pinned = pool.newPage(tableFile);
+        pinned.insertRecord(new byte[]{2});
+        
+        // Закрепленную страницу могут менять прямо сейчас - писатель ее пропускает
+        assertEquals(1, pool.writeDirtyPages(10));
+        assertFalse(unpinned.isDirty());
+        assertTrue(pinned.isDirty());
+        
+        pool.unpinPage(tableFile, pinned.getPageId(), true);
+        assertEquals(1, pool.checkpoint());
+        assertFalse(pinned.isDirty());
+        assertArrayEquals(new byte[]{2}, tableFile.loadPage(pinned.getPageId()).getRecord(0));
+    }
+    
+    @Test
+    public void testUnpinDirtyPageIsFlushedOnEviction() {
+        BufferManager smallBuffer = new BufferManager(1);
+        TableFile tableFile = new TableFile("evicted", testDataDir);
+        
+        Page page = smallBuffer.newPage(tableFile);
+        int slot = page.insertRecord(new byte[]{1, 2, 3});
+        smallBuffer.unpinPage(tableFile, page.getPageId(), true);
+        
+        // Вытесняем страницу другой и читаем ее заново с диска
+        access(smallBuffer, tableFile, 1);
+        Page reloaded = access(smallBuffer, tableFile, page.getPageId());
+        assertArrayEquals(new byte[]{1, 2, 3}, reloaded.getRecord(slot));
+    }
+    
+    @Test
+    public void testConcurrentPinUnpin() throws Exception {
+        BufferManager sharedBuffer = new BufferManager(8);
+        TableFile tableFile = new TableFile("concurrent", testDataDir);
+        int threads = 8;
+        int pages = 32;
+        
+        java.util.concurrent.ExecutorService pool = java.util.concurrent.Executors.newFixedThreadPool(threads);
+        java.util.List<java.util.concurrent.Future<?>> futures = new java.util.ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            futures.add(pool.submit(() -> {
+                java.util.Random random = new java.util.Random(seed);
+                for (int i = 0; i < 2000; i++) {
+                    int pageId = random.nextInt(pages);
+                    Page page = sharedBuffer.pinPage(tableFile, pageId);
+                    assertEquals(pageId, page.getPageId());
+                    sharedBuffer.unpinPage(tableFile, pageId, false);
+                }
+            }));
+        }
+        for (java.util.concurrent.Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+    }
+    
+    /**
+     * Обращение к странице: закрепить и сразу отпустить
+     */
+    private static Page access(BufferManager pool, TableFile tableFile, int pageId) {
+        Page page = pool.pinPage(tableFile, pageId);
+        pool.unpinPage(tableFile, pageId, false);
+        return page;
+    }
 }
-
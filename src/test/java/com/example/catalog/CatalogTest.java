@@ -0,0 +1,79 @@
+package com.example.catalog;
+
+import com.example.buffer.BufferManager;
+import com.example.index.IndexManager;
+import com.example.storage.StorageManager;
+import com.example.storage.TableMetadata;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class CatalogTest {
+    private String testDataDir;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        testDataDir = Files.createTempDirectory("db_catalog_test_").toString();
+    }
+    
+    @Test
+    public void testPersistAndReload() {
+        Catalog catalog = new Catalog(testDataDir);
+        TableMetadata users = new TableMetadata("users");
+        users.addColumn("id", "INTEGER");
+        users.addColumn("name", "VARCHAR");
+        catalog.createTable(users);
+        TableMetadata orders = new TableMetadata("orders");
+        orders.addColumn("user_id", "INTEGER");
+        catalog.createTable(orders);
+        catalog.createIndex(new Catalog.IndexInfo("users_id_idx", "users", "id"));
+        catalog.createIndex(new Catalog.IndexInfo("orders_user_idx", "orders", "user_id"));
+        
+        Catalog reloaded = new Catalog(testDataDir);
+        assertEquals(2, reloaded.getTables().size());
+        assertEquals("VARCHAR", reloaded.getTable("users").getColumn("name").getType());
+        assertEquals(1, reloaded.getTable("users").getColumnIndex("name"));
+        assertEquals("id", reloaded.getIndex("users_id_idx").getColumnName());
+        assertEquals(1, reloaded.getIndexesForTable("orders").size());
+        
+        // Удаление таблицы убирает и ее индексы
+        reloaded.dropTable("users");
+        Catalog afterDrop = new Catalog(testDataDir);
+        assertFalse(afterDrop.tableExists("users"));
+        assertNull(afterDrop.getIndex("users_id_idx"));
+        assertNotNull(afterDrop.getIndex("orders_user_idx"));
+        assertFalse(Files.exists(Paths.get(testDataDir, Catalog.CATALOG_FILE + ".tmp")));
+    }
+    
+    @Test
+    public void testMigratesLegacyMetadataFiles() throws Exception {
+        TableMetadata users = new TableMetadata("users");
+        users.addColumn("id", "INTEGER");
+        Path schema = Paths.get(testDataDir, "users.schema");
+        Path indexMeta = Paths.get(testDataDir, "users_id_idx.idxmeta");
+        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(schema.toFile()))) {
+            oos.writeObject(users);
+        }
+        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(indexMeta.toFile()))) {
+            oos.writeObject(new IndexManager.IndexMetadata("users", "id"));
+        }
+        
+        StorageManager storageManager = new StorageManager(testDataDir);
+        IndexManager indexManager = new IndexManager(storageManager.getCatalog(), new BufferManager(16));
+        assertTrue(storageManager.tableExists("users"));
+        assertNotNull(indexManager.findIndexForColumn("users", "id"));
+        assertFalse(Files.exists(schema));
+        assertFalse(Files.exists(indexMeta));
+        
+        // Старые файлы удалены, все берется из catalog.dat
+        Catalog reloaded = new Catalog(testDataDir);
+        assertTrue(reloaded.tableExists("users"));
+        assertEquals("users", reloaded.getIndex("users_id_idx").getTableName());
+    }
+}
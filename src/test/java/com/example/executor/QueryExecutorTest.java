@@ -1,8 +1,15 @@
 package com.example.executor;
 
 import com.example.buffer.BufferManager;
+import com.example.catalog.Catalog;
+import com.example.catalog.TableStatistics;
 import com.example.index.IndexManager;
+import com.example.sql.lexer.Lexer;
+import com.example.sql.optimizer.Optimizer;
 import com.example.sql.optimizer.PhysicalPlan;
+import com.example.sql.parser.Parser;
+import com.example.sql.planner.Planner;
+import com.example.sql.semantic.SemanticAnalyzer;
 import com.example.storage.StorageManager;
 import com.example.storage.TableMetadata;
 import org.junit.jupiter.api.Test;
@@ -11,6 +18,8 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 
 public class QueryExecutorTest {
     private StorageManager storageManager;
@@ -24,7 +33,7 @@ public class QueryExecutorTest {
         testDataDir = Files.createTempDirectory("db_executor_test_").toString();
         storageManager = new StorageManager(testDataDir);
         bufferManager = new BufferManager(10);
-        indexManager = new IndexManager(testDataDir);
+        indexManager = new IndexManager(storageManager.getCatalog(), bufferManager);
         queryExecutor = new QueryExecutor(storageManager, bufferManager, indexManager);
     }
     
@@ -87,6 +96,584 @@ public class QueryExecutorTest {
         assertTrue(result.isSuccess());
         assertNotNull(result.getRows());
     }
-}
+    
+    @Test
+    public void testVariableLengthRows() {
+        TableMetadata metadata = new TableMetadata("texts");
+        metadata.addColumn("id", "INTEGER");
+        metadata.addColumn("body", "VARCHAR");
+        storageManager.createTable(metadata);
+        
+        // Строка длиннее старого фиксированного слота в 100 байт и много коротких строк
+        String longText = "x".repeat(300);
+        int rows = 500;
+        for (int i = 0; i < rows; i++) {
+            PhysicalPlan insertPlan = new PhysicalPlan(PhysicalPlan.Type.INSERT);
+            insertPlan.setTableName("texts");
+            insertPlan.getInsertValues().add(i);
+            insertPlan.getInsertValues().add(i == 0 ? longText : "s" + i);
+            assertTrue(queryExecutor.execute(insertPlan).isSuccess());
+        }
+        
+        PhysicalPlan selectPlan = new PhysicalPlan(PhysicalPlan.Type.SELECT);
+        selectPlan.setTableName("texts");
+        selectPlan.setRootOperator(new PhysicalPlan.SeqScanOperator("texts"));
+        QueryExecutor.QueryResult result = queryExecutor.execute(selectPlan);
+        
+        assertEquals(rows, result.getRows().size());
+        assertEquals(longText, result.getRows().get(0).getValue(1));
+        assertEquals("s1", result.getRows().get(1).getValue(1));
+        // Короткие строки плотно упакованы: 500 строк помещаются в несколько страниц
+        assertTrue(storageManager.getTableFile("texts").getPageIds().size() <= 5);
+    }
+    
+    @Test
+    public void testIndexRangeScan() {
+        sql("CREATE TABLE people (id INTEGER, name VARCHAR, age INTEGER)");
+        for (int i = 0; i < 300; i++) {
+            sql("INSERT INTO people VALUES (" + i + ", 'p" + i + "', " + (i % 50) + ")");
+        }
+        sql("CREATE INDEX people_age_idx ON people(age)");
+        sql("CREATE INDEX people_name_idx ON people(name)");
+        
+        PhysicalPlan plan = plan("SELECT * FROM people WHERE age > 45");
+        PhysicalPlan.PhysicalOperator scan = plan.getRootOperator().getChildren().get(0);
+        assertTrue(scan instanceof PhysicalPlan.IndexScanOperator);
+        assertTrue(((PhysicalPlan.IndexScanOperator) scan).isRangeScan());
+        
+        // Каждый возраст 0..49 встречается 6 раз; исключенные границы не попадают в результат
+        assertAges(queryExecutor.execute(plan), 46, 49, 24);
+        assertAges(execute("SELECT * FROM people WHERE age >= 45"), 45, 49, 30);
+        assertAges(execute("SELECT * FROM people WHERE age < 3"), 0, 2, 18);
+        assertAges(execute("SELECT * FROM people WHERE age <= 3"), 0, 3, 24);
+        assertAges(execute("SELECT * FROM people WHERE age BETWEEN 10 AND 12"), 10, 12, 18);
+        assertEquals(0, execute("SELECT * FROM people WHERE age BETWEEN 12 AND 10").getRows().size());
+        assertEquals(6, execute("SELECT * FROM people WHERE age = 7").getRows().size());
+        
+        // Строковый индекс: те же границы по строкам
+        QueryExecutor.QueryResult names = execute("SELECT * FROM people WHERE name < 'p100'");
+        assertEquals(3, names.getRows().size()); // p0, p1, p10
+        
+        // <> индекс не использует: условие проверяет само сканирование
+        PhysicalPlan notEqual = plan("SELECT * FROM people WHERE age <> 7");
+        assertNotNull(((PhysicalPlan.SeqScanOperator) notEqual.getRootOperator().getChildren().get(0)).getFilter());
+        assertEquals(294, queryExecutor.execute(notEqual).getRows().size());
+    }
+    
+    @Test
+    public void testIndexCatalog() {
+        sql("CREATE TABLE items (id INTEGER, name VARCHAR)");
+        sql("CREATE INDEX by_id ON items(id)");
+        // Индекс с произвольным именем обновляется при вставке и находится оптимизатором
+        for (int i = 0; i < 100; i++) {
+            sql("INSERT INTO items VALUES (" + i + ", 'item" + i + "')");
+        }
+        assertEquals(1, indexManager.getIndexesForTable("items").size());
+        
+        PhysicalPlan plan = plan("SELECT * FROM items WHERE id = 42");
+        PhysicalPlan.IndexScanOperator scan =
+            (PhysicalPlan.IndexScanOperator) plan.getRootOperator().getChildren().get(0);
+        assertEquals("by_id", scan.getIndexName());
+        QueryExecutor.QueryResult result = queryExecutor.execute(plan);
+        assertEquals(1, result.getRows().size());
+        assertEquals("item42", result.getRows().get(0).getValue(1));
+        
+        sql("DROP TABLE items");
+        assertTrue(indexManager.getIndexesForTable("items").isEmpty());
+        assertNull(indexManager.getIndex("by_id"));
+    }
+    
+    @Test
+    public void testAnalyzeCostBasedScan() {
+        sql("CREATE TABLE events (id INTEGER, kind INTEGER, note VARCHAR)");
+        for (int i = 0; i < 2000; i++) {
+            sql("INSERT INTO events VALUES (" + i + ", " + (i % 10 == 0 ? 1 : 0) + ", 'e" + i + "')");
+        }
+        sql("CREATE INDEX events_id_idx ON events(id)");
+        sql("CREATE INDEX events_kind_idx ON events(kind)");
+        
+        // Без статистики подходящий индекс используется всегда
+        assertTrue(plan("SELECT * FROM events WHERE kind = 0").getRootOperator().getChildren().get(0)
+            instanceof PhysicalPlan.IndexScanOperator);
+        
+        sql("ANALYZE events");
+        TableStatistics stats = storageManager.getCatalog().getStatistics("events");
+        assertEquals(2000, stats.getRowCount());
+        assertEquals(storageManager.getTableFile("events").getPageIds().size(), stats.getPageCount());
+        assertEquals(2000, stats.getColumn("id").getDistinctCount());
+        assertEquals(0, stats.getColumn("id").getMin());
+        assertEquals(1999, stats.getColumn("id").getMax());
+        assertEquals(2, stats.getColumn("kind").getDistinctCount());
+        assertEquals(0, stats.getColumn("kind").getMostCommonValues().get(0));
+        assertEquals(0.9, stats.getColumn("kind").getMostCommonFrequencies()[0], 1e-9);
+        assertEquals(0.1, stats.getColumn("id").selectivity("<", 200, null), 0.02);
+        
+        // Статистика хранится в каталоге и переживает его перечитывание
+        TableStatistics reloaded = new Catalog(testDataDir).getStatistics("events");
+        assertEquals(2000, reloaded.getRowCount());
+        assertEquals(stats.getColumn("id").getHistogramBounds(), reloaded.getColumn("id").getHistogramBounds());
+        
+        // 90% таблицы дешевле прочитать подряд, одну строку - через индекс
+        PhysicalPlan common = plan("SELECT * FROM events WHERE kind = 0");
+        assertTrue(common.getRootOperator().getChildren().get(0) instanceof PhysicalPlan.SeqScanOperator);
+        assertEquals(1800, queryExecutor.execute(common).getRows().size());
+        assertTrue(plan("SELECT * FROM events WHERE id = 42").getRootOperator().getChildren().get(0)
+            instanceof PhysicalPlan.IndexScanOperator);
+        assertTrue(plan("SELECT * FROM events WHERE id BETWEEN 10 AND 12").getRootOperator().getChildren().get(0)
+            instanceof PhysicalPlan.IndexScanOperator);
+        assertTrue(plan("SELECT * FROM events WHERE id > 10").getRootOperator().getChildren().get(0)
+            instanceof PhysicalPlan.SeqScanOperator);
+        
+        sql("DROP TABLE events");
+        assertNull(storageManager.getCatalog().getStatistics("events"));
+    }
+    
+    @Test
+    public void testAndOrConditions() {
+        sql("CREATE TABLE points (id INTEGER, a INTEGER, b INTEGER)");
+        for (int i = 0; i < 700; i++) {
+            sql("INSERT INTO points VALUES (" + i + ", " + (i % 10) + ", " + (i % 7) + ")");
+        }
+        sql("CREATE INDEX points_a_idx ON points(a)");
+        sql("CREATE INDEX points_b_idx ON points(b)");
+        
+        // Два индексированных конъюнкта - пересечение карт двух индексов
+        PhysicalPlan both = plan("SELECT * FROM points WHERE a = 3 AND b = 2");
+        PhysicalPlan.PhysicalOperator heapScan = both.getRootOperator().getChildren().get(0);
+        assertTrue(heapScan instanceof PhysicalPlan.BitmapHeapScanOperator);
+        assertEquals("AND", ((PhysicalPlan.BitmapOperator) heapScan.getChildren().get(0)).getConnective());
+        assertEquals(10, queryExecutor.execute(both).getRows().size());
+        
+        // Неиндексированный конъюнкт остается фильтром над IndexScan
+        PhysicalPlan residual = plan("SELECT * FROM points WHERE a = 3 AND id < 100");
+        PhysicalPlan.PhysicalOperator filter = residual.getRootOperator().getChildren().get(0);
+        assertTrue(filter instanceof PhysicalPlan.FilterOperator);
+        assertTrue(filter.getChildren().get(0) instanceof PhysicalPlan.IndexScanOperator);
+        assertEquals(10, queryExecutor.execute(residual).getRows().size());
+        
+        // OR по индексированным колонкам - объединение карт, иначе SeqScan
+        PhysicalPlan union = plan("SELECT * FROM points WHERE a = 3 OR b = 2");
+        assertEquals("OR", ((PhysicalPlan.BitmapOperator) union.getRootOperator().getChildren().get(0)
+            .getChildren().get(0)).getConnective());
+        assertEquals(70 + 100 - 10, queryExecutor.execute(union).getRows().size());
+        PhysicalPlan seq = plan("SELECT * FROM points WHERE a = 3 OR id = 5");
+        assertTrue(seq.getRootOperator().getChildren().get(0) instanceof PhysicalPlan.SeqScanOperator);
+        assertEquals(71, queryExecutor.execute(seq).getRows().size());
+        
+        // AND связывает сильнее OR; скобки меняют порядок
+        assertEquals(countPoints(i -> i % 10 == 1 || (i % 10 == 2 && i % 7 == 0)),
+            execute("SELECT * FROM points WHERE a = 1 OR a = 2 AND b = 0").getRows().size());
+        assertEquals(countPoints(i -> (i % 10 == 1 || i % 10 == 2) && i % 7 == 0),
+            execute("SELECT * FROM points WHERE (a = 1 OR a = 2) AND b = 0").getRows().size());
+        assertEquals(countPoints(i -> i % 10 < 2 && i % 7 > 4 && i >= 350),
+            execute("SELECT * FROM points WHERE a < 2 AND b > 4 AND id >= 350").getRows().size());
+        
+        // Со статистикой пересечение двух селективных индексов дешевле полного прохода
+        sql("ANALYZE points");
+        assertTrue(plan("SELECT * FROM points WHERE a = 3 AND b = 2").getRootOperator().getChildren().get(0)
+            instanceof PhysicalPlan.BitmapHeapScanOperator);
+        assertEquals(10, execute("SELECT * FROM points WHERE a = 3 AND b = 2").getRows().size());
+    }
+    
+    @Test
+    public void testVectorizedMatchesRowExecution() {
+        sql("CREATE TABLE metrics (id INTEGER, host VARCHAR, value INTEGER)");
+        for (int i = 0; i < 2500; i++) {
+            sql("INSERT INTO metrics VALUES (" + i + ", 'host" + (i % 5) + "', " + (i * 7 % 1000) + ")");
+        }
+        sql("CREATE INDEX metrics_id_idx ON metrics(id)");
+        
+        String[] queries = {
+            "SELECT * FROM metrics",
+            "SELECT id FROM metrics WHERE value < 100",
+            "SELECT host, id FROM metrics WHERE host = 'host3' AND value >= 500",
+            "SELECT * FROM metrics WHERE host <> 'host1' OR value BETWEEN 10 AND 20",
+            "SELECT value FROM metrics WHERE id > 2400 AND host = 'host2'",
+            "SELECT * FROM metrics WHERE value = 1000"
+        };
+        for (String query : queries) {
+            queryExecutor.setVectorized(false);
+            List<Row> expected = execute(query).getRows();
+            queryExecutor.setVectorized(true);
+            List<Row> actual = execute(query).getRows();
+            assertEquals(expected.size(), actual.size(), query);
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getValues(), actual.get(i).getValues(), query);
+            }
+        }
+        
+        // Пакеты не длиннее CAPACITY, строки словаря повторяются внутри пакета
+        TableMetadata metadata = storageManager.getTableMetadata("metrics");
+        BatchExecutor scan = new ExecutorFactory(storageManager, bufferManager, indexManager)
+            .createBatchExecutor(plan("SELECT host FROM metrics WHERE value < 500").getRootOperator(), metadata);
+        scan.open();
+        int rows = 0;
+        ColumnBatch batch;
+        while ((batch = scan.nextBatch()) != null) {
+            assertTrue(batch.getSelectedCount() > 0 && batch.size() <= ColumnBatch.CAPACITY);
+            assertEquals(5, ((ColumnVector.StringVector) batch.getColumn(0)).getDictionary().size());
+            rows += batch.getSelectedCount();
+        }
+        scan.close();
+        int expected = 0;
+        for (int i = 0; i < 2500; i++) {
+            expected += i * 7 % 1000 < 500 ? 1 : 0;
+        }
+        assertEquals(expected, rows);
+    }
+    
+    @Test
+    public void testScanPushdown() {
+        sql("CREATE TABLE docs (id INTEGER, title VARCHAR, body VARCHAR, score INTEGER)");
+        String[] titles = {"alpha", "beta", "gamma", "дельта", "эпсилон", "zeta"};
+        for (int i = 0; i < 600; i++) {
+            sql("INSERT INTO docs VALUES (" + i + ", '" + titles[i % 6] + "', 'body of " + i + "', " + (i % 100) + ")");
+        }
+        
+        // Filter над SeqScan уходит в сканирование вместе со списком нужных колонок
+        PhysicalPlan plan = plan("SELECT id FROM docs WHERE score >= 50 AND title < 'c'");
+        PhysicalPlan.SeqScanOperator scan =
+            (PhysicalPlan.SeqScanOperator) plan.getRootOperator().getChildren().get(0);
+        assertEquals(List.of("id"), scan.getColumns());
+        assertNotNull(scan.getFilter());
+        
+        for (boolean vectorized : new boolean[] {false, true}) {
+            queryExecutor.setVectorized(vectorized);
+            assertEquals(count(i -> i % 100 >= 50 && i % 6 < 2),
+                execute("SELECT id FROM docs WHERE score >= 50 AND title < 'c'").getRows().size());
+            assertEquals(100, execute("SELECT id FROM docs WHERE title = 'дельта'").getRows().size());
+            assertEquals(100, execute("SELECT body FROM docs WHERE title > 'дельта'").getRows().size());
+            assertEquals(count(i -> i % 6 == 2 || i % 6 == 5 || i % 100 == 7),
+                execute("SELECT id, title FROM docs WHERE title BETWEEN 'gamma' AND 'zzz' OR score = 7")
+                    .getRows().size());
+            QueryExecutor.QueryResult bodies = execute("SELECT body, id FROM docs WHERE id = 42");
+            assertEquals(List.of("body of 42", 42), bodies.getRows().get(0).getValues());
+        }
+        
+        // Колонки вне списка не декодируются: на их месте null
+        TableMetadata metadata = storageManager.getTableMetadata("docs");
+        SeqScanExecutor executor = new SeqScanExecutor(storageManager, bufferManager, "docs",
+            List.of("title"), FilterExecutor.Condition.comparison(3, "=", 99, null));
+        executor.open();
+        Row row = executor.next();
+        executor.close();
+        assertEquals(Arrays.asList(null, "дельта", null, null), row.getValues());
+        assertEquals(4, metadata.getColumns().size());
+    }
+    
+    @Test
+    public void testCompiledFilterMatchesInterpreter() {
+        TableMetadata metadata = new TableMetadata("t");
+        metadata.addColumn("id", "INTEGER");
+        metadata.addColumn("name", "VARCHAR");
+        List<Row> rows = new java.util.ArrayList<>();
+        String[] names = {"alpha", "beta", "дельта", "zeta"};
+        for (int i = 0; i < 40; i++) {
+            rows.add(new Row(Arrays.asList(i % 7 == 0 ? null : i, i % 9 == 0 ? null : names[i % 4])));
+        }
+        
+        List<FilterExecutor.Condition> conditions = new java.util.ArrayList<>();
+        for (String op : new String[] {"=", "<>", "<", "<=", ">", ">="}) {
+            conditions.add(FilterExecutor.Condition.comparison(0, op, 20, null));
+            conditions.add(FilterExecutor.Condition.comparison(1, op, "beta", null));
+            conditions.add(FilterExecutor.Condition.comparison(1, op, "гамма", null));
+        }
+        conditions.add(FilterExecutor.Condition.comparison(0, "BETWEEN", 5, 25));
+        conditions.add(FilterExecutor.Condition.comparison(1, "BETWEEN", "b", "дз"));
+        conditions.add(FilterExecutor.Condition.connective("OR", Arrays.asList(
+            FilterExecutor.Condition.connective("AND", Arrays.asList(conditions.get(2), conditions.get(9))),
+            conditions.get(12), conditions.get(19))));
+        
+        for (FilterExecutor.Condition condition : conditions) {
+            java.util.function.Predicate<Row> compiled = ExpressionCompiler.compileFilter(condition, metadata);
+            for (Row row : rows) {
+                assertEquals(condition.evaluate(row), compiled.test(row), "row " + row);
+            }
+        }
+        
+        assertSame(rows.get(1), ExpressionCompiler.compileProjection(List.of("id", "name"), metadata).apply(rows.get(1)));
+        assertEquals(Arrays.asList("beta", 1),
+            ExpressionCompiler.compileProjection(List.of("name", "id"), metadata).apply(rows.get(1)).getValues());
+    }
+    
+    @Test
+    public void testParallelScan() {
+        sql("CREATE TABLE events (id INTEGER, kind VARCHAR, payload VARCHAR)");
+        for (int i = 0; i < 3000; i++) {
+            sql("INSERT INTO events VALUES (" + i + ", 'k" + (i % 5) + "', 'payload " + i + "')");
+        }
+        int pages = storageManager.getTableFile("events").getPageIds().size();
+        assertTrue(pages > 20, "pages " + pages);
+
+        // Размер таблицы выше порога: Gather над SeqScan с протолкнутым условием
+        Optimizer optimizer = new Optimizer(storageManager, indexManager);
+        optimizer.setParallelScanPages(pages / 3);
+        optimizer.setMaxParallelWorkers(4);
+        PhysicalPlan plan = plan("SELECT id FROM events WHERE kind = 'k3' OR id < 100", optimizer);
+        PhysicalPlan.PhysicalOperator gather = plan.getRootOperator().getChildren().get(0);
+        assertTrue(gather instanceof PhysicalPlan.GatherOperator);
+        assertEquals(3, ((PhysicalPlan.GatherOperator) gather).getWorkers());
+        assertNotNull(((PhysicalPlan.SeqScanOperator) gather.getChildren().get(0)).getFilter());
+
+        // Ниже порога и без явного числа потоков - обычный SeqScan
+        assertTrue(plan("SELECT id FROM events").getRootOperator().getChildren().get(0)
+            instanceof PhysicalPlan.SeqScanOperator);
 
+        for (boolean vectorized : new boolean[] {false, true}) {
+            queryExecutor.setVectorized(vectorized);
+            java.util.Set<Object> ids = new java.util.HashSet<>();
+            for (Row row : queryExecutor.execute(plan).getRows()) {
+                assertTrue(ids.add(row.getValue(0)), "duplicate " + row);
+            }
+            assertEquals(100 + 580, ids.size());
 
+            // Явно заданное число потоков - для таблицы любого размера
+            Optimizer forced = new Optimizer(storageManager, indexManager);
+            forced.setParallelWorkers(8);
+            QueryExecutor.QueryResult all = queryExecutor.execute(plan("SELECT * FROM events", forced));
+            assertEquals(3000, all.getRows().size());
+            long sum = 0;
+            for (Row row : all.getRows()) {
+                sum += (Integer) row.getValue(0);
+                assertEquals("payload " + row.getValue(0), row.getValue(2));
+            }
+            assertEquals(3000L * 2999 / 2, sum);
+        }
+    }
+
+    @Test
+    public void testHashJoin() {
+        sql("CREATE TABLE customers (id INTEGER, name VARCHAR)");
+        sql("CREATE TABLE orders (id INTEGER, customer_id INTEGER, amount INTEGER)");
+        for (int i = 0; i < 20; i++) {
+            sql("INSERT INTO customers VALUES (" + i + ", 'customer " + i + "')");
+        }
+        // Заказы покупателей 20..24 ни с кем не соединяются
+        for (int i = 0; i < 400; i++) {
+            sql("INSERT INTO orders VALUES (" + i + ", " + (i % 25) + ", " + (i * 10) + ")");
+        }
+        
+        String query = "SELECT o.id, o.customer_id, name FROM orders o JOIN customers c "
+            + "ON o.customer_id = c.id WHERE c.id < 10 AND amount >= 100";
+        PhysicalPlan plan = plan(query);
+        PhysicalPlan.HashJoinOperator join =
+            (PhysicalPlan.HashJoinOperator) plan.getRootOperator().getChildren().get(0);
+        // Хеш-таблица - по меньшему входу (customers), условия на одну таблицу - под соединением
+        assertFalse(join.isBuildLeft());
+        assertEquals("amount >= 100",
+            ((PhysicalPlan.SeqScanOperator) join.getChildren().get(0)).getFilter().toString());
+        assertEquals("id < 10",
+            ((PhysicalPlan.SeqScanOperator) join.getChildren().get(1)).getFilter().toString());
+        assertTrue(plan("SELECT * FROM customers JOIN orders ON customers.id = customer_id")
+            .getRootOperator().getChildren().get(0) instanceof PhysicalPlan.HashJoinOperator);
+        assertTrue(((PhysicalPlan.HashJoinOperator) plan("SELECT * FROM customers JOIN orders "
+            + "ON customers.id = customer_id").getRootOperator().getChildren().get(0)).isBuildLeft());
+        
+        Path tempDir = storageManager.getTableFile("orders").getFilePath().getParent().resolve("tmp");
+        for (long memory : new long[] {HashJoinExecutor.DEFAULT_MEMORY_BYTES, 2048}) {
+            queryExecutor.setJoinMemoryBytes(memory);
+            for (boolean vectorized : new boolean[] {false, true}) {
+                queryExecutor.setVectorized(vectorized);
+                QueryExecutor.QueryResult result = queryExecutor.execute(plan);
+                assertEquals(Arrays.asList("o.id", "o.customer_id", "c.name"), result.getColumns());
+                // Заказы 10..399 с customer_id < 10
+                assertEquals(count(i -> i < 400 && i >= 10 && i % 25 < 10), result.getRows().size());
+                for (Row row : result.getRows()) {
+                    assertEquals((Integer) row.getValue(0) % 25, row.getValue(1));
+                    assertEquals("customer " + row.getValue(1), row.getValue(2));
+                }
+            }
+        }
+        
+        // Маленький бюджет: обе стороны раскладываются по партициям на диске
+        ExecutorFactory factory = new ExecutorFactory(storageManager, bufferManager, indexManager);
+        factory.setJoinMemoryBytes(1024);
+        HashJoinExecutor spilled = (HashJoinExecutor) factory.createExecutor(join, factory.schemaOf(join));
+        spilled.open();
+        int rows = 0;
+        while (spilled.next() != null) {
+            rows++;
+        }
+        assertTrue(spilled.getSpilledPartitions() > 0);
+        spilled.close();
+        assertEquals(count(i -> i < 400 && i >= 10 && i % 25 < 10), rows);
+        try (java.util.stream.Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        } catch (java.io.IOException e) {
+            fail(e);
+        }
+        
+        // Колонка есть в обеих таблицах - нужна таблица
+        assertThrows(RuntimeException.class,
+            () -> plan("SELECT id FROM orders JOIN customers ON customer_id = customers.id"));
+        // Соединение только по равенству колонок
+        assertThrows(RuntimeException.class,
+            () -> plan("SELECT name FROM orders JOIN customers ON amount > 5"));
+    }
+    
+    @Test
+    public void testIndexNestedLoopJoin() {
+        sql("CREATE TABLE customers (id INTEGER, name VARCHAR)");
+        sql("CREATE TABLE orders (id INTEGER, customer_id INTEGER, amount INTEGER)");
+        for (int i = 0; i < 200; i++) {
+            sql("INSERT INTO customers VALUES (" + i + ", 'customer " + i + "')");
+        }
+        // По 10 заказов на покупателя
+        for (int i = 0; i < 2000; i++) {
+            sql("INSERT INTO orders VALUES (" + i + ", " + (i % 200) + ", " + i + ")");
+        }
+        sql("CREATE INDEX orders_customer_idx ON orders(customer_id)");
+        sql("ANALYZE customers");
+        sql("ANALYZE orders");
+        
+        // Мало внешних строк - поиск по индексу orders вместо чтения всей таблицы
+        PhysicalPlan small = plan("SELECT c.id, o.customer_id, o.amount FROM customers c "
+            + "JOIN orders o ON c.id = o.customer_id WHERE c.id < 5");
+        PhysicalPlan.IndexNestedLoopJoinOperator join =
+            (PhysicalPlan.IndexNestedLoopJoinOperator) small.getRootOperator().getChildren().get(0);
+        assertFalse(join.isInnerLeft());
+        assertEquals("orders", join.getInnerTable());
+        assertEquals("orders_customer_idx", join.getIndexName());
+        // Внутренняя таблица слева, условие на нее проверяется после чтения кортежа
+        PhysicalPlan innerLeft = plan("SELECT o.id, name FROM orders o JOIN customers c "
+            + "ON o.customer_id = c.id WHERE c.id < 5 AND amount < 1000");
+        PhysicalPlan.IndexNestedLoopJoinOperator leftJoin =
+            (PhysicalPlan.IndexNestedLoopJoinOperator) innerLeft.getRootOperator().getChildren().get(0);
+        assertTrue(leftJoin.isInnerLeft());
+        assertEquals("amount < 1000", leftJoin.getInnerFilter().toString());
+        // Соединение всех покупателей дешевле хешированием
+        assertTrue(plan("SELECT * FROM customers JOIN orders ON customers.id = customer_id")
+            .getRootOperator().getChildren().get(0) instanceof PhysicalPlan.HashJoinOperator);
+        
+        for (boolean vectorized : new boolean[] {false, true}) {
+            queryExecutor.setVectorized(vectorized);
+            QueryExecutor.QueryResult result = queryExecutor.execute(small);
+            assertEquals(50, result.getRows().size());
+            for (Row row : result.getRows()) {
+                assertEquals(row.getValue(0), row.getValue(1));
+                assertEquals(row.getValue(1), (Integer) row.getValue(2) % 200);
+            }
+            
+            result = queryExecutor.execute(innerLeft);
+            assertEquals(Arrays.asList("o.id", "c.name"), result.getColumns());
+            assertEquals(25, result.getRows().size());
+            for (Row row : result.getRows()) {
+                assertTrue((Integer) row.getValue(0) < 1000);
+                assertEquals("customer " + (Integer) row.getValue(0) % 200, row.getValue(1));
+            }
+        }
+        
+        // Упакованные адреса сортируются по (pageId, slotId) и для страниц за 2^23
+        long[] packed = {
+            IndexNestedLoopJoinExecutor.packRid(Integer.MAX_VALUE, 0, 0),
+            IndexNestedLoopJoinExecutor.packRid(1 << 23, 5, 1),
+            IndexNestedLoopJoinExecutor.packRid(1 << 23, 4, 1023),
+            IndexNestedLoopJoinExecutor.packRid((1 << 23) - 1, 0xFFFF, 0)
+        };
+        Arrays.sort(packed);
+        assertEquals(IndexNestedLoopJoinExecutor.packRid((1 << 23) - 1, 0xFFFF, 0), packed[0]);
+        assertEquals(IndexNestedLoopJoinExecutor.packRid(1 << 23, 4, 1023), packed[1]);
+        assertEquals(IndexNestedLoopJoinExecutor.packRid(Integer.MAX_VALUE, 0, 0), packed[3]);
+        assertEquals(Integer.MAX_VALUE, (int) (packed[3] >>> 32));
+        assertThrows(RuntimeException.class, () -> IndexNestedLoopJoinExecutor.packRid(-1, 0, 0));
+        assertThrows(RuntimeException.class, () -> IndexNestedLoopJoinExecutor.packRid(0, 1 << 16, 0));
+    }
+    
+    @Test
+    public void testFailedSelectReleasesPages() {
+        sql("CREATE TABLE p (id INTEGER, s VARCHAR)");
+        sql("INSERT INTO p VALUES (1, 'a')");
+        sql("INSERT INTO p VALUES (2, 'b')");
+        for (boolean vectorized : new boolean[] {false, true}) {
+            queryExecutor.setVectorized(vectorized);
+            // Сравнение строки с числом падает посреди сканирования
+            assertThrows(RuntimeException.class, () -> execute("SELECT id FROM p WHERE s > 5"));
+        }
+        sql("INSERT INTO p VALUES (3, 'c')");
+        // Страница таблицы грязная; если бы скан оставил ее закрепленной, контрольная точка упала бы
+        bufferManager.checkpoint();
+        assertEquals(3, execute("SELECT * FROM p").getRows().size());
+    }
+    
+    @Test
+    public void testScanDuringInsertsSeesWholeTuples() throws Exception {
+        sql("CREATE TABLE c (id INTEGER, s VARCHAR)");
+        QueryExecutor reader = new QueryExecutor(storageManager, bufferManager, indexManager);
+        java.util.concurrent.atomic.AtomicReference<Throwable> failure = new java.util.concurrent.atomic.AtomicReference<>();
+        
+        // Вставки меняют ту же страницу, которую в это время читают сканирования
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 400; i++) {
+                    sql("INSERT INTO c VALUES (" + i + ", '" + "x".repeat(i % 50) + "')");
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+        writer.start();
+        int seen = 0;
+        boolean vectorized = false;
+        while (writer.isAlive() || seen < 400) {
+            reader.setVectorized(vectorized = !vectorized);
+            List<Row> rows = reader.execute(plan("SELECT * FROM c")).getRows();
+            assertTrue(rows.size() >= seen, "rows disappeared: " + rows.size() + " < " + seen);
+            seen = rows.size();
+            for (Row row : rows) {
+                assertEquals("x".repeat((Integer) row.getValue(0) % 50), row.getValue(1));
+            }
+            if (!writer.isAlive() && failure.get() != null) {
+                break;
+            }
+        }
+        writer.join();
+        assertNull(failure.get());
+        assertEquals(400, seen);
+    }
+    
+    private int count(java.util.function.IntPredicate predicate) {
+        int count = 0;
+        for (int i = 0; i < 600; i++) {
+            if (predicate.test(i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    private int countPoints(java.util.function.IntPredicate predicate) {
+        int count = 0;
+        for (int i = 0; i < 700; i++) {
+            if (predicate.test(i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    private void assertAges(QueryExecutor.QueryResult result, int min, int max, int count) {
+        assertEquals(count, result.getRows().size());
+        for (Row row : result.getRows()) {
+            int age = (Integer) row.getValue(2);
+            assertTrue(age >= min && age <= max, "age " + age + " outside [" + min + ", " + max + "]");
+        }
+    }
+    
+    private PhysicalPlan plan(String query) {
+        return plan(query, new Optimizer(storageManager, indexManager));
+    }
+    
+    private PhysicalPlan plan(String query, Optimizer optimizer) {
+        Parser parser = new Parser(new Lexer(query).tokenize());
+        return optimizer.optimize(
+                new Planner().plan(new SemanticAnalyzer(storageManager).analyze(parser.parse())));
+    }
+    
+    private QueryExecutor.QueryResult execute(String query) {
+        return queryExecutor.execute(plan(query));
+    }
+    
+    private void sql(String query) {
+        assertTrue(execute(query).isSuccess());
+    }
+}
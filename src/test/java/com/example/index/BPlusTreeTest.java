@@ -1,12 +1,18 @@
 package com.example.index;
 
+import com.example.buffer.BufferManager;
+import com.example.catalog.Catalog;
+import com.example.storage.TableMetadata;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 public class BPlusTreeTest {
     private String testDataDir;
@@ -67,5 +73,182 @@ public class BPlusTreeTest {
         tree.insert(Integer.valueOf(1), 0, 0);
         assertFalse(tree.isEmpty());
     }
+    
+    @Test
+    public void testPagesPersistThroughBufferPool() {
+        // Маленький пул: узлы постоянно вытесняются и читаются с диска
+        BPlusTree tree = new BPlusTree("test_idx", "test_table", "id", testDataDir, new BufferManager(16));
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            keys.add(i);
+        }
+        Collections.shuffle(keys, new Random(42));
+        for (int key : keys) {
+            tree.insert(key, key / 100, key % 100);
+        }
+        for (int i = 0; i < 300; i++) {
+            tree.insert(Integer.valueOf(777), 1000, i); // Дубликаты на несколько листов
+        }
+        tree.saveIndex();
+        tree.close();
+        
+        BPlusTree reopened = new BPlusTree("test_idx", "test_table", "id", testDataDir, new BufferManager(16));
+        assertFalse(reopened.needsRebuild());
+        assertEquals(301, reopened.search(777).size());
+        List<BPlusTree.IndexEntry> entry = reopened.search(4321);
+        assertEquals(1, entry.size());
+        assertEquals(43, entry.get(0).getPageId());
+        assertEquals(21, entry.get(0).getSlotId());
+        
+        List<BPlusTree.IndexEntry> range = reopened.rangeScan(1000, 1999);
+        assertEquals(1000, range.size());
+        for (int i = 1; i < range.size(); i++) {
+            assertTrue(((Integer) range.get(i - 1).getKey()) < (Integer) range.get(i).getKey());
+        }
+    }
+    
+    @Test
+    public void testInsertDirtiesOnlyLeaf() {
+        BufferManager pool = new BufferManager(64);
+        BPlusTree tree = new BPlusTree("test_idx", "test_table", "name", testDataDir, pool);
+        for (int i = 0; i < 2000; i++) {
+            tree.insert("user_" + i, 0, i);
+        }
+        tree.saveIndex();
+        assertEquals(0, pool.writeDirtyPages(Integer.MAX_VALUE));
+        
+        // Вставка без расщепления меняет одну страницу, а не весь индекс
+        tree.insert("user_1000a", 1, 0);
+        assertEquals(1, pool.writeDirtyPages(Integer.MAX_VALUE));
+        assertEquals(1, tree.search("user_1000a").size());
+        assertEquals(2, tree.rangeScan("user_1000", "user_1000a").size());
+    }
+    
+    @Test
+    public void testConfigurableFanout() {
+        BufferManager pool = new BufferManager(256);
+        BPlusTree narrow = new BPlusTree("narrow_idx", "test_table", "id", testDataDir, pool, 4);
+        BPlusTree wide = new BPlusTree("wide_idx", "test_table", "id", testDataDir, pool);
+        for (int i = 0; i < 2000; i++) {
+            int key = (i * 7919) % 2000; // Перемешанный порядок
+            narrow.insert(key, 0, key);
+            wide.insert(key, 0, key);
+        }
+        
+        assertTrue(narrow.getHeight() > wide.getHeight());
+        assertEquals(2, wide.getHeight());
+        for (int key = 0; key < 2000; key += 37) {
+            assertEquals(key, narrow.search(key).get(0).getSlotId());
+            assertEquals(key, wide.search(key).get(0).getSlotId());
+        }
+        assertEquals(100, narrow.rangeScan(500, 599).size());
+        assertThrows(IllegalArgumentException.class,
+                () -> new BPlusTree("bad_idx", "test_table", "id", testDataDir, pool, 2));
+    }
+    
+    @Test
+    public void testIntKeyTreeChosenForIntegerColumns() {
+        BufferManager pool = new BufferManager(64);
+        IndexManager manager = new IndexManager(new Catalog(testDataDir), pool);
+        manager.createIndex("users_id_idx", "users", new TableMetadata.Column("id", "INTEGER"));
+        manager.createIndex("users_name_idx", "users", new TableMetadata.Column("name", "VARCHAR"));
+        assertTrue(manager.getIndex("users_id_idx") instanceof IntBPlusTree);
+        assertFalse(manager.getIndex("users_name_idx") instanceof IntBPlusTree);
+        
+        IntBPlusTree tree = (IntBPlusTree) manager.getIndex("users_id_idx");
+        List<Integer> keys = new ArrayList<>();
+        for (int i = -2500; i < 2500; i++) {
+            keys.add(i);
+        }
+        Collections.shuffle(keys, new Random(42));
+        for (int key : keys) {
+            tree.insert(key, key & 0xFFFF, key);
+        }
+        for (int i = 0; i < 1000; i++) {
+            tree.insert(777, 1000, i); // Дубликаты на несколько листов
+        }
+        assertTrue(tree.getHeight() > 1);
+        assertThrows(RuntimeException.class, () -> tree.insert("user_1", 0, 0));
+        manager.saveAll();
+        manager.closeAll();
+        
+        // Формат узлов хранится в файле: после переоткрытия снова int-дерево
+        IndexManager reopened = new IndexManager(new Catalog(testDataDir), new BufferManager(64));
+        IntBPlusTree loaded = (IntBPlusTree) reopened.getIndex("users_id_idx");
+        assertFalse(loaded.needsRebuild());
+        assertEquals(1001, loaded.search(777).size());
+        // Один курсор переставляется по ключам
+        IntBPlusTree.IntCursor lookup = loaded.cursor();
+        assertFalse(lookup.next());
+        assertTrue(lookup.seek(-1234, -1234).next());
+        assertEquals(-1234 & 0xFFFF, IntBPlusTree.ridPageId(lookup.getRid()));
+        assertEquals(-1234, IntBPlusTree.ridSlotId(lookup.getRid()));
+        assertFalse(lookup.next());
+        int duplicates = 0;
+        for (lookup.seek(777, 777); lookup.next(); duplicates++) {
+            assertEquals(777, lookup.getKey());
+        }
+        assertEquals(1001, duplicates);
+        assertFalse(lookup.seek(5000, 6000).next());
+        assertFalse(lookup.seek(1, 0).next());
+        assertFalse(loaded.cursor(Integer.MAX_VALUE, false, null, false).next());
+        assertEquals(-1234, loaded.search(-1234).get(0).getSlotId());
+        
+        List<BPlusTree.IndexEntry> range = loaded.rangeScan(-100, 99);
+        assertEquals(200, range.size());
+        assertEquals(-100, range.get(0).getKey());
+        
+        List<BPlusTree.IndexEntry> all = loaded.rangeScan(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        assertEquals(6000, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue((Integer) all.get(i - 1).getKey() <= (Integer) all.get(i).getKey());
+        }
+    }
+    
+    @Test
+    public void testCursor() {
+        BufferManager pool = new BufferManager(64);
+        BPlusTree tree = new BPlusTree("cursor_idx", "test_table", "id", testDataDir, pool, 8);
+        IntBPlusTree ints = new IntBPlusTree("cursor_int_idx", "test_table", "id", testDataDir, pool, 8);
+        for (int i = 0; i < 200; i++) {
+            tree.insert(i, 1, i);
+            ints.insert(i, 1, i);
+        }
+        for (int i = 0; i < 50; i++) {
+            tree.insert(100, 2, i); // Дубликаты на несколько листов
+            ints.insert(100, 2, i);
+        }
+        
+        for (BPlusTree index : List.of(tree, ints)) {
+            // Исключенная нижняя граница пропускает все равные ключи, даже на соседних листах
+            BPlusTree.Cursor cursor = index.cursor(100, false, 105, false);
+            for (int expected = 101; expected < 105; expected++) {
+                assertTrue(cursor.next());
+                assertEquals(expected, cursor.getKey());
+                assertEquals(expected, cursor.getSlotId());
+            }
+            assertFalse(cursor.next());
+            assertFalse(cursor.next());
+            
+            BPlusTree.Cursor duplicates = index.cursor(100, true, 100, true);
+            int count = 0;
+            while (duplicates.next()) {
+                count++;
+            }
+            assertEquals(51, count);
+            
+            // Курсор без границ читается лениво: вставки в еще не прочитанную часть видны
+            BPlusTree.Cursor all = index.cursor(null, false, null, false);
+            assertTrue(all.next());
+            assertEquals(0, all.getKey());
+            index.insert(1000, 3, 0);
+            int last = -1;
+            while (all.next()) {
+                assertTrue((Integer) all.getKey() >= last);
+                last = (Integer) all.getKey();
+            }
+            assertEquals(1000, last);
+        }
+        assertTrue(ints.cursor(1000, true, null, false).next());
+    }
 }
-
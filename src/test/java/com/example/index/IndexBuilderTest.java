@@ -0,0 +1,99 @@
+package com.example.index;
+
+import com.example.buffer.BufferManager;
+import com.example.storage.Page;
+import com.example.storage.StorageManager;
+import com.example.storage.TableFile;
+import com.example.storage.TableMetadata;
+import com.example.storage.TupleCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public class IndexBuilderTest {
+    private String testDataDir;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        testDataDir = Files.createTempDirectory("db_index_build_test_").toString();
+    }
+    
+    @Test
+    public void testExternalSortMergesRuns() throws Exception {
+        Path tmp = Path.of(testDataDir, "tmp");
+        Random random = new Random(7);
+        int previous = Integer.MIN_VALUE;
+        int count = 0;
+        try (IndexEntrySorter sorter = new IndexEntrySorter(4096, tmp)) {
+            for (int i = 0; i < 10_000; i++) {
+                sorter.add(new BPlusTree.IndexEntry(random.nextInt(1000), i / 100, i % 100));
+            }
+            assertTrue(sorter.getRunCount() > 1);
+            
+            Iterator<BPlusTree.IndexEntry> sorted = sorter.sorted();
+            while (sorted.hasNext()) {
+                int key = (Integer) sorted.next().getKey();
+                assertTrue(key >= previous);
+                previous = key;
+                count++;
+            }
+        }
+        assertEquals(10_000, count);
+        try (Stream<Path> files = Files.list(tmp)) {
+            assertEquals(0, files.count()); // Серии удалены
+        }
+    }
+    
+    @Test
+    public void testBuildFromTable() {
+        StorageManager storageManager = new StorageManager(testDataDir);
+        BufferManager bufferManager = new BufferManager(64);
+        TableMetadata metadata = new TableMetadata("users");
+        metadata.addColumn("id", "INTEGER");
+        metadata.addColumn("name", "VARCHAR");
+        storageManager.createTable(metadata);
+        TableFile tableFile = storageManager.getTableFile("users");
+        
+        // Строки в порядке, обратном ключам, и с повторами имен
+        Page page = bufferManager.newPage(tableFile);
+        for (int id = 3000; id > 0; id--) {
+            byte[] record = TupleCodec.encode(metadata, Arrays.asList(id, "user_" + (id % 500)));
+            if (page.insertRecord(record) < 0) {
+                bufferManager.unpinPage(tableFile, page.getPageId(), true);
+                page = bufferManager.newPage(tableFile);
+                page.insertRecord(record);
+            }
+        }
+        bufferManager.unpinPage(tableFile, page.getPageId(), true);
+        
+        // Маленькая память под сортировку: построение идет через внешнюю сортировку
+        IndexBuilder builder = new IndexBuilder(bufferManager, 8 * 1024, 0.7);
+        BPlusTree byId = new BPlusTree("users_id_idx", "users", "id", testDataDir, bufferManager);
+        BPlusTree byName = new BPlusTree("users_name_idx", "users", "name", testDataDir, bufferManager);
+        assertEquals(3000, builder.build(byId, tableFile, metadata));
+        assertEquals(3000, builder.build(byName, tableFile, metadata));
+        
+        List<BPlusTree.IndexEntry> range = byId.rangeScan(100, 199);
+        assertEquals(100, range.size());
+        assertEquals(100, range.get(0).getKey());
+        assertEquals(6, byName.search("user_42").size());
+        
+        // После загрузки дерево принимает обычные вставки
+        for (int id = 3001; id <= 4000; id++) {
+            byId.insert(id, 999, id);
+        }
+        assertEquals(1, byId.search(3500).size());
+        assertEquals(4000, byId.rangeScan(Integer.MIN_VALUE, Integer.MAX_VALUE).size());
+        
+        // Загрузка требует пустого индекса
+        assertThrows(IllegalStateException.class, () -> builder.build(byId, tableFile, metadata));
+    }
+}
@@ -73,6 +73,61 @@ public class ParserTest {
         assertTrue(ast.getValue().contains("users"));
         assertTrue(ast.getValue().contains("id"));
     }
+    
+    @Test
+    public void testParseBetween() {
+        Lexer lexer = new Lexer("SELECT * FROM users WHERE age BETWEEN 20 AND 30");
+        List<Token> tokens = lexer.tokenize();
+        Parser parser = new Parser(tokens);
+        
+        ASTNode ast = parser.parse();
+        
+        // AND внутри BETWEEN не становится логической связкой
+        ASTNode between = ast.getChildren().get(2).getChildren().get(0);
+        assertEquals("BETWEEN", between.getValue());
+        assertEquals(3, between.getChildren().size());
+        assertEquals("age", between.getChildren().get(0).getValue());
+        assertEquals("20", between.getChildren().get(1).getValue());
+        assertEquals("30", between.getChildren().get(2).getValue());
+    }
+    
+    @Test
+    public void testParseAndOrPrecedence() {
+        Lexer lexer = new Lexer("SELECT * FROM users WHERE age = 1 OR age > 5 AND name = 'x'");
+        Parser parser = new Parser(lexer.tokenize());
+        
+        ASTNode ast = parser.parse();
+        
+        // AND связывает сильнее OR: age = 1 OR (age > 5 AND name = 'x')
+        ASTNode or = ast.getChildren().get(2).getChildren().get(0);
+        assertEquals("OR", or.getValue());
+        assertEquals("=", or.getChildren().get(0).getValue());
+        ASTNode and = or.getChildren().get(1);
+        assertEquals("AND", and.getValue());
+        assertEquals(">", and.getChildren().get(0).getValue());
+        assertEquals("=", and.getChildren().get(1).getValue());
+    }
+    
+    @Test
+    public void testParseJoin() {
+        Lexer lexer = new Lexer("SELECT o.id, name FROM orders o INNER JOIN customers AS c "
+                + "ON o.customer_id = c.id WHERE c.id < 10");
+        Parser parser = new Parser(lexer.tokenize());
+        
+        ASTNode ast = parser.parse();
+        
+        // Квалифицированные колонки - одной строкой, псевдоним - дочерний узел таблицы
+        assertEquals("o.id", ast.getChildren().get(0).getChildren().get(0).getValue());
+        assertEquals("orders", ast.getChildren().get(1).getValue());
+        assertEquals("o", ast.getChildren().get(1).getChildren().get(0).getValue());
+        ASTNode join = ast.getChildren().get(2);
+        assertEquals(ASTNode.Type.JOIN, join.getType());
+        assertEquals("customers", join.getChildren().get(0).getValue());
+        assertEquals("c", join.getChildren().get(0).getChildren().get(0).getValue());
+        ASTNode on = join.getChildren().get(1);
+        assertEquals("=", on.getValue());
+        assertEquals("o.customer_id", on.getChildren().get(0).getValue());
+        assertEquals("c.id", on.getChildren().get(1).getValue());
+        assertEquals(ASTNode.Type.WHERE_CLAUSE, ast.getChildren().get(3).getType());
+    }
 }
-
-
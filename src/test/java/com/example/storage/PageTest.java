@@ -0,0 +1,56 @@
+package com.example.storage;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PageTest {
+    
+    @Test
+    public void testInsertAndGet() {
+        Page page = new Page(0);
+        assertEquals(0, page.getSlotCount());
+        
+        int slot0 = page.insertRecord(new byte[]{1, 2, 3});
+        int slot1 = page.insertRecord(new byte[]{4, 5});
+        
+        assertEquals(0, slot0);
+        assertEquals(1, slot1);
+        assertEquals(2, page.getSlotCount());
+        assertArrayEquals(new byte[]{1, 2, 3}, page.getRecord(slot0));
+        assertArrayEquals(new byte[]{4, 5}, page.getRecord(slot1));
+        assertTrue(page.isDirty());
+    }
+    
+    @Test
+    public void testPageFullReturnsMinusOne() {
+        Page page = new Page(0);
+        byte[] record = new byte[1000];
+        int inserted = 0;
+        while (page.insertRecord(record) >= 0) {
+            inserted++;
+        }
+        // 4 * (1000 + SLOT_SIZE) + HEADER_SIZE <= 4096
+        assertEquals(4, inserted);
+        assertNull(page.getRecord(inserted));
+    }
+    
+    @Test
+    public void testDeleteKeepsSlotNumbersAndReclaimsSpace() {
+        Page page = new Page(0);
+        byte[] big = new byte[1500];
+        int first = page.insertRecord(big);
+        int second = page.insertRecord(new byte[]{9});
+        assertEquals(2, page.insertRecord(big));
+        assertEquals(-1, page.insertRecord(big));
+        
+        assertTrue(page.deleteRecord(first));
+        assertNull(page.getRecord(first));
+        assertFalse(page.deleteRecord(first));
+        
+        // Уплотнение освобождает место удаленного кортежа, слот 1 не сдвигается
+        int fourth = page.insertRecord(big);
+        assertEquals(3, fourth);
+        assertArrayEquals(new byte[]{9}, page.getRecord(second));
+        assertEquals(1500, page.getRecord(fourth).length);
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.AfterEach;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -71,6 +72,173 @@ public class StorageManagerTest {
         assertNotNull(tableFile);
         assertEquals("test_table", tableFile.getTableName());
     }
+    
+    @Test
+    public void testPagesStoredInSegmentFile() {
+        TableFile tableFile = new TableFile("seg_table", testDataDir);
+        int pageId = tableFile.allocatePage();
+        Page page = new Page(pageId);
+        page.getData()[100] = 42;
+        tableFile.savePage(page);
+        
+        assertTrue(Files.exists(Path.of(testDataDir, "seg_table.tbl")));
+        assertFalse(Files.exists(LegacyPageFiles.pagePath(Path.of(testDataDir), "seg_table", pageId)));
+        assertEquals(42, tableFile.loadPage(pageId).getData()[100]);
+        tableFile.close();
+    }
+    
+    @Test
+    public void testLegacyPagesMigrated() {
+        Path dir = Path.of(testDataDir);
+        TableMetadata metadata = new TableMetadata("old_table");
+        metadata.addColumn("id", "INTEGER");
+        metadata.addColumn("name", "VARCHAR");
+        // 37 строк по 108 байт заполняют страницу старого формата
+        LegacyPageFiles.savePage(dir, "old_table", legacyPage(0, 0, 37));
+        LegacyPageFiles.savePage(dir, "old_table", legacyPage(1, 37, 13));
+        
+        TableFile migrated = new TableFile("old_table", testDataDir);
+        migrated.migrateLegacyPages(metadata);
+        assertTrue(LegacyPageFiles.listPageIds(dir, "old_table").isEmpty());
+        int id = 0;
+        for (int pageId : migrated.getPageIds()) {
+            Page page = migrated.loadPage(pageId);
+            for (int slot = 0; slot < page.getSlotCount(); slot++) {
+                assertEquals(java.util.Arrays.asList(id, "user " + id),
+                    TupleCodec.decode(metadata, page.getRecordBuffer(slot)));
+                id++;
+            }
+        }
+        assertEquals(50, id);
+        migrated.close();
+        
+        // Испорченная страница: миграция падает, старые файлы остаются
+        Page broken = legacyPage(0, 0, 1);
+        ByteBuffer.wrap(broken.getData()).putInt(8, Page.PAGE_SIZE);
+        LegacyPageFiles.savePage(dir, "broken", broken);
+        TableMetadata brokenMetadata = new TableMetadata("broken");
+        brokenMetadata.addColumn("id", "INTEGER");
+        brokenMetadata.addColumn("name", "VARCHAR");
+        TableFile brokenFile = new TableFile("broken", testDataDir);
+        assertThrows(RuntimeException.class, () -> brokenFile.migrateLegacyPages(brokenMetadata));
+        assertEquals(1, LegacyPageFiles.listPageIds(dir, "broken").size());
+        brokenFile.close();
+    }
+    
+    @Test
+    public void testBaselineDataDirectoryReadable() throws Exception {
+        // Каталог данных в том виде, в каком его оставляла исходная версия: схема, список
+        // страниц, страницы по файлам и сериализованный индекс
+        Path dir = Path.of(testDataDir);
+        TableMetadata metadata = new TableMetadata("old");
+        metadata.addColumn("id", "INTEGER");
+        metadata.addColumn("name", "VARCHAR");
+        writeObjects(dir.resolve("old.schema"), metadata);
+        writeObjects(dir.resolve("old.meta"), new java.util.ArrayList<>(java.util.List.of(0, 1)), 2);
+        LegacyPageFiles.savePage(dir, "old", legacyPage(0, 0, 37));
+        LegacyPageFiles.savePage(dir, "old", legacyPage(1, 37, 13));
+        writeObjects(dir.resolve("old_id.idxmeta"), new com.example.index.IndexManager.IndexMetadata("old", "id"));
+        writeObjects(dir.resolve("old_id.idx"), "legacy tree");
+        
+        com.example.server.DatabaseServer server = new com.example.server.DatabaseServer(0, testDataDir);
+        try {
+            com.example.server.DatabaseServer.QueryResult all = server.executeQuery("SELECT * FROM old");
+            assertTrue(all.isSuccess(), all.getMessage());
+            assertEquals(50, all.getRows().size());
+            for (com.example.executor.Row row : all.getRows()) {
+                assertEquals("user " + row.getValue(0), row.getValue(1));
+            }
+            com.example.server.DatabaseServer.QueryResult one = server.executeQuery("SELECT * FROM old WHERE id = 2");
+            assertTrue(one.isSuccess(), one.getMessage());
+            assertEquals(1, one.getRows().size());
+            assertEquals("user 2", one.getRows().get(0).getValue(1));
+        } finally {
+            server.stop();
+        }
+        assertTrue(LegacyPageFiles.listPageIds(dir, "old").isEmpty());
+    }
+    
+    /**
+     * Страница старого формата: [число строк int] и строки (id, name) по 108 байт
+     */
+    private static Page legacyPage(int pageId, int firstId, int count) {
+        Page page = new Page(pageId);
+        ByteBuffer buffer = ByteBuffer.wrap(page.getData());
+        buffer.putInt(count);
+        for (int i = 0; i < count; i++) {
+            byte[] name = ("user " + (firstId + i)).getBytes();
+            buffer.position(4 + i * 108);
+            buffer.putInt(firstId + i);
+            buffer.putInt(name.length);
+            buffer.put(name);
+        }
+        return page;
+    }
+    
+    private static void writeObjects(Path path, Object... objects) throws Exception {
+        try (java.io.ObjectOutputStream out = new java.io.ObjectOutputStream(Files.newOutputStream(path))) {
+            for (Object object : objects) {
+                if (object instanceof Integer) {
+                    out.writeInt((Integer) object);
+                } else {
+                    out.writeObject(object);
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testUnknownPageFormatRefused() throws Exception {
+        Path dir = Path.of(testDataDir);
+        byte[] image = new byte[Page.PAGE_SIZE];
+        ByteBuffer.wrap(image).putInt(0, 1).putInt(4, 4095);
+        
+        // Другая версия формата и страницы без версии - ошибка, файлы не меняются
+        for (String table : new String[] {"future", "old_slotted", "unstamped"}) {
+            Files.write(dir.resolve(table + ".tbl"), image);
+        }
+        writeObjects(dir.resolve("future.meta"), new java.util.ArrayList<>(java.util.List.of(0)), 1, 3);
+        writeObjects(dir.resolve("old_slotted.meta"), new java.util.ArrayList<>(java.util.List.of(0)), 1, 1);
+        writeObjects(dir.resolve("unstamped.meta"), new java.util.ArrayList<>(java.util.List.of(0)), 1);
+        for (String table : new String[] {"future", "old_slotted", "unstamped"}) {
+            byte[] meta = Files.readAllBytes(dir.resolve(table + ".meta"));
+            RuntimeException e = assertThrows(RuntimeException.class, () -> new TableFile(table, testDataDir));
+            assertTrue(e.getMessage().contains(table), e.getMessage());
+            assertArrayEquals(image, Files.readAllBytes(dir.resolve(table + ".tbl")));
+            assertArrayEquals(meta, Files.readAllBytes(dir.resolve(table + ".meta")));
+        }
+        
+        // Записанная таблица открывается заново
+        TableFile current = new TableFile("current", testDataDir);
+        Page page = new Page(current.allocatePage());
+        page.insertRecord(new byte[]{7});
+        current.savePage(page);
+        current.close();
+        current = new TableFile("current", testDataDir);
+        assertArrayEquals(new byte[]{7}, current.loadPage(0).getRecord(0));
+        current.close();
+    }
+    
+    @Test
+    public void testMmapModeReadsMappedViews() {
+        TableFile writer = new TableFile("mapped", testDataDir);
+        Page page = new Page(writer.allocatePage());
+        int slot = page.insertRecord(new byte[]{5, 6, 7});
+        writer.savePage(page);
+        writer.close();
+        
+        TableFile reader = new TableFile("mapped", testDataDir, TableFile.IoMode.MMAP);
+        Page mapped = reader.loadPage(0);
+        assertTrue(mapped.getBuffer().isReadOnly());
+        assertArrayEquals(new byte[]{5, 6, 7}, mapped.getRecord(slot));
+        
+        // Первая запись копирует страницу в heap, отображение не меняется до savePage
+        int newSlot = mapped.insertRecord(new byte[]{8});
+        assertFalse(mapped.getBuffer().isReadOnly());
+        assertNull(reader.loadPage(0).getRecord(newSlot));
+        
+        reader.savePage(mapped);
+        assertArrayEquals(new byte[]{8}, reader.loadPage(0).getRecord(newSlot));
+        reader.close();
+    }
 }
-
-
@@ -0,0 +1,105 @@
+package com.example.wal;
+
+import com.example.buffer.BufferManager;
+import com.example.executor.QueryExecutor;
+import com.example.executor.Row;
+import com.example.index.BPlusTree;
+import com.example.index.IndexManager;
+import com.example.sql.optimizer.PhysicalPlan;
+import com.example.storage.StorageManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.util.List;
+
+public class WalRecoveryTest {
+    private String testDataDir;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        testDataDir = Files.createTempDirectory("db_recovery_test_").toString();
+    }
+    
+    @Test
+    public void testRedoAfterCrash() {
+        // Первый запуск: страницы и индекс остаются только в памяти, на диске - журнал
+        StorageManager storageManager = new StorageManager(testDataDir);
+        BufferManager bufferManager = new BufferManager(10);
+        IndexManager indexManager = new IndexManager(storageManager.getCatalog(), bufferManager);
+        WriteAheadLog wal = new WriteAheadLog(testDataDir);
+        bufferManager.setWriteAheadLog(wal);
+        QueryExecutor executor = new QueryExecutor(storageManager, bufferManager, indexManager, wal);
+        
+        executor.execute(createTable());
+        executor.execute(createIndex());
+        for (int i = 1; i <= 3; i++) {
+            executor.execute(insert(i, "user_" + i));
+        }
+        // "Падение": страницы таблицы и индекса не сброшены
+        
+        StorageManager restartedStorage = new StorageManager(testDataDir);
+        BufferManager restartedBuffer = new BufferManager(10);
+        IndexManager restartedIndexes = new IndexManager(restartedStorage.getCatalog(), restartedBuffer);
+        WriteAheadLog restartedWal = new WriteAheadLog(testDataDir);
+        restartedBuffer.setWriteAheadLog(restartedWal);
+        WalRecovery recovery = new WalRecovery(restartedWal, restartedStorage, restartedBuffer, restartedIndexes);
+        
+        // Повторяются только вставки в таблицу, индекс перестраивается по ней
+        assertEquals(3, recovery.recover());
+        QueryExecutor restarted = new QueryExecutor(restartedStorage, restartedBuffer, restartedIndexes, restartedWal);
+        List<Row> rows = restarted.execute(selectAll()).getRows();
+        assertEquals(3, rows.size());
+        assertEquals("user_3", rows.get(2).getValue(1));
+        
+        BPlusTree index = restartedIndexes.getIndex("users_id_idx");
+        assertEquals(1, index.search(2).size());
+        
+        // Повторное восстановление ничего не меняет
+        assertEquals(0, recovery.recover());
+        assertEquals(1, index.search(2).size());
+        
+        // После контрольной точки redo не нужен
+        new Checkpointer(restartedBuffer, restartedStorage, restartedIndexes, restartedWal, 1000).checkpoint();
+        assertTrue(restartedWal.readCheckpointLsn() > 0);
+        StorageManager reloadedStorage = new StorageManager(testDataDir);
+        BufferManager reloadedBuffer = new BufferManager(10);
+        IndexManager reloadedIndexes = new IndexManager(reloadedStorage.getCatalog(), reloadedBuffer);
+        assertEquals(0, new WalRecovery(new WriteAheadLog(testDataDir), reloadedStorage,
+                reloadedBuffer, reloadedIndexes).recover());
+        assertEquals(1, reloadedIndexes.getIndex("users_id_idx").search(3).size());
+    }
+    
+    private PhysicalPlan createTable() {
+        PhysicalPlan plan = new PhysicalPlan(PhysicalPlan.Type.CREATE_TABLE);
+        plan.setTableName("users");
+        plan.getColumns().add(new PhysicalPlan.ColumnDef("id", "INTEGER"));
+        plan.getColumns().add(new PhysicalPlan.ColumnDef("name", "VARCHAR"));
+        return plan;
+    }
+    
+    private PhysicalPlan createIndex() {
+        PhysicalPlan plan = new PhysicalPlan(PhysicalPlan.Type.CREATE_INDEX);
+        plan.setTableName("users");
+        plan.getColumns().add(new PhysicalPlan.ColumnDef("users_id_idx", "id"));
+        return plan;
+    }
+    
+    private PhysicalPlan insert(int id, String name) {
+        PhysicalPlan plan = new PhysicalPlan(PhysicalPlan.Type.INSERT);
+        plan.setTableName("users");
+        plan.getInsertValues().add(id);
+        plan.getInsertValues().add(name);
+        return plan;
+    }
+    
+    private PhysicalPlan selectAll() {
+        PhysicalPlan plan = new PhysicalPlan(PhysicalPlan.Type.SELECT);
+        plan.setTableName("users");
+        plan.getSelectColumns().add("id");
+        plan.getSelectColumns().add("name");
+        plan.setRootOperator(new PhysicalPlan.SeqScanOperator("users"));
+        return plan;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.wal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class WriteAheadLogTest {
+    private String testDataDir;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        testDataDir = Files.createTempDirectory("db_wal_test_").toString();
+    }
+    
+    @Test
+    public void testAppendFlushAndRead() {
+        WriteAheadLog wal = new WriteAheadLog(testDataDir);
+        long first = wal.append(LogRecord.heapInsert("users", 0, 0, new byte[]{1, 2, 3}));
+        long second = wal.append(LogRecord.heapInsert("users", 0, 1, new byte[]{4, 5}));
+        long third = wal.append(LogRecord.createIndex("users_name_idx"));
+        assertTrue(first < second && second < third);
+        wal.flush(third);
+        assertEquals(third, wal.getFlushedLsn());
+        wal.close();
+        
+        List<LogRecord> records = new ArrayList<>();
+        List<Long> lsns = new ArrayList<>();
+        new WriteAheadLog(testDataDir).readFrom(first, (lsn, record) -> {
+            lsns.add(lsn);
+            records.add(record);
+        });
+        
+        // Чтение начинается после fromLsn
+        assertEquals(List.of(second, third), lsns);
+        assertEquals(LogRecord.Type.HEAP_INSERT, records.get(0).getType());
+        assertEquals(1, records.get(0).getSlotId());
+        assertArrayEquals(new byte[]{4, 5}, records.get(0).getTuple());
+        assertEquals(LogRecord.Type.CREATE_INDEX, records.get(1).getType());
+        assertEquals("users_name_idx", records.get(1).getObjectName());
+    }
+    
+    @Test
+    public void testTornTailIsTruncated() throws Exception {
+        WriteAheadLog wal = new WriteAheadLog(testDataDir);
+        long good = wal.append(LogRecord.heapInsert("users", 0, 0, new byte[]{1}));
+        long torn = wal.append(LogRecord.heapInsert("users", 0, 1, new byte[]{2}));
+        wal.close();
+        
+        // Портим последнюю запись, как при падении посреди записи
+        Path segment = Paths.get(testDataDir, "wal", "0000000000000000.wal");
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(torn - 1);
+            file.write(0x7F);
+        }
+        
+        WriteAheadLog reopened = new WriteAheadLog(testDataDir);
+        assertEquals(good, reopened.getInsertLsn());
+        List<Long> lsns = new ArrayList<>();
+        reopened.readFrom(0, (lsn, record) -> lsns.add(lsn));
+        assertEquals(List.of(good), lsns);
+        
+        // Новые записи пишутся поверх отрезанного хвоста
+        long next = reopened.append(LogRecord.createTable("orders"));
+        reopened.flush(next);
+        lsns.clear();
+        reopened.readFrom(0, (lsn, record) -> lsns.add(lsn));
+        assertEquals(List.of(good, next), lsns);
+    }
+    
+    @Test
+    public void testGroupCommitBatchesFsyncs() throws Exception {
+        WriteAheadLog wal = new WriteAheadLog(testDataDir);
+        int threads = 8;
+        int commitsPerThread = 50;
+        
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < commitsPerThread; i++) {
+                    wal.flush(wal.append(LogRecord.heapInsert("t" + thread, 0, i, new byte[]{1})));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        
+        int[] count = {0};
+        wal.readFrom(0, (lsn, record) -> count[0]++);
+        assertEquals(threads * commitsPerThread, count[0]);
+        assertTrue(wal.getSyncCount() <= threads * commitsPerThread);
+        assertEquals(wal.getInsertLsn(), wal.getFlushedLsn());
+    }
+    
+    @Test
+    public void testOldSegmentsRemovedAfterCheckpoint() throws Exception {
+        WriteAheadLog wal = new WriteAheadLog(testDataDir, 64);
+        long lsn = 0;
+        for (int i = 0; i < 10; i++) {
+            lsn = wal.append(LogRecord.heapInsert("users", 0, i, new byte[32]));
+            wal.flush(lsn);
+        }
+        Path walDir = Paths.get(testDataDir, "wal");
+        assertTrue(Files.list(walDir).filter(p -> p.toString().endsWith(".wal")).count() > 1);
+        
+        wal.writeCheckpointLsn(lsn);
+        wal.removeSegmentsBefore(lsn);
+        assertEquals(1, Files.list(walDir).filter(p -> p.toString().endsWith(".wal")).count());
+        assertEquals(lsn, new WriteAheadLog(testDataDir).readCheckpointLsn());
+    }
+}